@@ -0,0 +1,66 @@
+/*
+ * Copyright (c) 2018 Snowplow Analytics Ltd. All rights reserved.
+ *
+ * This program is licensed to you under the Apache License Version 2.0,
+ * and you may not use this file except in compliance with the Apache License Version 2.0.
+ * You may obtain a copy of the Apache License Version 2.0 at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the Apache License Version 2.0 is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Apache License Version 2.0 for the specific language governing permissions and limitations there under.
+ */
+
+package com.snowplowanalytics.redash.cli;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs a task for every item of a bulk command on a pool of {@code parallelism} threads.
+ */
+final class Bulk {
+
+    @FunctionalInterface
+    interface Task<T> {
+        void run(T item) throws IOException;
+    }
+
+    private Bulk() {
+    }
+
+    /**
+     * Reports every item to {@code progress} as succeeded or failed; failures do not stop the other items.
+     */
+    static <T> void forEach(List<T> items, int parallelism, Progress progress, Task<T> task)
+            throws InterruptedIOException {
+        if (items.isEmpty()) {
+            return;
+        }
+        ExecutorService pool = Executors.newFixedThreadPool(Math.min(parallelism, items.size()));
+        try {
+            for (T item : items) {
+                pool.execute(() -> {
+                    try {
+                        task.run(item);
+                        progress.succeeded();
+                    } catch (IOException | RuntimeException e) {
+                        progress.failed(item, e);
+                    }
+                });
+            }
+            pool.shutdown();
+            while (!pool.awaitTermination(1, TimeUnit.SECONDS)) {
+                // Progress is reported by the tasks themselves
+            }
+        } catch (InterruptedException e) {
+            pool.shutdownNow();
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException(e.getMessage());
+        }
+    }
+}
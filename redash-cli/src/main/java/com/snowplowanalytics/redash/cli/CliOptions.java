@@ -0,0 +1,156 @@
+/*
+ * Copyright (c) 2018 Snowplow Analytics Ltd. All rights reserved.
+ *
+ * This program is licensed to you under the Apache License Version 2.0,
+ * and you may not use this file except in compliance with the Apache License Version 2.0.
+ * You may obtain a copy of the Apache License Version 2.0 at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the Apache License Version 2.0 is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Apache License Version 2.0 for the specific language governing permissions and limitations there under.
+ */
+
+package com.snowplowanalytics.redash.cli;
+
+import com.snowplowanalytics.redash.MutationMode;
+import com.snowplowanalytics.redash.RedashClient;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The command, its arguments and the options shared by all commands. Options are written as
+ * {@code --name value} or {@code --name=value} and may appear anywhere on the command line.
+ */
+final class CliOptions {
+
+    static final String API_KEY_VARIABLE = "REDASH_API_KEY";
+
+    private String command;
+    private final List<String> arguments = new ArrayList<>();
+    private String schema = "http";
+    private String host;
+    private int port = -1;
+    private String apiKey;
+    private int parallelism = RedashClient.DEFAULT_PARALLELISM;
+    private boolean quiet;
+    private boolean testConnections;
+
+    private CliOptions() {
+    }
+
+    /**
+     * @param environment Supplies the API key as {@value #API_KEY_VARIABLE} if {@code --api-key} is not given,
+     *                    which keeps it out of the process list and shell history.
+     * @throws IllegalArgumentException If the command line is incomplete or an option is unknown or invalid.
+     */
+    static CliOptions parse(String[] args, Map<String, String> environment) {
+        CliOptions options = new CliOptions();
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if (!arg.startsWith("--")) {
+                if (options.command == null) {
+                    options.command = arg;
+                } else {
+                    options.arguments.add(arg);
+                }
+                continue;
+            }
+            String name = arg.substring(2);
+            String value = null;
+            int equals = name.indexOf('=');
+            if (equals >= 0) {
+                value = name.substring(equals + 1);
+                name = name.substring(0, equals);
+            }
+            if (name.equals("quiet")) {
+                options.quiet = true;
+                continue;
+            }
+            if (name.equals("test-connections")) {
+                options.testConnections = true;
+                continue;
+            }
+            if (value == null) {
+                if (i + 1 == args.length) {
+                    throw new IllegalArgumentException("Missing value for --" + name);
+                }
+                value = args[++i];
+            }
+            switch (name) {
+                case "schema":
+                    options.schema = value;
+                    break;
+                case "host":
+                    options.host = value;
+                    break;
+                case "port":
+                    options.port = positive(name, value);
+                    break;
+                case "api-key":
+                    options.apiKey = value;
+                    break;
+                case "parallelism":
+                    options.parallelism = positive(name, value);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option --" + name);
+            }
+        }
+        if (options.command == null) {
+            throw new IllegalArgumentException("Missing command");
+        }
+        if (options.host == null) {
+            throw new IllegalArgumentException("Missing --host");
+        }
+        if (options.apiKey == null) {
+            options.apiKey = environment.get(API_KEY_VARIABLE);
+            if (options.apiKey == null) {
+                throw new IllegalArgumentException("Missing --api-key or " + API_KEY_VARIABLE);
+            }
+        }
+        if (options.port == -1) {
+            options.port = "https".equals(options.schema) ? 443 : 80;
+        }
+        return options;
+    }
+
+    private static int positive(String name, String value) {
+        try {
+            int number = Integer.parseInt(value);
+            if (number > 0) {
+                return number;
+            }
+        } catch (NumberFormatException e) {
+            // Reported below
+        }
+        throw new IllegalArgumentException("--" + name + " must be a positive number: " + value);
+    }
+
+    RedashClient newClient(MutationMode mutationMode) {
+        return new RedashClient.RedashClientBuilder(schema, host, port, apiKey).mutationMode(mutationMode).build();
+    }
+
+    String getCommand() {
+        return command;
+    }
+
+    List<String> getArguments() {
+        return Collections.unmodifiableList(arguments);
+    }
+
+    int getParallelism() {
+        return parallelism;
+    }
+
+    boolean isQuiet() {
+        return quiet;
+    }
+
+    boolean isTestConnections() {
+        return testConnections;
+    }
+}
@@ -0,0 +1,42 @@
+/*
+ * Copyright (c) 2018 Snowplow Analytics Ltd. All rights reserved.
+ *
+ * This program is licensed to you under the Apache License Version 2.0,
+ * and you may not use this file except in compliance with the Apache License Version 2.0.
+ * You may obtain a copy of the Apache License Version 2.0 at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the Apache License Version 2.0 is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Apache License Version 2.0 for the specific language governing permissions and limitations there under.
+ */
+
+package com.snowplowanalytics.redash.cli;
+
+import com.snowplowanalytics.redash.RedashClient;
+
+import java.io.IOException;
+import java.io.PrintStream;
+
+/**
+ * A bulk command of the CLI.
+ */
+interface Command {
+
+    String getName();
+
+    /**
+     * @return The arguments and a description for the usage message.
+     */
+    String getUsage();
+
+    /**
+     * @param client A client in {@link com.snowplowanalytics.redash.MutationMode#OPTIMISTIC} mode; commands
+     *               download what they need to validate their mutations up front.
+     * @param out Receives the output of the command, if any.
+     * @param err Receives progress, failures and the summary.
+     * @return The exit code: 0 if every item succeeded, 1 otherwise.
+     * @throws IOException If the command could not start, e.g. because an input file or Redash is unavailable.
+     */
+    int run(RedashClient client, CliOptions options, PrintStream out, PrintStream err) throws IOException;
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright (c) 2018 Snowplow Analytics Ltd. All rights reserved.
+ *
+ * This program is licensed to you under the Apache License Version 2.0,
+ * and you may not use this file except in compliance with the Apache License Version 2.0.
+ * You may obtain a copy of the Apache License Version 2.0 at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the Apache License Version 2.0 is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Apache License Version 2.0 for the specific language governing permissions and limitations there under.
+ */
+
+package com.snowplowanalytics.redash.cli;
+
+import com.snowplowanalytics.redash.AccessMatrix;
+import com.snowplowanalytics.redash.RedashClient;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+/**
+ * Writes every membership of a user and every data-source of a user-group as one CSV row with the columns
+ * {@code group_id, group, kind, id, name}, where the kind is {@code user} or {@code data_source}. The memberships
+ * are downloaded with {@link RedashClient#getAccessMatrix(int)}.
+ */
+final class ExportAccessCommand implements Command {
+
+    static final String HEADER = Csv.formatRecord("group_id", "group", "kind", "id", "name");
+
+    @Override
+    public String getName() {
+        return "export-access";
+    }
+
+    @Override
+    public String getUsage() {
+        return "[file.csv]  Write all group memberships and data-sources as CSV, to stdout without a file";
+    }
+
+    @Override
+    public int run(RedashClient client, CliOptions options, PrintStream out, PrintStream err) throws IOException {
+        if (options.getArguments().size() > 1) {
+            throw new IllegalArgumentException("Expected at most one output file");
+        }
+        Progress progress = new Progress(getName(), err, !options.isQuiet());
+        AccessMatrix matrix = client.getAccessMatrix(options.getParallelism());
+        int total = 0;
+        for (int groupId : matrix.getGroupIds()) {
+            total += matrix.getUserIdsOfGroup(groupId).length + matrix.getDataSourceIdsOfGroup(groupId).length;
+        }
+        progress.setTotal(total);
+        String file = options.getArguments().isEmpty() ? "-" : options.getArguments().get(0);
+        boolean toOut = file.equals("-");
+        Writer writer = toOut
+                ? new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8))
+                : Files.newBufferedWriter(Paths.get(file), StandardCharsets.UTF_8);
+        try {
+            write(matrix, writer, progress);
+        } finally {
+            // The standard output stays open
+            if (toOut) {
+                writer.flush();
+            } else {
+                writer.close();
+            }
+        }
+        progress.finish();
+        return 0;
+    }
+
+    private static void write(AccessMatrix matrix, Writer writer, Progress progress) throws IOException {
+        writer.write(HEADER);
+        writer.write('\n');
+        for (int groupId : matrix.getGroupIds()) {
+            String group = matrix.getGroupName(groupId);
+            for (int userId : matrix.getUserIdsOfGroup(groupId)) {
+                writer.write(Csv.formatRecord(groupId, group, "user", userId, matrix.getUserName(userId)));
+                writer.write('\n');
+                progress.succeeded();
+            }
+            for (int dataSourceId : matrix.getDataSourceIdsOfGroup(groupId)) {
+                writer.write(Csv.formatRecord(groupId, group, "data_source", dataSourceId,
+                        matrix.getDataSourceName(dataSourceId)));
+                writer.write('\n');
+                progress.succeeded();
+            }
+        }
+    }
+}
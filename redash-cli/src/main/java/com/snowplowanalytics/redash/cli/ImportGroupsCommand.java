@@ -0,0 +1,152 @@
+/*
+ * Copyright (c) 2018 Snowplow Analytics Ltd. All rights reserved.
+ *
+ * This program is licensed to you under the Apache License Version 2.0,
+ * and you may not use this file except in compliance with the Apache License Version 2.0.
+ * You may obtain a copy of the Apache License Version 2.0 at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the Apache License Version 2.0 is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Apache License Version 2.0 for the specific language governing permissions and limitations there under.
+ */
+
+package com.snowplowanalytics.redash.cli;
+
+import com.snowplowanalytics.redash.AccessMatrix;
+import com.snowplowanalytics.redash.RedashClient;
+import com.snowplowanalytics.redash.model.Group;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Creates user-groups and adds users to them from a CSV file with a {@code group} and a {@code user} column,
+ * both names, and an optional header. Existing groups and memberships are taken from one
+ * {@link RedashClient#getAccessMatrix(int)}, so only missing groups are created and only missing memberships sent,
+ * concurrently.
+ */
+final class ImportGroupsCommand implements Command {
+
+    private static final String GROUP = "group";
+    private static final String USER = "user";
+
+    @Override
+    public String getName() {
+        return "import-groups";
+    }
+
+    @Override
+    public String getUsage() {
+        return "<file.csv>  Create groups and add users from group,user rows";
+    }
+
+    @Override
+    public int run(RedashClient client, CliOptions options, PrintStream out, PrintStream err) throws IOException {
+        if (options.getArguments().size() != 1) {
+            throw new IllegalArgumentException("Expected one CSV file");
+        }
+        Map<String, Set<String>> usersByGroup = read(options.getArguments().get(0));
+        AccessMatrix matrix = client.getAccessMatrix(options.getParallelism());
+        Map<String, Integer> userIds = new HashMap<>();
+        for (int userId : matrix.getUserIds()) {
+            userIds.putIfAbsent(matrix.getUserName(userId), userId);
+        }
+        Map<String, Integer> groupIds = new HashMap<>();
+        for (int groupId : matrix.getGroupIds()) {
+            groupIds.putIfAbsent(matrix.getGroupName(groupId), groupId);
+        }
+
+        Progress progress = new Progress(getName(), err, !options.isQuiet());
+        List<Membership> missing = new ArrayList<>();
+        int total = 0;
+        for (Map.Entry<String, Set<String>> group : usersByGroup.entrySet()) {
+            Integer groupId = groupIds.get(group.getKey());
+            if (groupId == null) {
+                groupId = client.createUserGroup(new Group(group.getKey()));
+                err.println("[" + getName() + "] created group " + group.getKey() + " with id " + groupId);
+            }
+            for (String user : group.getValue()) {
+                total++;
+                Integer userId = userIds.get(user);
+                if (userId == null) {
+                    progress.failed(new Membership(user, group.getKey(), 0, groupId),
+                            new IllegalArgumentException("No such user"));
+                } else if (matrix.isMember(userId, groupId)) {
+                    progress.succeeded();
+                } else {
+                    missing.add(new Membership(user, group.getKey(), userId, groupId));
+                }
+            }
+        }
+        progress.setTotal(total);
+        err.println("[" + getName() + "] " + missing.size() + " of " + total + " memberships to add");
+        Bulk.forEach(missing, options.getParallelism(), progress, membership -> {
+            if (!client.addUserToGroup(membership.userId, membership.groupId)) {
+                throw new IOException("Rejected by Redash");
+            }
+        });
+        progress.finish();
+        return progress.getFailed() == 0 ? 0 : 1;
+    }
+
+    /**
+     * @return The user names by group name, both in the order of the file.
+     */
+    static Map<String, Set<String>> read(String file) throws IOException {
+        Map<String, Set<String>> usersByGroup = new LinkedHashMap<>();
+        try (BufferedReader reader = Files.newBufferedReader(Paths.get(file), StandardCharsets.UTF_8)) {
+            List<String> record;
+            int line = 0;
+            while ((record = Csv.readRecord(reader)) != null) {
+                line++;
+                if (record.size() == 1 && record.get(0).trim().isEmpty()) {
+                    continue;
+                }
+                if (record.size() != 2) {
+                    throw new IOException(file + ":" + line + ": expected group,user but found " + record.size()
+                            + " fields");
+                }
+                String group = record.get(0).trim();
+                String user = record.get(1).trim();
+                if (line == 1 && group.toLowerCase(Locale.ROOT).equals(GROUP)
+                        && user.toLowerCase(Locale.ROOT).equals(USER)) {
+                    continue;
+                }
+                usersByGroup.computeIfAbsent(group, g -> new LinkedHashSet<>()).add(user);
+            }
+        }
+        return usersByGroup;
+    }
+
+    private static final class Membership {
+        private final String user;
+        private final String group;
+        private final int userId;
+        private final int groupId;
+
+        private Membership(String user, String group, int userId, int groupId) {
+            this.user = user;
+            this.group = group;
+            this.userId = userId;
+            this.groupId = groupId;
+        }
+
+        @Override
+        public String toString() {
+            return user + " in " + group;
+        }
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) 2018 Snowplow Analytics Ltd. All rights reserved.
+ *
+ * This program is licensed to you under the Apache License Version 2.0,
+ * and you may not use this file except in compliance with the Apache License Version 2.0.
+ * You may obtain a copy of the Apache License Version 2.0 at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the Apache License Version 2.0 is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Apache License Version 2.0 for the specific language governing permissions and limitations there under.
+ */
+
+package com.snowplowanalytics.redash.cli;
+
+import java.io.PrintStream;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Counts the items of a bulk command and prints the progress to a stream at most once per second, then a
+ * summary with the throughput.
+ */
+final class Progress {
+
+    private static final long REPORT_INTERVAL_NANOS = 1_000_000_000L;
+
+    private final String command;
+    private final PrintStream out;
+    private final boolean enabled;
+    private final long startNanos = System.nanoTime();
+    private final AtomicInteger succeeded = new AtomicInteger();
+    private final AtomicInteger failed = new AtomicInteger();
+    private volatile int total;
+    private long lastReportNanos = startNanos;
+
+    Progress(String command, PrintStream out, boolean enabled) {
+        this.command = command;
+        this.out = out;
+        this.enabled = enabled;
+    }
+
+    void setTotal(int total) {
+        this.total = total;
+    }
+
+    void succeeded() {
+        succeeded.incrementAndGet();
+        report();
+    }
+
+    void failed(Object item, Exception error) {
+        failed.incrementAndGet();
+        synchronized (this) {
+            out.println("[" + command + "] failed: " + item + ": " + error.getMessage());
+        }
+        report();
+    }
+
+    int getSucceeded() {
+        return succeeded.get();
+    }
+
+    int getFailed() {
+        return failed.get();
+    }
+
+    private void report() {
+        if (!enabled) {
+            return;
+        }
+        long now = System.nanoTime();
+        synchronized (this) {
+            if (now - lastReportNanos < REPORT_INTERVAL_NANOS) {
+                return;
+            }
+            lastReportNanos = now;
+            int done = succeeded.get() + failed.get();
+            out.println(String.format(Locale.ROOT, "[%s] %d/%d %.0f%% %.1f/s", command, done, total,
+                    total == 0 ? 100.0 : 100.0 * done / total, rate(done, now)));
+        }
+    }
+
+    /**
+     * Prints the summary, also when progress reporting is disabled.
+     */
+    synchronized void finish() {
+        long now = System.nanoTime();
+        int done = succeeded.get() + failed.get();
+        out.println(String.format(Locale.ROOT, "[%s] %d done, %d failed in %.1f s (%.1f/s)", command,
+                succeeded.get(), failed.get(), (now - startNanos) / 1e9, rate(done, now)));
+    }
+
+    private double rate(int done, long now) {
+        double seconds = (now - startNanos) / 1e9;
+        return seconds > 0 ? done / seconds : 0;
+    }
+}
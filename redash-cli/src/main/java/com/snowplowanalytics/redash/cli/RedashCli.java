@@ -0,0 +1,84 @@
+/*
+ * Copyright (c) 2018 Snowplow Analytics Ltd. All rights reserved.
+ *
+ * This program is licensed to you under the Apache License Version 2.0,
+ * and you may not use this file except in compliance with the Apache License Version 2.0.
+ * You may obtain a copy of the Apache License Version 2.0 at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the Apache License Version 2.0 is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Apache License Version 2.0 for the specific language governing permissions and limitations there under.
+ */
+
+package com.snowplowanalytics.redash.cli;
+
+import com.snowplowanalytics.redash.MutationMode;
+import com.snowplowanalytics.redash.RedashClient;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Command line entry point for bulk administration of a Redash instance.
+ *
+ * Every command downloads the current state once, sends only the changes, with {@code --parallelism} requests
+ * in flight, and reports its progress and throughput on standard error.
+ */
+public final class RedashCli {
+
+    static final int EXIT_OK = 0;
+    static final int EXIT_FAILED = 1;
+    static final int EXIT_USAGE = 2;
+
+    private RedashCli() {
+    }
+
+    public static void main(String[] args) {
+        System.exit(run(args, System.getenv(), System.out, System.err));
+    }
+
+    static int run(String[] args, Map<String, String> environment, PrintStream out, PrintStream err) {
+        List<Command> commands = Arrays.asList(new ImportGroupsCommand(), new ExportAccessCommand(),
+                new SyncDataSourcesCommand(environment));
+        CliOptions options;
+        try {
+            options = CliOptions.parse(args, environment);
+        } catch (IllegalArgumentException e) {
+            err.println(e.getMessage());
+            printUsage(commands, err);
+            return EXIT_USAGE;
+        }
+        Command command = commands.stream().filter(c -> c.getName().equals(options.getCommand())).findFirst()
+                .orElse(null);
+        if (command == null) {
+            err.println("Unknown command " + options.getCommand());
+            printUsage(commands, err);
+            return EXIT_USAGE;
+        }
+        RedashClient client = options.newClient(MutationMode.OPTIMISTIC);
+        try {
+            return command.run(client, options, out, err);
+        } catch (IllegalArgumentException e) {
+            err.println(e.getMessage());
+            printUsage(commands, err);
+            return EXIT_USAGE;
+        } catch (IOException e) {
+            err.println(command.getName() + " failed: " + e.getMessage());
+            return EXIT_FAILED;
+        }
+    }
+
+    private static void printUsage(List<Command> commands, PrintStream err) {
+        err.println("Usage: redash-cli <command> [arguments] --host <host> [--port <port>] [--schema http|https]");
+        err.println("                  [--api-key <key>] [--parallelism <n>] [--quiet] [--test-connections]");
+        err.println("The API key may also be given as " + CliOptions.API_KEY_VARIABLE + ".");
+        err.println("Commands:");
+        for (Command command : commands) {
+            err.println("  " + command.getName() + " " + command.getUsage());
+        }
+    }
+}
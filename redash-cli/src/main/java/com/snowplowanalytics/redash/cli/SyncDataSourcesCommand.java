@@ -0,0 +1,215 @@
+/*
+ * Copyright (c) 2018 Snowplow Analytics Ltd. All rights reserved.
+ *
+ * This program is licensed to you under the Apache License Version 2.0,
+ * and you may not use this file except in compliance with the Apache License Version 2.0.
+ * You may obtain a copy of the Apache License Version 2.0 at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the Apache License Version 2.0 is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Apache License Version 2.0 for the specific language governing permissions and limitations there under.
+ */
+
+package com.snowplowanalytics.redash.cli;
+
+import com.snowplowanalytics.redash.DataSourceCreationResult;
+import com.snowplowanalytics.redash.RedashClient;
+import com.snowplowanalytics.redash.model.datasource.DataSource;
+import com.snowplowanalytics.redash.model.datasource.Options;
+import org.yaml.snakeyaml.LoaderOptions;
+import org.yaml.snakeyaml.Yaml;
+import org.yaml.snakeyaml.constructor.SafeConstructor;
+import org.yaml.snakeyaml.error.YAMLException;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Creates the data-sources of a YAML file which do not exist yet, with {@link RedashClient#createDataSources},
+ * and updates the ones which do, concurrently. Data-sources which exist only in Redash are left alone.
+ *
+ * The file holds a list of data-sources, either at the top level or under {@code dataSources}:
+ * <pre>
+ * dataSources:
+ *   - name: warehouse
+ *     type: redshift
+ *     options:
+ *       host: warehouse.example.com
+ *       port: 5439
+ *       user: redash
+ *       password: ${WAREHOUSE_PASSWORD}
+ *       dbname: analytics
+ * </pre>
+ * A string value which consists of a {@code ${NAME}} reference is replaced with the environment variable, so
+ * passwords need not be stored in the file. Options other than the connection settings are passed on as extras.
+ */
+final class SyncDataSourcesCommand implements Command {
+
+    private static final Pattern VARIABLE = Pattern.compile("\\$\\{([A-Za-z_][A-Za-z0-9_]*)}");
+    private static final String DATA_SOURCES = "dataSources";
+    private static final String NAME = "name";
+    private static final String TYPE = "type";
+    private static final String OPTIONS = "options";
+    private static final String HOST = "host";
+    private static final String PORT = "port";
+    private static final String USER = "user";
+    private static final String PASSWORD = "password";
+    private static final String DB_NAME = "dbname";
+
+    private final Map<String, String> environment;
+
+    SyncDataSourcesCommand(Map<String, String> environment) {
+        this.environment = environment;
+    }
+
+    @Override
+    public String getName() {
+        return "sync-data-sources";
+    }
+
+    @Override
+    public String getUsage() {
+        return "<file.yaml>  Create or update the data-sources of a YAML file";
+    }
+
+    @Override
+    public int run(RedashClient client, CliOptions options, PrintStream out, PrintStream err) throws IOException {
+        if (options.getArguments().size() != 1) {
+            throw new IllegalArgumentException("Expected one YAML file");
+        }
+        List<DataSource> dataSources = read(options.getArguments().get(0));
+        Set<String> existing = new HashSet<>();
+        client.getDataSources().forEach(dataSource -> existing.add(dataSource.getName()));
+        List<DataSource> toCreate = new ArrayList<>();
+        List<DataSource> toUpdate = new ArrayList<>();
+        for (DataSource dataSource : dataSources) {
+            (existing.contains(dataSource.getName()) ? toUpdate : toCreate).add(dataSource);
+        }
+        err.println("[" + getName() + "] " + toCreate.size() + " to create, " + toUpdate.size() + " to update");
+
+        Progress progress = new Progress(getName(), err, !options.isQuiet());
+        progress.setTotal(dataSources.size());
+        for (DataSourceCreationResult result : client.createDataSources(toCreate, options.getParallelism(),
+                options.isTestConnections())) {
+            String name = result.getDataSource().getName();
+            if (result.getStatus() == DataSourceCreationResult.Status.FAILED) {
+                progress.failed(name, result.getError());
+                continue;
+            }
+            if (result.getStatus() == DataSourceCreationResult.Status.ALREADY_EXISTS) {
+                err.println("[" + getName() + "] " + name + " was created concurrently and is not updated");
+            }
+            if (Boolean.FALSE.equals(result.getConnectionOk())) {
+                err.println("[" + getName() + "] connection test of " + name + " failed: "
+                        + result.getConnectionMessage());
+            }
+            progress.succeeded();
+        }
+        Bulk.forEach(toUpdate, options.getParallelism(), progress, dataSource -> {
+            if (!client.updateDataSource(dataSource)) {
+                throw new IllegalArgumentException("Missing or invalid options " + dataSource.getMissingOptions());
+            }
+        });
+        progress.finish();
+        return progress.getFailed() == 0 ? 0 : 1;
+    }
+
+    List<DataSource> read(String file) throws IOException {
+        Object document;
+        try (Reader reader = Files.newBufferedReader(Paths.get(file), StandardCharsets.UTF_8)) {
+            // Plain maps, lists and scalars only; tags cannot instantiate arbitrary classes
+            document = new Yaml(new SafeConstructor(new LoaderOptions())).load(reader);
+        } catch (YAMLException e) {
+            throw new IOException(file + ": " + e.getMessage(), e);
+        }
+        if (document instanceof Map) {
+            document = ((Map<?, ?>) document).get(DATA_SOURCES);
+        }
+        if (!(document instanceof List)) {
+            throw new IOException(file + ": expected a list of data-sources");
+        }
+        List<DataSource> dataSources = new ArrayList<>();
+        Set<String> names = new HashSet<>();
+        for (Object item : (List<?>) document) {
+            if (!(item instanceof Map)) {
+                throw new IOException(file + ": expected a data-source but found " + item);
+            }
+            DataSource dataSource;
+            try {
+                dataSource = toDataSource((Map<?, ?>) item);
+            } catch (IllegalArgumentException e) {
+                throw new IOException(file + ": " + e.getMessage(), e);
+            }
+            if (!names.add(dataSource.getName())) {
+                throw new IOException(file + ": data-source " + dataSource.getName() + " is listed twice");
+            }
+            dataSources.add(dataSource);
+        }
+        return dataSources;
+    }
+
+    private DataSource toDataSource(Map<?, ?> item) {
+        String name = required(item, NAME);
+        String type = required(item, TYPE);
+        Object rawOptions = item.get(OPTIONS);
+        Map<String, Object> options = new LinkedHashMap<>();
+        if (rawOptions instanceof Map) {
+            ((Map<?, ?>) rawOptions).forEach((key, value) -> options.put(String.valueOf(key), resolve(value)));
+        } else if (rawOptions != null) {
+            throw new IllegalArgumentException("Options of " + name + " must be a map");
+        }
+        String host = (String) stringOption(options, HOST);
+        Object port = options.remove(PORT);
+        String user = (String) stringOption(options, USER);
+        String password = (String) stringOption(options, PASSWORD);
+        String dbName = (String) stringOption(options, DB_NAME);
+        int portNumber;
+        try {
+            portNumber = port == null ? 0 : Integer.parseInt(port.toString());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Port of " + name + " is not a number: " + port);
+        }
+        return new DataSource(name, type, new Options(host, portNumber, user, password, dbName, options));
+    }
+
+    private static Object stringOption(Map<String, Object> options, String key) {
+        Object value = options.remove(key);
+        return value == null ? null : value.toString();
+    }
+
+    private String required(Map<?, ?> item, String key) {
+        Object value = resolve(item.get(key));
+        if (value == null) {
+            throw new IllegalArgumentException("Data-source " + item.get(NAME) + " has no " + key);
+        }
+        return value.toString();
+    }
+
+    private Object resolve(Object value) {
+        if (!(value instanceof String)) {
+            return value;
+        }
+        Matcher variable = VARIABLE.matcher((String) value);
+        if (!variable.matches()) {
+            return value;
+        }
+        String resolved = environment.get(variable.group(1));
+        if (resolved == null) {
+            throw new IllegalArgumentException("Environment variable " + variable.group(1) + " is not set");
+        }
+        return resolved;
+    }
+}
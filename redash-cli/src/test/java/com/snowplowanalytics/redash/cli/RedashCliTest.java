@@ -0,0 +1,138 @@
+/*
+ * Copyright (c) 2018 Snowplow Analytics Ltd. All rights reserved.
+ *
+ * This program is licensed to you under the Apache License Version 2.0,
+ * and you may not use this file except in compliance with the Apache License Version 2.0.
+ * You may obtain a copy of the Apache License Version 2.0 at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the Apache License Version 2.0 is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Apache License Version 2.0 for the specific language governing permissions and limitations there under.
+ */
+
+package com.snowplowanalytics.redash.cli;
+
+import com.snowplowanalytics.redash.model.datasource.DataSource;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+public class RedashCliTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void optionsTest() {
+        CliOptions options = CliOptions.parse(new String[]{"import-groups", "--host", "redash", "groups.csv",
+                "--parallelism=16", "--quiet"}, Collections.singletonMap(CliOptions.API_KEY_VARIABLE, "key"));
+        Assert.assertEquals("import-groups", options.getCommand());
+        Assert.assertEquals(Collections.singletonList("groups.csv"), options.getArguments());
+        Assert.assertEquals(16, options.getParallelism());
+        Assert.assertTrue(options.isQuiet());
+        Assert.assertFalse(options.isTestConnections());
+
+        assertUsageError("Missing --api-key or REDASH_API_KEY", "export-access", "--host", "redash");
+        assertUsageError("--parallelism must be a positive number: 0", "export-access", "--host", "redash",
+                "--api-key", "key", "--parallelism", "0");
+        assertUsageError("Unknown command drop-all", "drop-all", "--host", "redash", "--api-key", "key");
+    }
+
+    @Test
+    public void csvTest() throws IOException {
+        String text = Csv.formatRecord("plain", "with, comma", "with \"quotes\"", "two\nlines", null) + "\n";
+        Assert.assertEquals("plain,\"with, comma\",\"with \"\"quotes\"\"\",\"two\nlines\",\n", text);
+        BufferedReader reader = new BufferedReader(new StringReader(text));
+        Assert.assertEquals(Arrays.asList("plain", "with, comma", "with \"quotes\"", "two\nlines", ""),
+                Csv.readRecord(reader));
+        Assert.assertNull(Csv.readRecord(reader));
+    }
+
+    @Test
+    public void importFileTest() throws IOException {
+        Path file = write("groups.csv", "group,user\nanalysts,Alice\nanalysts,Bob\n\nauditors,Alice\nanalysts,Alice\n");
+        Map<String, Set<String>> usersByGroup = ImportGroupsCommand.read(file.toString());
+        Assert.assertEquals(Arrays.asList("analysts", "auditors"), Arrays.asList(usersByGroup.keySet().toArray()));
+        Assert.assertEquals(Arrays.asList("Alice", "Bob"), Arrays.asList(usersByGroup.get("analysts").toArray()));
+
+        Path broken = write("broken.csv", "analysts,Alice,admin\n");
+        try {
+            ImportGroupsCommand.read(broken.toString());
+            Assert.fail();
+        } catch (IOException e) {
+            Assert.assertTrue(e.getMessage().endsWith(":1: expected group,user but found 3 fields"));
+        }
+    }
+
+    @Test
+    public void dataSourceFileTest() throws IOException {
+        Path file = write("data-sources.yaml", "dataSources:\n" +
+                "  - name: warehouse\n" +
+                "    type: redshift\n" +
+                "    options:\n" +
+                "      host: warehouse.example.com\n" +
+                "      port: 5439\n" +
+                "      user: redash\n" +
+                "      password: ${WAREHOUSE_PASSWORD}\n" +
+                "      dbname: analytics\n" +
+                "  - name: events\n" +
+                "    type: bigquery\n" +
+                "    options:\n" +
+                "      projectId: snowplow\n");
+        SyncDataSourcesCommand command = new SyncDataSourcesCommand(
+                Collections.singletonMap("WAREHOUSE_PASSWORD", "secret"));
+        List<DataSource> dataSources = command.read(file.toString());
+        Assert.assertEquals(2, dataSources.size());
+        DataSource warehouse = dataSources.get(0);
+        Assert.assertEquals("redshift", warehouse.getType());
+        Assert.assertEquals(5439, warehouse.getPort());
+        Assert.assertEquals("secret", warehouse.getPassword());
+        Assert.assertEquals("snowplow", dataSources.get(1).getOptions().getExtras().get("projectId"));
+
+        try {
+            new SyncDataSourcesCommand(Collections.emptyMap()).read(file.toString());
+            Assert.fail();
+        } catch (IOException e) {
+            Assert.assertTrue(e.getMessage().endsWith("Environment variable WAREHOUSE_PASSWORD is not set"));
+        }
+        Path tagged = write("tagged.yaml", "- !!java.io.File [\"/\"]\n");
+        try {
+            command.read(tagged.toString());
+            Assert.fail();
+        } catch (IOException e) {
+            // Global tags are rejected by the safe constructor
+        }
+    }
+
+    private Path write(String name, String content) throws IOException {
+        Path file = folder.getRoot().toPath().resolve(name);
+        Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+
+    private static void assertUsageError(String message, String... args) {
+        ByteArrayOutputStream err = new ByteArrayOutputStream();
+        int exitCode = RedashCli.run(args, Collections.emptyMap(), new PrintStream(new ByteArrayOutputStream()),
+                new PrintStream(err, true));
+        Assert.assertEquals(RedashCli.EXIT_USAGE, exitCode);
+        String output = new String(err.toByteArray(), StandardCharsets.UTF_8);
+        Assert.assertTrue(output, output.startsWith(message + System.lineSeparator()));
+        Assert.assertTrue(output.contains("sync-data-sources"));
+    }
+}
@@ -0,0 +1,277 @@
+/*
+ * Copyright (c) 2018 Snowplow Analytics Ltd. All rights reserved.
+ *
+ * This program is licensed to you under the Apache License Version 2.0,
+ * and you may not use this file except in compliance with the Apache License Version 2.0.
+ * You may obtain a copy of the Apache License Version 2.0 at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the Apache License Version 2.0 is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Apache License Version 2.0 for the specific language governing permissions and limitations there under.
+ */
+
+package com.snowplowanalytics.redash;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Which users and data-sources belong to which user-groups, as returned by {@link RedashClient#getAccessMatrix()}.
+ *
+ * Users, data-sources and groups are numbered with dense ordinals, and memberships are stored as bitsets over these
+ * ordinals, both per group and per user and data-source. Looking up a membership is a hash lookup and a bit test;
+ * finding the groups which give a user access to a data-source is one AND of two bitsets with one bit per group,
+ * independent of the number of users and data-sources.
+ *
+ * Instances are immutable snapshots and can be shared between threads.
+ */
+public final class AccessMatrix {
+
+    private static final int[] NONE = new int[0];
+
+    private final Entities users;
+    private final Entities dataSources;
+    private final Entities groups;
+    private final BitSet[] groupUsers;
+    private final BitSet[] groupDataSources;
+    private final BitSet[] userGroups;
+    private final BitSet[] dataSourceGroups;
+
+    private AccessMatrix(AccessMatrixBuilder builder) {
+        this.users = builder.users;
+        this.dataSources = builder.dataSources;
+        this.groups = builder.groups;
+        this.groupUsers = builder.groupUsers.toArray(new BitSet[0]);
+        this.groupDataSources = builder.groupDataSources.toArray(new BitSet[0]);
+        this.userGroups = transpose(groupUsers, users.size());
+        this.dataSourceGroups = transpose(groupDataSources, dataSources.size());
+    }
+
+    static final class AccessMatrixBuilder {
+        private final Entities users = new Entities();
+        private final Entities dataSources = new Entities();
+        private final Entities groups = new Entities();
+        private final List<BitSet> groupUsers = new ArrayList<>();
+        private final List<BitSet> groupDataSources = new ArrayList<>();
+
+        AccessMatrixBuilder user(int id, String name) {
+            users.add(id, name);
+            return this;
+        }
+
+        AccessMatrixBuilder dataSource(int id, String name) {
+            dataSources.add(id, name);
+            return this;
+        }
+
+        AccessMatrixBuilder group(int id, String name) {
+            if (groups.add(id, name) == groupUsers.size()) {
+                groupUsers.add(new BitSet());
+                groupDataSources.add(new BitSet());
+            }
+            return this;
+        }
+
+        /**
+         * Adds a user to a group which was added before; the user is added too if it was not.
+         */
+        AccessMatrixBuilder member(int groupId, int userId, String userName) {
+            groupUsers.get(groups.ordinal(groupId)).set(users.add(userId, userName));
+            return this;
+        }
+
+        /**
+         * Attaches a data-source to a group which was added before; the data-source is added too if it was not.
+         */
+        AccessMatrixBuilder attached(int groupId, int dataSourceId, String dataSourceName) {
+            groupDataSources.get(groups.ordinal(groupId)).set(dataSources.add(dataSourceId, dataSourceName));
+            return this;
+        }
+
+        AccessMatrix build() {
+            return new AccessMatrix(this);
+        }
+    }
+
+    public int[] getUserIds() {
+        return users.ids();
+    }
+
+    public int[] getDataSourceIds() {
+        return dataSources.ids();
+    }
+
+    public int[] getGroupIds() {
+        return groups.ids();
+    }
+
+    /**
+     * @return The name of the user or null if the user is unknown.
+     */
+    public String getUserName(int userId) {
+        return users.name(userId);
+    }
+
+    /**
+     * @return The name of the data-source or null if the data-source is unknown.
+     */
+    public String getDataSourceName(int dataSourceId) {
+        return dataSources.name(dataSourceId);
+    }
+
+    /**
+     * @return The name of the group or null if the group is unknown.
+     */
+    public String getGroupName(int groupId) {
+        return groups.name(groupId);
+    }
+
+    public boolean isMember(int userId, int groupId) {
+        int user = users.ordinal(userId);
+        int group = groups.ordinal(groupId);
+        return user >= 0 && group >= 0 && groupUsers[group].get(user);
+    }
+
+    public boolean isAttached(int dataSourceId, int groupId) {
+        int dataSource = dataSources.ordinal(dataSourceId);
+        int group = groups.ordinal(groupId);
+        return dataSource >= 0 && group >= 0 && groupDataSources[group].get(dataSource);
+    }
+
+    /**
+     * @return True if at least one group of the user has the data-source attached.
+     */
+    public boolean hasAccess(int userId, int dataSourceId) {
+        int user = users.ordinal(userId);
+        int dataSource = dataSources.ordinal(dataSourceId);
+        return user >= 0 && dataSource >= 0 && userGroups[user].intersects(dataSourceGroups[dataSource]);
+    }
+
+    /**
+     * @return The ids of the groups which the user is a member of and which have the data-source attached, in the
+     * order Redash listed the groups. Empty if the user or data-source is unknown.
+     */
+    public int[] getGrantingGroupIds(int userId, int dataSourceId) {
+        int user = users.ordinal(userId);
+        int dataSource = dataSources.ordinal(dataSourceId);
+        if (user < 0 || dataSource < 0) {
+            return NONE;
+        }
+        BitSet granting = (BitSet) userGroups[user].clone();
+        granting.and(dataSourceGroups[dataSource]);
+        return groups.ids(granting);
+    }
+
+    /**
+     * @return The ids of the groups the user is a member of; empty if the user is unknown.
+     */
+    public int[] getGroupIdsOfUser(int userId) {
+        int user = users.ordinal(userId);
+        return user < 0 ? NONE : groups.ids(userGroups[user]);
+    }
+
+    /**
+     * @return The ids of the groups the data-source is attached to; empty if the data-source is unknown.
+     */
+    public int[] getGroupIdsOfDataSource(int dataSourceId) {
+        int dataSource = dataSources.ordinal(dataSourceId);
+        return dataSource < 0 ? NONE : groups.ids(dataSourceGroups[dataSource]);
+    }
+
+    /**
+     * @return The ids of the members of the group; empty if the group is unknown.
+     */
+    public int[] getUserIdsOfGroup(int groupId) {
+        int group = groups.ordinal(groupId);
+        return group < 0 ? NONE : users.ids(groupUsers[group]);
+    }
+
+    /**
+     * @return The ids of the data-sources attached to the group; empty if the group is unknown.
+     */
+    public int[] getDataSourceIdsOfGroup(int groupId) {
+        int group = groups.ordinal(groupId);
+        return group < 0 ? NONE : dataSources.ids(groupDataSources[group]);
+    }
+
+    private static BitSet[] transpose(BitSet[] rows, int columns) {
+        BitSet[] transposed = new BitSet[columns];
+        for (int i = 0; i < columns; i++) {
+            transposed[i] = new BitSet(rows.length);
+        }
+        for (int row = 0; row < rows.length; row++) {
+            for (int column = rows[row].nextSetBit(0); column >= 0; column = rows[row].nextSetBit(column + 1)) {
+                transposed[column].set(row);
+            }
+        }
+        return transposed;
+    }
+
+    @Override
+    public String toString() {
+        return "AccessMatrix{" +
+                "users=" + users.size() +
+                ", dataSources=" + dataSources.size() +
+                ", groups=" + groups.size() +
+                '}';
+    }
+
+    /**
+     * Ids and names by dense ordinal, in the order they were added.
+     */
+    private static final class Entities {
+        private final Map<Integer, Integer> ordinals = new HashMap<>();
+        private int[] ids = new int[16];
+        private final List<String> names = new ArrayList<>();
+
+        /**
+         * @return The ordinal of the entity, which is only added if its id is new.
+         */
+        int add(int id, String name) {
+            Integer ordinal = ordinals.get(id);
+            if (ordinal != null) {
+                return ordinal;
+            }
+            int next = names.size();
+            if (next == ids.length) {
+                ids = Arrays.copyOf(ids, next * 2);
+            }
+            ids[next] = id;
+            names.add(name);
+            ordinals.put(id, next);
+            return next;
+        }
+
+        int ordinal(int id) {
+            Integer ordinal = ordinals.get(id);
+            return ordinal == null ? -1 : ordinal;
+        }
+
+        String name(int id) {
+            int ordinal = ordinal(id);
+            return ordinal < 0 ? null : names.get(ordinal);
+        }
+
+        int size() {
+            return names.size();
+        }
+
+        int[] ids() {
+            return Arrays.copyOf(ids, names.size());
+        }
+
+        int[] ids(BitSet selected) {
+            int[] result = new int[selected.cardinality()];
+            int i = 0;
+            for (int ordinal = selected.nextSetBit(0); ordinal >= 0; ordinal = selected.nextSetBit(ordinal + 1)) {
+                result[i++] = ids[ordinal];
+            }
+            return result;
+        }
+    }
+}
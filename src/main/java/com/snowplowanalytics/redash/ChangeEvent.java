@@ -0,0 +1,78 @@
+/*
+ * Copyright (c) 2018 Snowplow Analytics Ltd. All rights reserved.
+ *
+ * This program is licensed to you under the Apache License Version 2.0,
+ * and you may not use this file except in compliance with the Apache License Version 2.0.
+ * You may obtain a copy of the Apache License Version 2.0 at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the Apache License Version 2.0 is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Apache License Version 2.0 for the specific language governing permissions and limitations there under.
+ */
+
+package com.snowplowanalytics.redash;
+
+/**
+ * A user, user-group or data-source which was added, updated or removed, as detected by a {@link RedashWatcher}.
+ */
+public final class ChangeEvent {
+
+    public enum Kind {
+        USER, GROUP, DATA_SOURCE
+    }
+
+    public enum Type {
+        ADDED, UPDATED, REMOVED
+    }
+
+    private final Kind kind;
+    private final Type type;
+    private final int id;
+    private final String name;
+    private final String json;
+
+    ChangeEvent(Kind kind, Type type, int id, String name, String json) {
+        this.kind = kind;
+        this.type = type;
+        this.id = id;
+        this.name = name;
+        this.json = json;
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * @return The current name, or the last known name of a removed entity.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return The entity as listed by Redash, e.g. to parse it into a model object, or null if it was removed.
+     */
+    public String getJson() {
+        return json;
+    }
+
+    @Override
+    public String toString() {
+        return "ChangeEvent{" +
+                "kind=" + kind +
+                ", type=" + type +
+                ", id=" + id +
+                ", name='" + name + '\'' +
+                '}';
+    }
+}
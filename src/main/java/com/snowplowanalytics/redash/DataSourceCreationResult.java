@@ -0,0 +1,110 @@
+/*
+ * Copyright (c) 2018 Snowplow Analytics Ltd. All rights reserved.
+ *
+ * This program is licensed to you under the Apache License Version 2.0,
+ * and you may not use this file except in compliance with the Apache License Version 2.0.
+ * You may obtain a copy of the Apache License Version 2.0 at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the Apache License Version 2.0 is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Apache License Version 2.0 for the specific language governing permissions and limitations there under.
+ */
+
+package com.snowplowanalytics.redash;
+
+import com.snowplowanalytics.redash.model.datasource.DataSource;
+
+/**
+ * The outcome of creating one data-source with {@link RedashClient#createDataSources}.
+ */
+public final class DataSourceCreationResult {
+
+    public enum Status {
+        CREATED,
+        ALREADY_EXISTS,
+        FAILED
+    }
+
+    private final DataSource dataSource;
+    private final Status status;
+    private final Exception error;
+    private final Boolean connectionOk;
+    private final String connectionMessage;
+
+    private DataSourceCreationResult(DataSource dataSource, Status status, Exception error,
+                                     Boolean connectionOk, String connectionMessage) {
+        this.dataSource = dataSource;
+        this.status = status;
+        this.error = error;
+        this.connectionOk = connectionOk;
+        this.connectionMessage = connectionMessage;
+    }
+
+    static DataSourceCreationResult created(DataSource dataSource) {
+        return new DataSourceCreationResult(dataSource, Status.CREATED, null, null, null);
+    }
+
+    static DataSourceCreationResult alreadyExists(DataSource dataSource) {
+        return new DataSourceCreationResult(dataSource, Status.ALREADY_EXISTS, null, null, null);
+    }
+
+    static DataSourceCreationResult failed(DataSource dataSource, Exception error) {
+        return new DataSourceCreationResult(dataSource, Status.FAILED, error, null, null);
+    }
+
+    DataSourceCreationResult withConnectionTest(boolean ok, String message) {
+        return new DataSourceCreationResult(dataSource, status, error, ok, message);
+    }
+
+    /**
+     * @return The data-source as passed in; when created it has received its id.
+     */
+    public DataSource getDataSource() {
+        return dataSource;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    /**
+     * @return The id of the created data-source or 0 if it was not created.
+     */
+    public int getId() {
+        return status == Status.CREATED ? dataSource.getId() : 0;
+    }
+
+    /**
+     * @return The cause of a {@code FAILED} status, otherwise null.
+     */
+    public Exception getError() {
+        return error;
+    }
+
+    /**
+     * @return Whether Redash could connect to the created data-source, or null if it was not tested.
+     */
+    public Boolean getConnectionOk() {
+        return connectionOk;
+    }
+
+    /**
+     * @return Redash's message for the connection test, or null if it was not tested.
+     */
+    public String getConnectionMessage() {
+        return connectionMessage;
+    }
+
+    @Override
+    public String toString() {
+        return "DataSourceCreationResult{" +
+                "name='" + dataSource.getName() + '\'' +
+                ", status=" + status +
+                ", id=" + getId() +
+                ", error=" + error +
+                ", connectionOk=" + connectionOk +
+                ", connectionMessage='" + connectionMessage + '\'' +
+                '}';
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) 2018 Snowplow Analytics Ltd. All rights reserved.
+ *
+ * This program is licensed to you under the Apache License Version 2.0,
+ * and you may not use this file except in compliance with the Apache License Version 2.0.
+ * You may obtain a copy of the Apache License Version 2.0 at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the Apache License Version 2.0 is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Apache License Version 2.0 for the specific language governing permissions and limitations there under.
+ */
+
+package com.snowplowanalytics.redash;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Controls where {@link RedashClient} runs the independent requests of a composite operation, such as the
+ * group, member and data-source requests of {@link RedashClient#getWithUsersAndDataSources(int)}.
+ *
+ * {@code CALLER_THREAD} runs them one after another on the calling thread. {@code PLATFORM_THREADS} fans
+ * them out on a cached pool of daemon threads owned by the client and shut down by {@link RedashClient#close()}.
+ * {@code VIRTUAL_THREADS} fans them out on a new virtual thread per request and is only available on Java 21 or
+ * newer. Blocking OkHttp calls may pin their carrier thread while inside OkHttp's synchronized sections, but
+ * callers fanning out thousands of operations no longer need a platform thread per in-flight request.
+ *
+ * Batch operations such as {@link RedashClient#createDataSources} always run in parallel: on the client's
+ * executor or, in {@code CALLER_THREAD} mode, on a pool of platform threads which only lives for the call.
+ */
+public enum ExecutionMode {
+    CALLER_THREAD,
+    PLATFORM_THREADS,
+    VIRTUAL_THREADS;
+
+    private static final String VIRTUAL_THREADS_UNAVAILABLE = "Virtual threads require Java 21 or newer.";
+
+    /**
+     * @return An executor for this mode or null for {@code CALLER_THREAD}.
+     * @throws UnsupportedOperationException If virtual threads are not supported by the running JVM.
+     */
+    ExecutorService newExecutor() {
+        switch (this) {
+            case PLATFORM_THREADS:
+                return Executors.newCachedThreadPool(new DaemonThreadFactory());
+            case VIRTUAL_THREADS:
+                return newVirtualThreadPerTaskExecutor();
+            default:
+                return null;
+        }
+    }
+
+    static boolean isVirtualThreadsSupported() {
+        return VirtualThreads.FACTORY != null;
+    }
+
+    private static ExecutorService newVirtualThreadPerTaskExecutor() {
+        if (VirtualThreads.FACTORY == null) {
+            throw new UnsupportedOperationException(VIRTUAL_THREADS_UNAVAILABLE);
+        }
+        try {
+            return (ExecutorService) VirtualThreads.FACTORY.invoke();
+        } catch (Throwable e) {
+            throw new UnsupportedOperationException(VIRTUAL_THREADS_UNAVAILABLE, e);
+        }
+    }
+
+    /**
+     * The SDK targets Java 11, which has no virtual threads, so {@code Executors.newVirtualThreadPerTaskExecutor()}
+     * is looked up reflectively, once and lazily on first use.
+     */
+    private static final class VirtualThreads {
+        private static final MethodHandle FACTORY = lookup();
+
+        private static MethodHandle lookup() {
+            try {
+                return MethodHandles.publicLookup().findStatic(Executors.class, "newVirtualThreadPerTaskExecutor",
+                        MethodType.methodType(ExecutorService.class));
+            } catch (NoSuchMethodException | IllegalAccessException e) {
+                return null;
+            }
+        }
+    }
+
+    private static final class DaemonThreadFactory implements ThreadFactory {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "redash-client-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
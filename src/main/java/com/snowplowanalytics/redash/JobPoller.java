@@ -0,0 +1,132 @@
+/*
+ * Copyright (c) 2018 Snowplow Analytics Ltd. All rights reserved.
+ *
+ * This program is licensed to you under the Apache License Version 2.0,
+ * and you may not use this file except in compliance with the Apache License Version 2.0.
+ * You may obtain a copy of the Apache License Version 2.0 at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the Apache License Version 2.0 is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Apache License Version 2.0 for the specific language governing permissions and limitations there under.
+ */
+
+package com.snowplowanalytics.redash;
+
+import com.snowplowanalytics.redash.model.query.Job;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Polls all outstanding query jobs of a client from one scheduler thread.
+ *
+ * Every tick sends one asynchronous status request per outstanding job which has no request in flight, so a
+ * slow job or a slow response never delays the others. The thread is started with the first job and stopped
+ * when no job is left.
+ */
+final class JobPoller {
+
+    @FunctionalInterface
+    interface StatusFetcher {
+        CompletableFuture<Job> fetch(String jobId);
+    }
+
+    private final StatusFetcher fetcher;
+    private final long intervalMillis;
+    private final Map<String, CompletableFuture<Job>> outstanding = new ConcurrentHashMap<>();
+    private final Set<String> polling = ConcurrentHashMap.newKeySet();
+
+    // Guarded by this
+    private ScheduledExecutorService scheduler;
+    private ScheduledFuture<?> ticks;
+
+    JobPoller(StatusFetcher fetcher, long intervalMillis) {
+        this.fetcher = fetcher;
+        this.intervalMillis = Math.max(1, intervalMillis);
+    }
+
+    /**
+     * @return A future completed with the job once it succeeded, failed or was cancelled, or exceptionally if its
+     * status could not be read.
+     */
+    CompletableFuture<Job> await(Job job) {
+        if (job.isDone()) {
+            return CompletableFuture.completedFuture(job);
+        }
+        CompletableFuture<Job> done = outstanding.computeIfAbsent(job.getId(), id -> new CompletableFuture<>());
+        start();
+        return done;
+    }
+
+    /**
+     * Stops polling a job; its future is cancelled.
+     */
+    void forget(String jobId) {
+        CompletableFuture<Job> done = outstanding.remove(jobId);
+        if (done != null) {
+            done.cancel(false);
+        }
+    }
+
+    int outstanding() {
+        return outstanding.size();
+    }
+
+    private synchronized void start() {
+        if (ticks == null) {
+            if (scheduler == null) {
+                scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                    Thread thread = new Thread(runnable, "redash-job-poller");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+            }
+            ticks = scheduler.scheduleWithFixedDelay(this::tick, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void tick() {
+        if (outstanding.isEmpty()) {
+            synchronized (this) {
+                // Jobs are registered before start() is called, so none can be missed here
+                if (outstanding.isEmpty() && ticks != null) {
+                    ticks.cancel(false);
+                    ticks = null;
+                    scheduler.shutdown();
+                    scheduler = null;
+                }
+            }
+            return;
+        }
+        for (String jobId : outstanding.keySet()) {
+            if (polling.add(jobId)) {
+                CompletableFuture<Job> status;
+                try {
+                    status = fetcher.fetch(jobId);
+                } catch (RuntimeException e) {
+                    status = CompletableFuture.failedFuture(e);
+                }
+                status.whenComplete((job, error) -> {
+                    polling.remove(jobId);
+                    if (error != null || job.isDone()) {
+                        CompletableFuture<Job> done = outstanding.remove(jobId);
+                        if (done != null) {
+                            if (error != null) {
+                                done.completeExceptionally(error);
+                            } else {
+                                done.complete(job);
+                            }
+                        }
+                    }
+                });
+            }
+        }
+    }
+}
@@ -0,0 +1,172 @@
+/*
+ * Copyright (c) 2018 Snowplow Analytics Ltd. All rights reserved.
+ *
+ * This program is licensed to you under the Apache License Version 2.0,
+ * and you may not use this file except in compliance with the Apache License Version 2.0.
+ * You may obtain a copy of the Apache License Version 2.0 at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the Apache License Version 2.0 is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Apache License Version 2.0 for the specific language governing permissions and limitations there under.
+ */
+
+package com.snowplowanalytics.redash;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+
+/**
+ * A mutation recorded by an {@link OperationJournal} while Redash was unreachable, stored as one line of JSON.
+ */
+public final class JournalEntry {
+
+    public enum Type {
+        CREATE_USER_GROUP,
+        DELETE_USER_GROUP,
+        ADD_USER_TO_GROUP,
+        REMOVE_USER_FROM_GROUP,
+        ADD_DATA_SOURCE_TO_GROUP,
+        REMOVE_DATA_SOURCE_FROM_GROUP,
+        CREATE_DATA_SOURCE,
+        UPDATE_DATA_SOURCE,
+        DELETE_DATA_SOURCE;
+
+        boolean isUserMembership() {
+            return this == ADD_USER_TO_GROUP || this == REMOVE_USER_FROM_GROUP;
+        }
+
+        boolean isDataSourceMembership() {
+            return this == ADD_DATA_SOURCE_TO_GROUP || this == REMOVE_DATA_SOURCE_FROM_GROUP;
+        }
+    }
+
+    private static final Gson GSON = new Gson();
+    private static final String SEQUENCE = "seq";
+    private static final String TYPE = "type";
+    private static final String GROUP = "group";
+    private static final String TARGET = "target";
+    private static final String NAME = "name";
+    private static final String CLASS = "class";
+    private static final String BODY = "body";
+
+    private final long sequence;
+    private final Type type;
+    private final int groupId;
+    private final int targetId;
+    private final String name;
+    private final String bodyClass;
+    private final String body;
+
+    JournalEntry(long sequence, Type type, int groupId, int targetId, String name, String bodyClass, String body) {
+        this.sequence = sequence;
+        this.type = type;
+        this.groupId = groupId;
+        this.targetId = targetId;
+        this.name = name;
+        this.bodyClass = bodyClass;
+        this.body = body;
+    }
+
+    /**
+     * @return The position of the entry in the journal; later entries have greater numbers.
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * @return The id of the user-group the entry changes or refers to, or 0 for data-source entries.
+     */
+    public int getGroupId() {
+        return groupId;
+    }
+
+    /**
+     * @return The id of the user or data-source added to, removed from or deleted, or 0.
+     */
+    public int getTargetId() {
+        return targetId;
+    }
+
+    /**
+     * @return The name of the created user-group or of the created or updated data-source, or null.
+     */
+    public String getName() {
+        return name;
+    }
+
+    String getBodyClass() {
+        return bodyClass;
+    }
+
+    String getBody() {
+        return body;
+    }
+
+    JournalEntry withBody(String bodyClass, String body) {
+        return new JournalEntry(sequence, type, groupId, targetId, name, bodyClass, body);
+    }
+
+    String toJson() {
+        JsonObject json = new JsonObject();
+        json.addProperty(SEQUENCE, sequence);
+        json.addProperty(TYPE, type.name());
+        if (groupId != 0) {
+            json.addProperty(GROUP, groupId);
+        }
+        if (targetId != 0) {
+            json.addProperty(TARGET, targetId);
+        }
+        if (name != null) {
+            json.addProperty(NAME, name);
+        }
+        if (bodyClass != null) {
+            json.addProperty(CLASS, bodyClass);
+        }
+        if (body != null) {
+            json.addProperty(BODY, body);
+        }
+        return json.toString();
+    }
+
+    /**
+     * @throws IllegalArgumentException If the line is not a complete entry, e.g. one torn by a crash.
+     */
+    static JournalEntry fromJson(String line) {
+        JsonObject json;
+        try {
+            json = GSON.fromJson(line, JsonObject.class);
+        } catch (JsonParseException e) {
+            throw new IllegalArgumentException("Malformed journal entry.", e);
+        }
+        if (json == null || !json.has(SEQUENCE) || !json.has(TYPE)) {
+            throw new IllegalArgumentException("Incomplete journal entry.");
+        }
+        return new JournalEntry(json.get(SEQUENCE).getAsLong(), Type.valueOf(json.get(TYPE).getAsString()),
+                json.has(GROUP) ? json.get(GROUP).getAsInt() : 0, json.has(TARGET) ? json.get(TARGET).getAsInt() : 0,
+                optString(json, NAME), optString(json, CLASS), optString(json, BODY));
+    }
+
+    private static String optString(JsonObject json, String name) {
+        JsonElement member = json.get(name);
+        return member == null || member.isJsonNull() ? null : member.getAsString();
+    }
+
+    @Override
+    public String toString() {
+        return "JournalEntry{" +
+                "sequence=" + sequence +
+                ", type=" + type +
+                ", groupId=" + groupId +
+                ", targetId=" + targetId +
+                ", name='" + name + '\'' +
+                '}';
+    }
+}
@@ -0,0 +1,193 @@
+/*
+ * Copyright (c) 2018 Snowplow Analytics Ltd. All rights reserved.
+ *
+ * This program is licensed to you under the Apache License Version 2.0,
+ * and you may not use this file except in compliance with the Apache License Version 2.0.
+ * You may obtain a copy of the Apache License Version 2.0 at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the Apache License Version 2.0 is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Apache License Version 2.0 for the specific language governing permissions and limitations there under.
+ */
+
+package com.snowplowanalytics.redash;
+
+import com.google.gson.stream.JsonReader;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Publishes the elements of a JSON array in a response body, parsing one element per unit of demand.
+ *
+ * The request is sent once per subscriber, when it subscribes. The body is read with a streaming
+ * {@link JsonReader}, so elements are only created as the subscriber requests them and a slow subscriber never
+ * causes more than the response itself to be held in memory. Signals to a subscriber are serialized, and are sent
+ * from the thread which completed the response or from the thread calling {@link Flow.Subscription#request}.
+ */
+final class JsonArrayPublisher<T> implements Flow.Publisher<T> {
+
+    @FunctionalInterface
+    interface ElementReader<T> {
+        T read(JsonReader reader) throws IOException;
+    }
+
+    private final Supplier<CompletableFuture<String>> body;
+    private final String[] path;
+    private final ElementReader<T> elementReader;
+
+    /**
+     * @param body Sends the request; called once per subscriber.
+     * @param elementReader Reads one array element, leaving the reader after it.
+     * @param path The names of the nested object members leading to the array, empty if the body is the array.
+     */
+    JsonArrayPublisher(Supplier<CompletableFuture<String>> body, ElementReader<T> elementReader, String... path) {
+        this.body = body;
+        this.path = path;
+        this.elementReader = elementReader;
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super T> subscriber) {
+        Objects.requireNonNull(subscriber);
+        new ArraySubscription(subscriber).start();
+    }
+
+    private final class ArraySubscription implements Flow.Subscription {
+        private final Flow.Subscriber<? super T> subscriber;
+        private final AtomicLong demand = new AtomicLong();
+        private final AtomicInteger wip = new AtomicInteger();
+        private volatile boolean cancelled;
+        private volatile JsonReader reader;
+        private volatile Throwable error;
+        private volatile CompletableFuture<String> response;
+        // Only accessed inside drain()
+        private boolean done;
+
+        ArraySubscription(Flow.Subscriber<? super T> subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        void start() {
+            subscriber.onSubscribe(this);
+            if (cancelled) {
+                return;
+            }
+            CompletableFuture<String> future = body.get();
+            response = future;
+            if (cancelled) {
+                future.cancel(true);
+                return;
+            }
+            future.whenComplete((json, e) -> {
+                if (e != null) {
+                    error = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+                } else {
+                    try {
+                        reader = open(json);
+                    } catch (IOException | RuntimeException parseError) {
+                        error = parseError;
+                    }
+                }
+                drain();
+            });
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                error = new IllegalArgumentException("Requested " + n + " elements, which is not positive.");
+            } else {
+                demand.getAndUpdate(current -> current + n < 0 ? Long.MAX_VALUE : current + n);
+            }
+            drain();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            CompletableFuture<String> future = response;
+            if (future != null) {
+                future.cancel(true);
+            }
+        }
+
+        private void drain() {
+            if (wip.getAndIncrement() != 0) {
+                return;
+            }
+            int missed = 1;
+            do {
+                if (done || cancelled) {
+                    return;
+                }
+                if (error != null) {
+                    terminate(error);
+                    return;
+                }
+                JsonReader current = reader;
+                if (current != null) {
+                    long requested = demand.get();
+                    long emitted = 0;
+                    try {
+                        while (!cancelled) {
+                            if (!current.hasNext()) {
+                                terminate(null);
+                                return;
+                            }
+                            if (emitted == requested) {
+                                break;
+                            }
+                            T element = elementReader.read(current);
+                            subscriber.onNext(element);
+                            emitted++;
+                        }
+                    } catch (IOException | RuntimeException e) {
+                        terminate(e);
+                        return;
+                    }
+                    if (emitted != 0 && requested != Long.MAX_VALUE) {
+                        demand.addAndGet(-emitted);
+                    }
+                }
+                missed = wip.addAndGet(-missed);
+            } while (missed != 0);
+        }
+
+        private void terminate(Throwable failure) {
+            done = true;
+            reader = null;
+            if (failure == null) {
+                subscriber.onComplete();
+            } else {
+                subscriber.onError(failure);
+            }
+        }
+
+        private JsonReader open(String json) throws IOException {
+            JsonReader jsonReader = new JsonReader(new StringReader(json));
+            for (String name : path) {
+                jsonReader.beginObject();
+                while (true) {
+                    if (!jsonReader.hasNext()) {
+                        throw new IOException("Response has no member " + name + ".");
+                    }
+                    if (name.equals(jsonReader.nextName())) {
+                        break;
+                    }
+                    jsonReader.skipValue();
+                }
+            }
+            jsonReader.beginArray();
+            return jsonReader;
+        }
+    }
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright (c) 2018 Snowplow Analytics Ltd. All rights reserved.
+ *
+ * This program is licensed to you under the Apache License Version 2.0,
+ * and you may not use this file except in compliance with the Apache License Version 2.0.
+ * You may obtain a copy of the Apache License Version 2.0 at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the Apache License Version 2.0 is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Apache License Version 2.0 for the specific language governing permissions and limitations there under.
+ */
+
+package com.snowplowanalytics.redash;
+
+import com.snowplowanalytics.redash.model.Group;
+import com.snowplowanalytics.redash.model.User;
+import com.snowplowanalytics.redash.model.datasource.DataSource;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * A group returned by {@link RedashClient} which downloads its members and data-sources separately, on first
+ * access, see {@link Group#loadUsers()}.
+ *
+ * The client reference and the locks are transient, so the group serializes like any other.
+ */
+final class LazyGroup extends Group {
+
+    private final transient RedashClient client;
+    private final transient Object usersLock = new Object();
+    private final transient Object dataSourcesLock = new Object();
+
+    LazyGroup(Group group, RedashClient client) {
+        super(group.getName(), group.getId());
+        setUsers(group.getUsers());
+        setDataSources(group.getDataSources());
+        this.client = client;
+    }
+
+    @Override
+    public List<User> loadUsers() throws IOException {
+        synchronized (usersLock) {
+            List<User> users = getUsers();
+            if (users == null) {
+                users = client.getGroupUsers(getId());
+                setUsers(users);
+            }
+            return users;
+        }
+    }
+
+    @Override
+    public List<DataSource> loadDataSources() throws IOException {
+        synchronized (dataSourcesLock) {
+            List<DataSource> dataSources = getDataSources();
+            if (dataSources == null) {
+                dataSources = client.getGroupDataSources(getId());
+                setDataSources(dataSources);
+            }
+            return dataSources;
+        }
+    }
+}
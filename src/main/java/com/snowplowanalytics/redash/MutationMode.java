@@ -13,7 +13,13 @@
 
 package com.snowplowanalytics.redash;
 
-public enum CheckResponseStatus {
-    YES,
-    NO
+/**
+ * Controls how {@link RedashClient} performs mutations.
+ *
+ * {@code VALIDATING} checks for duplicates and missing entities with extra requests before every mutation.
+ * {@code OPTIMISTIC} sends the mutation directly and derives the same results from Redash's error responses.
+ */
+public enum MutationMode {
+    VALIDATING,
+    OPTIMISTIC
 }
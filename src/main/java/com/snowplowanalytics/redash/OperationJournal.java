@@ -0,0 +1,793 @@
+/*
+ * Copyright (c) 2018 Snowplow Analytics Ltd. All rights reserved.
+ *
+ * This program is licensed to you under the Apache License Version 2.0,
+ * and you may not use this file except in compliance with the Apache License Version 2.0.
+ * You may obtain a copy of the Apache License Version 2.0 at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the Apache License Version 2.0 is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Apache License Version 2.0 for the specific language governing permissions and limitations there under.
+ */
+
+package com.snowplowanalytics.redash;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.snowplowanalytics.redash.model.Group;
+import com.snowplowanalytics.redash.model.datasource.DataSource;
+import com.snowplowanalytics.redash.transport.CircuitBreakerOpenException;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.net.UnknownHostException;
+import java.net.http.HttpTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+/**
+ * Applies mutations through a {@link RedashClient} and, while Redash is unreachable, records them in an
+ * append-only local file instead, so that the intent survives maintenance windows and restarts of the process.
+ *
+ * A mutation is recorded when the client fails with a connection error, a timeout, an open circuit breaker or a
+ * retryable {@link RedashException}, and also whenever earlier entries are still waiting, which keeps mutations in
+ * the order they were requested. Other errors are thrown as usual. Recorded mutations are sent again by
+ * {@link #replay()}, or periodically after {@link #start()}, and removed from the file once Redash answered them.
+ *
+ * Before a replay, entries made redundant by later ones are coalesced: of several changes to the membership of
+ * the same user or data-source in the same group only the last is sent, memberships in a group or of a data-source
+ * which is deleted later are dropped, and so are updates carrying the id of a data-source which is deleted later.
+ * Other updates of a data-source are merged into its creation or into the last update. The first remaining entry is
+ * sent alone as a probe; the rest are sent in batches, and the file is compacted after every batch.
+ *
+ * Within a batch only independent entries run concurrently. Entries whose order matters run one after another in the
+ * order they were recorded: creations, updates and deletions of groups, as a deletion knows a group by its id and a
+ * creation only by its name, the same for data-sources, and a deletion with the memberships of what it deletes. An
+ * entry waiting for one which could not reach Redash is not sent and stays in the journal for the next replay.
+ *
+ * The file contains data-sources with their options, including passwords, and is therefore created readable by
+ * its owner only where the file system supports it. Only one journal may use a file at a time.
+ */
+public class OperationJournal implements Closeable {
+
+    public static final int DEFAULT_BATCH_SIZE = 50;
+    public static final Duration DEFAULT_REPLAY_INTERVAL = Duration.ofSeconds(30);
+
+    /**
+     * What happened to a mutation passed to the journal.
+     */
+    public enum Outcome {
+        /** The client applied the mutation. */
+        APPLIED,
+        /** The client returned false, e.g. because the user already was a member of the group. */
+        UNCHANGED,
+        /** The mutation was recorded and will be replayed. */
+        JOURNALED
+    }
+
+    private static final Gson GSON = new Gson();
+
+    private final RedashClient client;
+    private final Path file;
+    private final int batchSize;
+    private final int parallelism;
+    private final boolean sync;
+    private final long replayIntervalMillis;
+    private final Object replayLock = new Object();
+
+    // Guarded by this
+    private final List<JournalEntry> pending = new ArrayList<>();
+    private FileChannel channel;
+    private boolean closed;
+    private long nextSequence = 1;
+    private ScheduledExecutorService scheduler;
+
+    private OperationJournal(OperationJournalBuilder builder) {
+        this.client = builder.client;
+        this.file = builder.file;
+        this.batchSize = builder.batchSize;
+        this.parallelism = builder.parallelism;
+        this.sync = builder.sync;
+        this.replayIntervalMillis = Math.max(1, builder.replayInterval.toMillis());
+    }
+
+    public final static class OperationJournalBuilder {
+        private final RedashClient client;
+        private final Path file;
+        private int batchSize = DEFAULT_BATCH_SIZE;
+        private int parallelism = RedashClient.DEFAULT_PARALLELISM;
+        private boolean sync = true;
+        private Duration replayInterval = DEFAULT_REPLAY_INTERVAL;
+
+        public OperationJournalBuilder(RedashClient client, Path file) {
+            this.client = client;
+            this.file = file;
+        }
+
+        /**
+         * @param batchSize The number of entries replayed before the file is compacted. Defaults to
+         *                  {@value #DEFAULT_BATCH_SIZE}.
+         */
+        public OperationJournalBuilder batchSize(int batchSize) {
+            if (batchSize < 1) {
+                throw new IllegalArgumentException("batchSize must be positive.");
+            }
+            this.batchSize = batchSize;
+            return this;
+        }
+
+        /**
+         * @param parallelism The maximum number of entries of a batch replayed concurrently. Defaults to
+         *                    {@value RedashClient#DEFAULT_PARALLELISM}.
+         */
+        public OperationJournalBuilder parallelism(int parallelism) {
+            if (parallelism < 1) {
+                throw new IllegalArgumentException("parallelism must be positive.");
+            }
+            this.parallelism = parallelism;
+            return this;
+        }
+
+        /**
+         * @param sync Whether every recorded entry is forced to the storage device before the mutation returns.
+         *             Defaults to true; without it, entries may be lost if the machine crashes.
+         */
+        public OperationJournalBuilder sync(boolean sync) {
+            this.sync = sync;
+            return this;
+        }
+
+        /**
+         * @param replayInterval How often a started journal tries to replay its entries. Defaults to
+         *                       {@link #DEFAULT_REPLAY_INTERVAL}.
+         */
+        public OperationJournalBuilder replayInterval(Duration replayInterval) {
+            this.replayInterval = replayInterval;
+            return this;
+        }
+
+        /**
+         * Opens the file, creating it if necessary, and reads the entries left by a previous journal.
+         *
+         * @throws IOException If the file cannot be read or written or if an entry other than the last, which may
+         *         have been cut short by a crash, is corrupt.
+         */
+        public OperationJournal build() throws IOException {
+            OperationJournal journal = new OperationJournal(this);
+            journal.open();
+            return journal;
+        }
+    }
+
+    /**
+     * See {@link RedashClient#createUserGroup(Group)}. The group receives its id only if the outcome is
+     * {@link Outcome#APPLIED}.
+     */
+    public Outcome createUserGroup(Group group) throws IOException {
+        return submit(() -> {
+            client.createUserGroup(group);
+            return true;
+        }, () -> append(JournalEntry.Type.CREATE_USER_GROUP, 0, 0, group.getName(), null, GSON.toJson(group)));
+    }
+
+    /**
+     * See {@link RedashClient#deleteUserGroup(int)}.
+     */
+    public Outcome deleteUserGroup(int groupId) throws IOException {
+        return submit(() -> client.deleteUserGroup(groupId),
+                () -> append(JournalEntry.Type.DELETE_USER_GROUP, groupId, 0, null, null, null));
+    }
+
+    /**
+     * See {@link RedashClient#addUserToGroup(int, int)}.
+     */
+    public Outcome addUserToGroup(int userId, int groupId) throws IOException {
+        return submit(() -> client.addUserToGroup(userId, groupId),
+                () -> append(JournalEntry.Type.ADD_USER_TO_GROUP, groupId, userId, null, null, null));
+    }
+
+    /**
+     * See {@link RedashClient#removeUserFromGroup(int, int)}.
+     */
+    public Outcome removeUserFromGroup(int userId, int groupId) throws IOException {
+        return submit(() -> client.removeUserFromGroup(userId, groupId),
+                () -> append(JournalEntry.Type.REMOVE_USER_FROM_GROUP, groupId, userId, null, null, null));
+    }
+
+    /**
+     * See {@link RedashClient#addDataSourceToGroup(int, int)}.
+     */
+    public Outcome addDataSourceToGroup(int dataSourceId, int groupId) throws IOException {
+        return submit(() -> client.addDataSourceToGroup(dataSourceId, groupId),
+                () -> append(JournalEntry.Type.ADD_DATA_SOURCE_TO_GROUP, groupId, dataSourceId, null, null, null));
+    }
+
+    /**
+     * See {@link RedashClient#removeDataSourceFromGroup(int, int)}.
+     */
+    public Outcome removeDataSourceFromGroup(int dataSourceId, int groupId) throws IOException {
+        return submit(() -> client.removeDataSourceFromGroup(dataSourceId, groupId),
+                () -> append(JournalEntry.Type.REMOVE_DATA_SOURCE_FROM_GROUP, groupId, dataSourceId, null, null, null));
+    }
+
+    /**
+     * See {@link RedashClient#createDataSource(DataSource)}. The data-source receives its id only if the outcome
+     * is {@link Outcome#APPLIED}.
+     */
+    public Outcome createDataSource(DataSource dataSource) throws IOException {
+        return submit(() -> {
+            client.createDataSource(dataSource);
+            return true;
+        }, () -> append(JournalEntry.Type.CREATE_DATA_SOURCE, 0, 0, dataSource.getName(),
+                dataSource.getClass().getName(), GSON.toJson(dataSource)));
+    }
+
+    /**
+     * See {@link RedashClient#updateDataSource(DataSource)}.
+     */
+    public Outcome updateDataSource(DataSource dataSource) throws IOException {
+        return submit(() -> client.updateDataSource(dataSource),
+                () -> append(JournalEntry.Type.UPDATE_DATA_SOURCE, 0, 0, dataSource.getName(),
+                        dataSource.getClass().getName(), GSON.toJson(dataSource)));
+    }
+
+    /**
+     * See {@link RedashClient#deleteDataSource(int)}.
+     */
+    public Outcome deleteDataSource(int dataSourceId) throws IOException {
+        return submit(() -> client.deleteDataSource(dataSourceId),
+                () -> append(JournalEntry.Type.DELETE_DATA_SOURCE, 0, dataSourceId, null, null, null));
+    }
+
+    /**
+     * @return The recorded entries which were not replayed yet, in the order they were recorded.
+     */
+    public synchronized List<JournalEntry> getPending() {
+        return Collections.unmodifiableList(new ArrayList<>(pending));
+    }
+
+    /**
+     * Coalesces the recorded entries and sends the remaining ones to Redash, stopping after the first batch in
+     * which Redash was unreachable. Entries Redash answered, successfully or not, are removed from the journal.
+     * Replays started concurrently, including scheduled ones, run one after another.
+     *
+     * @return What happened to the entries.
+     * @throws IOException If the file could not be compacted.
+     */
+    public ReplayResult replay() throws IOException {
+        synchronized (replayLock) {
+            List<JournalEntry> snapshot;
+            synchronized (this) {
+                snapshot = new ArrayList<>(pending);
+            }
+            List<Planned> plan = coalesce(snapshot);
+            ReplayResult result = new ReplayResult(snapshot.size() - plan.size());
+            ExecutorService pool = null;
+            try {
+                // The first entry is sent alone, so that a server which is still unreachable costs one request
+                int next = 0;
+                int size = 1;
+                boolean reachable = true;
+                while (reachable && next < plan.size()) {
+                    List<Planned> batch = plan.subList(next, Math.min(plan.size(), next + size));
+                    List<Attempt> attempts = new ArrayList<>(batch.size());
+                    if (batch.size() == 1) {
+                        attempts.add(attempt(batch.get(0).entry));
+                    } else {
+                        if (pool == null) {
+                            pool = Executors.newFixedThreadPool(Math.min(parallelism, batchSize));
+                        }
+                        attempts.addAll(attemptInOrder(batch, pool));
+                    }
+                    Set<Long> done = new HashSet<>();
+                    for (int i = 0; i < batch.size(); i++) {
+                        Attempt attempt = attempts.get(i);
+                        if (attempt == null) {
+                            // Not sent, an entry it waited for could not reach Redash
+                            continue;
+                        }
+                        if (attempt.unreachable) {
+                            reachable = false;
+                            continue;
+                        }
+                        result.record(batch.get(i).entry, attempt);
+                        done.add(batch.get(i).entry.getSequence());
+                        done.addAll(batch.get(i).covered);
+                    }
+                    remove(done);
+                    next += batch.size();
+                    size = batchSize;
+                }
+                result.remaining = getPending().size();
+                return result;
+            } finally {
+                if (pool != null) {
+                    pool.shutdown();
+                }
+            }
+        }
+    }
+
+    /**
+     * Starts replaying on a daemon thread, beginning immediately and then at the configured interval while
+     * there are entries. Does nothing if already started.
+     */
+    public synchronized void start() {
+        if (scheduler == null) {
+            scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "redash-journal");
+                thread.setDaemon(true);
+                return thread;
+            });
+            scheduler.scheduleWithFixedDelay(() -> {
+                try {
+                    boolean empty;
+                    synchronized (this) {
+                        empty = pending.isEmpty();
+                    }
+                    if (!empty) {
+                        replay();
+                    }
+                } catch (IOException | RuntimeException e) {
+                    // Tried again at the next interval
+                }
+            }, 0, replayIntervalMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Stops replaying and closes the file. Entries not replayed yet stay in the file for the next journal.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+        closed = true;
+        channel.close();
+    }
+
+    /**
+     * What a {@link #replay()} did with the entries it found.
+     */
+    public static final class ReplayResult {
+        private final int coalesced;
+        private int applied;
+        private int unchanged;
+        private int remaining;
+        private final Map<JournalEntry, Exception> failed = new LinkedHashMap<>();
+
+        private ReplayResult(int coalesced) {
+            this.coalesced = coalesced;
+        }
+
+        private void record(JournalEntry entry, Attempt attempt) {
+            if (attempt.outcome == Outcome.APPLIED) {
+                applied++;
+            } else if (attempt.outcome == Outcome.UNCHANGED) {
+                unchanged++;
+            } else {
+                failed.put(entry, attempt.error);
+            }
+        }
+
+        /**
+         * @return The number of entries dropped without sending them because later entries superseded them.
+         */
+        public int getCoalesced() {
+            return coalesced;
+        }
+
+        public int getApplied() {
+            return applied;
+        }
+
+        /**
+         * @return The number of entries for which the client returned false.
+         */
+        public int getUnchanged() {
+            return unchanged;
+        }
+
+        /**
+         * @return The entries Redash rejected, e.g. because a user no longer exists, with the error. They are
+         * removed from the journal like successful ones.
+         */
+        public Map<JournalEntry, Exception> getFailed() {
+            return Collections.unmodifiableMap(failed);
+        }
+
+        /**
+         * @return The number of entries still in the journal, including ones recorded during the replay.
+         */
+        public int getRemaining() {
+            return remaining;
+        }
+
+        @Override
+        public String toString() {
+            return "ReplayResult{" +
+                    "coalesced=" + coalesced +
+                    ", applied=" + applied +
+                    ", unchanged=" + unchanged +
+                    ", failed=" + failed.size() +
+                    ", remaining=" + remaining +
+                    '}';
+        }
+    }
+
+    @FunctionalInterface
+    private interface Mutation {
+        boolean apply() throws IOException;
+    }
+
+    @FunctionalInterface
+    private interface Recorder {
+        void record() throws IOException;
+    }
+
+    private Outcome submit(Mutation mutation, Recorder recorder) throws IOException {
+        synchronized (this) {
+            if (!pending.isEmpty()) {
+                recorder.record();
+                return Outcome.JOURNALED;
+            }
+        }
+        try {
+            return mutation.apply() ? Outcome.APPLIED : Outcome.UNCHANGED;
+        } catch (IOException e) {
+            if (!isUnreachable(e)) {
+                throw e;
+            }
+            recorder.record();
+            return Outcome.JOURNALED;
+        }
+    }
+
+    /**
+     * @return Whether {@code error} means that Redash could not be reached or could not answer for now, as opposed
+     * to an answer which would be the same when the request is sent again.
+     */
+    static boolean isUnreachable(IOException error) {
+        if (error instanceof RedashException) {
+            return ((RedashException) error).isRetryable();
+        }
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof SocketException || cause instanceof SocketTimeoutException
+                    || cause instanceof UnknownHostException || cause instanceof HttpTimeoutException
+                    || cause instanceof EOFException || cause instanceof CircuitBreakerOpenException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static final class Attempt {
+        // null if the entry failed
+        private final Outcome outcome;
+        private final Exception error;
+        private final boolean unreachable;
+
+        private Attempt(Outcome outcome, Exception error, boolean unreachable) {
+            this.outcome = outcome;
+            this.error = error;
+            this.unreachable = unreachable;
+        }
+    }
+
+    private Attempt attempt(JournalEntry entry) {
+        try {
+            return new Attempt(apply(entry) ? Outcome.APPLIED : Outcome.UNCHANGED, null, false);
+        } catch (IOException e) {
+            return new Attempt(null, e, isUnreachable(e));
+        } catch (RuntimeException | ClassNotFoundException e) {
+            return new Attempt(null, e, false);
+        }
+    }
+
+    /**
+     * Attempts the entries of a batch concurrently, except that an entry starts only once the earlier entries it
+     * depends on are done.
+     *
+     * @return One attempt per entry, null for an entry which was not sent because an entry it depends on could not
+     * reach Redash or was not sent either.
+     */
+    private List<Attempt> attemptInOrder(List<Planned> batch, ExecutorService pool) throws IOException {
+        List<CompletableFuture<Attempt>> futures = new ArrayList<>(batch.size());
+        for (int i = 0; i < batch.size(); i++) {
+            JournalEntry entry = batch.get(i).entry;
+            List<CompletableFuture<Attempt>> dependencies = new ArrayList<>();
+            for (int j = 0; j < i; j++) {
+                if (isOrdered(batch.get(j).entry, entry)) {
+                    dependencies.add(futures.get(j));
+                }
+            }
+            futures.add(CompletableFuture.allOf(dependencies.toArray(new CompletableFuture<?>[0]))
+                    .thenApplyAsync(ignored -> dependencies.stream().map(CompletableFuture::join)
+                            .anyMatch(dependency -> dependency == null || dependency.unreachable)
+                            ? null : attempt(entry), pool));
+        }
+        List<Attempt> attempts = new ArrayList<>(batch.size());
+        for (Future<Attempt> future : futures) {
+            attempts.add(RedashClient.await(future));
+        }
+        return attempts;
+    }
+
+    /**
+     * @return Whether the outcome of two entries can depend on the order in which they are sent.
+     */
+    private static boolean isOrdered(JournalEntry first, JournalEntry second) {
+        if (isGroupChange(first) && isGroupChange(second)
+                || isDataSourceChange(first) && isDataSourceChange(second)) {
+            // Deletions know the id and creations the name, so they may be about the same group or data-source
+            return true;
+        }
+        return isDeletedBy(second, first) || isDeletedBy(first, second);
+    }
+
+    private static boolean isGroupChange(JournalEntry entry) {
+        return entry.getType() == JournalEntry.Type.CREATE_USER_GROUP
+                || entry.getType() == JournalEntry.Type.DELETE_USER_GROUP;
+    }
+
+    private static boolean isDataSourceChange(JournalEntry entry) {
+        return entry.getType() == JournalEntry.Type.CREATE_DATA_SOURCE
+                || entry.getType() == JournalEntry.Type.UPDATE_DATA_SOURCE
+                || entry.getType() == JournalEntry.Type.DELETE_DATA_SOURCE;
+    }
+
+    /**
+     * @return Whether {@code entry} is a membership in the group or of the data-source {@code deletion} deletes.
+     */
+    private static boolean isDeletedBy(JournalEntry entry, JournalEntry deletion) {
+        JournalEntry.Type type = entry.getType();
+        if (deletion.getType() == JournalEntry.Type.DELETE_USER_GROUP) {
+            return (type.isUserMembership() || type.isDataSourceMembership())
+                    && entry.getGroupId() == deletion.getGroupId();
+        }
+        return deletion.getType() == JournalEntry.Type.DELETE_DATA_SOURCE && type.isDataSourceMembership()
+                && entry.getTargetId() == deletion.getTargetId();
+    }
+
+    private boolean apply(JournalEntry entry) throws IOException, ClassNotFoundException {
+        switch (entry.getType()) {
+            case CREATE_USER_GROUP:
+                client.createUserGroup(GSON.fromJson(entry.getBody(), Group.class));
+                return true;
+            case DELETE_USER_GROUP:
+                return client.deleteUserGroup(entry.getGroupId());
+            case ADD_USER_TO_GROUP:
+                return client.addUserToGroup(entry.getTargetId(), entry.getGroupId());
+            case REMOVE_USER_FROM_GROUP:
+                return client.removeUserFromGroup(entry.getTargetId(), entry.getGroupId());
+            case ADD_DATA_SOURCE_TO_GROUP:
+                return client.addDataSourceToGroup(entry.getTargetId(), entry.getGroupId());
+            case REMOVE_DATA_SOURCE_FROM_GROUP:
+                return client.removeDataSourceFromGroup(entry.getTargetId(), entry.getGroupId());
+            case CREATE_DATA_SOURCE:
+                client.createDataSource(dataSourceOf(entry));
+                return true;
+            case UPDATE_DATA_SOURCE:
+                return client.updateDataSource(dataSourceOf(entry));
+            case DELETE_DATA_SOURCE:
+                return client.deleteDataSource(entry.getTargetId());
+            default:
+                throw new IllegalStateException("Unknown journal entry type " + entry.getType());
+        }
+    }
+
+    private static DataSource dataSourceOf(JournalEntry entry) throws ClassNotFoundException {
+        // Deserialized as the recorded subclass, which decides the required options
+        Class<? extends DataSource> type = Class.forName(entry.getBodyClass(), false,
+                DataSource.class.getClassLoader()).asSubclass(DataSource.class);
+        return GSON.fromJson(entry.getBody(), type);
+    }
+
+    /**
+     * An entry to replay and the sequence numbers of the entries it supersedes, which are removed with it.
+     */
+    private static final class Planned {
+        private JournalEntry entry;
+        private final List<Long> covered = new ArrayList<>();
+
+        private Planned(JournalEntry entry) {
+            this.entry = entry;
+        }
+
+        private void cover(Planned superseded) {
+            covered.add(superseded.entry.getSequence());
+            covered.addAll(superseded.covered);
+        }
+    }
+
+    /**
+     * @return The entries to replay, in the order they were recorded.
+     */
+    private static List<Planned> coalesce(List<JournalEntry> entries) {
+        Map<Long, Planned> plan = new LinkedHashMap<>();
+        Map<String, Planned> memberships = new HashMap<>();
+        Map<String, Planned> dataSourcesByName = new HashMap<>();
+        Map<Integer, Planned> groupDeletions = new HashMap<>();
+        Map<Integer, Planned> dataSourceDeletions = new HashMap<>();
+        for (JournalEntry entry : entries) {
+            Planned planned = new Planned(entry);
+            JournalEntry.Type type = entry.getType();
+            if (type.isUserMembership() || type.isDataSourceMembership()) {
+                String key = (type.isUserMembership() ? "user:" : "data-source:") + entry.getGroupId() + ':'
+                        + entry.getTargetId();
+                Planned previous = memberships.put(key, planned);
+                if (previous != null) {
+                    planned.cover(plan.remove(previous.entry.getSequence()));
+                }
+            } else if (type == JournalEntry.Type.DELETE_USER_GROUP) {
+                supersede(plan, memberships, planned, member -> member.entry.getGroupId() == entry.getGroupId());
+                Planned previous = groupDeletions.put(entry.getGroupId(), planned);
+                if (previous != null) {
+                    planned.cover(plan.remove(previous.entry.getSequence()));
+                }
+            } else if (type == JournalEntry.Type.DELETE_DATA_SOURCE) {
+                supersede(plan, memberships, planned, member -> member.entry.getType().isDataSourceMembership()
+                        && member.entry.getTargetId() == entry.getTargetId());
+                // Updates are recorded by name, so only those carrying the id are known to be about this data-source
+                supersede(plan, dataSourcesByName, planned, update -> update.entry.getType()
+                        == JournalEntry.Type.UPDATE_DATA_SOURCE && idOf(update.entry) == entry.getTargetId());
+                Planned previous = dataSourceDeletions.put(entry.getTargetId(), planned);
+                if (previous != null) {
+                    planned.cover(plan.remove(previous.entry.getSequence()));
+                }
+            } else if (type == JournalEntry.Type.CREATE_DATA_SOURCE || type == JournalEntry.Type.UPDATE_DATA_SOURCE) {
+                Planned previous = dataSourcesByName.get(entry.getName());
+                if (type == JournalEntry.Type.UPDATE_DATA_SOURCE && previous != null) {
+                    // The update replaces the body of the creation or of the previous update in its place
+                    previous.entry = previous.entry.withBody(entry.getBodyClass(), entry.getBody());
+                    previous.cover(planned);
+                    continue;
+                }
+                dataSourcesByName.put(entry.getName(), planned);
+            }
+            plan.put(entry.getSequence(), planned);
+        }
+        return new ArrayList<>(plan.values());
+    }
+
+    private static void supersede(Map<Long, Planned> plan, Map<String, Planned> candidates, Planned by,
+                                  Predicate<Planned> filter) {
+        Iterator<Map.Entry<String, Planned>> iterator = candidates.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, Planned> candidate = iterator.next();
+            if (filter.test(candidate.getValue())) {
+                by.cover(plan.remove(candidate.getValue().entry.getSequence()));
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * @return The id in the body of a data-source entry, 0 if it has none.
+     */
+    private static int idOf(JournalEntry entry) {
+        JsonElement id = GSON.fromJson(entry.getBody(), JsonObject.class).get("id");
+        return id == null || id.isJsonNull() ? 0 : id.getAsInt();
+    }
+
+    private synchronized void open() throws IOException {
+        if (Files.exists(file)) {
+            // Decoded leniently, a crash during an append can leave a partial character at the end
+            byte[] bytes = Files.readAllBytes(file);
+            String[] lines = new String(bytes, StandardCharsets.UTF_8).split("\n");
+            boolean torn = bytes.length > 0 && bytes[bytes.length - 1] != '\n';
+            for (int i = 0; i < lines.length; i++) {
+                if (lines[i].isEmpty()) {
+                    continue;
+                }
+                try {
+                    pending.add(JournalEntry.fromJson(lines[i]));
+                } catch (IllegalArgumentException e) {
+                    if (i < lines.length - 1) {
+                        throw new IOException("Corrupt entry in line " + (i + 1) + " of " + file, e);
+                    }
+                    torn = true;
+                }
+            }
+            if (!pending.isEmpty()) {
+                nextSequence = pending.get(pending.size() - 1).getSequence() + 1;
+            }
+            if (torn) {
+                rewrite();
+                return;
+            }
+        } else {
+            createOwnerOnly(file);
+        }
+        channel = FileChannel.open(file, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    private synchronized void append(JournalEntry.Type type, int groupId, int targetId, String name, String bodyClass,
+                                     String body) throws IOException {
+        if (closed) {
+            throw new IOException("The journal " + file + " is closed.");
+        }
+        JournalEntry entry = new JournalEntry(nextSequence, type, groupId, targetId, name, bodyClass, body);
+        ByteBuffer bytes = StandardCharsets.UTF_8.encode(entry.toJson() + "\n");
+        while (bytes.hasRemaining()) {
+            channel.write(bytes);
+        }
+        if (sync) {
+            channel.force(false);
+        }
+        nextSequence++;
+        pending.add(entry);
+    }
+
+    private synchronized void remove(Set<Long> sequences) throws IOException {
+        if (!sequences.isEmpty() && pending.removeIf(entry -> sequences.contains(entry.getSequence()))) {
+            rewrite();
+        }
+    }
+
+    /**
+     * Replaces the file with one containing only the pending entries.
+     */
+    private synchronized void rewrite() throws IOException {
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        Files.deleteIfExists(temporary);
+        createOwnerOnly(temporary);
+        try (FileChannel out = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+            StringBuilder text = new StringBuilder();
+            for (JournalEntry entry : pending) {
+                text.append(entry.toJson()).append('\n');
+            }
+            ByteBuffer bytes = StandardCharsets.UTF_8.encode(text.toString());
+            while (bytes.hasRemaining()) {
+                out.write(bytes);
+            }
+            out.force(false);
+        }
+        if (channel != null) {
+            channel.close();
+        }
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        if (!closed) {
+            channel = FileChannel.open(file, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        }
+    }
+
+    private static void createOwnerOnly(Path path) throws IOException {
+        try {
+            Files.createFile(path, PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------")));
+        } catch (UnsupportedOperationException e) {
+            Files.createFile(path);
+        }
+    }
+}
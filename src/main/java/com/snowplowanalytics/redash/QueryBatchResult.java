@@ -0,0 +1,83 @@
+/*
+ * Copyright (c) 2018 Snowplow Analytics Ltd. All rights reserved.
+ *
+ * This program is licensed to you under the Apache License Version 2.0,
+ * and you may not use this file except in compliance with the Apache License Version 2.0.
+ * You may obtain a copy of the Apache License Version 2.0 at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the Apache License Version 2.0 is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Apache License Version 2.0 for the specific language governing permissions and limitations there under.
+ */
+
+package com.snowplowanalytics.redash;
+
+import com.snowplowanalytics.redash.model.query.QueryResult;
+
+import java.util.Map;
+
+/**
+ * The outcome of executing a query for one parameter set with {@link RedashClient#executeQueryBatch}.
+ */
+public final class QueryBatchResult {
+
+    private final long index;
+    private final Map<String, ?> parameters;
+    private final QueryResult queryResult;
+    private final Exception error;
+
+    private QueryBatchResult(long index, Map<String, ?> parameters, QueryResult queryResult, Exception error) {
+        this.index = index;
+        this.parameters = parameters;
+        this.queryResult = queryResult;
+        this.error = error;
+    }
+
+    static QueryBatchResult succeeded(long index, Map<String, ?> parameters, QueryResult queryResult) {
+        return new QueryBatchResult(index, parameters, queryResult, null);
+    }
+
+    static QueryBatchResult failed(long index, Map<String, ?> parameters, Exception error) {
+        return new QueryBatchResult(index, parameters, null, error);
+    }
+
+    /**
+     * @return The position of the parameter set in the input, starting at 0.
+     */
+    public long getIndex() {
+        return index;
+    }
+
+    public Map<String, ?> getParameters() {
+        return parameters;
+    }
+
+    public boolean isSuccessful() {
+        return error == null;
+    }
+
+    /**
+     * @return The result or null if the execution failed.
+     */
+    public QueryResult getQueryResult() {
+        return queryResult;
+    }
+
+    /**
+     * @return The cause of a failed execution, otherwise null.
+     */
+    public Exception getError() {
+        return error;
+    }
+
+    @Override
+    public String toString() {
+        return "QueryBatchResult{" +
+                "index=" + index +
+                ", parameters=" + parameters +
+                ", queryResult=" + queryResult +
+                ", error=" + error +
+                '}';
+    }
+}
@@ -0,0 +1,26 @@
+/*
+ * Copyright (c) 2018 Snowplow Analytics Ltd. All rights reserved.
+ *
+ * This program is licensed to you under the Apache License Version 2.0,
+ * and you may not use this file except in compliance with the Apache License Version 2.0.
+ * You may obtain a copy of the Apache License Version 2.0 at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the Apache License Version 2.0 is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Apache License Version 2.0 for the specific language governing permissions and limitations there under.
+ */
+
+package com.snowplowanalytics.redash;
+
+/**
+ * The API key was rejected (401 or 403), or Redash 3 answered with the 404 it sends for unknown API keys.
+ */
+public class RedashAuthenticationException extends RedashException {
+
+    private static final long serialVersionUID = 1L;
+
+    public RedashAuthenticationException(String message, int statusCode, String method, String url, String responseBody) {
+        super(message, statusCode, method, url, responseBody);
+    }
+}
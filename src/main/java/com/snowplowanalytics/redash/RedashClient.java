@@ -14,60 +14,393 @@
 package com.snowplowanalytics.redash;
 
 import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
 import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
 import com.snowplowanalytics.redash.model.BaseEntity;
 import com.snowplowanalytics.redash.model.Group;
 import com.snowplowanalytics.redash.model.User;
+import com.snowplowanalytics.redash.cache.QueryKey;
+import com.snowplowanalytics.redash.cache.QueryResultCache;
+import com.snowplowanalytics.redash.model.datasource.BigQueryDataSource;
+import com.snowplowanalytics.redash.model.datasource.ClickHouseDataSource;
 import com.snowplowanalytics.redash.model.datasource.DataSource;
-import okhttp3.*;
-import org.json.JSONException;
-import org.json.JSONObject;
+import com.snowplowanalytics.redash.model.datasource.DataSourceSchema;
+import com.snowplowanalytics.redash.model.datasource.DataSourceType;
+import com.snowplowanalytics.redash.model.datasource.DataSourceTypeRegistry;
+import com.snowplowanalytics.redash.model.datasource.PostgreSqlDataSource;
+import com.snowplowanalytics.redash.model.datasource.RedshiftDataSource;
+import com.snowplowanalytics.redash.model.datasource.SnowflakeDataSource;
+import com.snowplowanalytics.redash.model.query.Job;
+import com.snowplowanalytics.redash.model.query.QueryResult;
+import com.snowplowanalytics.redash.tracing.Operation;
+import com.snowplowanalytics.redash.tracing.RedashTracer;
+import com.snowplowanalytics.redash.transport.HttpTransport;
+import com.snowplowanalytics.redash.transport.JdkHttpTransport;
+import com.snowplowanalytics.redash.transport.LoggingTransport;
+import com.snowplowanalytics.redash.transport.OkHttpTransport;
+import com.snowplowanalytics.redash.transport.TransportRequest;
+import com.snowplowanalytics.redash.transport.TransportResponse;
+import okhttp3.OkHttpClient;
 
+import java.io.Closeable;
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
 import java.lang.reflect.Type;
+import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
-public class RedashClient {
+/**
+ * Client for the Redash REST API.
+ *
+ * Instances are thread-safe and are intended to be shared. All configuration is final, and the {@link HttpTransport}
+ * and the {@link Gson} instance are safe for concurrent use. A client keeps the following state between calls, all of
+ * it safe for concurrent use: the data-source types, downloaded once without holding a lock and downloaded again if
+ * that fails; the data-source schema cache; the query-result cache, if one was set, which may also be shared with other
+ * clients; the job poller, which polls outstanding query jobs from one scheduler thread while there are any; and the
+ * executor of the {@link ExecutionMode}, if any, on which asynchronous and batch calls run. The executor is created by
+ * the client and shut down by {@link #close()}.
+ *
+ * The mutable model objects passed in and returned are not thread-safe. {@link #createDataSource} and
+ * {@link #createUserGroup} write the new id back into their argument, so callers must not share those objects
+ * across threads while a call is in progress. Use the immutable model variants such as
+ * {@link com.snowplowanalytics.redash.model.ImmutableGroup} to share results between threads.
+ */
+public class RedashClient implements Closeable {
 
-    private static final String API_KEY_URL_PARAM = "?api_key=";
-    private static final String API_PREFIX = "/api";
-    private static final String DATA_SOURCES_URL_PREFIX = "/data_sources";
-    private static final String GROUPS_URL_PREFIX = "/groups";
-    private static final String USERS_URL_PREFIX = "/users";
-    private static final String MEMBERS_URL_PREFIX = "/members";
+    private static final String AUTHORIZATION_KEY_PREFIX = "Key ";
+    private static final String MESSAGE_INCORRECT_URL = "Incorrect URL. Please check it and try again";
 
     private static final String ID = "id";
     private static final String USER_ID = "user_id";
     private static final String DATA_SOURCE_ID = "data_source_id";
-    private static final String AUTH_TYPE = "auth_type";
-    private static final String CREATED_AT = "created_at";
     private static final String MESSAGE = "message";
-    private static final String NULL = "null";
-    private static final String MESSAGE_URL_NOT_FOUND = "The requested URL was not found on the server.  " +
-            "If you entered the URL manually please check your spelling and try again.";
     private static final String MESSAGE_INTERNAL_SERVER_ERROR = "Internal Server Error";
     private static final String JSON_CONTENT_TYPE = "application/json; charset=utf-8";
+    private static final String CONTENT_ENCODING = "Content-Encoding";
+    private static final String GZIP = "gzip";
+    private static final String SCHEMA = "schema";
+    private static final String NAME = "name";
+    private static final String COLUMNS = "columns";
+    private static final String ERROR = "error";
+    private static final String QUERY = "query";
+    private static final String MAX_AGE = "max_age";
+    private static final String QUERY_RESULT = "query_result";
+    private static final String JOB = "job";
+    private static final String DATA = "data";
+    private static final String ROWS = "rows";
+    private static final Type ROW_TYPE = new TypeToken<LinkedHashMap<String, Object>>() {}.getType();
+    private static final Pattern PARAMETER = Pattern.compile("\\{\\{\\s*([^{}\\s]+)\\s*}}");
 
-    private static final MediaType JSON = MediaType.parse(JSON_CONTENT_TYPE);
+    private static final Gson GSON = new Gson();
+    // OkHttp is an optional dependency, without it requests are sent with the JDK's HTTP client
+    private static final boolean OKHTTP_AVAILABLE = isAvailable("okhttp3.OkHttpClient");
+    private static final String OK = "ok";
+
+    public static final int DEFAULT_PARALLELISM = 8;
+    public static final Duration DEFAULT_SCHEMA_TTL = Duration.ofMinutes(5);
+    public static final Duration DEFAULT_POLL_INTERVAL = Duration.ofSeconds(1);
 
     public static final String DATA_SOURCE_ALREADY_EXISTS = "Data-source with this name already exists.";
     public static final String USER_GROUP_ALREADY_EXISTS = "User group with this name already exists.";
     public static final String USER_DOES_NOT_EXIST = "User with such name does not exist.";
     public static final String DATA_SOURCE_DOES_NOT_EXIST = "Data-source with such name does not exist.";
 
-    private final OkHttpClient client;
-    private final String baseUrl;
-    private final String apiKey;
-    private final Headers headers;
+    private final HttpTransport transport;
+    private final Routes routes;
+    private final Map<String, String> headers;
+    private final MutationMode mutationMode;
+    private final ExecutorService executor;
+    private final boolean validateOptions;
+    // Set once the first download starts, and cleared again if it fails
+    private final AtomicReference<CompletableFuture<DataSourceTypeRegistry>> dataSourceTypes = new AtomicReference<>();
+    private final SchemaCache schemas;
+    private final QueryResultCache queryResults;
+    private final JobPoller jobPoller;
+    private final Map<String, String> compressedHeaders;
+    private final int requestCompressionThreshold;
+    private final RedashTracer tracer;
 
     public RedashClient(String schema, String host, int port, String apiKey) {
-        this.client = new OkHttpClient();
-        this.apiKey = apiKey;
-        this.baseUrl = schema + "://" + host + ":" + port + API_PREFIX;
-        this.headers = new Headers.Builder()
-                .add("Accept", "application/json, text/plain, */*")
-                .add("Content-Type", JSON_CONTENT_TYPE)
-                .build();
+        this(new RedashClientBuilder(schema, host, port, apiKey));
+    }
+
+    private RedashClient(RedashClientBuilder builder) {
+        HttpTransport transport = builder.transport != null ? builder.transport : defaultTransport();
+        if (builder.tracer != null && OKHTTP_AVAILABLE && transport instanceof OkHttpTransport) {
+            OkHttpClient httpClient = ((OkHttpTransport) transport).getClient().newBuilder()
+                    .eventListenerFactory(builder.tracer.eventListenerFactory())
+                    .build();
+            transport = new OkHttpTransport(httpClient);
+        }
+        this.transport = new LoggingTransport(transport);
+        this.routes = Routes.create(builder.schema, builder.host, builder.port);
+        Map<String, String> headers = new LinkedHashMap<>();
+        headers.put("Accept", "application/json, text/plain, */*");
+        headers.put("Content-Type", JSON_CONTENT_TYPE);
+        headers.put("Authorization", AUTHORIZATION_KEY_PREFIX + builder.apiKey);
+        this.headers = Collections.unmodifiableMap(headers);
+        this.mutationMode = builder.mutationMode;
+        this.executor = builder.executionMode.newExecutor();
+        this.validateOptions = builder.validateOptions;
+        this.schemas = new SchemaCache(this::loadDataSourceSchema, builder.schemaTtl.toNanos());
+        this.queryResults = builder.queryResultCache;
+        this.jobPoller = new JobPoller(this::fetchJob, builder.pollInterval.toMillis());
+        Map<String, String> compressedHeaders = new LinkedHashMap<>(headers);
+        compressedHeaders.put(CONTENT_ENCODING, GZIP);
+        this.compressedHeaders = Collections.unmodifiableMap(compressedHeaders);
+        this.requestCompressionThreshold = builder.requestCompressionThreshold;
+        this.tracer = builder.tracer;
+        if (builder.warmUpConnections > 0) {
+            warmUpAsync(builder.warmUpConnections);
+        }
+    }
+
+    /**
+     * @return The OkHttp transport if OkHttp is on the classpath, the JDK one otherwise.
+     */
+    private static HttpTransport defaultTransport() {
+        return OKHTTP_AVAILABLE ? new OkHttpTransport() : new JdkHttpTransport();
+    }
+
+    private static boolean isAvailable(String className) {
+        try {
+            Class.forName(className, false, RedashClient.class.getClassLoader());
+            return true;
+        } catch (ClassNotFoundException | LinkageError e) {
+            return false;
+        }
+    }
+
+    public final static class RedashClientBuilder {
+        private final String schema;
+        private final String host;
+        private final int port;
+        private final String apiKey;
+        private MutationMode mutationMode = MutationMode.VALIDATING;
+        private HttpTransport transport;
+        private ExecutionMode executionMode = ExecutionMode.CALLER_THREAD;
+        private boolean validateOptions;
+        private Duration schemaTtl = DEFAULT_SCHEMA_TTL;
+        private QueryResultCache queryResultCache;
+        private Duration pollInterval = DEFAULT_POLL_INTERVAL;
+        private int requestCompressionThreshold = -1;
+        private RedashTracer tracer;
+        private int warmUpConnections;
+
+        public RedashClientBuilder(String schema, String host, int port, String apiKey) {
+            this.schema = schema;
+            this.host = host;
+            this.port = port;
+            this.apiKey = apiKey;
+        }
+
+        /**
+         * @param mutationMode {@link MutationMode#OPTIMISTIC} skips the pre-flight existence and uniqueness
+         *                     requests and sends each mutation directly. Defaults to {@link MutationMode#VALIDATING}.
+         */
+        public RedashClientBuilder mutationMode(MutationMode mutationMode) {
+            this.mutationMode = mutationMode;
+            return this;
+        }
+
+        /**
+         * @param httpClient A preconfigured client, e.g. to share its connection pool and dispatcher with other
+         *                   {@code RedashClient} instances. Requires OkHttp on the class path.
+         */
+        public RedashClientBuilder httpClient(OkHttpClient httpClient) {
+            this.transport = new OkHttpTransport(httpClient);
+            return this;
+        }
+
+        /**
+         * @param transport The HTTP implementation to use, e.g. {@link JdkHttpTransport},
+         *                  an {@link com.snowplowanalytics.redash.transport.InMemoryTransport} for tests or any of these
+         *                  wrapped in a {@link com.snowplowanalytics.redash.transport.CircuitBreakerTransport} or a
+         *                  {@link com.snowplowanalytics.redash.transport.HedgingTransport}.
+         *                  Defaults to an {@link OkHttpTransport} with a new {@link OkHttpClient} if OkHttp is on
+         *                  the class path, and to a {@link JdkHttpTransport} otherwise.
+         *                  Whichever is used, requests are logged through a {@link LoggingTransport}.
+         */
+        public RedashClientBuilder transport(HttpTransport transport) {
+            this.transport = transport;
+            return this;
+        }
+
+        /**
+         * @param executionMode Where the independent requests of composite operations run.
+         *                      Defaults to {@link ExecutionMode#CALLER_THREAD}.
+         */
+        public RedashClientBuilder executionMode(ExecutionMode executionMode) {
+            this.executionMode = executionMode;
+            return this;
+        }
+
+        /**
+         * @param validateOptions Whether data-sources are checked against the server's type schemas (see
+         *                        {@link RedashClient#getDataSourceTypes()}) before they are created or updated.
+         *                        Defaults to false.
+         */
+        public RedashClientBuilder validateOptions(boolean validateOptions) {
+            this.validateOptions = validateOptions;
+            return this;
+        }
+
+        /**
+         * @param schemaTtl How long a data-source schema is served without revalidation, see
+         *                  {@link RedashClient#getDataSourceSchema(int)}. Defaults to {@link #DEFAULT_SCHEMA_TTL}.
+         */
+        public RedashClientBuilder schemaTtl(Duration schemaTtl) {
+            this.schemaTtl = schemaTtl;
+            return this;
+        }
+
+        /**
+         * @param queryResultCache The cache {@link RedashClient#executeQuery} consults before executing a query.
+         *                         Query results are not cached by default.
+         */
+        public RedashClientBuilder queryResultCache(QueryResultCache queryResultCache) {
+            this.queryResultCache = queryResultCache;
+            return this;
+        }
+
+        /**
+         * @param pollInterval How often the status of running queries is checked. All queries of the client are
+         *                     polled together from one scheduler thread. Defaults to {@link #DEFAULT_POLL_INTERVAL}.
+         */
+        public RedashClientBuilder pollInterval(Duration pollInterval) {
+            this.pollInterval = pollInterval;
+            return this;
+        }
+
+        /**
+         * @param requestCompressionThreshold The body length in characters from which request bodies are sent
+         *                                    gzip-compressed, or -1 to never compress them, which is the default.
+         *                                    Redash itself does not decompress request bodies, so this is only
+         *                                    useful behind a proxy that does. Responses are always accepted
+         *                                    compressed by the network transports.
+         */
+        public RedashClientBuilder requestCompressionThreshold(int requestCompressionThreshold) {
+            this.requestCompressionThreshold = requestCompressionThreshold;
+            return this;
+        }
+
+        /**
+         * @param tracer Records the public operations of the client and the HTTP calls they make as spans. With an
+         *               {@link OkHttpTransport} the client is copied with the tracer's event listener factory,
+         *               replacing any factory it had; other transports, including an {@code OkHttpTransport}
+         *               wrapped in another transport, only get operation spans unless their {@link OkHttpClient}
+         *               is built with {@link RedashTracer#eventListenerFactory()}. Polling of running queries is
+         *               not traced. Nothing is traced by default.
+         */
+        public RedashClientBuilder tracer(RedashTracer tracer) {
+            this.tracer = tracer;
+            return this;
+        }
+
+        /**
+         * @param connections Starts {@link RedashClient#warmUpAsync(int)} with this many connections when the client
+         *                    is built, so that the set-up overlaps with the rest of the caller's start-up. Its outcome
+         *                    is not reported; e.g. a rejected API key fails the first call instead. Nothing is warmed
+         *                    up by default.
+         */
+        public RedashClientBuilder warmUp(int connections) {
+            this.warmUpConnections = connections;
+            return this;
+        }
+
+        /**
+         * @throws UnsupportedOperationException If {@link ExecutionMode#VIRTUAL_THREADS} was requested on a JVM
+         *         without virtual threads.
+         */
+        public RedashClient build() {
+            return new RedashClient(this);
+        }
+    }
+
+    /**
+     * Pays the set-up costs of the first calls ahead of time, for short-lived processes where they dominate: loads
+     * the Gson adapters of the models and sends {@code connections} concurrent requests for the user-groups, which
+     * resolve the host, open that many pooled connections with their TLS handshakes and check the API key.
+     *
+     * @param connections The number of connections to open, at least 1. OkHttp's default dispatcher sends at most
+     *                    5 requests per host at once, keeps up to 5 idle connections for 5 minutes and HTTP/2
+     *                    transports multiplex requests over one connection, so more connections may not be kept.
+     * @throws RedashAuthenticationException If the API key is rejected.
+     * @throws IOException If the server is unavailable due to a connection error.
+     */
+    public void warmUp(int connections) throws IOException {
+        traced("warmUp", () -> await(warmUpAsync(connections)));
+    }
+
+    /**
+     * Like {@link #warmUp(int)}, without blocking the calling thread.
+     *
+     * @return A future completed once every request has been answered and the adapters are loaded.
+     */
+    public CompletableFuture<Void> warmUpAsync(int connections) {
+        if (connections < 1) {
+            return CompletableFuture.failedFuture(new IllegalArgumentException("connections must be positive."));
+        }
+        Type groupListType = new TypeToken<ArrayList<Group>>() {}.getType();
+        CompletableFuture<?>[] steps = new CompletableFuture<?>[connections + 1];
+        CompletableFuture<String> first = callAsync(routes -> TransportRequest.get(routes.groups(), headers));
+        steps[0] = first;
+        for (int i = 1; i < connections; i++) {
+            steps[i] = callAsync(routes -> TransportRequest.get(routes.groups(), headers));
+        }
+        // Loaded while the requests are in flight, then used to parse one of the responses
+        CompletableFuture<Void> adapters = executor != null
+                ? CompletableFuture.runAsync(RedashClient::loadAdapters, executor)
+                : CompletableFuture.runAsync(RedashClient::loadAdapters);
+        steps[connections] = adapters.thenCombine(first, (ignored, json) -> GSON.fromJson(json, groupListType));
+        return CompletableFuture.allOf(steps);
+    }
+
+    private static void loadAdapters() {
+        for (Type type : Arrays.asList(User.class, Group.class, DataSource.class, PostgreSqlDataSource.class,
+                RedshiftDataSource.class, BigQueryDataSource.class, SnowflakeDataSource.class,
+                ClickHouseDataSource.class, DataSourceType.class, QueryResult.class, Job.class, ROW_TYPE,
+                new TypeToken<ArrayList<User>>() {}.getType(), new TypeToken<ArrayList<Group>>() {}.getType(),
+                new TypeToken<ArrayList<DataSource>>() {}.getType(),
+                new TypeToken<ArrayList<DataSourceType>>() {}.getType())) {
+            GSON.getAdapter(TypeToken.get(type));
+        }
+    }
+
+    /**
+     * Shuts down the executor this client created for its {@link ExecutionMode}, letting the tasks in progress
+     * finish. The transport and the query-result cache are not closed, as they may be shared with other clients.
+     * Calls which need the executor fail with a {@link java.util.concurrent.RejectedExecutionException} afterwards.
+     */
+    @Override
+    public void close() {
+        if (executor != null) {
+            executor.shutdown();
+        }
     }
 
     /**
@@ -79,16 +412,93 @@ public class RedashClient {
      * @throws IOException If the server is unavailable due to a connection error or if API key is invalid or 
      *         if {@code url} is not a valid HTTP or HTTPS URL.
      * @throws IllegalArgumentException If a data-source with the same name already exists.
+     * @throws IllegalArgumentException If options are validated and the data-source does not match its type.
      */
     public int createDataSource(DataSource dataSource) throws IOException, IllegalArgumentException {
-        if (isEntityAlreadyExists(getDataSources(), dataSource.getName())) {
-            throw new IllegalArgumentException(DATA_SOURCE_ALREADY_EXISTS);
-        }
-        String url = baseUrl + DATA_SOURCES_URL_PREFIX + API_KEY_URL_PARAM + apiKey;
-        String response = post(url, new Gson().toJson(dataSource), CheckResponseStatus.YES);
-        int id = getIdFromJson(response);
-        dataSource.setId(id);
-        return id;
+        return traced("createDataSource", () -> {
+            if (validateOptions) {
+                getDataSourceTypes().requireValid(dataSource);
+            }
+            if (mutationMode == MutationMode.VALIDATING && isEntityAlreadyExists(getDataSources(), dataSource.getName())) {
+                throw new IllegalArgumentException(DATA_SOURCE_ALREADY_EXISTS);
+            }
+            return postDataSource(dataSource);
+        });
+    }
+
+    /**
+     * Creates many data-sources at once. The list of existing data-sources is downloaded once for the whole batch
+     * (not at all in {@link MutationMode#OPTIMISTIC} mode) and the data-sources are then created in parallel.
+     *
+     * @param dataSources The data-sources to create. Each one that is created receives its id.
+     * @param parallelism The maximum number of data-sources created concurrently.
+     * @param testConnections Whether Redash should test the connection of each created data-source.
+     * @return One result per data-source, in the order of {@code dataSources}. Names which already exist on the server
+     * or earlier in the batch are reported as {@code ALREADY_EXISTS}; other errors, including invalid options when
+     * options are validated, are reported as {@code FAILED}.
+     * @throws IOException If the list of existing data-sources could not be downloaded because the server is
+     *         unavailable due to a connection error or if API key is invalid or if {@code url} is not a valid
+     *         HTTP or HTTPS URL.
+     */
+    public List<DataSourceCreationResult> createDataSources(Collection<? extends DataSource> dataSources, int parallelism,
+                                                            boolean testConnections) throws IOException {
+        return traced("createDataSources", () -> {
+            Set<String> names = new HashSet<>();
+            if (mutationMode == MutationMode.VALIDATING) {
+                getDataSources().forEach(ds -> names.add(ds.getName()));
+            }
+            List<DataSource> toCreate = new ArrayList<>(dataSources.size());
+            List<DataSourceCreationResult> results = new ArrayList<>(dataSources.size());
+            DataSourceTypeRegistry types = validateOptions ? getDataSourceTypes() : null;
+            for (DataSource dataSource : dataSources) {
+                List<String> problems = types != null ? types.validate(dataSource) : Collections.emptyList();
+                if (!problems.isEmpty()) {
+                    results.add(DataSourceCreationResult.failed(dataSource,
+                            new IllegalArgumentException(String.join(" ", problems))));
+                    continue;
+                }
+                boolean isNew = names.add(dataSource.getName());
+                results.add(isNew ? null : DataSourceCreationResult.alreadyExists(dataSource));
+                if (isNew) {
+                    toCreate.add(dataSource);
+                }
+            }
+            Iterator<DataSourceCreationResult> created = fanOut(toCreate, parallelism, dataSource -> {
+                DataSourceCreationResult result;
+                try {
+                    postDataSource(dataSource);
+                    result = DataSourceCreationResult.created(dataSource);
+                } catch (IllegalArgumentException e) {
+                    return DataSourceCreationResult.alreadyExists(dataSource);
+                } catch (IOException | RuntimeException e) {
+                    return DataSourceCreationResult.failed(dataSource, e);
+                }
+                if (testConnections) {
+                    try {
+                        JsonObject test = parseObject(post(routes().dataSourceTest(dataSource.getId()), "{}"));
+                        result = result.withConnectionTest(test.has(OK) && test.get(OK).getAsBoolean(),
+                                Objects.toString(optString(test, MESSAGE), ""));
+                    } catch (IOException | RuntimeException e) {
+                        result = result.withConnectionTest(false, e.getMessage());
+                    }
+                }
+                return result;
+            }).iterator();
+            for (int i = 0; i < results.size(); i++) {
+                if (results.get(i) == null) {
+                    results.set(i, created.next());
+                }
+            }
+            return results;
+        });
+    }
+
+    /**
+     * Creates many data-sources at once with up to {@value #DEFAULT_PARALLELISM} concurrent requests and without
+     * testing their connections. See {@link #createDataSources(Collection, int, boolean)}.
+     */
+    public List<DataSourceCreationResult> createDataSources(Collection<? extends DataSource> dataSources) throws IOException {
+        return createDataSources(dataSources, DEFAULT_PARALLELISM, false);
     }
 
     /**
@@ -96,23 +506,61 @@ public class RedashClient {
      * This function uses the data-source name to discover what needs to be updated.
      *
      * @param dataSource A data-source object which should contain all necessary information.
-     * @return boolean False if any of the argument's fields have null or empty value and True if entity successfully updated.
+     * @return boolean False if any of the argument's required options (see {@link DataSource#getRequiredOptions()}) have
+     * null or empty value or, when options are validated, if they do not match the data-source type; True if entity
+     * successfully updated.
      * @throws IOException If a data-source with this name could not be found or if the server is unavailable due to a connection error 
      *         or if API key is invalid or if {@code url} is not a valid HTTP or HTTPS URL.
      */
     public boolean updateDataSource(DataSource dataSource) throws IOException {
-        DataSource fromDataBase;
-        try {
-            fromDataBase = getDataSource(dataSource.getName());
-        } catch (IllegalArgumentException e) {
-            throw new IOException(e.getMessage());
-        }
-        if (dataSourceIsInValid(dataSource)) {
-            return false;
-        }
-        String url = baseUrl + DATA_SOURCES_URL_PREFIX + "/" + fromDataBase.getId() + API_KEY_URL_PARAM + apiKey;
-        post(url, new Gson().toJson(dataSource), CheckResponseStatus.YES);
-        return true;
+        return traced("updateDataSource", () -> {
+            DataSource fromDataBase;
+            try {
+                fromDataBase = getDataSource(dataSource.getName());
+            } catch (IllegalArgumentException e) {
+                throw new IOException(e.getMessage());
+            }
+            if (dataSourceIsInValid(dataSource)
+                    || validateOptions && !getDataSourceTypes().validate(dataSource).isEmpty()) {
+                return false;
+            }
+            String url = routes().dataSource(fromDataBase.getId());
+            post(url, GSON.toJson(dataSource));
+            schemas.invalidate(fromDataBase.getId());
+            return true;
+        });
+    }
+
+    /**
+     * @return The data-source types supported by the server with the schemas of their options. They are downloaded
+     * once and then kept for the lifetime of this client.
+     * @throws IOException If the server is unavailable due to a connection error or if API key is invalid or
+     *         if {@code url} is not a valid HTTP or HTTPS URL.
+     */
+    public DataSourceTypeRegistry getDataSourceTypes() throws IOException {
+        return traced("getDataSourceTypes", () -> {
+            while (true) {
+                CompletableFuture<DataSourceTypeRegistry> types = dataSourceTypes.get();
+                if (types != null) {
+                    // Concurrent callers wait for the download in progress without holding a monitor
+                    return await(types);
+                }
+                CompletableFuture<DataSourceTypeRegistry> download = new CompletableFuture<>();
+                if (dataSourceTypes.compareAndSet(null, download)) {
+                    try {
+                        Type listType = new TypeToken<ArrayList<DataSourceType>>() {}.getType();
+                        List<DataSourceType> list = GSON.fromJson(get(routes().dataSourceTypes()), listType);
+                        DataSourceTypeRegistry registry = new DataSourceTypeRegistry(list);
+                        download.complete(registry);
+                        return registry;
+                    } catch (IOException | RuntimeException e) {
+                        dataSourceTypes.compareAndSet(download, null);
+                        download.completeExceptionally(e);
+                        throw e;
+                    }
+                }
+            }
+        });
     }
 
     /**
@@ -121,9 +569,11 @@ public class RedashClient {
      *         if {@code url} is not a valid HTTP or HTTPS URL.
      */
     public List<DataSource> getDataSources() throws IOException {
-        String url = baseUrl + DATA_SOURCES_URL_PREFIX + API_KEY_URL_PARAM + apiKey;
-        Type listType = new TypeToken<ArrayList<DataSource>>() {}.getType();
-        return new Gson().fromJson(get(url, CheckResponseStatus.YES), listType);
+        return traced("getDataSources", () -> {
+            String url = routes().dataSources();
+            Type listType = new TypeToken<ArrayList<DataSource>>() {}.getType();
+            return GSON.fromJson(get(url), listType);
+        });
     }
 
     /**
@@ -136,16 +586,19 @@ public class RedashClient {
      *         if {@code url} is not a valid HTTP or HTTPS URL.
      */
     public boolean deleteDataSource(int dataSourceId) throws IOException {
-        String url = baseUrl + DATA_SOURCES_URL_PREFIX + "/" + dataSourceId + API_KEY_URL_PARAM + apiKey;
-        try {
-            delete(url, CheckResponseStatus.YES);
-        } catch (IOException e) {
-            if ((MESSAGE_INTERNAL_SERVER_ERROR.toLowerCase()).equals(e.getMessage().toLowerCase())) {
-                return false;
+        return traced("deleteDataSource", () -> {
+            String url = routes().dataSource(dataSourceId);
+            schemas.invalidate(dataSourceId);
+            try {
+                delete(url);
+            } catch (RedashNotFoundException | RedashServerException e) {
+                if (isMissingEntity(e)) {
+                    return false;
+                }
+                throw e;
             }
-            throw new IOException(e.getMessage());
-        }
-        return true;
+            return true;
+        });
     }
 
     /**
@@ -154,19 +607,27 @@ public class RedashClient {
      * @param group A group object which should contain all necessary information.
      * @return int Id of the successfully created group. In this case object that was transferred as argument
      * receives that id.
-     * @throws IllegalArgumentException If a user-group with the provided name already exists.
+     * @throws IllegalArgumentException If a user-group with the provided name already exists. Redash itself does not
+     *         enforce unique group names, so this check is skipped in {@link MutationMode#OPTIMISTIC} mode.
      * @throws IOException If the server is unavailable due to a connection error or if API key is invalid or 
      *         if {@code url} is not a valid HTTP or HTTPS URL.
      */
     public int createUserGroup(Group group) throws IOException {
-        if (isEntityAlreadyExists(getUserGroups(), group.getName())) {
-            throw new IllegalArgumentException(USER_GROUP_ALREADY_EXISTS);
-        }
-        String url = baseUrl + GROUPS_URL_PREFIX + API_KEY_URL_PARAM + apiKey;
-        String returnValue = post(url, new Gson().toJson(group), CheckResponseStatus.YES);
-        int id = getIdFromJson(returnValue);
-        group.setId(id);
-        return id;
+        return traced("createUserGroup", () -> {
+            String url = routes().groups();
+            String returnValue;
+            if (mutationMode == MutationMode.OPTIMISTIC) {
+                returnValue = postNewEntity(url, GSON.toJson(group), USER_GROUP_ALREADY_EXISTS);
+            } else {
+                if (isEntityAlreadyExists(getUserGroups(), group.getName())) {
+                    throw new IllegalArgumentException(USER_GROUP_ALREADY_EXISTS);
+                }
+                returnValue = post(url, GSON.toJson(group));
+            }
+            int id = getIdFromJson(returnValue);
+            group.setId(id);
+            return id;
+        });
     }
 
     /**
@@ -175,19 +636,26 @@ public class RedashClient {
      * @param userId The id of the the user to add to the group.
      * @param groupId The id of the group to add the user to.
      * @return boolean False if specified user-group already contains specified user, True if not and user was added.
+     * In {@link MutationMode#OPTIMISTIC} mode True means that Redash accepted the request.
      * @throws IllegalArgumentException If either the user or user-group does not exist.
      * @throws IOException If the server is unavailable due to a connection error or if API key is invalid or 
      *         if {@code url} is not a valid HTTP or HTTPS URL.
      */
     public boolean addUserToGroup(int userId, int groupId) throws IOException {
-        checkIfEntityExists(User.class, userId);
-        Group group = getWithUsersAndDataSources(groupId);
-        if (group.getUsers().stream().anyMatch(u -> u.getId() == userId)) {
-            return false;
-        }
-        String url = baseUrl + GROUPS_URL_PREFIX + "/" + groupId + MEMBERS_URL_PREFIX + API_KEY_URL_PARAM + apiKey;
-        post(url, new JSONObject().put(USER_ID, userId).toString(), CheckResponseStatus.YES);
-        return true;
+        return traced("addUserToGroup", () -> {
+            String url = routes().groupMembers(groupId);
+            if (mutationMode == MutationMode.OPTIMISTIC) {
+                return isMutationApplied(TransportRequest.post(url, headers, toJson(USER_ID, userId)),
+                        User.class, userId);
+            }
+            checkIfEntityExists(User.class, userId);
+            Group group = getWithUsersAndDataSources(groupId);
+            if (group.getUsers().stream().anyMatch(u -> u.getId() == userId)) {
+                return false;
+            }
+            post(url, toJson(USER_ID, userId));
+            return true;
+        });
     }
 
     /**
@@ -196,19 +664,26 @@ public class RedashClient {
      * @param dataSourceId The id of the data-source to add to the group.
      * @param groupId The id of the group to add the data-source to.
      * @return boolean False if the data-source is already attached to the group, True if not and data-source was added.
+     * In {@link MutationMode#OPTIMISTIC} mode False is returned only if Redash rejected the duplicate attachment.
      * @throws IllegalArgumentException If either the data-source or user-group does not exist.
      * @throws IOException If the server is unavailable due to a connection error or if API key is invalid or 
      *         if {@code url} is not a valid HTTP or HTTPS URL.
      */
     public boolean addDataSourceToGroup(int dataSourceId, int groupId) throws IOException {
-        checkIfEntityExists(DataSource.class, dataSourceId);
-        Group group = getWithUsersAndDataSources(groupId);
-        if (group.getDataSources().stream().anyMatch(ds -> ds.getId() == dataSourceId)) {
-            return false;
-        }
-        String url = baseUrl + GROUPS_URL_PREFIX + "/" + groupId + DATA_SOURCES_URL_PREFIX + API_KEY_URL_PARAM + apiKey;
-        post(url, new JSONObject().put(DATA_SOURCE_ID, dataSourceId).toString(), CheckResponseStatus.YES);
-        return true;
+        return traced("addDataSourceToGroup", () -> {
+            String url = routes().groupDataSources(groupId);
+            if (mutationMode == MutationMode.OPTIMISTIC) {
+                return isMutationApplied(TransportRequest.post(url, headers,
+                        toJson(DATA_SOURCE_ID, dataSourceId)), DataSource.class, dataSourceId);
+            }
+            checkIfEntityExists(DataSource.class, dataSourceId);
+            Group group = getWithUsersAndDataSources(groupId);
+            if (group.getDataSources().stream().anyMatch(ds -> ds.getId() == dataSourceId)) {
+                return false;
+            }
+            post(url, toJson(DATA_SOURCE_ID, dataSourceId));
+            return true;
+        });
     }
 
     /**
@@ -217,19 +692,25 @@ public class RedashClient {
      * @param userId The id of the user to be removed.
      * @param groupId The id of the group to remove the user from.
      * @return boolean False if user is not a member of the group, True if it is and was removed.
+     * In {@link MutationMode#OPTIMISTIC} mode False is returned only if Redash rejected the removal.
      * @throws IllegalArgumentException If either the user or user-group does not exist.
      * @throws IOException If the server is unavailable due to a connection error or if API key is invalid or 
      *         if {@code url} is not a valid HTTP or HTTPS URL.
      */
     public boolean removeUserFromGroup(int userId, int groupId) throws IOException {
-        checkIfEntityExists(User.class, userId);
-        Group group = getWithUsersAndDataSources(groupId);
-        if (group.getUsers().stream().noneMatch(u -> u.getId() == userId)) {
-            return false;
-        }
-        String url = baseUrl + GROUPS_URL_PREFIX + "/" + groupId + MEMBERS_URL_PREFIX + "/" + userId + API_KEY_URL_PARAM + apiKey;
-        delete(url, CheckResponseStatus.YES);
-        return true;
+        return traced("removeUserFromGroup", () -> {
+            String url = routes().groupMember(groupId, userId);
+            if (mutationMode == MutationMode.OPTIMISTIC) {
+                return isMutationApplied(TransportRequest.delete(url, headers), User.class, userId);
+            }
+            checkIfEntityExists(User.class, userId);
+            Group group = getWithUsersAndDataSources(groupId);
+            if (group.getUsers().stream().noneMatch(u -> u.getId() == userId)) {
+                return false;
+            }
+            delete(url);
+            return true;
+        });
     }
 
     /**
@@ -238,19 +719,25 @@ public class RedashClient {
      * @param dataSourceId The id of the data-source to be removed.
      * @param groupId The id of the group to remove the data-source from.
      * @return boolean False if data-source is not attached to the group, True if it is and was removed.
+     * In {@link MutationMode#OPTIMISTIC} mode True means that Redash accepted the request.
      * @throws IllegalArgumentException If either the data-source or user-group does not exist.
      * @throws IOException If the server is unavailable due to a connection error or if API key is invalid or 
      *         if {@code url} is not a valid HTTP or HTTPS URL.
      */
     public boolean removeDataSourceFromGroup(int dataSourceId, int groupId) throws IOException {
-        checkIfEntityExists(DataSource.class, dataSourceId);
-        Group group = getWithUsersAndDataSources(groupId);
-        if (group.getDataSources().stream().noneMatch(ds -> ds.getId() == dataSourceId)) {
-            return false;
-        }
-        String url = baseUrl + GROUPS_URL_PREFIX + "/" + groupId + DATA_SOURCES_URL_PREFIX + "/" + dataSourceId + API_KEY_URL_PARAM + apiKey;
-        delete(url, CheckResponseStatus.YES);
-        return true;
+        return traced("removeDataSourceFromGroup", () -> {
+            String url = routes().groupDataSource(groupId, dataSourceId);
+            if (mutationMode == MutationMode.OPTIMISTIC) {
+                return isMutationApplied(TransportRequest.delete(url, headers), DataSource.class, dataSourceId);
+            }
+            checkIfEntityExists(DataSource.class, dataSourceId);
+            Group group = getWithUsersAndDataSources(groupId);
+            if (group.getDataSources().stream().noneMatch(ds -> ds.getId() == dataSourceId)) {
+                return false;
+            }
+            delete(url);
+            return true;
+        });
     }
 
     /**
@@ -261,9 +748,13 @@ public class RedashClient {
      *         if {@code url} is not a valid HTTP or HTTPS URL.
      */
     public List<Group> getUserGroups() throws IOException {
-        String url = baseUrl + GROUPS_URL_PREFIX + API_KEY_URL_PARAM + apiKey;
-        Type listType = new TypeToken<ArrayList<Group>>() {}.getType();
-        return new Gson().fromJson(get(url, CheckResponseStatus.YES), listType);
+        return traced("getUserGroups", () -> {
+            String url = routes().groups();
+            Type listType = new TypeToken<ArrayList<Group>>() {}.getType();
+            List<Group> groups = GSON.fromJson(get(url), listType);
+            groups.replaceAll(group -> new LazyGroup(group, this));
+            return groups;
+        });
     }
 
     /**
@@ -275,12 +766,18 @@ public class RedashClient {
      *         if {@code url} is not a valid HTTP or HTTPS URL.
      */
     public boolean deleteUserGroup(int userGroupId) throws IOException {
-        String url = baseUrl + GROUPS_URL_PREFIX + "/" + userGroupId + API_KEY_URL_PARAM + apiKey;
-        String response = delete(url, CheckResponseStatus.NO);
-        if (!NULL.equals(response) && !MESSAGE_INTERNAL_SERVER_ERROR.equals(new JSONObject(response).getString(MESSAGE))) {
-            throw new IOException(response);
-        }
-        return NULL.equals(response);
+        return traced("deleteUserGroup", () -> {
+            String url = routes().group(userGroupId);
+            try {
+                delete(url);
+            } catch (RedashNotFoundException | RedashServerException e) {
+                if (isMissingEntity(e)) {
+                    return false;
+                }
+                throw e;
+            }
+            return true;
+        });
     }
 
     /**
@@ -291,9 +788,11 @@ public class RedashClient {
      *         if {@code url} is not a valid HTTP or HTTPS URL.
      */
     public List<User> getUsers() throws IOException {
-        String url = baseUrl + USERS_URL_PREFIX + API_KEY_URL_PARAM + apiKey;
-        Type listType = new TypeToken<ArrayList<User>>() {}.getType();
-        return new Gson().fromJson(get(url, CheckResponseStatus.YES), listType);
+        return traced("getUsers", () -> {
+            String url = routes().users();
+            Type listType = new TypeToken<ArrayList<User>>() {}.getType();
+            return GSON.fromJson(get(url), listType);
+        });
     }
 
     /**
@@ -306,11 +805,13 @@ public class RedashClient {
      *         if {@code url} is not a valid HTTP or HTTPS URL.
      */
     public User getUser(String userName) throws IOException {
-        Optional<User> result = getUsers().stream().filter(e -> userName.equals(e.getName())).findFirst();
-        if (!result.isPresent()) {
-            throw new IllegalArgumentException(USER_DOES_NOT_EXIST);
-        }
-        return result.get();
+        return traced("getUser", () -> {
+            Optional<User> result = getUsers().stream().filter(e -> userName.equals(e.getName())).findFirst();
+            if (!result.isPresent()) {
+                throw new IllegalArgumentException(USER_DOES_NOT_EXIST);
+            }
+            return result.get();
+        });
     }
 
     /**
@@ -323,11 +824,13 @@ public class RedashClient {
      *         if {@code url} is not a valid HTTP or HTTPS URL.
      */
     public DataSource getDataSource(String dataSourceName) throws IOException {
-        Optional<DataSource> result = getDataSources().stream().filter(e -> dataSourceName.equals(e.getName())).findFirst();
-        if (!result.isPresent()) {
-            throw new IllegalArgumentException(DATA_SOURCE_DOES_NOT_EXIST);
-        }
-        return getDataSourceById(result.get().getId());
+        return traced("getDataSource", () -> {
+            Optional<DataSource> result = getDataSources().stream().filter(e -> dataSourceName.equals(e.getName())).findFirst();
+            if (!result.isPresent()) {
+                throw new IllegalArgumentException(DATA_SOURCE_DOES_NOT_EXIST);
+            }
+            return getDataSourceById(result.get().getId());
+        });
     }
 
     /**
@@ -340,9 +843,10 @@ public class RedashClient {
      *         if {@code url} is not a valid HTTP or HTTPS URL.
      */
     public Group getGroupById(int userGroupId) throws IOException {
-        String url = baseUrl + GROUPS_URL_PREFIX + "/" + userGroupId + API_KEY_URL_PARAM + apiKey;
-        String returnValue = get(url, CheckResponseStatus.NO);
-        return resultResolver(Group.class, returnValue);
+        return traced("getGroupById", () -> {
+            String url = routes().group(userGroupId);
+            return new LazyGroup(getEntity(url, Group.class), this);
+        });
     }
 
     /**
@@ -355,9 +859,10 @@ public class RedashClient {
      *         if {@code url} is not a valid HTTP or HTTPS URL.
      */
     public User getUserById(int userId) throws IOException {
-        String url = baseUrl + USERS_URL_PREFIX + "/" + userId + API_KEY_URL_PARAM + apiKey;
-        String returnValue = get(url, CheckResponseStatus.NO);
-        return resultResolver(User.class, returnValue);
+        return traced("getUserById", () -> {
+            String url = routes().user(userId);
+            return getEntity(url, User.class);
+        });
     }
 
     /**
@@ -370,13 +875,209 @@ public class RedashClient {
      *         if {@code url} is not a valid HTTP or HTTPS URL.
      */
     public DataSource getDataSourceById(int id) throws IOException {
-        String url = baseUrl + DATA_SOURCES_URL_PREFIX + "/" + id + API_KEY_URL_PARAM + apiKey;
-        String returnValue = get(url, CheckResponseStatus.NO);
-        JSONObject jsonObject = new JSONObject(returnValue);
-        if (jsonObject.has(MESSAGE) && MESSAGE_INTERNAL_SERVER_ERROR.equals(jsonObject.getString(MESSAGE))) {
-            throw new IllegalArgumentException(MESSAGE_INTERNAL_SERVER_ERROR);
-        }
-        return new Gson().fromJson(returnValue, DataSource.class);
+        return traced("getDataSourceById", () -> {
+            String url = routes().dataSource(id);
+            String returnValue;
+            try {
+                returnValue = get(url);
+            } catch (RedashNotFoundException | RedashServerException e) {
+                if (isMissingEntity(e)) {
+                    throw new IllegalArgumentException(MESSAGE_INTERNAL_SERVER_ERROR);
+                }
+                throw e;
+            }
+            return GSON.fromJson(returnValue, DataSource.class);
+        });
+    }
+
+    /**
+     * Returns the tables and columns of a data-source. Redash has to query the data-source itself for these, so
+     * schemas are cached per data-source: concurrent callers share one download, and a schema older than the
+     * configured time-to-live is still returned while a background request with {@code refresh=true} replaces it.
+     *
+     * @param dataSourceId The id of the data-source.
+     * @return The schema, possibly stale by up to one background refresh.
+     * @throws IOException If the data-source does not exist or does not support schemas, if the server is
+     *         unavailable due to a connection error or if API key is invalid or if {@code url} is not a valid
+     *         HTTP or HTTPS URL.
+     */
+    public DataSourceSchema getDataSourceSchema(int dataSourceId) throws IOException {
+        return await(getDataSourceSchemaAsync(dataSourceId));
+    }
+
+    /**
+     * Non-blocking variant of {@link #getDataSourceSchema(int)}. The future fails with an {@link IOException}.
+     */
+    public CompletableFuture<DataSourceSchema> getDataSourceSchemaAsync(int dataSourceId) {
+        return schemas.get(dataSourceId);
+    }
+
+    /**
+     * Downloads the schema of a data-source with {@code refresh=true}, bypassing both this client's cache and the
+     * one of Redash, and caches the result.
+     *
+     * @throws IOException See {@link #getDataSourceSchema(int)}.
+     */
+    public DataSourceSchema refreshDataSourceSchema(int dataSourceId) throws IOException {
+        return await(schemas.refresh(dataSourceId));
+    }
+
+    /**
+     * Drops the cached schema of a data-source, e.g. after its tables were changed outside of Redash.
+     */
+    public void invalidateDataSourceSchema(int dataSourceId) {
+        schemas.invalidate(dataSourceId);
+    }
+
+    /**
+     * Executes a query and waits for its result. If a {@link QueryResultCache} is configured, a cached result no
+     * older than {@code maxAge} is returned instead, and concurrent calls for the same data-source, query and
+     * parameters share one execution. Redash itself also returns a stored result no older than {@code maxAge}.
+     *
+     * @param dataSourceId The id of the data-source to run the query on.
+     * @param query The query text. Parameters are written as {@code {{name}}} and replaced with the string form of
+     *              their value before the query is sent, as the Redash web application does; values are not escaped.
+     * @param parameters The parameter values; may be empty.
+     * @param maxAge The maximum age of a stored result in seconds: 0 always executes the query and -1 accepts a
+     *               result of any age.
+     * @return The result of the query.
+     * @throws IllegalArgumentException If the query uses a parameter which has no value.
+     * @throws IOException If the query failed or was cancelled, if the server is unavailable due to a connection
+     *         error or if API key is invalid or if {@code url} is not a valid HTTP or HTTPS URL.
+     */
+    public QueryResult executeQuery(int dataSourceId, String query, Map<String, ?> parameters, int maxAge)
+            throws IOException {
+        return traced("executeQuery", () -> {
+            String text = applyParameters(query, parameters);
+            if (queryResults == null) {
+                return runQuery(dataSourceId, text, maxAge);
+            }
+            // Keyed by the text sent, so that spacing inside the parameter placeholders does not matter
+            return queryResults.get(QueryKey.of(dataSourceId, text, parameters), maxAge,
+                    () -> runQuery(dataSourceId, text, maxAge));
+        });
+    }
+
+    /**
+     * Executes a query without parameters, see {@link #executeQuery(int, String, Map, int)}.
+     */
+    public QueryResult executeQuery(int dataSourceId, String query, int maxAge) throws IOException {
+        return executeQuery(dataSourceId, query, Collections.emptyMap(), maxAge);
+    }
+
+    /**
+     * Executes a saved query once per parameter set. At most {@code parallelism} executions are running at any
+     * time; the status of all running executions is polled from the client's single poller thread, and results
+     * are returned as they complete, so one slow execution does not hold back the others.
+     *
+     * The returned stream is lazy: parameter sets are taken from {@code parameterSets} only as results are
+     * consumed, and reading the next result blocks until an execution completes. Closing the stream cancels the
+     * executions still running.
+     *
+     * @param queryId The id of the saved query.
+     * @param parameterSets The parameter values of each execution, sent to Redash as {@code p_<name>}.
+     * @param parallelism The maximum number of executions running at the same time.
+     * @return One result per parameter set in completion order. Failed executions are reported, not thrown.
+     */
+    public Stream<QueryBatchResult> executeQueryBatch(int queryId, Stream<? extends Map<String, ?>> parameterSets,
+                                                      int parallelism) {
+        Iterator<? extends Map<String, ?>> input = parameterSets.iterator();
+        BlockingQueue<QueryBatchResult> completed = new LinkedBlockingQueue<>();
+        Set<String> runningJobs = ConcurrentHashMap.newKeySet();
+        int limit = Math.max(1, parallelism);
+        Spliterator<QueryBatchResult> results = new Spliterators.AbstractSpliterator<QueryBatchResult>(
+                Long.MAX_VALUE, Spliterator.NONNULL) {
+            private long submitted;
+            private int inFlight;
+
+            @Override
+            public boolean tryAdvance(Consumer<? super QueryBatchResult> action) {
+                while (inFlight < limit && input.hasNext()) {
+                    Map<String, ?> parameters = input.next();
+                    long index = submitted++;
+                    inFlight++;
+                    refreshQuery(queryId, parameters, runningJobs).whenComplete((result, error) -> completed.add(
+                            error == null ? QueryBatchResult.succeeded(index, parameters, result)
+                                    : QueryBatchResult.failed(index, parameters, unwrap(error))));
+                }
+                if (inFlight == 0) {
+                    return false;
+                }
+                try {
+                    action.accept(completed.take());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new UncheckedIOException(new InterruptedIOException(e.getMessage()));
+                }
+                inFlight--;
+                return true;
+            }
+        };
+        return StreamSupport.stream(results, false).onClose(() -> {
+            parameterSets.close();
+            for (String jobId : runningJobs) {
+                jobPoller.forget(jobId);
+                cancelJob(jobId);
+            }
+        });
+    }
+
+    /**
+     * Executes a saved query for each parameter set with up to {@value #DEFAULT_PARALLELISM} executions running
+     * at the same time. See {@link #executeQueryBatch(int, Stream, int)}.
+     */
+    public Stream<QueryBatchResult> executeQueryBatch(int queryId, Stream<? extends Map<String, ?>> parameterSets) {
+        return executeQueryBatch(queryId, parameterSets, DEFAULT_PARALLELISM);
+    }
+
+    /**
+     * Publishes all users, see {@link #getUsers()}. The request is sent for each subscriber when it subscribes and
+     * users are parsed from the response as the subscriber requests them. A failed request is signalled with
+     * {@link Flow.Subscriber#onError}.
+     */
+    public Flow.Publisher<User> publishUsers() {
+        return new JsonArrayPublisher<>(() -> listAsync(ChangeEvent.Kind.USER),
+                reader -> GSON.fromJson(reader, User.class));
+    }
+
+    /**
+     * Publishes all data-sources, see {@link #getDataSources()} and {@link #publishUsers()}.
+     */
+    public Flow.Publisher<DataSource> publishDataSources() {
+        return new JsonArrayPublisher<>(() -> listAsync(ChangeEvent.Kind.DATA_SOURCE),
+                reader -> GSON.fromJson(reader, DataSource.class));
+    }
+
+    /**
+     * Publishes all user-groups, see {@link #getUserGroups()} and {@link #publishUsers()}.
+     */
+    public Flow.Publisher<Group> publishUserGroups() {
+        return new JsonArrayPublisher<>(() -> listAsync(ChangeEvent.Kind.GROUP),
+                reader -> new LazyGroup(GSON.fromJson(reader, Group.class), this));
+    }
+
+    /**
+     * Executes a query and publishes the rows of its result, see {@link #executeQuery(int, String, Map, int)}.
+     * The query is executed for each subscriber when it subscribes, without blocking a thread while it runs, and
+     * rows are parsed from the result as the subscriber requests them. The {@link QueryResultCache} is not used.
+     *
+     * @return The rows keyed by column name, in the order of the result. A failed execution is signalled with
+     * {@link Flow.Subscriber#onError}.
+     * @throws IllegalArgumentException If the query uses a parameter which has no value.
+     */
+    public Flow.Publisher<Map<String, Object>> publishQueryResultRows(int dataSourceId, String query,
+                                                                     Map<String, ?> parameters, int maxAge) {
+        String text = applyParameters(query, parameters);
+        return new JsonArrayPublisher<>(() -> runQueryAsync(dataSourceId, text, maxAge),
+                reader -> GSON.fromJson(reader, ROW_TYPE), QUERY_RESULT, DATA, ROWS);
+    }
+
+    /**
+     * Executes a query without parameters and publishes its rows, see
+     * {@link #publishQueryResultRows(int, String, Map, int)}.
+     */
+    public Flow.Publisher<Map<String, Object>> publishQueryResultRows(int dataSourceId, String query, int maxAge) {
+        return publishQueryResultRows(dataSourceId, query, Collections.emptyMap(), maxAge);
     }
 
     /**
@@ -389,93 +1090,542 @@ public class RedashClient {
      *         if {@code url} is not a valid HTTP or HTTPS URL.
      */
     public Group getWithUsersAndDataSources(int userGroupId) throws IOException {
-        Group group = getGroupById(userGroupId);
-        String dataSourcesUrl = baseUrl + GROUPS_URL_PREFIX + "/" + userGroupId + DATA_SOURCES_URL_PREFIX + API_KEY_URL_PARAM + apiKey,
-                usersUrl = baseUrl + GROUPS_URL_PREFIX + "/" + userGroupId + MEMBERS_URL_PREFIX + API_KEY_URL_PARAM + apiKey;
-        Type userListType = new TypeToken<ArrayList<User>>() {}.getType();
-        Type dataSourceListType = new TypeToken<ArrayList<DataSource>>() {}.getType();
-        String usersReturnValue = get(usersUrl, CheckResponseStatus.YES);
-        String dataSourcesReturnValue = get(dataSourcesUrl, CheckResponseStatus.YES);
-        group.setUsers(new Gson().fromJson(usersReturnValue, userListType));
-        group.setDataSources(new Gson().fromJson(dataSourcesReturnValue, dataSourceListType));
-        return group;
+        return traced("getWithUsersAndDataSources", () -> {
+            String dataSourcesUrl = routes().groupDataSources(userGroupId),
+                    usersUrl = routes().groupMembers(userGroupId);
+            Type userListType = new TypeToken<ArrayList<User>>() {}.getType();
+            Type dataSourceListType = new TypeToken<ArrayList<DataSource>>() {}.getType();
+            Group group;
+            String usersReturnValue, dataSourcesReturnValue;
+            if (executor == null) {
+                group = getGroupById(userGroupId);
+                usersReturnValue = get(usersUrl);
+                dataSourcesReturnValue = get(dataSourcesUrl);
+            } else {
+                Future<Group> groupFuture = executor.submit(inCurrentOperation(() -> getGroupById(userGroupId)));
+                Future<String> usersFuture = executor.submit(inCurrentOperation(() -> get(usersUrl)));
+                Future<String> dataSourcesFuture = executor.submit(inCurrentOperation(() -> get(dataSourcesUrl)));
+                try {
+                    // The group's own response decides whether it exists, so it is awaited first.
+                    group = await(groupFuture);
+                    usersReturnValue = await(usersFuture);
+                    dataSourcesReturnValue = await(dataSourcesFuture);
+                } finally {
+                    usersFuture.cancel(true);
+                    dataSourcesFuture.cancel(true);
+                }
+            }
+            group.setUsers(GSON.fromJson(usersReturnValue, userListType));
+            group.setDataSources(GSON.fromJson(dataSourcesReturnValue, dataSourceListType));
+            return group;
+        });
+    }
+
+    /**
+     * Downloads the members of a group, see {@link Group#loadUsers()}.
+     */
+    List<User> getGroupUsers(int userGroupId) throws IOException {
+        return traced("getGroupUsers", () -> {
+            Type listType = new TypeToken<ArrayList<User>>() {}.getType();
+            return GSON.fromJson(get(routes().groupMembers(userGroupId)), listType);
+        });
+    }
+
+    /**
+     * Downloads the data-sources of a group, see {@link Group#loadDataSources()}.
+     */
+    List<DataSource> getGroupDataSources(int userGroupId) throws IOException {
+        return traced("getGroupDataSources", () -> {
+            Type listType = new TypeToken<ArrayList<DataSource>>() {}.getType();
+            return GSON.fromJson(get(routes().groupDataSources(userGroupId)), listType);
+        });
+    }
+
+    /**
+     * Downloads all users, data-sources and user-groups with the members and data-sources of every group, with up to
+     * {@value #DEFAULT_PARALLELISM} concurrent requests. See {@link #getAccessMatrix(int)}.
+     */
+    public AccessMatrix getAccessMatrix() throws IOException {
+        return getAccessMatrix(DEFAULT_PARALLELISM);
+    }
+
+    /**
+     * Downloads all users, data-sources and user-groups with the members and data-sources of every group.
+     *
+     * The lists of users, data-sources and groups are requested together, then the members and data-sources of all
+     * groups are requested without waiting for earlier responses, with at most {@code parallelism} requests in
+     * flight, instead of the 1 + 3N sequential requests of calling {@link #getWithUsersAndDataSources(int)} for
+     * every group.
+     *
+     * @param parallelism The maximum number of concurrent requests for group members and data-sources.
+     * @return A snapshot of all memberships.
+     * @throws IOException If any request failed, e.g. because the server is unavailable due to a connection error,
+     *         or if API key is invalid or if {@code url} is not a valid HTTP or HTTPS URL.
+     */
+    public AccessMatrix getAccessMatrix(int parallelism) throws IOException {
+        return traced("getAccessMatrix", () -> {
+            if (parallelism < 1) {
+                throw new IllegalArgumentException("parallelism must be positive.");
+            }
+            CompletableFuture<String> usersFuture = listAsync(ChangeEvent.Kind.USER);
+            CompletableFuture<String> dataSourcesFuture = listAsync(ChangeEvent.Kind.DATA_SOURCE);
+            CompletableFuture<String> groupsFuture = listAsync(ChangeEvent.Kind.GROUP);
+            List<CompletableFuture<String>> pending = new ArrayList<>();
+            try {
+                AccessMatrix.AccessMatrixBuilder builder = new AccessMatrix.AccessMatrixBuilder();
+                JsonArray groups = GSON.fromJson(await(groupsFuture), JsonArray.class);
+                Semaphore permits = new Semaphore(parallelism);
+                for (int i = 0; i < groups.size(); i++) {
+                    JsonObject group = groups.get(i).getAsJsonObject();
+                    int groupId = group.get(ID).getAsInt();
+                    builder.group(groupId, optString(group, NAME));
+                    pending.add(callAsyncLimited(permits,
+                            routes -> TransportRequest.get(routes.groupMembers(groupId), headers)));
+                    pending.add(callAsyncLimited(permits,
+                            routes -> TransportRequest.get(routes.groupDataSources(groupId), headers)));
+                }
+                forEachEntity(await(usersFuture), builder::user);
+                forEachEntity(await(dataSourcesFuture), builder::dataSource);
+                for (int i = 0; i < groups.size(); i++) {
+                    int groupId = groups.get(i).getAsJsonObject().get(ID).getAsInt();
+                    forEachEntity(await(pending.get(2 * i)), (id, name) -> builder.member(groupId, id, name));
+                    forEachEntity(await(pending.get(2 * i + 1)), (id, name) -> builder.attached(groupId, id, name));
+                }
+                return builder.build();
+            } finally {
+                usersFuture.cancel(true);
+                dataSourcesFuture.cancel(true);
+                pending.forEach(future -> future.cancel(true));
+            }
+        });
+    }
+
+    private int postDataSource(DataSource dataSource) throws IOException {
+        // Redash rejects duplicate names itself, so this also covers names created since they were last checked
+        String response = postNewEntity(routes().dataSources(), GSON.toJson(dataSource), DATA_SOURCE_ALREADY_EXISTS);
+        int id = getIdFromJson(response);
+        dataSource.setId(id);
+        return id;
     }
 
     private boolean dataSourceIsInValid(DataSource dataSource) {
         return  dataSource.getName() == null || dataSource.getName().isEmpty()
-                || dataSource.getHost() == null || dataSource.getHost().isEmpty()
-                || dataSource.getPort() == 0
-                || dataSource.getUser() == null || dataSource.getUser().isEmpty()
-                || dataSource.getPassword() == null || dataSource.getPassword().isEmpty()
-                || dataSource.getDbName() == null || dataSource.getDbName().isEmpty();
+                || !dataSource.getMissingOptions().isEmpty();
     }
 
     private boolean isEntityAlreadyExists(List<? extends BaseEntity> list, String name) {
         return list.stream().anyMatch(e -> name.equals(e.getName()));
     }
 
-    private int getIdFromJson(String json) throws JSONException {
-        return new JSONObject(json).getInt(ID);
+    private int getIdFromJson(String json) {
+        return parseObject(json).get(ID).getAsInt();
+    }
+
+    private <T extends BaseEntity> T getEntity(String url, Class<T> type) throws IOException {
+        try {
+            return GSON.fromJson(get(url), type);
+        } catch (RedashNotFoundException | RedashServerException e) {
+            if (isMissingEntity(e)) {
+                throw new IllegalArgumentException(e.getResponseBody());
+            }
+            throw e;
+        }
     }
 
-    private <T extends BaseEntity> T resultResolver(Class<T> type, String returnValue) throws IOException {
-        JSONObject jsonObject = new JSONObject(returnValue);
-        if (jsonObject.has(AUTH_TYPE) || jsonObject.has(CREATED_AT) || jsonObject.has("name")) {
-            return new Gson().fromJson(returnValue, type);
+    private String postNewEntity(String url, String json, String alreadyExistsMessage) throws IOException {
+        try {
+            return post(url, json);
+        } catch (RedashConflictException e) {
+            throw new IllegalArgumentException(alreadyExistsMessage);
         }
-        if (jsonObject.getString(MESSAGE).startsWith(MESSAGE_URL_NOT_FOUND) ||
-                jsonObject.getString(MESSAGE).equals(MESSAGE_INTERNAL_SERVER_ERROR)) {
-            throw new IllegalArgumentException(returnValue);
+    }
+
+    /**
+     * Sends a membership change without checking the current state first, as done in
+     * {@link MutationMode#OPTIMISTIC} mode.
+     *
+     * @param memberType The type of the user or data-source the change is about.
+     * @param memberId The id of the user or data-source the change is about.
+     * @return False if Redash rejected the change as a duplicate addition or the removal of a non-member.
+     * @throws IllegalArgumentException If the user-group or the user or data-source does not exist.
+     */
+    private boolean isMutationApplied(TransportRequest request, Class<? extends BaseEntity> memberType,
+                                      int memberId) throws IOException {
+        try {
+            performCall(request);
+        } catch (RedashNotFoundException e) {
+            throw new IllegalArgumentException(e.getResponseBody());
+        } catch (RedashServerException e) {
+            if (e.getStatusCode() == 500) {
+                // Redash answers duplicate and missing members alike, so only a rejection costs a lookup
+                checkIfEntityExists(memberType, memberId);
+                return false;
+            }
+            throw e;
         }
-        throw new IOException(returnValue);
+        return true;
+    }
+
+    /**
+     * Redash 3 answers with a 404 for unknown routes and user-groups, but with a 500 when other entities looked up
+     * by id, such as data-sources, do not exist.
+     */
+    private static boolean isMissingEntity(RedashException e) {
+        return e instanceof RedashNotFoundException || e.getStatusCode() == 500;
+    }
+
+    private String post(String url, String json) throws IOException {
+        boolean compress = requestCompressionThreshold >= 0 && json.length() >= requestCompressionThreshold;
+        return this.performCall(TransportRequest.post(url, compress ? this.compressedHeaders : this.headers, json));
+    }
+
+    private String get(String url) throws IOException {
+        return this.performCall(TransportRequest.get(url, this.headers));
+    }
+
+    private String delete(String url) throws IOException {
+        return this.performCall(TransportRequest.delete(url, this.headers));
+    }
+
+    private QueryResult runQuery(int dataSourceId, String query, int maxAge) throws IOException {
+        String json = await(runQueryAsync(dataSourceId, query, maxAge));
+        return GSON.fromJson(parseObject(json).get(QUERY_RESULT), QueryResult.class);
     }
 
-    private String post(String url, String json, CheckResponseStatus checkResponseStatus) throws IOException {
-        validateURL(url);
-        RequestBody body = RequestBody.create(JSON, json);
-        Request request = new Request.Builder()
-                .url(url)
-                .post(body)
-                .headers(this.headers)
-                .build();
-        return this.performCall(request, checkResponseStatus);
+    private CompletableFuture<QueryResult> refreshQuery(int queryId, Map<String, ?> parameters, Set<String> runningJobs) {
+        return callAsync(routes -> TransportRequest.post(routes.queryRefresh(queryId, parameters), headers, "{}"))
+                .thenCompose(json -> {
+                    JsonObject response = parseObject(json);
+                    if (response.has(QUERY_RESULT)) {
+                        return CompletableFuture.completedFuture(
+                                GSON.fromJson(response.get(QUERY_RESULT), QueryResult.class));
+                    }
+                    Job job = GSON.fromJson(response.get(JOB), Job.class);
+                    runningJobs.add(job.getId());
+                    return jobPoller.await(job)
+                            .whenComplete((done, error) -> runningJobs.remove(job.getId()))
+                            .thenCompose(this::queryResultOf);
+                });
     }
 
-    private String get(String url, CheckResponseStatus checkResponseStatus) throws IOException {
-        validateURL(url);
-        Request request = new Request.Builder()
-                .url(url)
-                .get()
-                .headers(this.headers)
-                .build();
-        return this.performCall(request, checkResponseStatus);
+    private CompletableFuture<Job> fetchJob(String jobId) {
+        return callAsync(routes -> TransportRequest.get(routes.job(jobId), headers))
+                .thenApply(json -> GSON.fromJson(parseObject(json).get(JOB), Job.class));
     }
 
-    private String delete(String url, CheckResponseStatus checkResponseStatus) throws IOException {
-        validateURL(url);
-        Request request = new Request.Builder()
-                .url(url)
-                .delete()
-                .headers(this.headers)
-                .build();
-        return this.performCall(request, checkResponseStatus);
+    private void cancelJob(String jobId) {
+        callAsync(routes -> TransportRequest.delete(routes.job(jobId), headers));
     }
 
-    private String performCall(Request request, CheckResponseStatus checkResponseStatus) throws IOException {
-        try (Response response = client.newCall(request).execute()) {
-            if (checkResponseStatus == CheckResponseStatus.YES && !response.isSuccessful()) {
-                throw new IOException(anonymisedUrl(response.message()));
+    private CompletableFuture<QueryResult> queryResultOf(Job job) {
+        return queryResultBodyOf(job).thenApply(json ->
+                GSON.fromJson(parseObject(json).get(QUERY_RESULT), QueryResult.class));
+    }
+
+    /**
+     * Requests the list of users, user-groups or data-sources without parsing it.
+     */
+    CompletableFuture<String> listAsync(ChangeEvent.Kind kind) {
+        switch (kind) {
+            case USER:
+                return callAsync(routes -> TransportRequest.get(routes.users(), headers));
+            case GROUP:
+                return callAsync(routes -> TransportRequest.get(routes.groups(), headers));
+            default:
+                return callAsync(routes -> TransportRequest.get(routes.dataSources(), headers));
+        }
+    }
+
+    private CompletableFuture<String> queryResultBodyOf(Job job) {
+        if (job.getStatus() != Job.SUCCESS) {
+            return CompletableFuture.failedFuture(new IOException(
+                    job.getStatus() == Job.CANCELLED ? "Query execution was cancelled." : job.getError()));
+        }
+        return callAsync(routes -> TransportRequest.get(routes.queryResult(job.getQueryResultId()), headers));
+    }
+
+    /**
+     * Executes a query without blocking.
+     *
+     * @return A future completed with a body that has the result in its {@value #QUERY_RESULT} member.
+     */
+    private CompletableFuture<String> runQueryAsync(int dataSourceId, String query, int maxAge) {
+        JsonObject execution = new JsonObject();
+        execution.addProperty(DATA_SOURCE_ID, dataSourceId);
+        execution.addProperty(QUERY, query);
+        execution.addProperty(MAX_AGE, maxAge);
+        String body = execution.toString();
+        return callAsync(routes -> TransportRequest.post(routes.queryResults(), headers, body))
+                .thenCompose(json -> {
+                    Job job = jobOf(json);
+                    return job == null
+                            ? CompletableFuture.completedFuture(json)
+                            : jobPoller.await(job).thenCompose(this::queryResultBodyOf);
+                });
+    }
+
+    /**
+     * @return The job of a response to a query execution, or null if the response holds the result itself. Only the
+     * top-level member names are read, the result is skipped without being parsed into objects.
+     */
+    private static Job jobOf(String json) {
+        try (JsonReader reader = new JsonReader(new StringReader(json))) {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                if (JOB.equals(reader.nextName())) {
+                    return GSON.fromJson(reader, Job.class);
+                }
+                reader.skipValue();
+            }
+            return null;
+        } catch (IOException e) {
+            throw new CompletionException(e);
+        }
+    }
+
+    @FunctionalInterface
+    private interface RequestFactory {
+        TransportRequest create(Routes routes);
+    }
+
+    /**
+     * Sends a request asynchronously. The future fails with a {@link RedashException} for non-2xx responses, like
+     * synchronous calls.
+     */
+    private CompletableFuture<String> callAsync(RequestFactory requestFactory) {
+        TransportRequest request;
+        try {
+            request = withTraceparent(requestFactory.create(routes()));
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        return transport.executeAsync(request).thenApply(response -> {
+            if (!response.isSuccessful()) {
+                throw new CompletionException(RedashException.of(request, response));
             }
-            return response.body().string();
+            return response.getBody();
+        });
+    }
+
+    /**
+     * Like {@link #callAsync}, but first waits on the calling thread for one of the {@code permits}, which is
+     * returned once the response arrived.
+     */
+    private CompletableFuture<String> callAsyncLimited(Semaphore permits, RequestFactory requestFactory)
+            throws InterruptedIOException {
+        try {
+            permits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException(e.getMessage());
+        }
+        CompletableFuture<String> future = callAsync(requestFactory);
+        future.whenComplete((body, error) -> permits.release());
+        return future;
+    }
+
+    @FunctionalInterface
+    private interface EntityConsumer {
+        void accept(int id, String name);
+    }
+
+    private static void forEachEntity(String json, EntityConsumer consumer) {
+        for (JsonElement element : GSON.fromJson(json, JsonArray.class)) {
+            JsonObject entity = element.getAsJsonObject();
+            consumer.accept(entity.get(ID).getAsInt(), optString(entity, NAME));
+        }
+    }
+
+    private static JsonObject parseObject(String json) {
+        JsonObject jsonObject = GSON.fromJson(json, JsonObject.class);
+        if (jsonObject == null) {
+            throw new JsonParseException("Empty response body.");
+        }
+        return jsonObject;
+    }
+
+    /**
+     * @return The member as a string, or null if it is missing or null.
+     */
+    private static String optString(JsonObject json, String name) {
+        JsonElement member = json.get(name);
+        return member == null || member.isJsonNull() ? null : member.getAsString();
+    }
+
+    private static String toJson(String name, int value) {
+        JsonObject json = new JsonObject();
+        json.addProperty(name, value);
+        return json.toString();
+    }
+
+    private static Exception unwrap(Throwable error) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        return cause instanceof Exception ? (Exception) cause : new IOException(cause);
+    }
+
+    private static String applyParameters(String query, Map<String, ?> parameters) {
+        Matcher matcher = PARAMETER.matcher(query);
+        if (!matcher.find()) {
+            return query;
         }
+        StringBuilder text = new StringBuilder(query.length());
+        int end = 0;
+        do {
+            String name = matcher.group(1);
+            if (!parameters.containsKey(name)) {
+                throw new IllegalArgumentException("No value for query parameter " + name + ".");
+            }
+            text.append(query, end, matcher.start()).append(parameters.get(name));
+            end = matcher.end();
+        } while (matcher.find());
+        return text.append(query, end, query.length()).toString();
     }
 
-    private void validateURL(String url) throws IOException {
-        if (HttpUrl.parse(url) == null) throw new IOException("Incorrect URL. Please check it and try again");
+    private CompletableFuture<DataSourceSchema> loadDataSourceSchema(int dataSourceId, boolean refresh) {
+        return callAsync(routes -> TransportRequest.get(routes.dataSourceSchema(dataSourceId, refresh), headers))
+                .thenApply(RedashClient::parseSchema);
     }
 
-    private String anonymisedUrl(String message) {
-        return message.contains(apiKey) ? message.replace(apiKey, "XXX") : message;
+    private static DataSourceSchema parseSchema(String json) {
+        JsonObject jsonObject = parseObject(json);
+        if (jsonObject.has(ERROR)) {
+            JsonElement error = jsonObject.get(ERROR);
+            String message = error.isJsonObject()
+                    ? optString(error.getAsJsonObject(), MESSAGE)
+                    : optString(jsonObject, ERROR);
+            throw new CompletionException(new IOException(Objects.toString(message, "")));
+        }
+        DataSourceSchema.DataSourceSchemaBuilder builder = new DataSourceSchema.DataSourceSchemaBuilder();
+        for (JsonElement element : jsonObject.getAsJsonArray(SCHEMA)) {
+            JsonObject table = element.getAsJsonObject();
+            JsonArray columns = table.getAsJsonArray(COLUMNS);
+            List<String> names = new ArrayList<>(columns.size());
+            for (JsonElement column : columns) {
+                // Redash 3 lists plain names, later versions objects with a name and a type
+                names.add(column.isJsonObject() ? column.getAsJsonObject().get(NAME).getAsString() : column.getAsString());
+            }
+            builder.table(table.get(NAME).getAsString(), names);
+        }
+        return builder.build();
+    }
+
+    private String performCall(TransportRequest request) throws IOException {
+        TransportRequest traced = withTraceparent(request);
+        TransportResponse response = transport.execute(traced);
+        if (!response.isSuccessful()) {
+            throw RedashException.of(traced, response);
+        }
+        return response.getBody();
+    }
+
+    @FunctionalInterface
+    private interface TracedCall<T> {
+        T call() throws IOException;
+    }
+
+    /**
+     * Runs {@code call} as an operation of the tracer, if there is one.
+     */
+    private <T> T traced(String name, TracedCall<T> call) throws IOException {
+        if (tracer == null) {
+            return call.call();
+        }
+        Operation operation = tracer.startOperation(name);
+        try {
+            return call.call();
+        } catch (IOException | RuntimeException e) {
+            operation.setError(e);
+            throw e;
+        } finally {
+            operation.close();
+        }
+    }
+
+    private TransportRequest withTraceparent(TransportRequest request) {
+        Operation operation = tracer != null ? tracer.currentOperation() : null;
+        if (operation == null || !operation.isSampled()) {
+            return request;
+        }
+        return request.withHeader(RedashTracer.TRACEPARENT, operation.traceparent());
+    }
+
+    /**
+     * @return {@code task} running in the current operation, for tasks submitted to other threads.
+     */
+    private <T> Callable<T> inCurrentOperation(Callable<T> task) {
+        Operation operation = tracer != null ? tracer.currentOperation() : null;
+        return operation != null ? operation.wrap(task) : task;
+    }
+
+    private Routes routes() throws IOException {
+        if (routes == null) {
+            throw new IOException(MESSAGE_INCORRECT_URL);
+        }
+        return routes;
+    }
+
+    @FunctionalInterface
+    private interface Task<T, R> {
+        R apply(T item) throws IOException;
+    }
+
+    /**
+     * Applies {@code task} to every item with at most {@code parallelism} items in flight, on the client's executor
+     * or, for {@link ExecutionMode#CALLER_THREAD}, on a pool of platform threads which only lives for this call.
+     *
+     * @return The results in the order of {@code items}.
+     */
+    private <T, R> List<R> fanOut(List<T> items, int parallelism, Task<T, R> task) throws IOException {
+        if (items.isEmpty()) {
+            return Collections.emptyList();
+        }
+        int permits = Math.max(1, Math.min(parallelism, items.size()));
+        ExecutorService pool = executor != null ? executor : Executors.newFixedThreadPool(permits);
+        Semaphore inFlight = new Semaphore(permits);
+        List<Future<R>> futures = new ArrayList<>(items.size());
+        try {
+            for (T item : items) {
+                inFlight.acquire();
+                futures.add(pool.submit(inCurrentOperation(() -> {
+                    try {
+                        return task.apply(item);
+                    } finally {
+                        inFlight.release();
+                    }
+                })));
+            }
+            List<R> results = new ArrayList<>(items.size());
+            for (Future<R> future : futures) {
+                results.add(await(future));
+            }
+            return results;
+        } catch (InterruptedException e) {
+            futures.forEach(future -> future.cancel(true));
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException(e.getMessage());
+        } finally {
+            if (pool != executor) {
+                pool.shutdown();
+            }
+        }
+    }
+
+    static <T> T await(Future<T> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException(e.getMessage());
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException(cause);
+        }
     }
 
     private void checkIfEntityExists(Class<? extends BaseEntity> clazz, int id) throws IOException {
@@ -0,0 +1,27 @@
+/*
+ * Copyright (c) 2018 Snowplow Analytics Ltd. All rights reserved.
+ *
+ * This program is licensed to you under the Apache License Version 2.0,
+ * and you may not use this file except in compliance with the Apache License Version 2.0.
+ * You may obtain a copy of the Apache License Version 2.0 at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the Apache License Version 2.0 is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Apache License Version 2.0 for the specific language governing permissions and limitations there under.
+ */
+
+package com.snowplowanalytics.redash;
+
+/**
+ * The request conflicts with existing state (409), including duplicate names, which Redash 3 rejects with a 400
+ * and an "already exists" message.
+ */
+public class RedashConflictException extends RedashException {
+
+    private static final long serialVersionUID = 1L;
+
+    public RedashConflictException(String message, int statusCode, String method, String url, String responseBody) {
+        super(message, statusCode, method, url, responseBody);
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright (c) 2018 Snowplow Analytics Ltd. All rights reserved.
+ *
+ * This program is licensed to you under the Apache License Version 2.0,
+ * and you may not use this file except in compliance with the Apache License Version 2.0.
+ * You may obtain a copy of the Apache License Version 2.0 at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the Apache License Version 2.0 is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Apache License Version 2.0 for the specific language governing permissions and limitations there under.
+ */
+
+package com.snowplowanalytics.redash;
+
+import com.snowplowanalytics.redash.transport.TransportRequest;
+import com.snowplowanalytics.redash.transport.TransportResponse;
+
+import java.io.IOException;
+import java.net.URI;
+
+/**
+ * A non-2xx response from Redash.
+ *
+ * The subclass is chosen from the status code, so callers such as retry or circuit-breaker logic can react with an
+ * {@code instanceof} check or {@link #isRetryable()} instead of comparing messages. Two status codes also look at
+ * the body, because Redash 3 uses them for more than one meaning: a 404 whose body asks to log in is a
+ * {@link RedashAuthenticationException}, as Redash answers an unknown API key that way, and a 400 whose body says
+ * that a name already exists is a {@link RedashConflictException}. Neither subclass is retryable, so the body checks
+ * never change whether a request is retried. The message is the reason phrase of the response, e.g. "NOT FOUND";
+ * the body is kept as received for diagnostics.
+ */
+public class RedashException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    // Redash 3 answers requests with an unknown API key with a 404 and this message.
+    private static final String LOGIN_REQUIRED = "Please login and try again.";
+    // Redash 3 rejects duplicate names with a 400 and a message ending with this.
+    private static final String ALREADY_EXISTS = "already exists.";
+
+    private final int statusCode;
+    private final String method;
+    private final String url;
+    private final String responseBody;
+
+    public RedashException(String message, int statusCode, String method, String url, String responseBody) {
+        super(message);
+        this.statusCode = statusCode;
+        this.method = method;
+        this.url = url;
+        this.responseBody = responseBody;
+    }
+
+    /**
+     * @return The exception matching the status code of the response.
+     */
+    static RedashException of(TransportRequest request, TransportResponse response) {
+        String message = response.getMessage();
+        int code = response.getCode();
+        String method = request.getMethod();
+        String url = request.getUrl();
+        String body = response.getBody();
+        switch (code) {
+            case 401:
+            case 403:
+                return new RedashAuthenticationException(message, code, method, url, body);
+            case 404:
+                return body != null && body.contains(LOGIN_REQUIRED)
+                        ? new RedashAuthenticationException(message, code, method, url, body)
+                        : new RedashNotFoundException(message, code, method, url, body);
+            case 409:
+                return new RedashConflictException(message, code, method, url, body);
+            case 400:
+                if (body != null && body.contains(ALREADY_EXISTS)) {
+                    return new RedashConflictException(message, code, method, url, body);
+                }
+                return new RedashException(message, code, method, url, body);
+            default:
+                return code >= 500
+                        ? new RedashServerException(message, code, method, url, body)
+                        : new RedashException(message, code, method, url, body);
+        }
+    }
+
+    public int getStatusCode() {
+        return statusCode;
+    }
+
+    public String getMethod() {
+        return method;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    /**
+     * @return The method and path of the request, e.g. "DELETE /api/data_sources/3".
+     */
+    public String getRoute() {
+        String path;
+        try {
+            path = URI.create(url).getRawPath();
+        } catch (IllegalArgumentException e) {
+            path = url;
+        }
+        return method + ' ' + path;
+    }
+
+    public String getResponseBody() {
+        return responseBody;
+    }
+
+    /**
+     * @return Whether the same request may succeed when sent again: true for request timeouts (408) and
+     * rate limiting (429) here, and for some server errors, see {@link RedashServerException#isRetryable()}.
+     */
+    public boolean isRetryable() {
+        return statusCode == 408 || statusCode == 429;
+    }
+}
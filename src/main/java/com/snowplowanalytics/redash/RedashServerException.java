@@ -0,0 +1,38 @@
+/*
+ * Copyright (c) 2018 Snowplow Analytics Ltd. All rights reserved.
+ *
+ * This program is licensed to you under the Apache License Version 2.0,
+ * and you may not use this file except in compliance with the Apache License Version 2.0.
+ * You may obtain a copy of the Apache License Version 2.0 at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the Apache License Version 2.0 is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Apache License Version 2.0 for the specific language governing permissions and limitations there under.
+ */
+
+package com.snowplowanalytics.redash;
+
+/**
+ * Redash or a proxy in front of it failed to handle the request (5xx).
+ *
+ * Redash 3 also answers with a 500 when an entity looked up by id, such as a data-source, does not exist.
+ */
+public class RedashServerException extends RedashException {
+
+    private static final long serialVersionUID = 1L;
+
+    public RedashServerException(String message, int statusCode, String method, String url, String responseBody) {
+        super(message, statusCode, method, url, responseBody);
+    }
+
+    /**
+     * @return True for 502, 503 and 504, which proxies and load balancers send while Redash is restarting or
+     * overloaded. A 500 is not retryable, since Redash also uses it for requests which can never succeed.
+     */
+    @Override
+    public boolean isRetryable() {
+        int code = getStatusCode();
+        return code == 502 || code == 503 || code == 504;
+    }
+}
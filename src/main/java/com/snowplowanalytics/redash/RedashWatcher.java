@@ -0,0 +1,322 @@
+/*
+ * Copyright (c) 2018 Snowplow Analytics Ltd. All rights reserved.
+ *
+ * This program is licensed to you under the Apache License Version 2.0,
+ * and you may not use this file except in compliance with the Apache License Version 2.0.
+ * You may obtain a copy of the Apache License Version 2.0 at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the Apache License Version 2.0 is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Apache License Version 2.0 for the specific language governing permissions and limitations there under.
+ */
+
+package com.snowplowanalytics.redash;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Polls the lists of users, user-groups and data-sources of a Redash instance, which has no webhooks, and tells
+ * listeners which entities were added, updated or removed since the previous poll.
+ *
+ * Only a 64-bit hash and the name of each entity are kept between polls. The hash leaves out timestamps which Redash
+ * updates without an edit, such as the {@code active_at} of a user on every sign-in, so that they neither raise
+ * {@code UPDATED} events nor keep the interval at the minimum. All listeners share one poll, which
+ * requests the watched lists together. The interval starts at the minimum, doubles after every poll without
+ * changes or with an error, up to the maximum, and drops back to the minimum as soon as something changed.
+ *
+ * Group memberships are not part of these lists; use {@link RedashClient#getAccessMatrix()} to audit them.
+ */
+public class RedashWatcher implements Closeable {
+
+    public static final Duration DEFAULT_MIN_INTERVAL = Duration.ofSeconds(10);
+    public static final Duration DEFAULT_MAX_INTERVAL = Duration.ofMinutes(5);
+
+    private static final Gson GSON = new Gson();
+    private static final String ID = "id";
+    private static final String NAME = "name";
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+    private static final Set<String> VOLATILE_FIELDS = Set.of("active_at", "last_active_at", "updated_at");
+
+    private final RedashClient client;
+    private final Set<ChangeEvent.Kind> kinds;
+    private final long minIntervalMillis;
+    private final long maxIntervalMillis;
+    private final boolean emitInitialState;
+    private final List<ChangeListener> listeners = new CopyOnWriteArrayList<>();
+
+    // Guarded by pollLock
+    private final Object pollLock = new Object();
+    private final Map<ChangeEvent.Kind, Map<Integer, Fingerprint>> state = new EnumMap<>(ChangeEvent.Kind.class);
+    private boolean initialized;
+
+    // Guarded by this
+    private ScheduledExecutorService scheduler;
+    private long intervalMillis;
+
+    private RedashWatcher(RedashWatcherBuilder builder) {
+        this.client = builder.client;
+        this.kinds = Collections.unmodifiableSet(EnumSet.copyOf(builder.kinds));
+        this.minIntervalMillis = Math.max(1, builder.minInterval.toMillis());
+        this.maxIntervalMillis = Math.max(minIntervalMillis, builder.maxInterval.toMillis());
+        this.emitInitialState = builder.emitInitialState;
+        this.intervalMillis = minIntervalMillis;
+    }
+
+    public final static class RedashWatcherBuilder {
+        private final RedashClient client;
+        private Set<ChangeEvent.Kind> kinds = EnumSet.allOf(ChangeEvent.Kind.class);
+        private Duration minInterval = DEFAULT_MIN_INTERVAL;
+        private Duration maxInterval = DEFAULT_MAX_INTERVAL;
+        private boolean emitInitialState;
+
+        public RedashWatcherBuilder(RedashClient client) {
+            this.client = client;
+        }
+
+        /**
+         * @param kinds The lists to poll. Defaults to all of them.
+         */
+        public RedashWatcherBuilder kinds(ChangeEvent.Kind... kinds) {
+            if (kinds.length == 0) {
+                throw new IllegalArgumentException("At least one kind must be watched.");
+            }
+            this.kinds = EnumSet.copyOf(Arrays.asList(kinds));
+            return this;
+        }
+
+        /**
+         * @param minInterval The interval after a change. Defaults to {@link #DEFAULT_MIN_INTERVAL}.
+         */
+        public RedashWatcherBuilder minInterval(Duration minInterval) {
+            this.minInterval = minInterval;
+            return this;
+        }
+
+        /**
+         * @param maxInterval The longest interval while nothing changes. Defaults to {@link #DEFAULT_MAX_INTERVAL}.
+         */
+        public RedashWatcherBuilder maxInterval(Duration maxInterval) {
+            this.maxInterval = maxInterval;
+            return this;
+        }
+
+        /**
+         * @param emitInitialState Whether the first poll reports every entity as added. By default it only records
+         *                         the current state.
+         */
+        public RedashWatcherBuilder emitInitialState(boolean emitInitialState) {
+            this.emitInitialState = emitInitialState;
+            return this;
+        }
+
+        public RedashWatcher build() {
+            return new RedashWatcher(this);
+        }
+    }
+
+    public void addListener(ChangeListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(ChangeListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Starts polling on a daemon thread, beginning immediately. Does nothing if already started.
+     */
+    public synchronized void start() {
+        if (scheduler == null) {
+            scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "redash-watcher");
+                thread.setDaemon(true);
+                return thread;
+            });
+            intervalMillis = minIntervalMillis;
+            ScheduledExecutorService owner = scheduler;
+            owner.execute(() -> tick(owner));
+        }
+    }
+
+    /**
+     * Stops polling. A poll in progress is interrupted; the watcher can be started again.
+     */
+    @Override
+    public synchronized void close() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+
+    /**
+     * @return The delay before the next scheduled poll.
+     */
+    public synchronized Duration getInterval() {
+        return Duration.ofMillis(intervalMillis);
+    }
+
+    /**
+     * Polls once on the calling thread and passes the changes to the listeners before returning them. Polls
+     * started concurrently, including scheduled ones, run one after another.
+     *
+     * @return The changes since the previous poll: additions and updates in the order Redash lists them, then
+     * removals. Empty for the first poll unless the initial state is emitted.
+     * @throws IOException If a list could not be downloaded; the previous state is kept.
+     */
+    public List<ChangeEvent> poll() throws IOException {
+        List<ChangeEvent> events = new ArrayList<>();
+        synchronized (pollLock) {
+            Map<ChangeEvent.Kind, CompletableFuture<String>> responses = new EnumMap<>(ChangeEvent.Kind.class);
+            for (ChangeEvent.Kind kind : kinds) {
+                responses.put(kind, client.listAsync(kind));
+            }
+            Map<ChangeEvent.Kind, String> bodies = new EnumMap<>(ChangeEvent.Kind.class);
+            try {
+                for (ChangeEvent.Kind kind : kinds) {
+                    bodies.put(kind, RedashClient.await(responses.get(kind)));
+                }
+            } finally {
+                responses.values().forEach(future -> future.cancel(true));
+            }
+            boolean report = initialized || emitInitialState;
+            for (ChangeEvent.Kind kind : kinds) {
+                Map<Integer, Fingerprint> current = diff(kind, bodies.get(kind),
+                        state.getOrDefault(kind, Collections.emptyMap()), report ? events : null);
+                state.put(kind, current);
+            }
+            initialized = true;
+        }
+        for (ChangeEvent event : events) {
+            for (ChangeListener listener : listeners) {
+                try {
+                    listener.onChange(event);
+                } catch (RuntimeException e) {
+                    // One failing listener must not keep the event from the others
+                    try {
+                        listener.onError(e);
+                    } catch (RuntimeException ignored) {
+                        // Nothing left to report to
+                    }
+                }
+            }
+        }
+        return events;
+    }
+
+    private void tick(ScheduledExecutorService owner) {
+        long next;
+        try {
+            next = poll().isEmpty() ? backOff() : minIntervalMillis;
+        } catch (IOException | RuntimeException e) {
+            next = backOff();
+            for (ChangeListener listener : listeners) {
+                try {
+                    listener.onError(e);
+                } catch (RuntimeException ignored) {
+                    // Nothing left to report to
+                }
+            }
+        }
+        synchronized (this) {
+            intervalMillis = next;
+            // Not rescheduled once closed, even if started again in the meantime
+            if (scheduler == owner) {
+                owner.schedule(() -> tick(owner), next, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    private synchronized long backOff() {
+        return Math.min(maxIntervalMillis, intervalMillis * 2);
+    }
+
+    /**
+     * @param events Receives the changes, or null if they are not reported.
+     * @return The fingerprints of the entities in {@code json}.
+     */
+    private static Map<Integer, Fingerprint> diff(ChangeEvent.Kind kind, String json, Map<Integer, Fingerprint> previous,
+                                                  List<ChangeEvent> events) {
+        JsonArray entities = GSON.fromJson(json, JsonArray.class);
+        Map<Integer, Fingerprint> current = new HashMap<>(entities.size() * 4 / 3 + 1);
+        for (JsonElement element : entities) {
+            JsonObject entity = element.getAsJsonObject();
+            int id = entity.get(ID).getAsInt();
+            String text = entity.toString();
+            JsonElement name = entity.get(NAME);
+            Fingerprint fingerprint = new Fingerprint(hash(entity),
+                    name == null || name.isJsonNull() ? null : name.getAsString());
+            current.put(id, fingerprint);
+            Fingerprint before = previous.get(id);
+            if (events != null && (before == null || before.hash != fingerprint.hash)) {
+                ChangeEvent.Type type = before == null ? ChangeEvent.Type.ADDED : ChangeEvent.Type.UPDATED;
+                events.add(new ChangeEvent(kind, type, id, fingerprint.name, text));
+            }
+        }
+        if (events != null) {
+            previous.forEach((id, fingerprint) -> {
+                if (!current.containsKey(id)) {
+                    events.add(new ChangeEvent(kind, ChangeEvent.Type.REMOVED, id, fingerprint.name, null));
+                }
+            });
+        }
+        return current;
+    }
+
+    /**
+     * @return The hash of the members of {@code entity} apart from the volatile ones.
+     */
+    private static long hash(JsonObject entity) {
+        StringBuilder stable = new StringBuilder();
+        for (Map.Entry<String, JsonElement> member : entity.entrySet()) {
+            if (!VOLATILE_FIELDS.contains(member.getKey())) {
+                stable.append(GSON.toJson(member.getKey())).append(':').append(member.getValue()).append(',');
+            }
+        }
+        return hash(stable.toString());
+    }
+
+    /**
+     * 64-bit FNV-1a over the UTF-16 code units of the text.
+     */
+    private static long hash(String text) {
+        long hash = FNV_OFFSET_BASIS;
+        for (int i = 0; i < text.length(); i++) {
+            hash = (hash ^ text.charAt(i)) * FNV_PRIME;
+        }
+        return hash;
+    }
+
+    private static final class Fingerprint {
+        private final long hash;
+        private final String name;
+
+        private Fingerprint(long hash, String name) {
+            this.hash = hash;
+            this.name = name;
+        }
+    }
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright (c) 2018 Snowplow Analytics Ltd. All rights reserved.
+ *
+ * This program is licensed to you under the Apache License Version 2.0,
+ * and you may not use this file except in compliance with the Apache License Version 2.0.
+ * You may obtain a copy of the Apache License Version 2.0 at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the Apache License Version 2.0 is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Apache License Version 2.0 for the specific language governing permissions and limitations there under.
+ */
+
+package com.snowplowanalytics.redash;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+/**
+ * The Redash API endpoints used by {@link RedashClient}.
+ *
+ * The base URL is validated once and every collection prefix is built up front, so a route costs one
+ * concatenation of an id and no parsing.
+ */
+final class Routes {
+
+    private static final String API_PREFIX = "/api";
+    private static final String DATA_SOURCES = "/data_sources";
+    private static final String GROUPS = "/groups";
+    private static final String USERS = "/users";
+    private static final String QUERY_RESULTS = "/query_results";
+    private static final String JOBS = "/jobs";
+    private static final String QUERIES = "/queries";
+    private static final String REFRESH_QUERY = "/refresh";
+    private static final String PARAMETER_PREFIX = "p_";
+    private static final String MEMBERS = "/members";
+    private static final String TEST = "/test";
+    private static final String TYPES = "/types";
+    private static final String SCHEMA = "/schema";
+    private static final String REFRESH = "?refresh=true";
+
+    private final String dataSources;
+    private final String groups;
+    private final String users;
+    private final String queryResults;
+    private final String jobs;
+    private final String queries;
+
+    private Routes(String baseUrl) {
+        this.dataSources = baseUrl + DATA_SOURCES;
+        this.groups = baseUrl + GROUPS;
+        this.users = baseUrl + USERS;
+        this.queryResults = baseUrl + QUERY_RESULTS;
+        this.jobs = baseUrl + JOBS;
+        this.queries = baseUrl + QUERIES;
+    }
+
+    /**
+     * @return The routes or null if the parts do not form a valid HTTP or HTTPS URL.
+     */
+    static Routes create(String schema, String host, int port) {
+        try {
+            URI base = new URI(schema, null, host, port, API_PREFIX, null, null);
+            if (base.getHost() == null || !("http".equalsIgnoreCase(schema) || "https".equalsIgnoreCase(schema))) {
+                return null;
+            }
+            return new Routes(base.toASCIIString());
+        } catch (URISyntaxException e) {
+            return null;
+        }
+    }
+
+    String dataSources() {
+        return dataSources;
+    }
+
+    String dataSource(int dataSourceId) {
+        return dataSources + '/' + dataSourceId;
+    }
+
+    String dataSourceTypes() {
+        return dataSources + TYPES;
+    }
+
+    String dataSourceSchema(int dataSourceId, boolean refresh) {
+        return dataSources + '/' + dataSourceId + (refresh ? SCHEMA + REFRESH : SCHEMA);
+    }
+
+    String dataSourceTest(int dataSourceId) {
+        return dataSources + '/' + dataSourceId + TEST;
+    }
+
+    String groups() {
+        return groups;
+    }
+
+    String group(int groupId) {
+        return groups + '/' + groupId;
+    }
+
+    String groupMembers(int groupId) {
+        return groups + '/' + groupId + MEMBERS;
+    }
+
+    String groupMember(int groupId, int userId) {
+        return groups + '/' + groupId + MEMBERS + '/' + userId;
+    }
+
+    String groupDataSources(int groupId) {
+        return groups + '/' + groupId + DATA_SOURCES;
+    }
+
+    String groupDataSource(int groupId, int dataSourceId) {
+        return groups + '/' + groupId + DATA_SOURCES + '/' + dataSourceId;
+    }
+
+    String users() {
+        return users;
+    }
+
+    String user(int userId) {
+        return users + '/' + userId;
+    }
+
+    String queryResults() {
+        return queryResults;
+    }
+
+    String queryResult(int queryResultId) {
+        return queryResults + '/' + queryResultId;
+    }
+
+    String job(String jobId) {
+        return jobs + '/' + jobId;
+    }
+
+    /**
+     * @param parameters Sent as {@code p_<name>} query parameters, the form Redash reads parameter values from.
+     */
+    String queryRefresh(int queryId, Map<String, ?> parameters) {
+        StringBuilder url = new StringBuilder(queries).append('/').append(queryId).append(REFRESH_QUERY);
+        char separator = '?';
+        for (Map.Entry<String, ?> parameter : parameters.entrySet()) {
+            url.append(separator)
+                    .append(URLEncoder.encode(PARAMETER_PREFIX + parameter.getKey(), StandardCharsets.UTF_8))
+                    .append('=')
+                    .append(URLEncoder.encode(String.valueOf(parameter.getValue()), StandardCharsets.UTF_8));
+            separator = '&';
+        }
+        return url.toString();
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright (c) 2018 Snowplow Analytics Ltd. All rights reserved.
+ *
+ * This program is licensed to you under the Apache License Version 2.0,
+ * and you may not use this file except in compliance with the Apache License Version 2.0.
+ * You may obtain a copy of the Apache License Version 2.0 at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the Apache License Version 2.0 is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Apache License Version 2.0 for the specific language governing permissions and limitations there under.
+ */
+
+package com.snowplowanalytics.redash;
+
+import com.snowplowanalytics.redash.model.datasource.DataSourceSchema;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Per data-source cache of schemas with stale-while-revalidate semantics.
+ *
+ * The first caller for a data-source starts the download and every concurrent caller waits for the same future.
+ * Once a schema is older than the time-to-live it is still returned, but the first caller to notice starts a
+ * background download with {@code refresh=true}; the stale schema is replaced when that download succeeds and
+ * kept if it fails. A failed initial download is not cached.
+ *
+ * Every caller receives its own copy of the cached future, so cancelling or completing it does not affect others.
+ */
+final class SchemaCache {
+
+    @FunctionalInterface
+    interface Loader {
+        /**
+         * @param refresh Whether Redash should query the data-source instead of answering from its own cache.
+         */
+        CompletableFuture<DataSourceSchema> load(int dataSourceId, boolean refresh);
+    }
+
+    private final Loader loader;
+    private final long ttlNanos;
+    private final ConcurrentMap<Integer, Entry> entries = new ConcurrentHashMap<>();
+
+    SchemaCache(Loader loader, long ttlNanos) {
+        this.loader = loader;
+        this.ttlNanos = ttlNanos;
+    }
+
+    CompletableFuture<DataSourceSchema> get(int dataSourceId) {
+        Entry entry = entries.get(dataSourceId);
+        if (entry == null) {
+            Entry created = new Entry();
+            entry = entries.putIfAbsent(dataSourceId, created);
+            if (entry == null) {
+                return load(dataSourceId, created, false);
+            }
+        }
+        if (entry.isStale(System.nanoTime(), ttlNanos) && entry.refreshing.compareAndSet(false, true)) {
+            revalidate(dataSourceId, entry);
+        }
+        return entry.schema.copy();
+    }
+
+    /**
+     * Downloads the schema with {@code refresh=true} now; callers arriving meanwhile wait for the new schema.
+     */
+    CompletableFuture<DataSourceSchema> refresh(int dataSourceId) {
+        Entry created = new Entry();
+        entries.put(dataSourceId, created);
+        return load(dataSourceId, created, true);
+    }
+
+    void invalidate(int dataSourceId) {
+        entries.remove(dataSourceId);
+    }
+
+    private CompletableFuture<DataSourceSchema> load(int dataSourceId, Entry entry, boolean refresh) {
+        loader.load(dataSourceId, refresh).whenComplete((schema, error) -> {
+            if (error != null) {
+                entries.remove(dataSourceId, entry);
+                entry.schema.completeExceptionally(error);
+            } else {
+                entry.loadedAt = System.nanoTime();
+                entry.schema.complete(schema);
+            }
+        });
+        return entry.schema.copy();
+    }
+
+    private void revalidate(int dataSourceId, Entry stale) {
+        loader.load(dataSourceId, true).whenComplete((schema, error) -> {
+            if (error != null) {
+                stale.refreshing.set(false);
+            } else {
+                Entry fresh = new Entry();
+                fresh.loadedAt = System.nanoTime();
+                fresh.schema.complete(schema);
+                entries.replace(dataSourceId, stale, fresh);
+            }
+        });
+    }
+
+    private static final class Entry {
+        private final CompletableFuture<DataSourceSchema> schema = new CompletableFuture<>();
+        private final AtomicBoolean refreshing = new AtomicBoolean();
+        // Written before the future completes, so readers that see a completed future see the time too
+        private volatile long loadedAt;
+
+        boolean isStale(long now, long ttlNanos) {
+            return schema.isDone() && !schema.isCompletedExceptionally() && now - loadedAt >= ttlNanos;
+        }
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright (c) 2018 Snowplow Analytics Ltd. All rights reserved.
+ *
+ * This program is licensed to you under the Apache License Version 2.0,
+ * and you may not use this file except in compliance with the Apache License Version 2.0.
+ * You may obtain a copy of the Apache License Version 2.0 at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the Apache License Version 2.0 is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Apache License Version 2.0 for the specific language governing permissions and limitations there under.
+ */
+
+package com.snowplowanalytics.redash.cache;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+
+/**
+ * Identifies the result of a query: the data-source, the query text with its whitespace normalized and the
+ * parameter values. Queries which only differ in indentation or line breaks outside of string literals and
+ * quoted identifiers share a key, as do parameter maps with the same entries in a different order.
+ */
+public final class QueryKey {
+
+    private final int dataSourceId;
+    private final String query;
+    private final Map<String, String> parameters;
+    private final int hashCode;
+
+    private QueryKey(int dataSourceId, String query, Map<String, String> parameters) {
+        this.dataSourceId = dataSourceId;
+        this.query = query;
+        this.parameters = parameters;
+        this.hashCode = Objects.hash(dataSourceId, query, parameters);
+    }
+
+    /**
+     * @param parameters The parameter values, compared by their string form; may be empty.
+     */
+    public static QueryKey of(int dataSourceId, String query, Map<String, ?> parameters) {
+        Map<String, String> sorted = new TreeMap<>();
+        parameters.forEach((name, value) -> sorted.put(name, String.valueOf(value)));
+        return new QueryKey(dataSourceId, normalize(query),
+                sorted.isEmpty() ? Collections.emptyMap() : Collections.unmodifiableMap(sorted));
+    }
+
+    /**
+     * Trims the query and collapses every run of whitespace outside of quotes into a single space.
+     */
+    static String normalize(String query) {
+        StringBuilder normalized = new StringBuilder(query.length());
+        char quote = 0;
+        boolean pendingSpace = false;
+        for (int i = 0; i < query.length(); i++) {
+            char c = query.charAt(i);
+            if (quote == 0 && Character.isWhitespace(c)) {
+                pendingSpace = normalized.length() > 0;
+                continue;
+            }
+            if (pendingSpace) {
+                normalized.append(' ');
+                pendingSpace = false;
+            }
+            if (quote == 0 && (c == '\'' || c == '"' || c == '`')) {
+                quote = c;
+            } else if (c == quote) {
+                quote = 0;
+            }
+            normalized.append(c);
+        }
+        return normalized.toString();
+    }
+
+    public int getDataSourceId() {
+        return dataSourceId;
+    }
+
+    public String getQuery() {
+        return query;
+    }
+
+    public Map<String, String> getParameters() {
+        return parameters;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (o == this) {
+            return true;
+        }
+        if (!(o instanceof QueryKey)) {
+            return false;
+        }
+        QueryKey key = (QueryKey) o;
+        return hashCode == key.hashCode &&
+                dataSourceId == key.dataSourceId &&
+                query.equals(key.query) &&
+                parameters.equals(key.parameters);
+    }
+
+    @Override
+    public int hashCode() {
+        return hashCode;
+    }
+
+    @Override
+    public String toString() {
+        return "QueryKey{" +
+                "dataSourceId=" + dataSourceId +
+                ", query='" + query + '\'' +
+                ", parameters=" + parameters +
+                '}';
+    }
+}
@@ -0,0 +1,501 @@
+/*
+ * Copyright (c) 2018 Snowplow Analytics Ltd. All rights reserved.
+ *
+ * This program is licensed to you under the Apache License Version 2.0,
+ * and you may not use this file except in compliance with the Apache License Version 2.0.
+ * You may obtain a copy of the Apache License Version 2.0 at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the Apache License Version 2.0 is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Apache License Version 2.0 for the specific language governing permissions and limitations there under.
+ */
+
+package com.snowplowanalytics.redash.cache;
+
+import com.google.gson.Gson;
+import com.snowplowanalytics.redash.model.query.QueryResult;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Client-side cache of query results, used by {@link com.snowplowanalytics.redash.RedashClient#executeQuery}.
+ *
+ * A result is served from the cache if it is no older than the {@code max_age} of the request, with the same
+ * meaning as in Redash: 0 always executes the query and a negative value accepts a result of any age. Concurrent
+ * requests for a key which is not cached share one execution.
+ *
+ * The cache holds at most {@code maximumSize} results and, optionally, at most {@code maximumCells} cells (rows
+ * times columns) in memory. When either bound is exceeded, the least recently or least frequently used results
+ * are evicted, depending on the {@link EvictionPolicy}. If a spill directory is set, evicted results are written
+ * there as JSON and read back on their next use; the directory holds at most {@code maximumSpilled} results.
+ *
+ * Every hit returns the same {@link QueryResult} instance, whose columns and rows are read-only. Instances are
+ * thread-safe and may be shared by several clients of the same Redash server.
+ */
+public final class QueryResultCache {
+
+    public enum EvictionPolicy {
+        /** Evicts the result which was used least recently. */
+        LRU,
+        /** Evicts the result which was used least often, the least recently used one among those used equally often. */
+        LFU
+    }
+
+    @FunctionalInterface
+    public interface Loader {
+        QueryResult load() throws IOException;
+    }
+
+    private static final Gson GSON = new Gson();
+
+    private final int maximumSize;
+    private final long maximumCells;
+    private final Path spillDirectory;
+    private final int maximumSpilled;
+
+    // Guarded by this
+    private final Map<QueryKey, Entry> entries = new HashMap<>();
+    private final Order order;
+    private final LinkedHashMap<QueryKey, Path> spilled = new LinkedHashMap<>();
+    private long cells;
+
+    private final ConcurrentMap<QueryKey, CompletableFuture<QueryResult>> inFlight = new ConcurrentHashMap<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    private QueryResultCache(QueryResultCacheBuilder builder) {
+        this.maximumSize = builder.maximumSize;
+        this.maximumCells = builder.maximumCells;
+        this.spillDirectory = builder.spillDirectory;
+        this.maximumSpilled = builder.maximumSpilled;
+        this.order = builder.evictionPolicy == EvictionPolicy.LFU ? new LfuOrder() : new LruOrder();
+    }
+
+    public final static class QueryResultCacheBuilder {
+        private int maximumSize = 1000;
+        private long maximumCells = Long.MAX_VALUE;
+        private EvictionPolicy evictionPolicy = EvictionPolicy.LRU;
+        private Path spillDirectory;
+        private int maximumSpilled = 10000;
+
+        /**
+         * @param maximumSize The maximum number of results kept in memory. Defaults to 1000.
+         */
+        public QueryResultCacheBuilder maximumSize(int maximumSize) {
+            this.maximumSize = maximumSize;
+            return this;
+        }
+
+        /**
+         * @param maximumCells The maximum number of cells, rows times columns, of all results kept in memory.
+         *                     Unbounded by default.
+         */
+        public QueryResultCacheBuilder maximumCells(long maximumCells) {
+            this.maximumCells = maximumCells;
+            return this;
+        }
+
+        /**
+         * @param evictionPolicy Defaults to {@link EvictionPolicy#LRU}.
+         */
+        public QueryResultCacheBuilder evictionPolicy(EvictionPolicy evictionPolicy) {
+            this.evictionPolicy = evictionPolicy;
+            return this;
+        }
+
+        /**
+         * @param spillDirectory An existing directory evicted results are written to. Results are not spilled
+         *                       by default.
+         */
+        public QueryResultCacheBuilder spillDirectory(Path spillDirectory) {
+            this.spillDirectory = spillDirectory;
+            return this;
+        }
+
+        /**
+         * @param maximumSpilled The maximum number of results kept in the spill directory. Defaults to 10000.
+         */
+        public QueryResultCacheBuilder maximumSpilled(int maximumSpilled) {
+            this.maximumSpilled = maximumSpilled;
+            return this;
+        }
+
+        public QueryResultCache build() {
+            if (maximumSize < 1 || maximumCells < 1 || maximumSpilled < 0) {
+                throw new IllegalArgumentException("Cache bounds must be positive.");
+            }
+            return new QueryResultCache(this);
+        }
+    }
+
+    /**
+     * Returns a cached result for the key which is no older than {@code maxAge} or else loads it, sharing the
+     * load with concurrent callers for the same key.
+     *
+     * @param maxAge The maximum age of a cached result in seconds; 0 always loads and a negative value accepts any age.
+     * @throws IOException If the load, or the one this call waited for, failed.
+     */
+    public QueryResult get(QueryKey key, int maxAge, Loader loader) throws IOException {
+        QueryResult cached = lookup(key, maxAge);
+        if (cached != null) {
+            hits.increment();
+            return cached;
+        }
+        CompletableFuture<QueryResult> mine = new CompletableFuture<>();
+        CompletableFuture<QueryResult> shared = inFlight.putIfAbsent(key, mine);
+        if (shared != null) {
+            hits.increment();
+            return await(shared);
+        }
+        try {
+            // Another caller may have stored the result between the lookup and the registration
+            QueryResult result = lookup(key, maxAge);
+            if (result != null) {
+                hits.increment();
+            } else {
+                misses.increment();
+                result = loader.load();
+                put(key, result);
+            }
+            mine.complete(result);
+            return result;
+        } catch (IOException | RuntimeException e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, mine);
+        }
+    }
+
+    /**
+     * @return The cached result if it is no older than {@code maxAge} seconds, otherwise null.
+     */
+    public QueryResult getIfPresent(QueryKey key, int maxAge) {
+        return lookup(key, maxAge);
+    }
+
+    public void put(QueryKey key, QueryResult result) {
+        store(key, new Entry(result, storedAt(result)));
+    }
+
+    public void invalidate(QueryKey key) {
+        Path file;
+        synchronized (this) {
+            Entry removed = entries.remove(key);
+            if (removed != null) {
+                order.remove(key);
+                cells -= removed.cells;
+            }
+            file = spilled.remove(key);
+        }
+        delete(file);
+    }
+
+    public void invalidateAll() {
+        List<Path> files;
+        synchronized (this) {
+            entries.keySet().forEach(order::remove);
+            entries.clear();
+            cells = 0;
+            files = new ArrayList<>(spilled.values());
+            spilled.clear();
+        }
+        files.forEach(QueryResultCache::delete);
+    }
+
+    /**
+     * @return The number of results in memory.
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * @return The number of results in the spill directory.
+     */
+    public synchronized int spilledSize() {
+        return spilled.size();
+    }
+
+    /**
+     * @return The number of requests answered from the cache or by sharing another request's execution.
+     */
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    /**
+     * @return The number of requests which had to load the result.
+     */
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    /**
+     * @return The number of results evicted from memory, whether or not they were spilled.
+     */
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    private QueryResult lookup(QueryKey key, int maxAge) {
+        if (maxAge == 0) {
+            return null;
+        }
+        Path file;
+        synchronized (this) {
+            Entry entry = entries.get(key);
+            if (entry != null) {
+                if (!entry.isFresh(maxAge)) {
+                    return null;
+                }
+                order.touch(key);
+                return entry.result;
+            }
+            file = spilled.remove(key);
+        }
+        if (file == null) {
+            return null;
+        }
+        Entry entry = read(file);
+        delete(file);
+        if (entry == null) {
+            return null;
+        }
+        store(key, entry);
+        return entry.isFresh(maxAge) ? entry.result : null;
+    }
+
+    private void store(QueryKey key, Entry entry) {
+        Map<QueryKey, Entry> evicted = new LinkedHashMap<>();
+        List<Path> dropped = new ArrayList<>();
+        synchronized (this) {
+            Entry previous = entries.put(key, entry);
+            if (previous != null) {
+                order.remove(key);
+                cells -= previous.cells;
+            }
+            dropped.add(spilled.remove(key));
+            cells += entry.cells;
+            // The new key joins the order afterwards, so that LFU does not evict it straight away
+            while ((entries.size() > maximumSize || cells > maximumCells) && entries.size() > 1) {
+                QueryKey victim = order.victim();
+                Entry removed = entries.remove(victim);
+                cells -= removed.cells;
+                evictions.increment();
+                evicted.put(victim, removed);
+            }
+            order.add(key);
+        }
+        dropped.forEach(QueryResultCache::delete);
+        if (spillDirectory != null) {
+            evicted.forEach(this::spill);
+        }
+    }
+
+    private void spill(QueryKey key, Entry entry) {
+        Path file;
+        try {
+            file = Files.createTempFile(spillDirectory, "query-result-", ".json");
+            try (Writer writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+                GSON.toJson(entry, writer);
+            }
+        } catch (IOException e) {
+            // Spilling is best effort, the result is simply executed again
+            return;
+        }
+        List<Path> dropped = new ArrayList<>();
+        synchronized (this) {
+            if (entries.containsKey(key)) {
+                // Stored again while it was being written
+                dropped.add(file);
+            } else {
+                dropped.add(spilled.put(key, file));
+                Iterator<Path> eldest = spilled.values().iterator();
+                while (spilled.size() > maximumSpilled) {
+                    dropped.add(eldest.next());
+                    eldest.remove();
+                }
+            }
+        }
+        dropped.forEach(QueryResultCache::delete);
+    }
+
+    private static Entry read(Path file) {
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            Entry entry = GSON.fromJson(reader, Entry.class);
+            // Recomputes the cells, which are not written
+            return entry == null || entry.result == null ? null : new Entry(entry.result, entry.storedAt);
+        } catch (IOException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    private static void delete(Path file) {
+        if (file != null) {
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                // Left for the owner of the directory to clean up
+            }
+        }
+    }
+
+    private static long storedAt(QueryResult result) {
+        Instant retrievedAt;
+        try {
+            retrievedAt = result.getRetrievedAt();
+        } catch (RuntimeException e) {
+            retrievedAt = null;
+        }
+        return retrievedAt != null ? retrievedAt.toEpochMilli() : System.currentTimeMillis();
+    }
+
+    private static QueryResult await(CompletableFuture<QueryResult> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException(e.getMessage());
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    private static final class Entry {
+        private final QueryResult result;
+        private final long storedAt;
+        private final transient long cells;
+
+        Entry(QueryResult result, long storedAt) {
+            this.result = result;
+            this.storedAt = storedAt;
+            this.cells = Math.max(1L, (long) result.getRows().size() * Math.max(1, result.getColumns().size()));
+        }
+
+        boolean isFresh(int maxAge) {
+            return maxAge < 0 || System.currentTimeMillis() - storedAt <= maxAge * 1000L;
+        }
+    }
+
+    /**
+     * The eviction order of the keys in memory.
+     */
+    private interface Order {
+        void add(QueryKey key);
+
+        void touch(QueryKey key);
+
+        void remove(QueryKey key);
+
+        QueryKey victim();
+    }
+
+    private static final class LruOrder implements Order {
+        private final LinkedHashSet<QueryKey> keys = new LinkedHashSet<>();
+
+        @Override
+        public void add(QueryKey key) {
+            keys.add(key);
+        }
+
+        @Override
+        public void touch(QueryKey key) {
+            keys.remove(key);
+            keys.add(key);
+        }
+
+        @Override
+        public void remove(QueryKey key) {
+            keys.remove(key);
+        }
+
+        @Override
+        public QueryKey victim() {
+            Iterator<QueryKey> eldest = keys.iterator();
+            QueryKey key = eldest.next();
+            eldest.remove();
+            return key;
+        }
+    }
+
+    /**
+     * Keys bucketed by use count; each bucket is in least recently used order.
+     */
+    private static final class LfuOrder implements Order {
+        private final Map<QueryKey, Integer> counts = new HashMap<>();
+        private final TreeMap<Integer, LinkedHashSet<QueryKey>> buckets = new TreeMap<>();
+
+        @Override
+        public void add(QueryKey key) {
+            counts.put(key, 1);
+            buckets.computeIfAbsent(1, c -> new LinkedHashSet<>()).add(key);
+        }
+
+        @Override
+        public void touch(QueryKey key) {
+            int count = counts.get(key);
+            removeFromBucket(key, count);
+            counts.put(key, count + 1);
+            buckets.computeIfAbsent(count + 1, c -> new LinkedHashSet<>()).add(key);
+        }
+
+        @Override
+        public void remove(QueryKey key) {
+            Integer count = counts.remove(key);
+            if (count != null) {
+                removeFromBucket(key, count);
+            }
+        }
+
+        @Override
+        public QueryKey victim() {
+            Map.Entry<Integer, LinkedHashSet<QueryKey>> least = buckets.firstEntry();
+            Iterator<QueryKey> eldest = least.getValue().iterator();
+            QueryKey key = eldest.next();
+            eldest.remove();
+            if (least.getValue().isEmpty()) {
+                buckets.remove(least.getKey());
+            }
+            counts.remove(key);
+            return key;
+        }
+
+        private void removeFromBucket(QueryKey key, int count) {
+            LinkedHashSet<QueryKey> bucket = buckets.get(count);
+            bucket.remove(key);
+            if (bucket.isEmpty()) {
+                buckets.remove(count);
+            }
+        }
+    }
+}
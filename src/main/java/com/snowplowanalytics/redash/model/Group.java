@@ -15,6 +15,7 @@ package com.snowplowanalytics.redash.model;
 
 import com.snowplowanalytics.redash.model.datasource.DataSource;
 
+import java.io.IOException;
 import java.util.List;
 import java.util.Objects;
 
@@ -47,6 +48,26 @@ public class Group extends BaseEntity {
         this.dataSources = dataSources;
     }
 
+    /**
+     * Returns the members of the group. Groups returned by {@link com.snowplowanalytics.redash.RedashClient}
+     * download them on the first call, unless they were set, and keep them; concurrent first calls share one
+     * download. For other groups this is {@link #getUsers()}.
+     *
+     * @throws IOException If the members could not be downloaded; the next call tries again.
+     */
+    public List<User> loadUsers() throws IOException {
+        return users;
+    }
+
+    /**
+     * Returns the data-sources of the group, downloaded once like {@link #loadUsers()}.
+     *
+     * @throws IOException If the data-sources could not be downloaded; the next call tries again.
+     */
+    public List<DataSource> loadDataSources() throws IOException {
+        return dataSources;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (o == this) {
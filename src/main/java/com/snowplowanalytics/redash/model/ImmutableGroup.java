@@ -0,0 +1,142 @@
+/*
+ * Copyright (c) 2018 Snowplow Analytics Ltd. All rights reserved.
+ *
+ * This program is licensed to you under the Apache License Version 2.0,
+ * and you may not use this file except in compliance with the Apache License Version 2.0.
+ * You may obtain a copy of the Apache License Version 2.0 at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the Apache License Version 2.0 is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Apache License Version 2.0 for the specific language governing permissions and limitations there under.
+ */
+
+package com.snowplowanalytics.redash.model;
+
+import com.snowplowanalytics.redash.model.datasource.ImmutableDataSource;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.stream.Collectors;
+
+/**
+ * Immutable counterpart of {@link Group} which can be freely shared between threads and used as a cache key.
+ *
+ * Members and data-sources are copied into array-backed unmodifiable lists when the group is built.
+ * As with {@link Group}, both are null unless they were provided.
+ */
+public final class ImmutableGroup {
+
+    private final String name;
+    private final int id;
+    private final List<ImmutableUser> users;
+    private final List<ImmutableDataSource> dataSources;
+    private final int hashCode;
+
+    private ImmutableGroup(ImmutableGroupBuilder builder) {
+        this.name = builder.name;
+        this.id = builder.id;
+        this.users = compactCopy(builder.users, new ImmutableUser[0]);
+        this.dataSources = compactCopy(builder.dataSources, new ImmutableDataSource[0]);
+        this.hashCode = Objects.hash(name, id, users, dataSources);
+    }
+
+    public static ImmutableGroup copyOf(Group group) {
+        ImmutableGroupBuilder builder = new ImmutableGroupBuilder(group.getName()).id(group.getId());
+        if (group.getUsers() != null) {
+            builder.users(group.getUsers().stream().map(ImmutableUser::copyOf).collect(Collectors.toList()));
+        }
+        if (group.getDataSources() != null) {
+            builder.dataSources(group.getDataSources().stream().map(ImmutableDataSource::copyOf).collect(Collectors.toList()));
+        }
+        return builder.build();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public List<ImmutableUser> getUsers() {
+        return users;
+    }
+
+    public List<ImmutableDataSource> getDataSources() {
+        return dataSources;
+    }
+
+    public final static class ImmutableGroupBuilder {
+        private final String name;
+        private int id;
+        private Collection<ImmutableUser> users;
+        private Collection<ImmutableDataSource> dataSources;
+
+        public ImmutableGroupBuilder(String name) {
+            this.name = name;
+        }
+
+        public ImmutableGroupBuilder id(int id) {
+            this.id = id;
+            return this;
+        }
+
+        public ImmutableGroupBuilder users(Collection<ImmutableUser> users) {
+            this.users = users;
+            return this;
+        }
+
+        public ImmutableGroupBuilder dataSources(Collection<ImmutableDataSource> dataSources) {
+            this.dataSources = dataSources;
+            return this;
+        }
+
+        public ImmutableGroup build() {
+            return new ImmutableGroup(this);
+        }
+    }
+
+    private static <T> List<T> compactCopy(Collection<T> source, T[] type) {
+        if (source == null) {
+            return null;
+        }
+        if (source.isEmpty()) {
+            return Collections.emptyList();
+        }
+        return Collections.unmodifiableList(Arrays.asList(source.toArray(type)));
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (o == this) {
+            return true;
+        }
+        if (!(o instanceof ImmutableGroup)) {
+            return false;
+        }
+        ImmutableGroup group = (ImmutableGroup) o;
+        return hashCode == group.hashCode &&
+                id == group.id &&
+                Objects.equals(name, group.name) &&
+                Objects.equals(users, group.users) &&
+                Objects.equals(dataSources, group.dataSources);
+    }
+
+    @Override
+    public int hashCode() {
+        return hashCode;
+    }
+
+    @Override
+    public String toString() {
+        return "ImmutableGroup{" +
+                "name='" + name + '\'' +
+                ", id=" + id +
+                '}';
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright (c) 2018 Snowplow Analytics Ltd. All rights reserved.
+ *
+ * This program is licensed to you under the Apache License Version 2.0,
+ * and you may not use this file except in compliance with the Apache License Version 2.0.
+ * You may obtain a copy of the Apache License Version 2.0 at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the Apache License Version 2.0 is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Apache License Version 2.0 for the specific language governing permissions and limitations there under.
+ */
+
+package com.snowplowanalytics.redash.model;
+
+import java.util.Objects;
+
+/**
+ * Immutable counterpart of {@link User} which can be freely shared between threads and used as a cache key.
+ */
+public final class ImmutableUser {
+
+    private final String name;
+    private final int id;
+    private final int hashCode;
+
+    private ImmutableUser(ImmutableUserBuilder builder) {
+        this.name = builder.name;
+        this.id = builder.id;
+        this.hashCode = Objects.hash(id, name);
+    }
+
+    public static ImmutableUser copyOf(User user) {
+        return new ImmutableUserBuilder(user.getName()).id(user.getId()).build();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public User toUser() {
+        return new User(name, id);
+    }
+
+    public final static class ImmutableUserBuilder {
+        private final String name;
+        private int id;
+
+        public ImmutableUserBuilder(String name) {
+            this.name = name;
+        }
+
+        public ImmutableUserBuilder id(int id) {
+            this.id = id;
+            return this;
+        }
+
+        public ImmutableUser build() {
+            return new ImmutableUser(this);
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (o == this) {
+            return true;
+        }
+        if (!(o instanceof ImmutableUser)) {
+            return false;
+        }
+        ImmutableUser user = (ImmutableUser) o;
+        return hashCode == user.hashCode &&
+                id == user.id &&
+                Objects.equals(name, user.name);
+    }
+
+    @Override
+    public int hashCode() {
+        return hashCode;
+    }
+
+    @Override
+    public String toString() {
+        return "ImmutableUser{" +
+                "name='" + name + '\'' +
+                ", id=" + id +
+                '}';
+    }
+}
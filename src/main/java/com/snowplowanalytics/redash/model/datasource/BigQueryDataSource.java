@@ -0,0 +1,99 @@
+/*
+ * Copyright (c) 2018 Snowplow Analytics Ltd. All rights reserved.
+ *
+ * This program is licensed to you under the Apache License Version 2.0,
+ * and you may not use this file except in compliance with the Apache License Version 2.0.
+ * You may obtain a copy of the Apache License Version 2.0 at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the Apache License Version 2.0 is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Apache License Version 2.0 for the specific language governing permissions and limitations there under.
+ */
+
+package com.snowplowanalytics.redash.model.datasource;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+public class BigQueryDataSource extends DataSource {
+
+    public static final String TYPE = "bigquery";
+
+    private static final String PROJECT_ID = "projectId";
+    private static final String JSON_KEY_FILE = "jsonKeyFile";
+    private static final String USE_STANDARD_SQL = "useStandardSql";
+    private static final String LOCATION = "location";
+    private static final String LOAD_SCHEMA = "loadSchema";
+    private static final String TOTAL_MBYTES_PROCESSED_LIMIT = "totalMBytesProcessedLimit";
+    private static final Set<String> REQUIRED_OPTIONS = options(PROJECT_ID, JSON_KEY_FILE);
+
+    private BigQueryDataSource(BigQueryDataSourceBuilder builder) {
+        super(builder.name, TYPE, new Options(null, 0, null, null, null, builder.extras));
+    }
+
+    @Override
+    public Set<String> getRequiredOptions() {
+        return REQUIRED_OPTIONS;
+    }
+
+    public final static class BigQueryDataSourceBuilder {
+        private String name;
+        private final Map<String, Object> extras = new LinkedHashMap<>();
+
+        public BigQueryDataSourceBuilder(String name) {
+            this.name = name;
+        }
+
+        public BigQueryDataSourceBuilder projectId(String projectId) {
+            extras.put(PROJECT_ID, projectId);
+            return this;
+        }
+
+        /**
+         * @param jsonKeyFile The service account key file, Base64 encoded as Redash expects it.
+         */
+        public BigQueryDataSourceBuilder jsonKeyFile(String jsonKeyFile) {
+            extras.put(JSON_KEY_FILE, jsonKeyFile);
+            return this;
+        }
+
+        public BigQueryDataSourceBuilder useStandardSql(boolean useStandardSql) {
+            extras.put(USE_STANDARD_SQL, useStandardSql);
+            return this;
+        }
+
+        public BigQueryDataSourceBuilder location(String location) {
+            extras.put(LOCATION, location);
+            return this;
+        }
+
+        public BigQueryDataSourceBuilder loadSchema(boolean loadSchema) {
+            extras.put(LOAD_SCHEMA, loadSchema);
+            return this;
+        }
+
+        public BigQueryDataSourceBuilder totalMBytesProcessedLimit(long limit) {
+            extras.put(TOTAL_MBYTES_PROCESSED_LIMIT, limit);
+            return this;
+        }
+
+        /**
+         * @throws IllegalArgumentException If projectId or jsonKeyFile is not set.
+         */
+        public BigQueryDataSource build() {
+            return requireOptions(new BigQueryDataSource(this));
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "BigQueryDataSource{" +
+                "type='" + getType() + '\'' +
+                ", " + getOptions() +
+                ", name='" + getName() + '\'' +
+                ", id=" + getId() +
+                "} ";
+    }
+}
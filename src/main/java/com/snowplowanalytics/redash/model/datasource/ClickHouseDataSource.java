@@ -0,0 +1,96 @@
+/*
+ * Copyright (c) 2018 Snowplow Analytics Ltd. All rights reserved.
+ *
+ * This program is licensed to you under the Apache License Version 2.0,
+ * and you may not use this file except in compliance with the Apache License Version 2.0.
+ * You may obtain a copy of the Apache License Version 2.0 at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the Apache License Version 2.0 is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Apache License Version 2.0 for the specific language governing permissions and limitations there under.
+ */
+
+package com.snowplowanalytics.redash.model.datasource;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+public class ClickHouseDataSource extends DataSource {
+
+    public static final String TYPE = "clickhouse";
+
+    private static final String URL = "url";
+    private static final String TIMEOUT = "timeout";
+    private static final Set<String> REQUIRED_OPTIONS = options(Options.DB_NAME);
+
+    private ClickHouseDataSource(ClickHouseDataSourceBuilder builder) {
+        super(builder.name, TYPE, new Options(null, 0, builder.user, builder.password, builder.dbName, builder.extras));
+    }
+
+    @Override
+    public Set<String> getRequiredOptions() {
+        return REQUIRED_OPTIONS;
+    }
+
+    public final static class ClickHouseDataSourceBuilder {
+        private String name;
+        private String user;
+        private String password;
+        private String dbName;
+        private final Map<String, Object> extras = new LinkedHashMap<>();
+
+        public ClickHouseDataSourceBuilder(String name) {
+            this.name = name;
+        }
+
+        /**
+         * @param url The HTTP interface of the server, e.g. {@code http://127.0.0.1:8123}.
+         */
+        public ClickHouseDataSourceBuilder url(String url) {
+            extras.put(URL, url);
+            return this;
+        }
+
+        public ClickHouseDataSourceBuilder user(String user) {
+            this.user = user;
+            return this;
+        }
+
+        public ClickHouseDataSourceBuilder password(String password) {
+            this.password = password;
+            return this;
+        }
+
+        public ClickHouseDataSourceBuilder dbName(String dbName) {
+            this.dbName = dbName;
+            return this;
+        }
+
+        /**
+         * @param seconds The query timeout.
+         */
+        public ClickHouseDataSourceBuilder timeout(int seconds) {
+            extras.put(TIMEOUT, seconds);
+            return this;
+        }
+
+        /**
+         * @throws IllegalArgumentException If dbName is not set.
+         */
+        public ClickHouseDataSource build() {
+            return requireOptions(new ClickHouseDataSource(this));
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "ClickHouseDataSource{" +
+                "type='" + getType() + '\'' +
+                ", " + getOptions() +
+                ", name='" + getName() + '\'' +
+                ", id=" + getId() +
+                "} ";
+    }
+}
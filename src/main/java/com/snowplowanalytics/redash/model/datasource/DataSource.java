@@ -15,15 +15,30 @@ package com.snowplowanalytics.redash.model.datasource;
 
 import com.snowplowanalytics.redash.model.BaseEntity;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
 public class DataSource extends BaseEntity{
 
+    private static final Set<String> CONNECTION_OPTIONS =
+            options(Options.HOST, Options.PORT, Options.USER, Options.PASSWORD, Options.DB_NAME);
+
     private final String type;
     private final Options options;
 
     public DataSource(String name, String host, int port, String user, String password, String dbName, String type) {
+        this(name, type, new Options(host, port, user, password, dbName));
+    }
+
+    public DataSource(String name, String type, Options options) {
         super(name);
         this.type = type;
-        this.options = new Options(host, port, user, password, dbName);
+        this.options = options;
     }
 
     public String getHost() {
@@ -54,6 +69,42 @@ public class DataSource extends BaseEntity{
         return options;
     }
 
+    /**
+     * @return The options which must be set for {@link com.snowplowanalytics.redash.RedashClient#updateDataSource}
+     * to accept this data-source. For a plain data-source these are host, port, user, password and dbname.
+     */
+    public Set<String> getRequiredOptions() {
+        return CONNECTION_OPTIONS;
+    }
+
+    /**
+     * @return The required options which are not set, in the order of {@link #getRequiredOptions()}.
+     */
+    public List<String> getMissingOptions() {
+        Map<String, Object> set = options == null ? Collections.emptyMap() : options.asMap();
+        List<String> missing = new ArrayList<>();
+        for (String option : getRequiredOptions()) {
+            Object value = set.get(option);
+            if (value == null || value.toString().isEmpty()) {
+                missing.add(option);
+            }
+        }
+        return missing;
+    }
+
+    static Set<String> options(String... names) {
+        return Collections.unmodifiableSet(new LinkedHashSet<>(Arrays.asList(names)));
+    }
+
+    static <T extends DataSource> T requireOptions(T dataSource) {
+        List<String> missing = dataSource.getMissingOptions();
+        if (!missing.isEmpty()) {
+            throw new IllegalArgumentException("Data-source " + dataSource.getName() + " of type " + dataSource.getType()
+                    + " is missing required options " + missing + ".");
+        }
+        return dataSource;
+    }
+
     @Override
     public String toString() {
         return "DataSource{" +
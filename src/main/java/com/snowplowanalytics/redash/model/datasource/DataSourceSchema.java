@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) 2018 Snowplow Analytics Ltd. All rights reserved.
+ *
+ * This program is licensed to you under the Apache License Version 2.0,
+ * and you may not use this file except in compliance with the Apache License Version 2.0.
+ * You may obtain a copy of the Apache License Version 2.0 at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the Apache License Version 2.0 is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Apache License Version 2.0 for the specific language governing permissions and limitations there under.
+ */
+
+package com.snowplowanalytics.redash.model.datasource;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The tables and columns of a data-source as reported by Redash.
+ *
+ * Instances are immutable. Names are interned and kept in plain arrays sorted by table name, so a schema with
+ * thousands of tables costs little more than its distinct names and column names shared across tables and
+ * data-sources, such as "id", are stored once.
+ */
+public final class DataSourceSchema {
+
+    private static final String[] NO_COLUMNS = new String[0];
+
+    private final String[] tables;
+    private final String[][] columns;
+
+    private DataSourceSchema(DataSourceSchemaBuilder builder) {
+        int size = builder.tables.size();
+        Integer[] order = new Integer[size];
+        for (int i = 0; i < size; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> builder.tables.get(a).compareTo(builder.tables.get(b)));
+        this.tables = new String[size];
+        this.columns = new String[size][];
+        for (int i = 0; i < size; i++) {
+            tables[i] = builder.tables.get(order[i]);
+            columns[i] = builder.columns.get(order[i]);
+        }
+    }
+
+    /**
+     * @return The table names in ascending order.
+     */
+    public List<String> getTableNames() {
+        return Collections.unmodifiableList(Arrays.asList(tables));
+    }
+
+    public int getTableCount() {
+        return tables.length;
+    }
+
+    public boolean containsTable(String table) {
+        return Arrays.binarySearch(tables, table) >= 0;
+    }
+
+    /**
+     * @return The columns of the table in the order Redash reported them or null if there is no such table.
+     */
+    public List<String> getColumns(String table) {
+        int index = Arrays.binarySearch(tables, table);
+        return index < 0 ? null : Collections.unmodifiableList(Arrays.asList(columns[index]));
+    }
+
+    public final static class DataSourceSchemaBuilder {
+        private final List<String> tables = new ArrayList<>();
+        private final List<String[]> columns = new ArrayList<>();
+
+        public DataSourceSchemaBuilder table(String name, List<String> columns) {
+            String[] interned = columns.isEmpty() ? NO_COLUMNS : new String[columns.size()];
+            for (int i = 0; i < interned.length; i++) {
+                interned[i] = columns.get(i).intern();
+            }
+            this.tables.add(name.intern());
+            this.columns.add(interned);
+            return this;
+        }
+
+        public DataSourceSchema build() {
+            return new DataSourceSchema(this);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "DataSourceSchema{" +
+                "tables=" + tables.length +
+                '}';
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ * Copyright (c) 2018 Snowplow Analytics Ltd. All rights reserved.
+ *
+ * This program is licensed to you under the Apache License Version 2.0,
+ * and you may not use this file except in compliance with the Apache License Version 2.0.
+ * You may obtain a copy of the Apache License Version 2.0 at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the Apache License Version 2.0 is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Apache License Version 2.0 for the specific language governing permissions and limitations there under.
+ */
+
+package com.snowplowanalytics.redash.model.datasource;
+
+import com.google.gson.annotations.SerializedName;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A data-source type supported by the Redash server, with the JSON schema of its options as returned by
+ * {@code /api/data_sources/types}.
+ */
+public final class DataSourceType {
+
+    private String name;
+    private String type;
+    @SerializedName("configuration_schema")
+    private ConfigurationSchema configurationSchema;
+
+    /**
+     * @return The display name, e.g. "PostgreSQL".
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return The type as used in {@link DataSource#getType()}, e.g. "pg".
+     */
+    public String getType() {
+        return type;
+    }
+
+    /**
+     * @return The options this type understands, keyed by their name.
+     */
+    public Map<String, Property> getProperties() {
+        return configurationSchema == null || configurationSchema.properties == null
+                ? Collections.emptyMap() : Collections.unmodifiableMap(configurationSchema.properties);
+    }
+
+    public List<String> getRequired() {
+        return configurationSchema == null || configurationSchema.required == null
+                ? Collections.emptyList() : Collections.unmodifiableList(configurationSchema.required);
+    }
+
+    /**
+     * @return The options which Redash masks when data-sources are read back.
+     */
+    public List<String> getSecret() {
+        return configurationSchema == null || configurationSchema.secret == null
+                ? Collections.emptyList() : Collections.unmodifiableList(configurationSchema.secret);
+    }
+
+    /**
+     * Checks the options of a data-source against this type's schema: every required option must be set,
+     * every option must be known to the type and hold a value of the declared JSON type.
+     *
+     * @return A description of each problem found; empty if the options are valid.
+     */
+    public List<String> validate(Options options) {
+        Map<String, Object> values = options == null ? Collections.emptyMap() : options.asMap();
+        List<String> problems = new ArrayList<>();
+        for (String option : getRequired()) {
+            Object value = values.get(option);
+            if (value == null || value.toString().isEmpty()) {
+                problems.add("Option " + option + " is required by " + type + ".");
+            }
+        }
+        Map<String, Property> properties = getProperties();
+        for (Map.Entry<String, Object> option : values.entrySet()) {
+            Property property = properties.get(option.getKey());
+            if (property == null) {
+                problems.add("Option " + option.getKey() + " is not supported by " + type + ".");
+            } else if (!property.accepts(option.getValue())) {
+                problems.add("Option " + option.getKey() + " of " + type + " must be a " + property.type + ".");
+            }
+        }
+        return problems;
+    }
+
+    @Override
+    public String toString() {
+        return "DataSourceType{" +
+                "name='" + name + '\'' +
+                ", type='" + type + '\'' +
+                ", properties=" + getProperties().keySet() +
+                ", required=" + getRequired() +
+                '}';
+    }
+
+    private static final class ConfigurationSchema {
+        private Map<String, Property> properties;
+        private List<String> required;
+        private List<String> secret;
+    }
+
+    public static final class Property {
+        private String type;
+        private String title;
+        @SerializedName("default")
+        private Object defaultValue;
+
+        /**
+         * @return The JSON schema type: "string", "number", "integer" or "boolean".
+         */
+        public String getType() {
+            return type;
+        }
+
+        public String getTitle() {
+            return title;
+        }
+
+        public Object getDefaultValue() {
+            return defaultValue;
+        }
+
+        boolean accepts(Object value) {
+            if (type == null) {
+                return true;
+            }
+            switch (type) {
+                case "string":
+                    return value instanceof String;
+                case "number":
+                    return value instanceof Number;
+                case "integer":
+                    return value instanceof Integer || value instanceof Long;
+                case "boolean":
+                    return value instanceof Boolean;
+                default:
+                    return true;
+            }
+        }
+    }
+}
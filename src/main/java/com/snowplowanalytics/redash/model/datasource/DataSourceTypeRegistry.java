@@ -0,0 +1,67 @@
+/*
+ * Copyright (c) 2018 Snowplow Analytics Ltd. All rights reserved.
+ *
+ * This program is licensed to you under the Apache License Version 2.0,
+ * and you may not use this file except in compliance with the Apache License Version 2.0.
+ * You may obtain a copy of the Apache License Version 2.0 at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the Apache License Version 2.0 is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Apache License Version 2.0 for the specific language governing permissions and limitations there under.
+ */
+
+package com.snowplowanalytics.redash.model.datasource;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The data-source types supported by a Redash server. Validation against the registry is done locally,
+ * so invalid configurations can be rejected without a request to the server.
+ */
+public final class DataSourceTypeRegistry {
+
+    private final Map<String, DataSourceType> types;
+
+    public DataSourceTypeRegistry(Collection<DataSourceType> types) {
+        Map<String, DataSourceType> byType = new LinkedHashMap<>();
+        types.forEach(t -> byType.put(t.getType(), t));
+        this.types = Collections.unmodifiableMap(byType);
+    }
+
+    /**
+     * @return The type or null if the server does not support it.
+     */
+    public DataSourceType get(String type) {
+        return types.get(type);
+    }
+
+    public Collection<DataSourceType> getTypes() {
+        return types.values();
+    }
+
+    /**
+     * @return A description of each problem with the data-source's type and options; empty if it is valid.
+     */
+    public List<String> validate(DataSource dataSource) {
+        DataSourceType type = types.get(dataSource.getType());
+        if (type == null) {
+            return Collections.singletonList("Data-source type " + dataSource.getType() + " is not supported.");
+        }
+        return type.validate(dataSource.getOptions());
+    }
+
+    /**
+     * @throws IllegalArgumentException If the data-source's type is unknown or its options do not match the type.
+     */
+    public void requireValid(DataSource dataSource) throws IllegalArgumentException {
+        List<String> problems = validate(dataSource);
+        if (!problems.isEmpty()) {
+            throw new IllegalArgumentException(String.join(" ", problems));
+        }
+    }
+}
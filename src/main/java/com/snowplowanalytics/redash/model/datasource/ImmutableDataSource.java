@@ -0,0 +1,184 @@
+/*
+ * Copyright (c) 2018 Snowplow Analytics Ltd. All rights reserved.
+ *
+ * This program is licensed to you under the Apache License Version 2.0,
+ * and you may not use this file except in compliance with the Apache License Version 2.0.
+ * You may obtain a copy of the Apache License Version 2.0 at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the Apache License Version 2.0 is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Apache License Version 2.0 for the specific language governing permissions and limitations there under.
+ */
+
+package com.snowplowanalytics.redash.model.datasource;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Immutable counterpart of {@link DataSource} which can be freely shared between threads and used as a cache key.
+ */
+public final class ImmutableDataSource {
+
+    private final String name;
+    private final int id;
+    private final String type;
+    private final Options options;
+    private final int hashCode;
+
+    private ImmutableDataSource(ImmutableDataSourceBuilder builder) {
+        this.name = builder.name;
+        this.id = builder.id;
+        this.type = builder.type;
+        this.options = new Options(builder.host, builder.port, builder.user, builder.password, builder.dbName,
+                builder.extras);
+        this.hashCode = Objects.hash(name, id, type, options);
+    }
+
+    public static ImmutableDataSource copyOf(DataSource dataSource) {
+        ImmutableDataSourceBuilder builder = new ImmutableDataSourceBuilder(dataSource.getName())
+                .id(dataSource.getId())
+                .type(dataSource.getType());
+        if (dataSource.getOptions() != null) {
+            builder.host(dataSource.getHost())
+                    .port(dataSource.getPort())
+                    .user(dataSource.getUser())
+                    .password(dataSource.getPassword())
+                    .dbName(dataSource.getDbName())
+                    .extras(dataSource.getOptions().getExtras());
+        }
+        return builder.build();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public Options getOptions() {
+        return options;
+    }
+
+    public String getHost() {
+        return options.getHost();
+    }
+
+    public int getPort() {
+        return options.getPort();
+    }
+
+    public String getUser() {
+        return options.getUser();
+    }
+
+    public String getPassword() {
+        return options.getPassword();
+    }
+
+    public String getDbName() {
+        return options.getDbName();
+    }
+
+    public final static class ImmutableDataSourceBuilder {
+        private final String name;
+        private int id;
+        private String type;
+        private String host;
+        private int port;
+        private String user;
+        private String password;
+        private String dbName;
+        private Map<String, Object> extras = Collections.emptyMap();
+
+        public ImmutableDataSourceBuilder(String name) {
+            this.name = name;
+        }
+
+        public ImmutableDataSourceBuilder id(int id) {
+            this.id = id;
+            return this;
+        }
+
+        public ImmutableDataSourceBuilder type(String type) {
+            this.type = type;
+            return this;
+        }
+
+        public ImmutableDataSourceBuilder host(String host) {
+            this.host = host;
+            return this;
+        }
+
+        public ImmutableDataSourceBuilder port(int port) {
+            this.port = port;
+            return this;
+        }
+
+        public ImmutableDataSourceBuilder user(String user) {
+            this.user = user;
+            return this;
+        }
+
+        public ImmutableDataSourceBuilder password(String password) {
+            this.password = password;
+            return this;
+        }
+
+        public ImmutableDataSourceBuilder dbName(String dbName) {
+            this.dbName = dbName;
+            return this;
+        }
+
+        /**
+         * @param extras The options other than host, port, user, password and dbname.
+         */
+        public ImmutableDataSourceBuilder extras(Map<String, Object> extras) {
+            this.extras = extras;
+            return this;
+        }
+
+        public ImmutableDataSource build() {
+            return new ImmutableDataSource(this);
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (o == this) {
+            return true;
+        }
+        if (!(o instanceof ImmutableDataSource)) {
+            return false;
+        }
+        ImmutableDataSource that = (ImmutableDataSource) o;
+        return hashCode == that.hashCode &&
+                id == that.id &&
+                Objects.equals(name, that.name) &&
+                Objects.equals(type, that.type) &&
+                Objects.equals(options, that.options);
+    }
+
+    @Override
+    public int hashCode() {
+        return hashCode;
+    }
+
+    @Override
+    public String toString() {
+        return "ImmutableDataSource{" +
+                "type='" + type + '\'' +
+                ", options=" + options +
+                ", name='" + name + '\'' +
+                ", id=" + id +
+                '}';
+    }
+}
@@ -13,23 +13,58 @@
 
 package com.snowplowanalytics.redash.model.datasource;
 
-import com.google.gson.annotations.SerializedName;
+import com.google.gson.annotations.JsonAdapter;
 
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * The type specific configuration of a data-source.
+ *
+ * The connection settings shared by most SQL data-sources have their own fields; any other option of a
+ * data-source type, such as BigQuery's {@code projectId}, is kept in {@link #getExtras()}. Both are written
+ * to and read from the same flat JSON object by {@link OptionsAdapter}.
+ */
+@JsonAdapter(OptionsAdapter.class)
 public class Options {
 
+    static final String HOST = "host";
+    static final String PORT = "port";
+    static final String USER = "user";
+    static final String PASSWORD = "password";
+    static final String DB_NAME = "dbname";
+
+    private static final String MASK = "****";
+    // Lower-case parts of the option names Redash marks as secret, e.g. BigQuery's jsonKeyFile
+    private static final String[] SECRET_NAME_PARTS = {"password", "secret", "token", "key", "credential"};
+
     private final String host;
     private final int port;
     private final String user;
     private final String password;
-    @SerializedName("dbname")
     private final String dbName;
+    private final Map<String, Object> extras;
+    private final int hashCode;
 
     public Options(String host, int port, String user, String password, String dbName) {
+        this(host, port, user, password, dbName, Collections.emptyMap());
+    }
+
+    /**
+     * @param extras Any further options; values should be strings, numbers, booleans or, for nested objects and
+     *               arrays, {@link com.google.gson.JsonElement}s.
+     */
+    public Options(String host, int port, String user, String password, String dbName, Map<String, Object> extras) {
         this.host = host;
         this.port = port;
         this.user = user;
         this.password = password;
         this.dbName = dbName;
+        this.extras = extras.isEmpty() ? Collections.emptyMap() : Collections.unmodifiableMap(new LinkedHashMap<>(extras));
+        this.hashCode = Objects.hash(host, port, user, password, dbName, this.extras);
     }
 
     public String getHost() {
@@ -52,14 +87,89 @@ public class Options {
         return dbName;
     }
 
+    /**
+     * @return The options which have no field of their own, keyed by their Redash name.
+     */
+    public Map<String, Object> getExtras() {
+        return extras;
+    }
+
+    /**
+     * @return All options which are set, keyed by their Redash name. A port of 0 counts as not set.
+     */
+    public Map<String, Object> asMap() {
+        Map<String, Object> map = new LinkedHashMap<>();
+        putIfSet(map, HOST, host);
+        if (port != 0) {
+            map.put(PORT, port);
+        }
+        putIfSet(map, USER, user);
+        putIfSet(map, PASSWORD, password);
+        putIfSet(map, DB_NAME, dbName);
+        extras.forEach((key, value) -> putIfSet(map, key, value));
+        return map;
+    }
+
+    private static void putIfSet(Map<String, Object> map, String key, Object value) {
+        if (value != null) {
+            map.put(key, value);
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (o == this) {
+            return true;
+        }
+        if (!(o instanceof Options)) {
+            return false;
+        }
+        Options options = (Options) o;
+        return hashCode == options.hashCode &&
+                port == options.port &&
+                Objects.equals(host, options.host) &&
+                Objects.equals(user, options.user) &&
+                Objects.equals(password, options.password) &&
+                Objects.equals(dbName, options.dbName) &&
+                Objects.equals(extras, options.extras);
+    }
+
+    @Override
+    public int hashCode() {
+        return hashCode;
+    }
+
+    /**
+     * @return Whether an option with this name holds a secret, such as a password or key file, which must not
+     * be logged. Matched on parts of the name, so that options of any data-source type are covered.
+     */
+    public static boolean isSecret(String name) {
+        String lowerCase = name.toLowerCase(Locale.ROOT);
+        for (String part : SECRET_NAME_PARTS) {
+            if (lowerCase.contains(part)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Secret options are masked, so data-sources can be logged.
+     */
     @Override
     public String toString() {
+        Map<String, Object> maskedExtras = extras;
+        if (extras.keySet().stream().anyMatch(Options::isSecret)) {
+            maskedExtras = new LinkedHashMap<>(extras);
+            maskedExtras.replaceAll((key, value) -> isSecret(key) && value != null ? MASK : value);
+        }
         return "Options{" +
                 "host='" + host + '\'' +
                 ", port=" + port +
                 ", user='" + user + '\'' +
-                ", password='" + password + '\'' +
+                ", password=" + (password == null ? null : "'" + MASK + "'") +
                 ", dbName='" + dbName + '\'' +
+                ", extras=" + maskedExtras +
                 '}';
     }
 }
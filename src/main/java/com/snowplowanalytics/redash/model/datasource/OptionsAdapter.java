@@ -0,0 +1,132 @@
+/*
+ * Copyright (c) 2018 Snowplow Analytics Ltd. All rights reserved.
+ *
+ * This program is licensed to you under the Apache License Version 2.0,
+ * and you may not use this file except in compliance with the Apache License Version 2.0.
+ * You may obtain a copy of the Apache License Version 2.0 at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the Apache License Version 2.0 is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Apache License Version 2.0 for the specific language governing permissions and limitations there under.
+ */
+
+package com.snowplowanalytics.redash.model.datasource;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParser;
+import com.google.gson.TypeAdapter;
+import com.google.gson.internal.Streams;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Writes {@link Options} as one flat JSON object, as Redash expects, and reads unknown keys into its extras.
+ * Unset fields (null, or a port of 0) are left out. Nested objects and arrays are kept as {@link JsonElement}s, so
+ * that they are written back unchanged.
+ */
+class OptionsAdapter extends TypeAdapter<Options> {
+
+    @Override
+    public void write(JsonWriter out, Options options) throws IOException {
+        if (options == null) {
+            out.nullValue();
+            return;
+        }
+        out.beginObject();
+        for (Map.Entry<String, Object> option : options.asMap().entrySet()) {
+            out.name(option.getKey());
+            Object value = option.getValue();
+            if (value instanceof Number) {
+                out.value((Number) value);
+            } else if (value instanceof Boolean) {
+                out.value((Boolean) value);
+            } else if (value instanceof JsonElement) {
+                Streams.write((JsonElement) value, out);
+            } else {
+                out.value(String.valueOf(value));
+            }
+        }
+        out.endObject();
+    }
+
+    @Override
+    public Options read(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        String host = null, user = null, password = null, dbName = null;
+        int port = 0;
+        Map<String, Object> extras = new LinkedHashMap<>();
+        in.beginObject();
+        while (in.hasNext()) {
+            String name = in.nextName();
+            Object value = readValue(in);
+            switch (name) {
+                case Options.HOST:
+                    host = asString(value);
+                    break;
+                case Options.PORT:
+                    port = asPort(value);
+                    break;
+                case Options.USER:
+                    user = asString(value);
+                    break;
+                case Options.PASSWORD:
+                    password = asString(value);
+                    break;
+                case Options.DB_NAME:
+                    dbName = asString(value);
+                    break;
+                default:
+                    if (value != null) {
+                        extras.put(name, value);
+                    }
+            }
+        }
+        in.endObject();
+        return new Options(host, port, user, password, dbName, extras);
+    }
+
+    private static Object readValue(JsonReader in) throws IOException {
+        switch (in.peek()) {
+            case NULL:
+                in.nextNull();
+                return null;
+            case BOOLEAN:
+                return in.nextBoolean();
+            case NUMBER:
+                String number = in.nextString();
+                try {
+                    return Long.parseLong(number);
+                } catch (NumberFormatException e) {
+                    return Double.parseDouble(number);
+                }
+            case STRING:
+                return in.nextString();
+            default:
+                return new JsonParser().parse(in);
+        }
+    }
+
+    private static String asString(Object value) {
+        return value == null ? null : String.valueOf(value);
+    }
+
+    private static int asPort(Object value) {
+        if (value instanceof Number) {
+            return ((Number) value).intValue();
+        }
+        try {
+            return value == null ? 0 : Integer.parseInt(String.valueOf(value).trim());
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright (c) 2018 Snowplow Analytics Ltd. All rights reserved.
+ *
+ * This program is licensed to you under the Apache License Version 2.0,
+ * and you may not use this file except in compliance with the Apache License Version 2.0.
+ * You may obtain a copy of the Apache License Version 2.0 at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the Apache License Version 2.0 is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Apache License Version 2.0 for the specific language governing permissions and limitations there under.
+ */
+
+package com.snowplowanalytics.redash.model.datasource;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+public class PostgreSqlDataSource extends DataSource {
+
+    public static final String TYPE = "pg";
+
+    private static final String SSL_MODE = "sslmode";
+    private static final Set<String> REQUIRED_OPTIONS = options(Options.DB_NAME);
+
+    private PostgreSqlDataSource(PostgreSqlDataSourceBuilder builder) {
+        super(builder.name, TYPE, new Options(builder.host, builder.port, builder.user, builder.password,
+                builder.dbName, builder.extras));
+    }
+
+    @Override
+    public Set<String> getRequiredOptions() {
+        return REQUIRED_OPTIONS;
+    }
+
+    public final static class PostgreSqlDataSourceBuilder {
+        private String name;
+        private String host;
+        private int port;
+        private String user;
+        private String password;
+        private String dbName;
+        private final Map<String, Object> extras = new LinkedHashMap<>();
+
+        public PostgreSqlDataSourceBuilder(String name) {
+            this.name = name;
+        }
+
+        public PostgreSqlDataSourceBuilder host(String host) {
+            this.host = host;
+            return this;
+        }
+
+        public PostgreSqlDataSourceBuilder port(int port) {
+            this.port = port;
+            return this;
+        }
+
+        public PostgreSqlDataSourceBuilder user(String user) {
+            this.user = user;
+            return this;
+        }
+
+        public PostgreSqlDataSourceBuilder password(String password) {
+            this.password = password;
+            return this;
+        }
+
+        public PostgreSqlDataSourceBuilder dbName(String dbName) {
+            this.dbName = dbName;
+            return this;
+        }
+
+        /**
+         * @param sslMode One of the libpq modes, e.g. {@code require} or {@code verify-full}.
+         */
+        public PostgreSqlDataSourceBuilder sslMode(String sslMode) {
+            extras.put(SSL_MODE, sslMode);
+            return this;
+        }
+
+        /**
+         * @throws IllegalArgumentException If dbName is not set.
+         */
+        public PostgreSqlDataSource build() {
+            return requireOptions(new PostgreSqlDataSource(this));
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "PostgreSqlDataSource{" +
+                "type='" + getType() + '\'' +
+                ", " + getOptions() +
+                ", name='" + getName() + '\'' +
+                ", id=" + getId() +
+                "} ";
+    }
+}
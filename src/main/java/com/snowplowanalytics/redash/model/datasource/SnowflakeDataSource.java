@@ -0,0 +1,100 @@
+/*
+ * Copyright (c) 2018 Snowplow Analytics Ltd. All rights reserved.
+ *
+ * This program is licensed to you under the Apache License Version 2.0,
+ * and you may not use this file except in compliance with the Apache License Version 2.0.
+ * You may obtain a copy of the Apache License Version 2.0 at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the Apache License Version 2.0 is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Apache License Version 2.0 for the specific language governing permissions and limitations there under.
+ */
+
+package com.snowplowanalytics.redash.model.datasource;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+public class SnowflakeDataSource extends DataSource {
+
+    public static final String TYPE = "snowflake";
+
+    private static final String ACCOUNT = "account";
+    private static final String WAREHOUSE = "warehouse";
+    private static final String DATABASE = "database";
+    private static final String REGION = "region";
+    private static final Set<String> REQUIRED_OPTIONS =
+            options(Options.USER, Options.PASSWORD, ACCOUNT, DATABASE, WAREHOUSE);
+
+    private SnowflakeDataSource(SnowflakeDataSourceBuilder builder) {
+        super(builder.name, TYPE, new Options(null, 0, builder.user, builder.password, null, builder.extras));
+    }
+
+    @Override
+    public Set<String> getRequiredOptions() {
+        return REQUIRED_OPTIONS;
+    }
+
+    public final static class SnowflakeDataSourceBuilder {
+        private String name;
+        private String user;
+        private String password;
+        private final Map<String, Object> extras = new LinkedHashMap<>();
+
+        public SnowflakeDataSourceBuilder(String name) {
+            this.name = name;
+        }
+
+        /**
+         * @param account The account name, without the {@code .snowflakecomputing.com} suffix.
+         */
+        public SnowflakeDataSourceBuilder account(String account) {
+            extras.put(ACCOUNT, account);
+            return this;
+        }
+
+        public SnowflakeDataSourceBuilder user(String user) {
+            this.user = user;
+            return this;
+        }
+
+        public SnowflakeDataSourceBuilder password(String password) {
+            this.password = password;
+            return this;
+        }
+
+        public SnowflakeDataSourceBuilder warehouse(String warehouse) {
+            extras.put(WAREHOUSE, warehouse);
+            return this;
+        }
+
+        public SnowflakeDataSourceBuilder database(String database) {
+            extras.put(DATABASE, database);
+            return this;
+        }
+
+        public SnowflakeDataSourceBuilder region(String region) {
+            extras.put(REGION, region);
+            return this;
+        }
+
+        /**
+         * @throws IllegalArgumentException If account, user, password, warehouse or database is not set.
+         */
+        public SnowflakeDataSource build() {
+            return requireOptions(new SnowflakeDataSource(this));
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "SnowflakeDataSource{" +
+                "type='" + getType() + '\'' +
+                ", " + getOptions() +
+                ", name='" + getName() + '\'' +
+                ", id=" + getId() +
+                "} ";
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright (c) 2018 Snowplow Analytics Ltd. All rights reserved.
+ *
+ * This program is licensed to you under the Apache License Version 2.0,
+ * and you may not use this file except in compliance with the Apache License Version 2.0.
+ * You may obtain a copy of the Apache License Version 2.0 at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the Apache License Version 2.0 is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Apache License Version 2.0 for the specific language governing permissions and limitations there under.
+ */
+
+package com.snowplowanalytics.redash.model.query;
+
+import com.google.gson.annotations.SerializedName;
+
+/**
+ * A query execution queued by Redash.
+ */
+public class Job {
+
+    public static final int PENDING = 1;
+    public static final int STARTED = 2;
+    public static final int SUCCESS = 3;
+    public static final int FAILURE = 4;
+    public static final int CANCELLED = 5;
+
+    private String id;
+    private int status;
+    private String error;
+    @SerializedName("query_result_id")
+    private Integer queryResultId;
+
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * @return One of {@link #PENDING}, {@link #STARTED}, {@link #SUCCESS}, {@link #FAILURE} or {@link #CANCELLED}.
+     */
+    public int getStatus() {
+        return status;
+    }
+
+    public boolean isDone() {
+        return status == SUCCESS || status == FAILURE || status == CANCELLED;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    /**
+     * @return The id of the result once the job succeeded, null before.
+     */
+    public Integer getQueryResultId() {
+        return queryResultId;
+    }
+
+    @Override
+    public String toString() {
+        return "Job{" +
+                "id='" + id + '\'' +
+                ", status=" + status +
+                ", error='" + error + '\'' +
+                ", queryResultId=" + queryResultId +
+                '}';
+    }
+}
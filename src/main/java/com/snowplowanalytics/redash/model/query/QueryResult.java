@@ -0,0 +1,168 @@
+/*
+ * Copyright (c) 2018 Snowplow Analytics Ltd. All rights reserved.
+ *
+ * This program is licensed to you under the Apache License Version 2.0,
+ * and you may not use this file except in compliance with the Apache License Version 2.0.
+ * You may obtain a copy of the Apache License Version 2.0 at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the Apache License Version 2.0 is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Apache License Version 2.0 for the specific language governing permissions and limitations there under.
+ */
+
+package com.snowplowanalytics.redash.model.query;
+
+import com.google.gson.annotations.SerializedName;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The result of executing a query, as stored by Redash.
+ *
+ * The columns and rows are read-only, as results may be shared between callers, e.g. by a query-result cache.
+ */
+public class QueryResult {
+
+    private int id;
+    private String query;
+    @SerializedName("query_hash")
+    private String queryHash;
+    @SerializedName("data_source_id")
+    private int dataSourceId;
+    private double runtime;
+    @SerializedName("retrieved_at")
+    private String retrievedAt;
+    private Data data;
+    // Read-only views of data, built on first use; Gson skips transient fields
+    private transient volatile List<Column> columns;
+    private transient volatile List<Map<String, Object>> rows;
+
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * @return The query text that was executed, with any parameters applied.
+     */
+    public String getQuery() {
+        return query;
+    }
+
+    public String getQueryHash() {
+        return queryHash;
+    }
+
+    public int getDataSourceId() {
+        return dataSourceId;
+    }
+
+    /**
+     * @return The execution time in seconds.
+     */
+    public double getRuntime() {
+        return runtime;
+    }
+
+    /**
+     * @return When the query was executed or null if Redash did not report it.
+     */
+    public Instant getRetrievedAt() {
+        if (retrievedAt == null) {
+            return null;
+        }
+        try {
+            return OffsetDateTime.parse(retrievedAt).toInstant();
+        } catch (DateTimeParseException e) {
+            // Redash stores naive UTC timestamps for some data-sources
+            return LocalDateTime.parse(retrievedAt).toInstant(ZoneOffset.UTC);
+        }
+    }
+
+    /**
+     * @return The columns, read-only.
+     */
+    public List<Column> getColumns() {
+        List<Column> view = columns;
+        if (view == null) {
+            view = data == null || data.columns == null
+                    ? Collections.emptyList() : Collections.unmodifiableList(data.columns);
+            columns = view;
+        }
+        return view;
+    }
+
+    /**
+     * @return The rows keyed by column name, read-only. Numbers are returned as {@link Double}.
+     */
+    public List<Map<String, Object>> getRows() {
+        List<Map<String, Object>> view = rows;
+        if (view == null) {
+            if (data == null || data.rows == null) {
+                view = Collections.emptyList();
+            } else {
+                List<Map<String, Object>> readOnly = new ArrayList<>(data.rows.size());
+                for (Map<String, Object> row : data.rows) {
+                    readOnly.add(Collections.unmodifiableMap(row));
+                }
+                view = Collections.unmodifiableList(readOnly);
+            }
+            rows = view;
+        }
+        return view;
+    }
+
+    private static final class Data {
+        private List<Column> columns;
+        private List<Map<String, Object>> rows;
+    }
+
+    public static final class Column {
+        private String name;
+        @SerializedName("friendly_name")
+        private String friendlyName;
+        private String type;
+
+        public String getName() {
+            return name;
+        }
+
+        public String getFriendlyName() {
+            return friendlyName;
+        }
+
+        /**
+         * @return The Redash column type, e.g. "integer", "string" or "datetime"; null if unknown.
+         */
+        public String getType() {
+            return type;
+        }
+
+        @Override
+        public String toString() {
+            return "Column{" +
+                    "name='" + name + '\'' +
+                    ", type='" + type + '\'' +
+                    '}';
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "QueryResult{" +
+                "id=" + id +
+                ", dataSourceId=" + dataSourceId +
+                ", retrievedAt='" + retrievedAt + '\'' +
+                ", columns=" + getColumns().size() +
+                ", rows=" + getRows().size() +
+                '}';
+    }
+}
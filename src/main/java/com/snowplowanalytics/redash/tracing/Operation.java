@@ -0,0 +1,192 @@
+/*
+ * Copyright (c) 2018 Snowplow Analytics Ltd. All rights reserved.
+ *
+ * This program is licensed to you under the Apache License Version 2.0,
+ * and you may not use this file except in compliance with the Apache License Version 2.0.
+ * You may obtain a copy of the Apache License Version 2.0 at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the Apache License Version 2.0 is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Apache License Version 2.0 for the specific language governing permissions and limitations there under.
+ */
+
+package com.snowplowanalytics.redash.tracing;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A logical operation, e.g. one call of {@link com.snowplowanalytics.redash.RedashClient#addUserToGroup}, which
+ * becomes an {@link Span.Kind#INTERNAL} span when it is sampled and closed. Operations started while another one
+ * is current on the same thread are its children and share its trace and sampling decision.
+ *
+ * The phase timings of all HTTP calls made on behalf of the operation and of its child operations are summed into
+ * {@code redash.phase.<phase>.nanos} attributes, where the phases are those of {@link RedashTracer#PHASES}. The
+ * {@code decode} phase is the time between the last response of the operation and its end.
+ *
+ * Not sampled operations only track the current operation of the thread, so they cost two thread-local writes.
+ */
+public final class Operation implements AutoCloseable {
+
+    private static final String PHASE_PREFIX = "redash.phase.";
+    private static final String PHASE_SUFFIX = ".nanos";
+    private static final String HTTP_CALLS = "redash.http.calls";
+
+    private final RedashTracer tracer;
+    private final Operation parent;
+    private final Operation previous;
+    private final String traceId;
+    private final String spanId;
+    private final String name;
+    private final boolean sampled;
+    private final long startEpochNanos;
+    private final Map<String, Object> attributes = new LinkedHashMap<>();
+    private final Map<String, LongAdder> phases = new ConcurrentHashMap<>();
+    private final AtomicInteger httpCalls = new AtomicInteger();
+    private final AtomicLong lastResponseEpochNanos = new AtomicLong();
+    private final AtomicBoolean closed = new AtomicBoolean();
+    private volatile String error;
+
+    Operation(RedashTracer tracer, Operation parent, Operation previous, String traceId, String spanId, String name,
+              boolean sampled, long startEpochNanos) {
+        this.tracer = tracer;
+        this.parent = parent;
+        this.previous = previous;
+        this.traceId = traceId;
+        this.spanId = spanId;
+        this.name = name;
+        this.sampled = sampled;
+        this.startEpochNanos = startEpochNanos;
+    }
+
+    public String getTraceId() {
+        return traceId;
+    }
+
+    public String getSpanId() {
+        return spanId;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public boolean isSampled() {
+        return sampled;
+    }
+
+    /**
+     * @return The W3C trace context header value which makes the HTTP calls of this operation its children.
+     */
+    public String traceparent() {
+        return "00-" + traceId + '-' + spanId + (sampled ? "-01" : "-00");
+    }
+
+    /**
+     * @param value A String, Long, Integer or Boolean.
+     */
+    public Operation setAttribute(String key, Object value) {
+        if (sampled) {
+            synchronized (attributes) {
+                attributes.put(key, value);
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Marks the operation as failed, see {@link Span#getStatusMessage()}.
+     */
+    public void setError(Throwable error) {
+        this.error = error.getClass().getName() + (error.getMessage() != null ? ": " + error.getMessage() : "");
+    }
+
+    /**
+     * @return A task which runs {@code task} with this operation as the current one, for handing work of the
+     * operation to another thread.
+     */
+    public <T> Callable<T> wrap(Callable<T> task) {
+        return () -> {
+            Operation replaced = tracer.swap(this);
+            try {
+                return task.call();
+            } finally {
+                tracer.swap(replaced);
+            }
+        };
+    }
+
+    public Runnable wrap(Runnable task) {
+        return () -> {
+            Operation replaced = tracer.swap(this);
+            try {
+                task.run();
+            } finally {
+                tracer.swap(replaced);
+            }
+        };
+    }
+
+    /**
+     * Ends the operation, makes the operation that was current before it current again and exports its span if
+     * it is sampled. Must be called on the thread which started it; only the first call has an effect.
+     */
+    @Override
+    public void close() {
+        if (!closed.compareAndSet(false, true)) {
+            return;
+        }
+        tracer.swap(previous);
+        if (!sampled) {
+            return;
+        }
+        tracer.deactivate(this);
+        long endEpochNanos = tracer.epochNanos();
+        Map<String, Object> spanAttributes;
+        synchronized (attributes) {
+            spanAttributes = new LinkedHashMap<>(attributes);
+        }
+        for (String phase : RedashTracer.PHASES) {
+            LongAdder total = phases.get(phase);
+            if (total != null) {
+                spanAttributes.put(PHASE_PREFIX + phase + PHASE_SUFFIX, total.sum());
+            }
+        }
+        long lastResponse = lastResponseEpochNanos.get();
+        if (lastResponse != 0) {
+            spanAttributes.put(PHASE_PREFIX + RedashTracer.DECODE + PHASE_SUFFIX, Math.max(0, endEpochNanos - lastResponse));
+        }
+        spanAttributes.put(HTTP_CALLS, (long) httpCalls.get());
+        if (parent != null) {
+            parent.onChildEnded(phases, httpCalls.get(), lastResponse);
+        }
+        tracer.export(new Span(traceId, spanId, parent != null ? parent.spanId : null, name, Span.Kind.INTERNAL,
+                startEpochNanos, endEpochNanos, spanAttributes, new ArrayList<>(),
+                error != null ? Span.StatusCode.ERROR : Span.StatusCode.OK, error));
+    }
+
+    /**
+     * Adds the phases of one HTTP call or of a finished child operation. Calls which end after the operation are
+     * still exported as spans but no longer counted.
+     */
+    void onChildEnded(Map<String, ? extends Number> childPhases, int childHttpCalls, long lastResponseEpochNanos) {
+        if (closed.get()) {
+            return;
+        }
+        childPhases.forEach((phase, nanos) -> {
+            if (!RedashTracer.DECODE.equals(phase)) {
+                phases.computeIfAbsent(phase, p -> new LongAdder()).add(nanos.longValue());
+            }
+        });
+        httpCalls.addAndGet(childHttpCalls);
+        this.lastResponseEpochNanos.accumulateAndGet(lastResponseEpochNanos, Math::max);
+    }
+}
@@ -0,0 +1,195 @@
+/*
+ * Copyright (c) 2018 Snowplow Analytics Ltd. All rights reserved.
+ *
+ * This program is licensed to you under the Apache License Version 2.0,
+ * and you may not use this file except in compliance with the Apache License Version 2.0.
+ * You may obtain a copy of the Apache License Version 2.0 at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the Apache License Version 2.0 is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Apache License Version 2.0 for the specific language governing permissions and limitations there under.
+ */
+
+package com.snowplowanalytics.redash.tracing;
+
+import okhttp3.EventListener;
+
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Records the operations of a {@link com.snowplowanalytics.redash.RedashClient} and their HTTP calls as spans,
+ * see {@link com.snowplowanalytics.redash.RedashClient.RedashClientBuilder#tracer(RedashTracer)}.
+ *
+ * Whether a trace is recorded is decided once for its root operation, with probability {@link #getSampleRatio()}.
+ * HTTP calls are linked to their operation through the W3C {@value #TRACEPARENT} header, which the client adds to
+ * the requests of sampled operations, and timed by the {@link EventListener} of {@link #eventListenerFactory()}.
+ * Calls without a sampled parent get {@link EventListener#NONE}.
+ */
+public final class RedashTracer {
+
+    public static final String TRACEPARENT = "traceparent";
+    public static final double DEFAULT_SAMPLE_RATIO = 0.01;
+
+    public static final String DNS = "dns";
+    public static final String CONNECT = "connect";
+    public static final String TLS = "tls";
+    public static final String REQUEST = "request";
+    public static final String SERVER = "server";
+    public static final String RESPONSE = "response";
+    public static final String DECODE = "decode";
+    /**
+     * The phases in the order they happen. {@value #SERVER} is the time between the request being sent and the
+     * response headers arriving and {@value #DECODE} the client-side time after the last response.
+     */
+    public static final List<String> PHASES = Collections.unmodifiableList(
+            Arrays.asList(DNS, CONNECT, TLS, REQUEST, SERVER, RESPONSE, DECODE));
+
+    private final SpanExporter exporter;
+    private final double sampleRatio;
+    private final ThreadLocal<Operation> current = new ThreadLocal<>();
+    private final Map<String, Operation> active = new ConcurrentHashMap<>();
+    private final long anchorEpochNanos;
+    private final long anchorNanoTime;
+
+    private RedashTracer(RedashTracerBuilder builder) {
+        this.exporter = builder.exporter;
+        this.sampleRatio = builder.sampleRatio;
+        Instant now = Instant.now();
+        this.anchorNanoTime = System.nanoTime();
+        this.anchorEpochNanos = now.getEpochSecond() * 1_000_000_000L + now.getNano();
+    }
+
+    public final static class RedashTracerBuilder {
+        private final SpanExporter exporter;
+        private double sampleRatio = DEFAULT_SAMPLE_RATIO;
+
+        public RedashTracerBuilder(SpanExporter exporter) {
+            this.exporter = exporter;
+        }
+
+        /**
+         * @param sampleRatio The share of root operations which are recorded, from 0 to 1.
+         *                    Defaults to {@value #DEFAULT_SAMPLE_RATIO}.
+         */
+        public RedashTracerBuilder sampleRatio(double sampleRatio) {
+            if (sampleRatio < 0 || sampleRatio > 1) {
+                throw new IllegalArgumentException("Sample ratio must be between 0 and 1");
+            }
+            this.sampleRatio = sampleRatio;
+            return this;
+        }
+
+        public RedashTracer build() {
+            return new RedashTracer(this);
+        }
+    }
+
+    public double getSampleRatio() {
+        return sampleRatio;
+    }
+
+    /**
+     * Starts an operation as a child of the current operation of this thread, or as the root of a new trace, and
+     * makes it the current one until it is closed.
+     */
+    public Operation startOperation(String name) {
+        Operation parent = current.get();
+        Operation operation;
+        if (parent != null) {
+            operation = new Operation(this, parent, parent, parent.getTraceId(),
+                    parent.isSampled() ? randomId(1) : parent.getSpanId(), name, parent.isSampled(),
+                    parent.isSampled() ? epochNanos() : 0);
+        } else if (sampleRatio > 0 && ThreadLocalRandom.current().nextDouble() < sampleRatio) {
+            operation = new Operation(this, null, null, randomId(2), randomId(1), name, true, epochNanos());
+        } else {
+            operation = new Operation(this, null, null, null, null, name, false, 0);
+        }
+        if (operation.isSampled()) {
+            active.put(operation.getSpanId(), operation);
+        }
+        current.set(operation);
+        return operation;
+    }
+
+    /**
+     * @return The operation of this thread which is not closed yet, or null.
+     */
+    public Operation currentOperation() {
+        return current.get();
+    }
+
+    /**
+     * @return The factory to install with {@link okhttp3.OkHttpClient.Builder#eventListenerFactory} on clients used
+     * by traced {@code RedashClient}s. This is done automatically for plain {@code OkHttpTransport}s.
+     * Tracers are usable without OkHttp on the class path as long as this method is not called.
+     */
+    public EventListener.Factory eventListenerFactory() {
+        return TracingEventListener.factory(this);
+    }
+
+    /**
+     * @return The sampled operation a request with this header belongs to, or null.
+     */
+    Operation operationOf(String traceparent) {
+        // 00-<32 hex trace id>-<16 hex parent id>-<2 hex flags>
+        if (traceparent == null || traceparent.length() != 55 || !traceparent.endsWith("-01")) {
+            return null;
+        }
+        Operation operation = active.get(traceparent.substring(36, 52));
+        return operation != null && traceparent.regionMatches(3, operation.getTraceId(), 0, 32) ? operation : null;
+    }
+
+    Operation swap(Operation operation) {
+        Operation replaced = current.get();
+        if (operation != null) {
+            current.set(operation);
+        } else {
+            current.remove();
+        }
+        return replaced;
+    }
+
+    void deactivate(Operation operation) {
+        active.remove(operation.getSpanId());
+    }
+
+    long epochNanos() {
+        return anchorEpochNanos + (System.nanoTime() - anchorNanoTime);
+    }
+
+    String newSpanId() {
+        return randomId(1);
+    }
+
+    void export(Span span) {
+        try {
+            exporter.export(span);
+        } catch (RuntimeException e) {
+            // A broken exporter must not fail the traced calls.
+        }
+    }
+
+    private static String randomId(int longs) {
+        StringBuilder id = new StringBuilder(16 * longs);
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int i = 0; i < longs; i++) {
+            long value;
+            do {
+                value = random.nextLong();
+            } while (value == 0);
+            String hex = Long.toHexString(value);
+            for (int pad = hex.length(); pad < 16; pad++) {
+                id.append('0');
+            }
+            id.append(hex);
+        }
+        return id.toString();
+    }
+}
@@ -0,0 +1,216 @@
+/*
+ * Copyright (c) 2018 Snowplow Analytics Ltd. All rights reserved.
+ *
+ * This program is licensed to you under the Apache License Version 2.0,
+ * and you may not use this file except in compliance with the Apache License Version 2.0.
+ * You may obtain a copy of the Apache License Version 2.0 at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the Apache License Version 2.0 is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Apache License Version 2.0 for the specific language governing permissions and limitations there under.
+ */
+
+package com.snowplowanalytics.redash.tracing;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A finished span, shaped like an OpenTelemetry span: ids in lowercase hex, times in nanoseconds since the epoch,
+ * attributes with OpenTelemetry semantic convention names where one exists and timestamped events.
+ *
+ * Operations of {@link com.snowplowanalytics.redash.RedashClient} are {@link Kind#INTERNAL} spans with a
+ * {@code redash.phase.<phase>.nanos} attribute per phase, summed over their HTTP calls. Each HTTP call is a
+ * {@link Kind#CLIENT} span whose events mark the start and end of its phases.
+ */
+public final class Span {
+
+    public enum Kind {
+        INTERNAL, CLIENT
+    }
+
+    public enum StatusCode {
+        UNSET, OK, ERROR
+    }
+
+    public static final class Event {
+        private final String name;
+        private final long epochNanos;
+
+        Event(String name, long epochNanos) {
+            this.name = name;
+            this.epochNanos = epochNanos;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getEpochNanos() {
+            return epochNanos;
+        }
+
+        @Override
+        public String toString() {
+            return name + "@" + epochNanos;
+        }
+    }
+
+    private final String traceId;
+    private final String spanId;
+    private final String parentSpanId;
+    private final String name;
+    private final Kind kind;
+    private final long startEpochNanos;
+    private final long endEpochNanos;
+    private final Map<String, Object> attributes;
+    private final List<Event> events;
+    private final StatusCode status;
+    private final String statusMessage;
+
+    Span(String traceId, String spanId, String parentSpanId, String name, Kind kind, long startEpochNanos,
+         long endEpochNanos, Map<String, Object> attributes, List<Event> events, StatusCode status,
+         String statusMessage) {
+        this.traceId = traceId;
+        this.spanId = spanId;
+        this.parentSpanId = parentSpanId;
+        this.name = name;
+        this.kind = kind;
+        this.startEpochNanos = startEpochNanos;
+        this.endEpochNanos = endEpochNanos;
+        this.attributes = Collections.unmodifiableMap(new LinkedHashMap<>(attributes));
+        this.events = Collections.unmodifiableList(new ArrayList<>(events));
+        this.status = status;
+        this.statusMessage = statusMessage;
+    }
+
+    public String getTraceId() {
+        return traceId;
+    }
+
+    public String getSpanId() {
+        return spanId;
+    }
+
+    /**
+     * @return The id of the parent span, or null for a root span.
+     */
+    public String getParentSpanId() {
+        return parentSpanId;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    public long getStartEpochNanos() {
+        return startEpochNanos;
+    }
+
+    public long getEndEpochNanos() {
+        return endEpochNanos;
+    }
+
+    public long getDurationNanos() {
+        return endEpochNanos - startEpochNanos;
+    }
+
+    /**
+     * @return String, long or boolean values by name.
+     */
+    public Map<String, Object> getAttributes() {
+        return attributes;
+    }
+
+    public List<Event> getEvents() {
+        return events;
+    }
+
+    public StatusCode getStatus() {
+        return status;
+    }
+
+    /**
+     * @return The error message of a span with status {@link StatusCode#ERROR}, otherwise null.
+     */
+    public String getStatusMessage() {
+        return statusMessage;
+    }
+
+    /**
+     * @return The span as an OTLP/JSON span object, ready to be put into the {@code spans} array of a
+     * {@code scopeSpans} entry of an export request.
+     */
+    public JsonObject toOtlpJson() {
+        JsonObject json = new JsonObject();
+        json.addProperty("traceId", traceId);
+        json.addProperty("spanId", spanId);
+        if (parentSpanId != null) {
+            json.addProperty("parentSpanId", parentSpanId);
+        }
+        json.addProperty("name", name);
+        json.addProperty("kind", kind == Kind.CLIENT ? 3 : 1);
+        json.addProperty("startTimeUnixNano", Long.toString(startEpochNanos));
+        json.addProperty("endTimeUnixNano", Long.toString(endEpochNanos));
+        JsonArray otlpAttributes = new JsonArray();
+        attributes.forEach((key, value) -> {
+            JsonObject attribute = new JsonObject();
+            attribute.addProperty("key", key);
+            attribute.add("value", value(value));
+            otlpAttributes.add(attribute);
+        });
+        json.add("attributes", otlpAttributes);
+        JsonArray otlpEvents = new JsonArray();
+        for (Event event : events) {
+            JsonObject otlpEvent = new JsonObject();
+            otlpEvent.addProperty("name", event.name);
+            otlpEvent.addProperty("timeUnixNano", Long.toString(event.epochNanos));
+            otlpEvents.add(otlpEvent);
+        }
+        json.add("events", otlpEvents);
+        JsonObject otlpStatus = new JsonObject();
+        otlpStatus.addProperty("code", status.ordinal());
+        if (statusMessage != null) {
+            otlpStatus.addProperty("message", statusMessage);
+        }
+        json.add("status", otlpStatus);
+        return json;
+    }
+
+    private static JsonObject value(Object value) {
+        JsonObject json = new JsonObject();
+        if (value instanceof Boolean) {
+            json.addProperty("boolValue", (Boolean) value);
+        } else if (value instanceof Long || value instanceof Integer) {
+            // OTLP/JSON encodes 64-bit integers as strings
+            json.addProperty("intValue", value.toString());
+        } else {
+            json.addProperty("stringValue", String.valueOf(value));
+        }
+        return json;
+    }
+
+    @Override
+    public String toString() {
+        return "Span{" +
+                "name='" + name + '\'' +
+                ", kind=" + kind +
+                ", traceId='" + traceId + '\'' +
+                ", spanId='" + spanId + '\'' +
+                ", parentSpanId='" + parentSpanId + '\'' +
+                ", durationNanos=" + getDurationNanos() +
+                ", status=" + status +
+                '}';
+    }
+}
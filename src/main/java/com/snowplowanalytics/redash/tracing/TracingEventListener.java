@@ -0,0 +1,197 @@
+/*
+ * Copyright (c) 2018 Snowplow Analytics Ltd. All rights reserved.
+ *
+ * This program is licensed to you under the Apache License Version 2.0,
+ * and you may not use this file except in compliance with the Apache License Version 2.0.
+ * You may obtain a copy of the Apache License Version 2.0 at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the Apache License Version 2.0 is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Apache License Version 2.0 for the specific language governing permissions and limitations there under.
+ */
+
+package com.snowplowanalytics.redash.tracing;
+
+import okhttp3.Call;
+import okhttp3.EventListener;
+import okhttp3.Handshake;
+import okhttp3.HttpUrl;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Times the phases of one HTTP call and exports it as a {@link Span.Kind#CLIENT} span below its operation. Phases
+ * which happen more than once, e.g. connecting again after a failed route, are summed.
+ *
+ * OkHttp calls the listener of a call from one thread at a time, so it needs no locking.
+ */
+final class TracingEventListener extends EventListener {
+
+    private final RedashTracer tracer;
+    private final Operation operation;
+    private final String spanId;
+    private final long startEpochNanos;
+    private final Map<String, Object> attributes = new LinkedHashMap<>();
+    private final Map<String, Long> phases = new LinkedHashMap<>();
+    private final List<Span.Event> events = new ArrayList<>();
+    private long dnsStart;
+    private long connectStart;
+    private long tlsStart;
+    private long tlsNanos;
+    private long requestStart;
+    private long requestEnd;
+    private long responseStart;
+    private long responseEnd;
+    private int statusCode;
+
+    /**
+     * @return A factory which times the calls of sampled operations and gives other calls {@link EventListener#NONE}.
+     */
+    static EventListener.Factory factory(RedashTracer tracer) {
+        return call -> {
+            Operation parent = tracer.operationOf(call.request().header(RedashTracer.TRACEPARENT));
+            return parent != null ? new TracingEventListener(tracer, parent) : EventListener.NONE;
+        };
+    }
+
+    TracingEventListener(RedashTracer tracer, Operation operation) {
+        this.tracer = tracer;
+        this.operation = operation;
+        this.spanId = tracer.newSpanId();
+        this.startEpochNanos = tracer.epochNanos();
+    }
+
+    @Override
+    public void callStart(Call call) {
+        Request request = call.request();
+        HttpUrl url = request.url();
+        attributes.put("http.method", request.method());
+        attributes.put("http.url", url.toString());
+        attributes.put("net.peer.name", url.host());
+        attributes.put("net.peer.port", (long) url.port());
+    }
+
+    @Override
+    public void dnsStart(Call call, String domainName) {
+        dnsStart = event("dns.start");
+    }
+
+    @Override
+    public void dnsEnd(Call call, String domainName, List<InetAddress> inetAddressList) {
+        add(RedashTracer.DNS, event("dns.end") - dnsStart);
+    }
+
+    @Override
+    public void connectStart(Call call, InetSocketAddress inetSocketAddress, Proxy proxy) {
+        connectStart = event("connect.start");
+        tlsNanos = 0;
+    }
+
+    @Override
+    public void secureConnectStart(Call call) {
+        tlsStart = event("tls.start");
+    }
+
+    @Override
+    public void secureConnectEnd(Call call, Handshake handshake) {
+        tlsNanos = event("tls.end") - tlsStart;
+        add(RedashTracer.TLS, tlsNanos);
+    }
+
+    @Override
+    public void connectEnd(Call call, InetSocketAddress inetSocketAddress, Proxy proxy, Protocol protocol) {
+        // The TLS handshake happens within connectStart and connectEnd but is reported as its own phase.
+        add(RedashTracer.CONNECT, event("connect.end") - connectStart - tlsNanos);
+        if (protocol != null) {
+            attributes.put("net.protocol.name", protocol.toString());
+        }
+    }
+
+    @Override
+    public void connectFailed(Call call, InetSocketAddress inetSocketAddress, Proxy proxy, Protocol protocol,
+                              IOException ioe) {
+        add(RedashTracer.CONNECT, event("connect.failed") - connectStart - tlsNanos);
+    }
+
+    @Override
+    public void requestHeadersStart(Call call) {
+        requestStart = event("request.start");
+    }
+
+    @Override
+    public void requestHeadersEnd(Call call, Request request) {
+        requestEnd = tracer.epochNanos();
+    }
+
+    @Override
+    public void requestBodyEnd(Call call, long byteCount) {
+        requestEnd = tracer.epochNanos();
+        attributes.put("http.request_content_length", byteCount);
+    }
+
+    @Override
+    public void responseHeadersStart(Call call) {
+        responseStart = event("response.start");
+        if (requestStart != 0) {
+            events.add(new Span.Event("request.end", requestEnd));
+            add(RedashTracer.REQUEST, requestEnd - requestStart);
+            add(RedashTracer.SERVER, responseStart - requestEnd);
+        }
+    }
+
+    @Override
+    public void responseHeadersEnd(Call call, Response response) {
+        statusCode = response.code();
+        attributes.put("http.status_code", (long) statusCode);
+    }
+
+    @Override
+    public void responseBodyEnd(Call call, long byteCount) {
+        responseEnd = event("response.end");
+        add(RedashTracer.RESPONSE, responseEnd - responseStart);
+        attributes.put("http.response_content_length", byteCount);
+    }
+
+    @Override
+    public void callEnd(Call call) {
+        end(statusCode >= 400 ? "HTTP " + statusCode : null);
+    }
+
+    @Override
+    public void callFailed(Call call, IOException ioe) {
+        end(ioe.getClass().getName() + (ioe.getMessage() != null ? ": " + ioe.getMessage() : ""));
+    }
+
+    private long event(String name) {
+        long now = tracer.epochNanos();
+        events.add(new Span.Event(name, now));
+        return now;
+    }
+
+    private void add(String phase, long nanos) {
+        phases.merge(phase, nanos, Long::sum);
+    }
+
+    private void end(String error) {
+        long endEpochNanos = tracer.epochNanos();
+        Map<String, Object> spanAttributes = new LinkedHashMap<>(attributes);
+        phases.forEach((phase, nanos) -> spanAttributes.put("redash.phase." + phase + ".nanos", nanos));
+        String method = (String) attributes.get("http.method");
+        Span span = new Span(operation.getTraceId(), spanId, operation.getSpanId(), "HTTP " + method,
+                Span.Kind.CLIENT, startEpochNanos, endEpochNanos, spanAttributes, events,
+                error != null ? Span.StatusCode.ERROR : Span.StatusCode.UNSET, error);
+        operation.onChildEnded(phases, 1, responseEnd != 0 ? responseEnd : endEpochNanos);
+        tracer.export(span);
+    }
+}
@@ -0,0 +1,236 @@
+/*
+ * Copyright (c) 2018 Snowplow Analytics Ltd. All rights reserved.
+ *
+ * This program is licensed to you under the Apache License Version 2.0,
+ * and you may not use this file except in compliance with the Apache License Version 2.0.
+ * You may obtain a copy of the Apache License Version 2.0 at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the Apache License Version 2.0 is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Apache License Version 2.0 for the specific language governing permissions and limitations there under.
+ */
+
+package com.snowplowanalytics.redash.transport;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Tracks the outcome of the recent requests to one base URL and stops sending requests there while too many of
+ * them fail.
+ *
+ * Outcomes are kept in a sliding window of the last {@code windowSize} requests. Once it holds at least
+ * {@code minimumCalls} outcomes and the failure rate reaches the threshold the breaker opens, and requests fail
+ * fast with a {@link CircuitBreakerOpenException} instead of waiting for a connect timeout. After the open duration
+ * it is half-open: a limited number of trial requests are sent, and it closes again once all of them succeed or
+ * re-opens on the first failure. An outcome only counts in the state in which its request was admitted: a request
+ * sent while closed which completes after the breaker opened is not mistaken for a half-open trial.
+ *
+ * Instances are created by {@link CircuitBreakerTransport}, one per base URL, and are thread-safe.
+ */
+public final class CircuitBreaker {
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private final String baseUrl;
+    private final int minimumCalls;
+    private final float failureRateThreshold;
+    private final long openNanos;
+    private final int halfOpenCalls;
+    private final List<CircuitBreakerListener> listeners;
+
+    // Guarded by this
+    private final boolean[] window;
+    private int windowIndex;
+    private int windowCount;
+    private int windowFailures;
+    private State state = State.CLOSED;
+    // Incremented on every transition, so that permits can be traced to the state which issued them
+    private long generation;
+    private long openUntil;
+    private int halfOpenStarted;
+    private int halfOpenSucceeded;
+    private long successfulCalls;
+    private long failedCalls;
+    private long notPermittedCalls;
+
+    CircuitBreaker(String baseUrl, int windowSize, int minimumCalls, float failureRateThreshold, Duration openDuration,
+                   int halfOpenCalls, List<CircuitBreakerListener> listeners) {
+        this.baseUrl = baseUrl;
+        this.window = new boolean[windowSize];
+        this.minimumCalls = minimumCalls;
+        this.failureRateThreshold = failureRateThreshold;
+        this.openNanos = openDuration.toNanos();
+        this.halfOpenCalls = halfOpenCalls;
+        this.listeners = listeners;
+    }
+
+    public String getBaseUrl() {
+        return baseUrl;
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    /**
+     * @return The share of failed requests in the sliding window, or -1 while it holds fewer than the minimum
+     * number of requests.
+     */
+    public synchronized float getFailureRate() {
+        return windowCount < minimumCalls ? -1 : (float) windowFailures / windowCount;
+    }
+
+    /**
+     * @return The number of requests which completed with a response that is not a failure, since creation.
+     */
+    public synchronized long getSuccessfulCalls() {
+        return successfulCalls;
+    }
+
+    /**
+     * @return The number of requests which failed with an {@link java.io.IOException} or a 502, 503 or 504
+     * response, since creation.
+     */
+    public synchronized long getFailedCalls() {
+        return failedCalls;
+    }
+
+    /**
+     * @return The number of requests rejected without being sent, since creation.
+     */
+    public synchronized long getNotPermittedCalls() {
+        return notPermittedCalls;
+    }
+
+    /**
+     * Reserves a permit for one request.
+     *
+     * @return The permit, to pass to {@link #onResult} or {@link #release}.
+     * @throws CircuitBreakerOpenException If the breaker is open or all half-open trial requests are in progress.
+     */
+    long acquire() throws CircuitBreakerOpenException {
+        State from = null;
+        long permit;
+        synchronized (this) {
+            long now = System.nanoTime();
+            if (state == State.OPEN) {
+                if (now - openUntil < 0) {
+                    notPermittedCalls++;
+                    throw new CircuitBreakerOpenException(baseUrl, Duration.ofNanos(openUntil - now));
+                }
+                from = transition(State.HALF_OPEN);
+            }
+            if (state == State.HALF_OPEN) {
+                if (halfOpenStarted == halfOpenCalls) {
+                    notPermittedCalls++;
+                    throw new CircuitBreakerOpenException(baseUrl, Duration.ZERO);
+                }
+                halfOpenStarted++;
+            }
+            permit = generation;
+        }
+        notify(from, State.HALF_OPEN);
+        return permit;
+    }
+
+    /**
+     * Returns the permit of a request which was abandoned without an outcome, e.g. cancelled.
+     */
+    synchronized void release(long permit) {
+        if (permit == generation && state == State.HALF_OPEN) {
+            halfOpenStarted--;
+        }
+    }
+
+    /**
+     * Records the outcome of a request for which a permit was acquired. Outcomes of permits issued before the last
+     * transition only count in the totals.
+     */
+    void onResult(long permit, boolean failure) {
+        State from = null;
+        State to;
+        synchronized (this) {
+            if (failure) {
+                failedCalls++;
+            } else {
+                successfulCalls++;
+            }
+            if (permit != generation) {
+                return;
+            }
+            switch (state) {
+                case CLOSED:
+                    record(failure);
+                    if (windowCount >= minimumCalls && windowFailures >= failureRateThreshold * windowCount) {
+                        from = transition(State.OPEN);
+                    }
+                    break;
+                case HALF_OPEN:
+                    if (failure) {
+                        from = transition(State.OPEN);
+                    } else if (++halfOpenSucceeded == halfOpenCalls) {
+                        from = transition(State.CLOSED);
+                    }
+                    break;
+                default:
+                    // No permits are issued while open
+                    break;
+            }
+            to = state;
+        }
+        notify(from, to);
+    }
+
+    private void record(boolean failure) {
+        if (windowCount == window.length) {
+            if (window[windowIndex]) {
+                windowFailures--;
+            }
+        } else {
+            windowCount++;
+        }
+        window[windowIndex] = failure;
+        if (failure) {
+            windowFailures++;
+        }
+        windowIndex = (windowIndex + 1) % window.length;
+    }
+
+    private State transition(State to) {
+        State from = state;
+        state = to;
+        generation++;
+        halfOpenStarted = 0;
+        halfOpenSucceeded = 0;
+        if (to == State.OPEN) {
+            openUntil = System.nanoTime() + openNanos;
+        } else if (to == State.CLOSED) {
+            windowIndex = 0;
+            windowCount = 0;
+            windowFailures = 0;
+        }
+        return from;
+    }
+
+    private void notify(State from, State to) {
+        if (from == null) {
+            return;
+        }
+        for (CircuitBreakerListener listener : listeners) {
+            listener.onStateTransition(this, from, to);
+        }
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "CircuitBreaker{" +
+                "baseUrl='" + baseUrl + '\'' +
+                ", state=" + state +
+                ", failureRate=" + getFailureRate() +
+                '}';
+    }
+}
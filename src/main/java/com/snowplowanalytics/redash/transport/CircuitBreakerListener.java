@@ -0,0 +1,31 @@
+/*
+ * Copyright (c) 2018 Snowplow Analytics Ltd. All rights reserved.
+ *
+ * This program is licensed to you under the Apache License Version 2.0,
+ * and you may not use this file except in compliance with the Apache License Version 2.0.
+ * You may obtain a copy of the Apache License Version 2.0 at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the Apache License Version 2.0 is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Apache License Version 2.0 for the specific language governing permissions and limitations there under.
+ */
+
+package com.snowplowanalytics.redash.transport;
+
+/**
+ * Receives the state changes of the {@link CircuitBreaker}s of a {@link CircuitBreakerTransport}.
+ *
+ * Listeners are called on the thread which completed the request that caused the change, after the breaker has
+ * changed, so they should return quickly.
+ */
+@FunctionalInterface
+public interface CircuitBreakerListener {
+
+    /**
+     * @param circuitBreaker The breaker of the base URL whose state changed; its metrics reflect the change.
+     * @param from The previous state.
+     * @param to The new state.
+     */
+    void onStateTransition(CircuitBreaker circuitBreaker, CircuitBreaker.State from, CircuitBreaker.State to);
+}
@@ -0,0 +1,46 @@
+/*
+ * Copyright (c) 2018 Snowplow Analytics Ltd. All rights reserved.
+ *
+ * This program is licensed to you under the Apache License Version 2.0,
+ * and you may not use this file except in compliance with the Apache License Version 2.0.
+ * You may obtain a copy of the Apache License Version 2.0 at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the Apache License Version 2.0 is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Apache License Version 2.0 for the specific language governing permissions and limitations there under.
+ */
+
+package com.snowplowanalytics.redash.transport;
+
+import java.io.IOException;
+import java.time.Duration;
+
+/**
+ * Thrown instead of sending a request while the {@link CircuitBreaker} of its base URL is open.
+ */
+public class CircuitBreakerOpenException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String baseUrl;
+    private final Duration retryAfter;
+
+    public CircuitBreakerOpenException(String baseUrl, Duration retryAfter) {
+        super("Circuit breaker for " + baseUrl + " is open, retry after " + retryAfter.toMillis() + " ms");
+        this.baseUrl = baseUrl;
+        this.retryAfter = retryAfter;
+    }
+
+    public String getBaseUrl() {
+        return baseUrl;
+    }
+
+    /**
+     * @return How long until the breaker lets trial requests through again; zero if it already does, but all
+     * trial requests are in progress.
+     */
+    public Duration getRetryAfter() {
+        return retryAfter;
+    }
+}
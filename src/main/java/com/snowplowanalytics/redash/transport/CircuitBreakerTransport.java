@@ -0,0 +1,219 @@
+/*
+ * Copyright (c) 2018 Snowplow Analytics Ltd. All rights reserved.
+ *
+ * This program is licensed to you under the Apache License Version 2.0,
+ * and you may not use this file except in compliance with the Apache License Version 2.0.
+ * You may obtain a copy of the Apache License Version 2.0 at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the Apache License Version 2.0 is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Apache License Version 2.0 for the specific language governing permissions and limitations there under.
+ */
+
+package com.snowplowanalytics.redash.transport;
+
+import java.io.IOException;
+import java.net.URI;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * {@link HttpTransport} which sends requests through another transport, guarded by one {@link CircuitBreaker} per
+ * base URL (scheme, host and port), so that a Redash instance that is down does not slow down requests to others.
+ *
+ * A request fails if the delegate throws an {@link IOException}, e.g. a connect timeout, or if the response status
+ * is 502, 503 or 504. Other responses, including a 500, count as successes: Redash answers with those when it is
+ * up, e.g. for a missing entity.
+ */
+public class CircuitBreakerTransport implements HttpTransport {
+
+    public static final int DEFAULT_WINDOW_SIZE = 20;
+    public static final int DEFAULT_MINIMUM_CALLS = 10;
+    public static final float DEFAULT_FAILURE_RATE_THRESHOLD = 0.5f;
+    public static final Duration DEFAULT_OPEN_DURATION = Duration.ofSeconds(30);
+    public static final int DEFAULT_HALF_OPEN_CALLS = 3;
+
+    private final HttpTransport delegate;
+    private final int windowSize;
+    private final int minimumCalls;
+    private final float failureRateThreshold;
+    private final Duration openDuration;
+    private final int halfOpenCalls;
+    private final List<CircuitBreakerListener> listeners;
+    private final ConcurrentHashMap<String, CircuitBreaker> circuitBreakers = new ConcurrentHashMap<>();
+
+    private CircuitBreakerTransport(CircuitBreakerTransportBuilder builder) {
+        this.delegate = builder.delegate;
+        this.windowSize = builder.windowSize;
+        this.minimumCalls = builder.minimumCalls;
+        this.failureRateThreshold = builder.failureRateThreshold;
+        this.openDuration = builder.openDuration;
+        this.halfOpenCalls = builder.halfOpenCalls;
+        this.listeners = Collections.unmodifiableList(new ArrayList<>(builder.listeners));
+    }
+
+    public final static class CircuitBreakerTransportBuilder {
+        private final HttpTransport delegate;
+        private int windowSize = DEFAULT_WINDOW_SIZE;
+        private int minimumCalls = DEFAULT_MINIMUM_CALLS;
+        private float failureRateThreshold = DEFAULT_FAILURE_RATE_THRESHOLD;
+        private Duration openDuration = DEFAULT_OPEN_DURATION;
+        private int halfOpenCalls = DEFAULT_HALF_OPEN_CALLS;
+        private final List<CircuitBreakerListener> listeners = new ArrayList<>();
+
+        /**
+         * @param delegate The transport which sends the permitted requests.
+         */
+        public CircuitBreakerTransportBuilder(HttpTransport delegate) {
+            this.delegate = delegate;
+        }
+
+        /**
+         * @param windowSize The number of most recent requests the failure rate is computed from.
+         *                   Defaults to {@link #DEFAULT_WINDOW_SIZE}.
+         */
+        public CircuitBreakerTransportBuilder windowSize(int windowSize) {
+            this.windowSize = windowSize;
+            return this;
+        }
+
+        /**
+         * @param minimumCalls The number of requests the window must hold before the breaker can open.
+         *                     Defaults to {@link #DEFAULT_MINIMUM_CALLS}.
+         */
+        public CircuitBreakerTransportBuilder minimumCalls(int minimumCalls) {
+            this.minimumCalls = minimumCalls;
+            return this;
+        }
+
+        /**
+         * @param failureRateThreshold The share of failed requests, between 0 exclusive and 1 inclusive, at which
+         *                             the breaker opens. Defaults to {@link #DEFAULT_FAILURE_RATE_THRESHOLD}.
+         */
+        public CircuitBreakerTransportBuilder failureRateThreshold(float failureRateThreshold) {
+            this.failureRateThreshold = failureRateThreshold;
+            return this;
+        }
+
+        /**
+         * @param openDuration How long requests fail fast before trial requests are let through.
+         *                     Defaults to {@link #DEFAULT_OPEN_DURATION}.
+         */
+        public CircuitBreakerTransportBuilder openDuration(Duration openDuration) {
+            this.openDuration = openDuration;
+            return this;
+        }
+
+        /**
+         * @param halfOpenCalls The number of trial requests which must succeed to close the breaker again.
+         *                      Defaults to {@link #DEFAULT_HALF_OPEN_CALLS}.
+         */
+        public CircuitBreakerTransportBuilder halfOpenCalls(int halfOpenCalls) {
+            this.halfOpenCalls = halfOpenCalls;
+            return this;
+        }
+
+        /**
+         * @param listener Called on every state change of every breaker. Can be called more than once.
+         */
+        public CircuitBreakerTransportBuilder listener(CircuitBreakerListener listener) {
+            this.listeners.add(listener);
+            return this;
+        }
+
+        /**
+         * @throws IllegalArgumentException If a setting is out of range.
+         */
+        public CircuitBreakerTransport build() {
+            if (windowSize < 1 || minimumCalls < 1 || minimumCalls > windowSize) {
+                throw new IllegalArgumentException("minimumCalls must be between 1 and windowSize.");
+            }
+            if (!(failureRateThreshold > 0 && failureRateThreshold <= 1)) {
+                throw new IllegalArgumentException("failureRateThreshold must be greater than 0 and at most 1.");
+            }
+            if (openDuration.isNegative() || halfOpenCalls < 1) {
+                throw new IllegalArgumentException("openDuration and halfOpenCalls must be positive.");
+            }
+            return new CircuitBreakerTransport(this);
+        }
+    }
+
+    @Override
+    public TransportResponse execute(TransportRequest request) throws IOException {
+        CircuitBreaker circuitBreaker = circuitBreakerFor(request);
+        long permit = circuitBreaker.acquire();
+        TransportResponse response;
+        try {
+            response = delegate.execute(request);
+        } catch (IOException e) {
+            circuitBreaker.onResult(permit, true);
+            throw e;
+        } catch (RuntimeException | Error e) {
+            circuitBreaker.release(permit);
+            throw e;
+        }
+        circuitBreaker.onResult(permit, isFailure(response));
+        return response;
+    }
+
+    @Override
+    public CompletableFuture<TransportResponse> executeAsync(TransportRequest request) {
+        CircuitBreaker circuitBreaker = circuitBreakerFor(request);
+        long permit;
+        try {
+            permit = circuitBreaker.acquire();
+        } catch (CircuitBreakerOpenException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        CompletableFuture<TransportResponse> future = delegate.executeAsync(request);
+        future.whenComplete((response, error) -> {
+            Throwable cause = error instanceof CompletionException ? error.getCause() : error;
+            if (cause == null) {
+                circuitBreaker.onResult(permit, isFailure(response));
+            } else if (cause instanceof IOException) {
+                circuitBreaker.onResult(permit, true);
+            } else {
+                circuitBreaker.release(permit);
+            }
+        });
+        return future;
+    }
+
+    /**
+     * @param baseUrl The scheme, host and port as they appear in the request URLs, e.g. "http://localhost:5000".
+     * @return The breaker of the base URL, or null if no request was sent there yet.
+     */
+    public CircuitBreaker getCircuitBreaker(String baseUrl) {
+        return circuitBreakers.get(baseUrl);
+    }
+
+    /**
+     * @return A snapshot of all breakers by base URL, e.g. to export their metrics.
+     */
+    public Map<String, CircuitBreaker> getCircuitBreakers() {
+        return Collections.unmodifiableMap(new HashMap<>(circuitBreakers));
+    }
+
+    private CircuitBreaker circuitBreakerFor(TransportRequest request) {
+        return circuitBreakers.computeIfAbsent(baseUrl(request.getUrl()), baseUrl -> new CircuitBreaker(baseUrl,
+                windowSize, minimumCalls, failureRateThreshold, openDuration, halfOpenCalls, listeners));
+    }
+
+    private static String baseUrl(String url) {
+        URI uri = URI.create(url);
+        return uri.getScheme() + "://" + uri.getRawAuthority();
+    }
+
+    private static boolean isFailure(TransportResponse response) {
+        int code = response.getCode();
+        return code == 502 || code == 503 || code == 504;
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) 2018 Snowplow Analytics Ltd. All rights reserved.
+ *
+ * This program is licensed to you under the Apache License Version 2.0,
+ * and you may not use this file except in compliance with the Apache License Version 2.0.
+ * You may obtain a copy of the Apache License Version 2.0 at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the Apache License Version 2.0 is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Apache License Version 2.0 for the specific language governing permissions and limitations there under.
+ */
+
+package com.snowplowanalytics.redash.transport;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Content codings shared by the network transports.
+ *
+ * Responses are decompressed while they are decoded into text, without a decompressed byte copy. Request bodies
+ * are only compressed when the request carries a {@code Content-Encoding: gzip} header, which
+ * {@link com.snowplowanalytics.redash.RedashClient} adds to large bodies if configured to.
+ */
+final class Compression {
+
+    static final String ACCEPT_ENCODING = "Accept-Encoding";
+    static final String CONTENT_ENCODING = "Content-Encoding";
+    static final String GZIP = "gzip";
+    static final String DEFLATE = "deflate";
+    // Brotli needs a third-party decoder, so it is not offered
+    static final String SUPPORTED = GZIP + ", " + DEFLATE;
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private Compression() {
+    }
+
+    /**
+     * @return Whether the request body must be sent gzip-compressed.
+     */
+    static boolean isGzipRequest(TransportRequest request) {
+        return request.getBody() != null && GZIP.equalsIgnoreCase(header(request.getHeaders(), CONTENT_ENCODING));
+    }
+
+    static byte[] gzip(String body) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(Math.max(64, body.length() / 4));
+        try (OutputStream out = new GZIPOutputStream(bytes, BUFFER_SIZE)) {
+            out.write(body.getBytes(StandardCharsets.UTF_8));
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Reads a UTF-8 response body, decompressing it on the fly.
+     *
+     * @param contentEncoding The {@code Content-Encoding} of the response or null.
+     * @throws IOException If the body is corrupt or uses a coding other than gzip, deflate or identity.
+     */
+    static String decode(InputStream body, String contentEncoding) throws IOException {
+        InputStream in;
+        if (contentEncoding == null || contentEncoding.isEmpty() || "identity".equalsIgnoreCase(contentEncoding)) {
+            in = body;
+        } else if (GZIP.equalsIgnoreCase(contentEncoding)) {
+            in = new GZIPInputStream(body, BUFFER_SIZE);
+        } else if (DEFLATE.equalsIgnoreCase(contentEncoding)) {
+            in = new InflaterInputStream(body);
+        } else {
+            body.close();
+            throw new IOException("Unsupported content encoding " + contentEncoding);
+        }
+        try (Reader reader = new InputStreamReader(in, StandardCharsets.UTF_8)) {
+            StringBuilder text = new StringBuilder(BUFFER_SIZE);
+            char[] buffer = new char[BUFFER_SIZE];
+            int read;
+            while ((read = reader.read(buffer)) != -1) {
+                text.append(buffer, 0, read);
+            }
+            return text.toString();
+        }
+    }
+
+    /**
+     * @return The value of a header, matching its name case-insensitively, or null.
+     */
+    static String header(Map<String, String> headers, String name) {
+        String value = headers.get(name);
+        if (value != null) {
+            return value;
+        }
+        for (Map.Entry<String, String> header : headers.entrySet()) {
+            if (header.getKey().equalsIgnoreCase(name)) {
+                return header.getValue();
+            }
+        }
+        return null;
+    }
+}
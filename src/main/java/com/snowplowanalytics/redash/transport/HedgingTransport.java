@@ -0,0 +1,383 @@
+/*
+ * Copyright (c) 2018 Snowplow Analytics Ltd. All rights reserved.
+ *
+ * This program is licensed to you under the Apache License Version 2.0,
+ * and you may not use this file except in compliance with the Apache License Version 2.0.
+ * You may obtain a copy of the Apache License Version 2.0 at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the Apache License Version 2.0 is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Apache License Version 2.0 for the specific language governing permissions and limitations there under.
+ */
+
+package com.snowplowanalytics.redash.transport;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * {@link HttpTransport} which hedges idempotent reads sent through another transport: when a GET has not been
+ * answered within a percentile of the recent latencies of its route, an identical request is sent and whichever
+ * response arrives first is used. The other request is cancelled, which aborts it with an {@link OkHttpTransport}, and
+ * with a {@link JdkHttpTransport} on Java 16 and newer.
+ *
+ * Routes are told apart by their path with numeric ids replaced, so e.g. all {@code /api/groups/<id>} requests share
+ * one latency window. GETs with a query string, such as a schema refresh, are never hedged, nor are other methods.
+ *
+ * The extra load is bounded by a budget: every GET earns {@code budget} hedges, up to {@code maxBurst} of them are
+ * saved, and a hedge is only sent if one is available. So at most {@code budget} times the number of GETs are sent
+ * as hedges. A hedge is only ever sent for a request still waiting for its first response; failures are not
+ * retried.
+ *
+ * A hedged GET is sent with {@link HttpTransport#executeAsync(TransportRequest)} even by {@link #execute}, so with
+ * OkHttp it counts towards the dispatcher's limit of concurrent requests per host.
+ */
+public class HedgingTransport implements HttpTransport {
+
+    public static final double DEFAULT_PERCENTILE = 0.95;
+    public static final int DEFAULT_WINDOW_SIZE = 100;
+    public static final int DEFAULT_MINIMUM_SAMPLES = 20;
+    public static final double DEFAULT_BUDGET = 0.05;
+    public static final int DEFAULT_MAX_BURST = 10;
+
+    // The budget is counted in thousandths of a hedge
+    private static final long HEDGE = 1000;
+
+    private final HttpTransport delegate;
+    private final double percentile;
+    private final int windowSize;
+    private final int minimumSamples;
+    private final long earnedPerRequest;
+    private final long maxSaved;
+    private final AtomicLong saved = new AtomicLong();
+    private final AtomicLong hedges = new AtomicLong();
+    private final AtomicLong hedgeWins = new AtomicLong();
+    private final ConcurrentHashMap<String, LatencyWindow> windows = new ConcurrentHashMap<>();
+
+    private HedgingTransport(HedgingTransportBuilder builder) {
+        this.delegate = builder.delegate;
+        this.percentile = builder.percentile;
+        this.windowSize = builder.windowSize;
+        this.minimumSamples = builder.minimumSamples;
+        this.earnedPerRequest = Math.round(builder.budget * HEDGE);
+        this.maxSaved = builder.maxBurst * HEDGE;
+    }
+
+    public final static class HedgingTransportBuilder {
+        private final HttpTransport delegate;
+        private double percentile = DEFAULT_PERCENTILE;
+        private int windowSize = DEFAULT_WINDOW_SIZE;
+        private int minimumSamples = DEFAULT_MINIMUM_SAMPLES;
+        private double budget = DEFAULT_BUDGET;
+        private int maxBurst = DEFAULT_MAX_BURST;
+
+        /**
+         * @param delegate The transport which sends the requests and their hedges.
+         */
+        public HedgingTransportBuilder(HttpTransport delegate) {
+            this.delegate = delegate;
+        }
+
+        /**
+         * @param percentile The latency percentile of a route, between 0 and 1 exclusive, after which a hedge is
+         *                   sent. Defaults to {@link #DEFAULT_PERCENTILE}.
+         */
+        public HedgingTransportBuilder percentile(double percentile) {
+            this.percentile = percentile;
+            return this;
+        }
+
+        /**
+         * @param windowSize The number of most recent latencies of a route the percentile is computed from.
+         *                   Defaults to {@link #DEFAULT_WINDOW_SIZE}.
+         */
+        public HedgingTransportBuilder windowSize(int windowSize) {
+            this.windowSize = windowSize;
+            return this;
+        }
+
+        /**
+         * @param minimumSamples The number of latencies a route needs before its requests are hedged.
+         *                       Defaults to {@link #DEFAULT_MINIMUM_SAMPLES}.
+         */
+        public HedgingTransportBuilder minimumSamples(int minimumSamples) {
+            this.minimumSamples = minimumSamples;
+            return this;
+        }
+
+        /**
+         * @param budget The hedges each GET earns, between 0 exclusive and 1 inclusive, i.e. the largest share of
+         *               extra requests. Defaults to {@link #DEFAULT_BUDGET}.
+         */
+        public HedgingTransportBuilder budget(double budget) {
+            this.budget = budget;
+            return this;
+        }
+
+        /**
+         * @param maxBurst The number of earned hedges which are saved for later, e.g. for a burst of slow
+         *                 responses. Defaults to {@link #DEFAULT_MAX_BURST}.
+         */
+        public HedgingTransportBuilder maxBurst(int maxBurst) {
+            this.maxBurst = maxBurst;
+            return this;
+        }
+
+        /**
+         * @throws IllegalArgumentException If a setting is out of range.
+         */
+        public HedgingTransport build() {
+            if (!(percentile > 0 && percentile < 1)) {
+                throw new IllegalArgumentException("percentile must be greater than 0 and less than 1.");
+            }
+            if (windowSize < 1 || minimumSamples < 1 || minimumSamples > windowSize) {
+                throw new IllegalArgumentException("minimumSamples must be between 1 and windowSize.");
+            }
+            if (!(budget > 0 && budget <= 1) || maxBurst < 1) {
+                throw new IllegalArgumentException("budget must be greater than 0 and at most 1, maxBurst positive.");
+            }
+            return new HedgingTransport(this);
+        }
+    }
+
+    @Override
+    public TransportResponse execute(TransportRequest request) throws IOException {
+        if (!isHedgeable(request)) {
+            return delegate.execute(request);
+        }
+        LatencyWindow window = windowFor(request);
+        earn();
+        long delayNanos = window.hedgeDelayNanos();
+        if (delayNanos < 0) {
+            long start = System.nanoTime();
+            TransportResponse response = delegate.execute(request);
+            window.record(System.nanoTime() - start);
+            return response;
+        }
+        CompletableFuture<TransportResponse> future = hedged(request, window, delayNanos);
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException(e.getMessage());
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    @Override
+    public CompletableFuture<TransportResponse> executeAsync(TransportRequest request) {
+        if (!isHedgeable(request)) {
+            return delegate.executeAsync(request);
+        }
+        LatencyWindow window = windowFor(request);
+        earn();
+        long delayNanos = window.hedgeDelayNanos();
+        if (delayNanos < 0) {
+            long start = System.nanoTime();
+            CompletableFuture<TransportResponse> future = delegate.executeAsync(request);
+            future.thenRun(() -> window.record(System.nanoTime() - start));
+            return future;
+        }
+        return hedged(request, window, delayNanos);
+    }
+
+    /**
+     * @return The number of hedges sent so far.
+     */
+    public long getHedges() {
+        return hedges.get();
+    }
+
+    /**
+     * @return The number of hedges whose response arrived first.
+     */
+    public long getHedgeWins() {
+        return hedgeWins.get();
+    }
+
+    /**
+     * @param route The path of the requests with numeric ids replaced by {@code {id}}, e.g. "/api/groups/{id}".
+     * @return The delay after which requests of the route are hedged, or -1 if it has too few latencies yet.
+     */
+    public long getHedgeDelayNanos(String route) {
+        LatencyWindow window = windows.get(route);
+        return window == null ? -1 : window.hedgeDelayNanos();
+    }
+
+    public HttpTransport getDelegate() {
+        return delegate;
+    }
+
+    private CompletableFuture<TransportResponse> hedged(TransportRequest request, LatencyWindow window,
+                                                        long delayNanos) {
+        HedgedRequest hedged = new HedgedRequest(request, window);
+        hedged.send(false);
+        CompletableFuture.delayedExecutor(delayNanos, TimeUnit.NANOSECONDS).execute(() -> {
+            if (!hedged.result.isDone() && spend()) {
+                hedges.incrementAndGet();
+                hedged.send(true);
+            }
+        });
+        return hedged.result;
+    }
+
+    /**
+     * A GET and its hedge, if one is sent, racing for the result.
+     */
+    private final class HedgedRequest {
+        private final TransportRequest request;
+        private final LatencyWindow window;
+        private final long start = System.nanoTime();
+        private final CompletableFuture<TransportResponse> result = new CompletableFuture<>();
+        private final List<CompletableFuture<TransportResponse>> attempts = new CopyOnWriteArrayList<>();
+        private final AtomicInteger outstanding = new AtomicInteger();
+        private final AtomicBoolean answered = new AtomicBoolean();
+
+        private HedgedRequest(TransportRequest request, LatencyWindow window) {
+            this.request = request;
+            this.window = window;
+            // Cancels the losing attempt, or all of them if the caller cancels
+            result.whenComplete((response, error) -> attempts.forEach(attempt -> attempt.cancel(true)));
+        }
+
+        void send(boolean hedge) {
+            outstanding.incrementAndGet();
+            CompletableFuture<TransportResponse> attempt = delegate.executeAsync(request);
+            attempts.add(attempt);
+            if (result.isDone()) {
+                // Lost a race with the completion of the result, which may not have seen this attempt
+                attempt.cancel(true);
+                return;
+            }
+            attempt.whenComplete((response, error) -> {
+                if (response != null) {
+                    if (answered.compareAndSet(false, true)) {
+                        window.record(System.nanoTime() - start);
+                        if (hedge) {
+                            hedgeWins.incrementAndGet();
+                        }
+                        result.complete(response);
+                    }
+                } else if (outstanding.decrementAndGet() == 0) {
+                    // The last attempt failed; cancelled ones only fail once the result is complete
+                    result.completeExceptionally(error instanceof CompletionException ? error.getCause() : error);
+                }
+            });
+        }
+    }
+
+    private void earn() {
+        saved.updateAndGet(value -> Math.min(maxSaved, value + earnedPerRequest));
+    }
+
+    private boolean spend() {
+        long value;
+        do {
+            value = saved.get();
+            if (value < HEDGE) {
+                return false;
+            }
+        } while (!saved.compareAndSet(value, value - HEDGE));
+        return true;
+    }
+
+    private LatencyWindow windowFor(TransportRequest request) {
+        return windows.computeIfAbsent(route(request.getUrl()), route -> new LatencyWindow(windowSize));
+    }
+
+    private static boolean isHedgeable(TransportRequest request) {
+        return TransportRequest.GET.equals(request.getMethod()) && request.getUrl().indexOf('?') < 0;
+    }
+
+    /**
+     * @return The path of {@code url} with every all-digit segment replaced by {@code {id}}.
+     */
+    static String route(String url) {
+        int scheme = url.indexOf("://");
+        int pathStart = url.indexOf('/', scheme < 0 ? 0 : scheme + 3);
+        if (pathStart < 0) {
+            return "/";
+        }
+        StringBuilder route = new StringBuilder(url.length() - pathStart);
+        int segmentStart = pathStart + 1;
+        route.append('/');
+        while (segmentStart <= url.length()) {
+            int segmentEnd = url.indexOf('/', segmentStart);
+            if (segmentEnd < 0) {
+                segmentEnd = url.length();
+            }
+            boolean numeric = segmentEnd > segmentStart;
+            for (int i = segmentStart; i < segmentEnd && numeric; i++) {
+                numeric = Character.isDigit(url.charAt(i));
+            }
+            if (numeric) {
+                route.append("{id}");
+            } else {
+                route.append(url, segmentStart, segmentEnd);
+            }
+            if (segmentEnd < url.length()) {
+                route.append('/');
+            }
+            segmentStart = segmentEnd + 1;
+        }
+        return route.toString();
+    }
+
+    /**
+     * The most recent latencies of a route. The percentile is recomputed after every tenth of the window.
+     */
+    private final class LatencyWindow {
+        private final long[] samples;
+        private final int recomputeInterval;
+        private int count;
+        private int next;
+        private int sinceComputed;
+        private long delayNanos = -1;
+
+        private LatencyWindow(int size) {
+            this.samples = new long[size];
+            this.recomputeInterval = Math.max(1, size / 10);
+        }
+
+        synchronized void record(long nanos) {
+            samples[next] = nanos;
+            next = (next + 1) % samples.length;
+            count = Math.min(count + 1, samples.length);
+            sinceComputed++;
+        }
+
+        synchronized long hedgeDelayNanos() {
+            if (count < minimumSamples) {
+                return -1;
+            }
+            if (delayNanos < 0 || sinceComputed >= recomputeInterval) {
+                long[] sorted = Arrays.copyOf(samples, count);
+                Arrays.sort(sorted);
+                delayNanos = sorted[Math.max(0, (int) Math.ceil(count * percentile) - 1)];
+                sinceComputed = 0;
+            }
+            return delayNanos;
+        }
+    }
+}
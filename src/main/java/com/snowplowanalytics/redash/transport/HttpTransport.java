@@ -0,0 +1,43 @@
+/*
+ * Copyright (c) 2018 Snowplow Analytics Ltd. All rights reserved.
+ *
+ * This program is licensed to you under the Apache License Version 2.0,
+ * and you may not use this file except in compliance with the Apache License Version 2.0.
+ * You may obtain a copy of the Apache License Version 2.0 at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the Apache License Version 2.0 is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Apache License Version 2.0 for the specific language governing permissions and limitations there under.
+ */
+
+package com.snowplowanalytics.redash.transport;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * The HTTP layer used by {@link com.snowplowanalytics.redash.RedashClient}.
+ *
+ * Implementations must be safe for concurrent use by multiple threads. Non-2xx responses are returned,
+ * not thrown; an {@link IOException} signals that no response was received at all.
+ */
+public interface HttpTransport {
+
+    /**
+     * Performs the request on the calling thread.
+     *
+     * @param request The request to send.
+     * @return The response with its body fully read.
+     * @throws IOException If the server is unavailable due to a connection error or a timeout.
+     */
+    TransportResponse execute(TransportRequest request) throws IOException;
+
+    /**
+     * Performs the request without blocking the calling thread.
+     *
+     * @param request The request to send.
+     * @return A future completed with the response or exceptionally with an {@link IOException}.
+     */
+    CompletableFuture<TransportResponse> executeAsync(TransportRequest request);
+}
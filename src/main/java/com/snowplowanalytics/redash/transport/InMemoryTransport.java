@@ -0,0 +1,63 @@
+/*
+ * Copyright (c) 2018 Snowplow Analytics Ltd. All rights reserved.
+ *
+ * This program is licensed to you under the Apache License Version 2.0,
+ * and you may not use this file except in compliance with the Apache License Version 2.0.
+ * You may obtain a copy of the Apache License Version 2.0 at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the Apache License Version 2.0 is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Apache License Version 2.0 for the specific language governing permissions and limitations there under.
+ */
+
+package com.snowplowanalytics.redash.transport;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * {@link HttpTransport} which answers requests with a handler in the same JVM, for testing code built on
+ * {@link com.snowplowanalytics.redash.RedashClient} without a Redash server. All requests are recorded.
+ */
+public class InMemoryTransport implements HttpTransport {
+
+    @FunctionalInterface
+    public interface Handler {
+        TransportResponse handle(TransportRequest request) throws IOException;
+    }
+
+    private final Handler handler;
+    private final ConcurrentLinkedQueue<TransportRequest> requests = new ConcurrentLinkedQueue<>();
+
+    public InMemoryTransport(Handler handler) {
+        this.handler = handler;
+    }
+
+    @Override
+    public TransportResponse execute(TransportRequest request) throws IOException {
+        requests.add(request);
+        return handler.handle(request);
+    }
+
+    @Override
+    public CompletableFuture<TransportResponse> executeAsync(TransportRequest request) {
+        CompletableFuture<TransportResponse> future = new CompletableFuture<>();
+        try {
+            future.complete(execute(request));
+        } catch (IOException | RuntimeException e) {
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    /**
+     * @return A snapshot of all requests received so far, in arrival order.
+     */
+    public List<TransportRequest> getRequests() {
+        return new ArrayList<>(requests);
+    }
+}
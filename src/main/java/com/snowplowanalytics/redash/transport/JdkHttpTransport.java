@@ -0,0 +1,126 @@
+/*
+ * Copyright (c) 2018 Snowplow Analytics Ltd. All rights reserved.
+ *
+ * This program is licensed to you under the Apache License Version 2.0,
+ * and you may not use this file except in compliance with the Apache License Version 2.0.
+ * You may obtain a copy of the Apache License Version 2.0 at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the Apache License Version 2.0 is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Apache License Version 2.0 for the specific language governing permissions and limitations there under.
+ */
+
+package com.snowplowanalytics.redash.transport;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * {@link HttpTransport} backed by the JDK's {@link HttpClient}, without any third-party dependency.
+ *
+ * The default client prefers HTTP/2, so concurrent requests to a Redash server behind an HTTP/2 capable
+ * proxy are multiplexed over a single connection; plain HTTP/1.1 servers are used as before. As HTTP/2 has
+ * no reason phrases, {@link TransportResponse#getMessage()} is derived from the status code.
+ *
+ * Unlike OkHttp, the JDK client does not negotiate compression itself, so this transport asks for gzip or
+ * deflate responses and decompresses them while decoding the body.
+ */
+public class JdkHttpTransport implements HttpTransport {
+
+    private static final Duration DEFAULT_TIMEOUT = Duration.ofSeconds(10);
+
+    private final HttpClient client;
+    private final Duration timeout;
+
+    public JdkHttpTransport() {
+        this(HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .connectTimeout(DEFAULT_TIMEOUT)
+                .build(), DEFAULT_TIMEOUT);
+    }
+
+    /**
+     * @param client A preconfigured client.
+     * @param timeout The maximum time to wait for each response.
+     */
+    public JdkHttpTransport(HttpClient client, Duration timeout) {
+        this.client = client;
+        this.timeout = timeout;
+    }
+
+    @Override
+    public TransportResponse execute(TransportRequest request) throws IOException {
+        try {
+            HttpResponse<InputStream> response = client.send(toJdkRequest(request), HttpResponse.BodyHandlers.ofInputStream());
+            // Decompressed straight from the connection
+            return new TransportResponse(response.statusCode(), Compression.decode(response.body(), contentEncoding(response)));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException(e.getMessage());
+        }
+    }
+
+    @Override
+    public CompletableFuture<TransportResponse> executeAsync(TransportRequest request) {
+        HttpRequest jdkRequest;
+        try {
+            jdkRequest = toJdkRequest(request);
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        // Read fully first, so that no thread of the client's executor blocks on the connection
+        CompletableFuture<HttpResponse<byte[]>> exchange =
+                client.sendAsync(jdkRequest, HttpResponse.BodyHandlers.ofByteArray());
+        CompletableFuture<TransportResponse> future = exchange.thenApply(JdkHttpTransport::toTransportResponse);
+        // Aborts the exchange on Java 16 and newer, earlier versions let it run to completion
+        future.whenComplete((response, e) -> {
+            if (future.isCancelled()) {
+                exchange.cancel(true);
+            }
+        });
+        return future;
+    }
+
+    private HttpRequest toJdkRequest(TransportRequest request) throws IOException {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(request.getUrl())).timeout(timeout);
+        for (Map.Entry<String, String> header : request.getHeaders().entrySet()) {
+            builder.header(header.getKey(), header.getValue());
+        }
+        if (Compression.header(request.getHeaders(), Compression.ACCEPT_ENCODING) == null) {
+            builder.header(Compression.ACCEPT_ENCODING, Compression.SUPPORTED);
+        }
+        HttpRequest.BodyPublisher body;
+        if (request.getBody() == null) {
+            body = HttpRequest.BodyPublishers.noBody();
+        } else if (Compression.isGzipRequest(request)) {
+            body = HttpRequest.BodyPublishers.ofByteArray(Compression.gzip(request.getBody()));
+        } else {
+            body = HttpRequest.BodyPublishers.ofString(request.getBody());
+        }
+        return builder.method(request.getMethod(), body).build();
+    }
+
+    private static TransportResponse toTransportResponse(HttpResponse<byte[]> response) {
+        try {
+            return new TransportResponse(response.statusCode(),
+                    Compression.decode(new ByteArrayInputStream(response.body()), contentEncoding(response)));
+        } catch (IOException e) {
+            throw new CompletionException(e);
+        }
+    }
+
+    private static String contentEncoding(HttpResponse<?> response) {
+        return response.headers().firstValue(Compression.CONTENT_ENCODING).orElse(null);
+    }
+}
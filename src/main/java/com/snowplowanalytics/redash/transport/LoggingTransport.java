@@ -0,0 +1,132 @@
+/*
+ * Copyright (c) 2018 Snowplow Analytics Ltd. All rights reserved.
+ *
+ * This program is licensed to you under the Apache License Version 2.0,
+ * and you may not use this file except in compliance with the Apache License Version 2.0.
+ * You may obtain a copy of the Apache License Version 2.0 at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the Apache License Version 2.0 is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Apache License Version 2.0 for the specific language governing permissions and limitations there under.
+ */
+
+package com.snowplowanalytics.redash.transport;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * {@link HttpTransport} which logs every request sent through another transport to
+ * {@code java.util.logging}, under the name of this class.
+ *
+ * At {@link Level#FINE} it logs one line per request with the method, the path, the status and the latency, and the
+ * sizes of both bodies. At {@link Level#FINEST} it also logs both bodies, with the API key and the values of secret
+ * data-source options masked by {@link Redactor}. Headers and query strings are never logged.
+ *
+ * When neither level is enabled requests go straight to the delegate, without formatting or timing anything.
+ */
+public final class LoggingTransport implements HttpTransport {
+
+    private static final Logger LOGGER = Logger.getLogger(LoggingTransport.class.getName());
+    private static final String KEY_PREFIX = "Key ";
+
+    private final HttpTransport delegate;
+
+    public LoggingTransport(HttpTransport delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public TransportResponse execute(TransportRequest request) throws IOException {
+        if (!LOGGER.isLoggable(Level.FINE)) {
+            return delegate.execute(request);
+        }
+        long start = System.nanoTime();
+        TransportResponse response;
+        try {
+            response = delegate.execute(request);
+        } catch (IOException | RuntimeException e) {
+            log(request, null, e, start);
+            throw e;
+        }
+        log(request, response, null, start);
+        return response;
+    }
+
+    @Override
+    public CompletableFuture<TransportResponse> executeAsync(TransportRequest request) {
+        if (!LOGGER.isLoggable(Level.FINE)) {
+            return delegate.executeAsync(request);
+        }
+        long start = System.nanoTime();
+        return delegate.executeAsync(request).whenComplete((response, error) ->
+                log(request, response, error instanceof CompletionException ? error.getCause() : error, start));
+    }
+
+    public HttpTransport getDelegate() {
+        return delegate;
+    }
+
+    private static void log(TransportRequest request, TransportResponse response, Throwable error, long start) {
+        long latencyMillis = (System.nanoTime() - start) / 1_000_000;
+        StringBuilder line = new StringBuilder(128)
+                .append("method=").append(request.getMethod())
+                .append(" route=").append(route(request.getUrl()));
+        if (response != null) {
+            line.append(" status=").append(response.getCode());
+        } else {
+            line.append(" error=").append(error.getClass().getSimpleName());
+        }
+        line.append(" latencyMs=").append(latencyMillis)
+                .append(" requestBytes=").append(length(request.getBody()))
+                .append(" responseBytes=").append(response == null ? 0 : length(response.getBody()));
+        if (LOGGER.isLoggable(Level.FINEST)) {
+            byte[] secret = apiKey(request);
+            line.append(" requestBody=").append(redacted(request.getBody(), secret));
+            if (response != null) {
+                line.append(" responseBody=").append(redacted(response.getBody(), secret));
+            }
+            LOGGER.finest(line.toString());
+        } else {
+            LOGGER.fine(line.toString());
+        }
+    }
+
+    /**
+     * @return The path of {@code url}, without the query which can hold an {@code api_key} parameter.
+     */
+    private static String route(String url) {
+        try {
+            String path = URI.create(url).getRawPath();
+            return path == null || path.isEmpty() ? "/" : path;
+        } catch (IllegalArgumentException e) {
+            return "?";
+        }
+    }
+
+    private static int length(String body) {
+        return body == null ? 0 : body.getBytes(StandardCharsets.UTF_8).length;
+    }
+
+    private static byte[] apiKey(TransportRequest request) {
+        String authorization = request.getHeaders().get("Authorization");
+        return authorization != null && authorization.startsWith(KEY_PREFIX)
+                ? authorization.substring(KEY_PREFIX.length()).getBytes(StandardCharsets.UTF_8)
+                : null;
+    }
+
+    private static String redacted(String body, byte[] secret) {
+        if (body == null) {
+            return "";
+        }
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        byte[] redacted = Redactor.redact(bytes, secret);
+        return redacted == bytes ? body : new String(redacted, StandardCharsets.UTF_8);
+    }
+}
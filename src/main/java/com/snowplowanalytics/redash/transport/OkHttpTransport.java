@@ -0,0 +1,117 @@
+/*
+ * Copyright (c) 2018 Snowplow Analytics Ltd. All rights reserved.
+ *
+ * This program is licensed to you under the Apache License Version 2.0,
+ * and you may not use this file except in compliance with the Apache License Version 2.0.
+ * You may obtain a copy of the Apache License Version 2.0 at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the Apache License Version 2.0 is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Apache License Version 2.0 for the specific language governing permissions and limitations there under.
+ */
+
+package com.snowplowanalytics.redash.transport;
+
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.Headers;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * {@link HttpTransport} backed by OkHttp. This is the default transport.
+ *
+ * OkHttp asks for gzip responses and decompresses them while the body is read, unless a request sets its own
+ * {@code Accept-Encoding}.
+ */
+public class OkHttpTransport implements HttpTransport {
+
+    private static final String CONTENT_TYPE = "Content-Type";
+    private static final MediaType JSON = MediaType.parse("application/json; charset=utf-8");
+
+    private final OkHttpClient client;
+
+    public OkHttpTransport() {
+        this(new OkHttpClient());
+    }
+
+    /**
+     * @param client A preconfigured client, e.g. to share its connection pool and dispatcher.
+     */
+    public OkHttpTransport(OkHttpClient client) {
+        this.client = client;
+    }
+
+    public OkHttpClient getClient() {
+        return client;
+    }
+
+    @Override
+    public TransportResponse execute(TransportRequest request) throws IOException {
+        try (Response response = client.newCall(toOkHttpRequest(request)).execute()) {
+            return toTransportResponse(response);
+        }
+    }
+
+    @Override
+    public CompletableFuture<TransportResponse> executeAsync(TransportRequest request) {
+        CompletableFuture<TransportResponse> future = new CompletableFuture<>();
+        Call call;
+        try {
+            call = client.newCall(toOkHttpRequest(request));
+        } catch (IOException e) {
+            future.completeExceptionally(e);
+            return future;
+        }
+        call.enqueue(new Callback() {
+            @Override
+            public void onFailure(Call call, IOException e) {
+                future.completeExceptionally(e);
+            }
+
+            @Override
+            public void onResponse(Call call, Response response) {
+                try (Response closing = response) {
+                    future.complete(toTransportResponse(closing));
+                } catch (IOException e) {
+                    future.completeExceptionally(e);
+                }
+            }
+        });
+        future.whenComplete((response, e) -> {
+            if (future.isCancelled()) {
+                call.cancel();
+            }
+        });
+        return future;
+    }
+
+    private static Request toOkHttpRequest(TransportRequest request) throws IOException {
+        Request.Builder builder = new Request.Builder()
+                .url(request.getUrl())
+                .headers(Headers.of(request.getHeaders()));
+        if (request.getBody() == null) {
+            // Matches Request.Builder#delete(), which sends an empty body rather than none.
+            return TransportRequest.DELETE.equals(request.getMethod())
+                    ? builder.delete().build()
+                    : builder.method(request.getMethod(), null).build();
+        }
+        String contentType = request.getHeaders().get(CONTENT_TYPE);
+        MediaType mediaType = contentType == null ? JSON : MediaType.parse(contentType);
+        RequestBody body = Compression.isGzipRequest(request)
+                ? RequestBody.create(mediaType, Compression.gzip(request.getBody()))
+                : RequestBody.create(mediaType, request.getBody());
+        return builder.method(request.getMethod(), body).build();
+    }
+
+    private static TransportResponse toTransportResponse(Response response) throws IOException {
+        return new TransportResponse(response.code(), response.message(), response.body().string());
+    }
+}
@@ -0,0 +1,187 @@
+/*
+ * Copyright (c) 2018 Snowplow Analytics Ltd. All rights reserved.
+ *
+ * This program is licensed to you under the Apache License Version 2.0,
+ * and you may not use this file except in compliance with the Apache License Version 2.0.
+ * You may obtain a copy of the Apache License Version 2.0 at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the Apache License Version 2.0 is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Apache License Version 2.0 for the specific language governing permissions and limitations there under.
+ */
+
+package com.snowplowanalytics.redash.transport;
+
+import com.snowplowanalytics.redash.model.datasource.Options;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Masks credentials in request and response bodies before they are logged: every occurrence of the API key, and
+ * the value of every JSON member whose name is a secret according to {@link Options#isSecret(String)}, such as
+ * {@code "password"}.
+ *
+ * The text is scanned once, byte by byte, without decoding it; only member names are decoded to check them.
+ * Nothing is copied unless something is masked. Text which is not JSON is only searched for the API key.
+ */
+public final class Redactor {
+
+    static final String MASK = "****";
+
+    private static final byte[] MASK_BYTES = MASK.getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] QUOTED_MASK = ('"' + MASK + '"').getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] NULL = "null".getBytes(StandardCharsets.US_ASCII);
+
+    private Redactor() {
+    }
+
+    /**
+     * @param secret The API key, or null.
+     * @return {@code text} itself if there was nothing to mask, otherwise a masked copy.
+     */
+    public static byte[] redact(byte[] text, byte[] secret) {
+        boolean searchSecret = secret != null && secret.length > 0;
+        Buffer out = null;
+        int copied = 0;
+        boolean inString = false;
+        boolean escaped = false;
+        int stringStart = 0;
+        boolean secretValue = false;
+        int i = 0;
+        while (i < text.length) {
+            if (searchSecret && text[i] == secret[0] && startsWith(text, i, secret)) {
+                out = Buffer.append(out, text, copied, i).append(MASK_BYTES);
+                i += secret.length;
+                copied = i;
+                continue;
+            }
+            byte c = text[i];
+            if (inString) {
+                if (escaped) {
+                    escaped = false;
+                } else if (c == '\\') {
+                    escaped = true;
+                } else if (c == '"') {
+                    inString = false;
+                    int next = skipWhitespace(text, i + 1);
+                    secretValue = next < text.length && text[next] == ':'
+                            && Options.isSecret(new String(text, stringStart, i - stringStart, StandardCharsets.UTF_8));
+                }
+                i++;
+            } else if (secretValue && c != ':' && !isWhitespace(c)) {
+                secretValue = false;
+                if (c == '{' || c == '[' || startsWith(text, i, NULL)) {
+                    // Nested values are scanned as usual and null is not a secret
+                    continue;
+                }
+                int end = c == '"' ? endOfString(text, i) : endOfScalar(text, i);
+                out = Buffer.append(out, text, copied, i).append(QUOTED_MASK);
+                i = end;
+                copied = i;
+            } else {
+                if (c == '"') {
+                    inString = true;
+                    stringStart = i + 1;
+                }
+                i++;
+            }
+        }
+        return out == null ? text : Buffer.append(out, text, copied, text.length).toByteArray();
+    }
+
+    /**
+     * @param secret The API key, or null.
+     */
+    public static String redact(String text, String secret) {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        byte[] redacted = redact(bytes, secret == null ? null : secret.getBytes(StandardCharsets.UTF_8));
+        return redacted == bytes ? text : new String(redacted, StandardCharsets.UTF_8);
+    }
+
+    private static boolean startsWith(byte[] text, int offset, byte[] prefix) {
+        if (offset + prefix.length > text.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if (text[offset + i] != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isWhitespace(byte c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\r';
+    }
+
+    private static int skipWhitespace(byte[] text, int i) {
+        while (i < text.length && isWhitespace(text[i])) {
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * @return The index after the closing quote of the string starting at {@code start}, or the end of the text.
+     */
+    private static int endOfString(byte[] text, int start) {
+        for (int i = start + 1; i < text.length; i++) {
+            if (text[i] == '\\') {
+                i++;
+            } else if (text[i] == '"') {
+                return i + 1;
+            }
+        }
+        return text.length;
+    }
+
+    private static int endOfScalar(byte[] text, int start) {
+        int i = start;
+        while (i < text.length && text[i] != ',' && text[i] != '}' && text[i] != ']' && !isWhitespace(text[i])) {
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * A growable byte array, created when the first mask is written.
+     */
+    private static final class Buffer {
+        private byte[] bytes;
+        private int length;
+
+        private Buffer(int capacity) {
+            bytes = new byte[capacity];
+        }
+
+        /**
+         * Appends {@code text[from, to)} to {@code buffer}, creating it if it is null.
+         */
+        static Buffer append(Buffer buffer, byte[] text, int from, int to) {
+            if (buffer == null) {
+                buffer = new Buffer(text.length + 16);
+            }
+            buffer.append(text, from, to - from);
+            return buffer;
+        }
+
+        Buffer append(byte[] source) {
+            append(source, 0, source.length);
+            return this;
+        }
+
+        private void append(byte[] source, int offset, int count) {
+            if (length + count > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, length + count));
+            }
+            System.arraycopy(source, offset, bytes, length, count);
+            length += count;
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(bytes, length);
+        }
+    }
+}
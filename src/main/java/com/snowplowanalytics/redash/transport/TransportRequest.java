@@ -0,0 +1,97 @@
+/*
+ * Copyright (c) 2018 Snowplow Analytics Ltd. All rights reserved.
+ *
+ * This program is licensed to you under the Apache License Version 2.0,
+ * and you may not use this file except in compliance with the Apache License Version 2.0.
+ * You may obtain a copy of the Apache License Version 2.0 at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the Apache License Version 2.0 is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Apache License Version 2.0 for the specific language governing permissions and limitations there under.
+ */
+
+package com.snowplowanalytics.redash.transport;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * An immutable HTTP request as sent by {@link com.snowplowanalytics.redash.RedashClient}.
+ */
+public final class TransportRequest {
+
+    public static final String GET = "GET";
+    public static final String POST = "POST";
+    public static final String DELETE = "DELETE";
+
+    private final String method;
+    private final String url;
+    private final Map<String, String> headers;
+    private final String body;
+
+    private TransportRequest(String method, String url, Map<String, String> headers, String body) {
+        this.method = method;
+        this.url = url;
+        this.headers = headers;
+        this.body = body;
+    }
+
+    /**
+     * @param headers Unmodifiable headers; the map is shared rather than copied.
+     */
+    public static TransportRequest get(String url, Map<String, String> headers) {
+        return new TransportRequest(GET, url, headers, null);
+    }
+
+    /**
+     * @param headers Unmodifiable headers; the map is shared rather than copied.
+     */
+    public static TransportRequest post(String url, Map<String, String> headers, String body) {
+        return new TransportRequest(POST, url, headers, body);
+    }
+
+    /**
+     * @param headers Unmodifiable headers; the map is shared rather than copied.
+     */
+    public static TransportRequest delete(String url, Map<String, String> headers) {
+        return new TransportRequest(DELETE, url, headers, null);
+    }
+
+    /**
+     * @return A copy of this request with one more header, or with the header replaced.
+     */
+    public TransportRequest withHeader(String name, String value) {
+        Map<String, String> copy = new LinkedHashMap<>(headers);
+        copy.put(name, value);
+        return new TransportRequest(method, url, Collections.unmodifiableMap(copy), body);
+    }
+
+    public String getMethod() {
+        return method;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public Map<String, String> getHeaders() {
+        return headers;
+    }
+
+    /**
+     * @return The request body or null for requests without one.
+     */
+    public String getBody() {
+        return body;
+    }
+
+    @Override
+    public String toString() {
+        return "TransportRequest{" +
+                "method='" + method + '\'' +
+                ", url='" + url + '\'' +
+                '}';
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright (c) 2018 Snowplow Analytics Ltd. All rights reserved.
+ *
+ * This program is licensed to you under the Apache License Version 2.0,
+ * and you may not use this file except in compliance with the Apache License Version 2.0.
+ * You may obtain a copy of the Apache License Version 2.0 at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the Apache License Version 2.0 is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Apache License Version 2.0 for the specific language governing permissions and limitations there under.
+ */
+
+package com.snowplowanalytics.redash.transport;
+
+/**
+ * An HTTP response with its body fully read.
+ */
+public final class TransportResponse {
+
+    private final int code;
+    private final String message;
+    private final String body;
+
+    public TransportResponse(int code, String message, String body) {
+        this.code = code;
+        this.message = message;
+        this.body = body;
+    }
+
+    /**
+     * Creates a response for transports which do not receive a reason phrase, such as HTTP/2 ones.
+     * The message is the reason phrase Redash's server sends for the same status code.
+     */
+    public TransportResponse(int code, String body) {
+        this(code, reasonPhrase(code), body);
+    }
+
+    public int getCode() {
+        return code;
+    }
+
+    /**
+     * @return The reason phrase of the status line, e.g. "NOT FOUND".
+     */
+    public String getMessage() {
+        return message;
+    }
+
+    public String getBody() {
+        return body;
+    }
+
+    public boolean isSuccessful() {
+        return code >= 200 && code < 300;
+    }
+
+    /**
+     * @return The reason phrase Redash's server (Werkzeug) sends for {@code code}, e.g. "NOT FOUND".
+     */
+    public static String reasonPhrase(int code) {
+        switch (code) {
+            case 200: return "OK";
+            case 201: return "CREATED";
+            case 204: return "NO CONTENT";
+            case 400: return "BAD REQUEST";
+            case 401: return "UNAUTHORIZED";
+            case 403: return "FORBIDDEN";
+            case 404: return "NOT FOUND";
+            case 405: return "METHOD NOT ALLOWED";
+            case 409: return "CONFLICT";
+            case 429: return "TOO MANY REQUESTS";
+            case 500: return "INTERNAL SERVER ERROR";
+            case 502: return "BAD GATEWAY";
+            case 503: return "SERVICE UNAVAILABLE";
+            case 504: return "GATEWAY TIMEOUT";
+            default: return "HTTP " + code;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "TransportResponse{" +
+                "code=" + code +
+                ", message='" + message + '\'' +
+                '}';
+    }
+}
@@ -24,7 +24,7 @@ import java.util.Properties;
 
 public class AbstractRedashClientTest {
 
-    public static RedashClient redashClient, wrongClient;
+    public static RedashClient redashClient, wrongClient, optimisticClient;
     public static RedshiftDataSource rds = new RedshiftDataSource.RedshiftDataSourceBuilder("name")
             .host("host")
             .port(5439)
@@ -53,6 +53,13 @@ public class AbstractRedashClientTest {
                 Integer.parseInt(prop_1.getProperty("redash_port")),
                 prop_2.getProperty("admin_api_key"));
 
+        // Client which sends mutations without pre-flight existence checks
+        optimisticClient = new RedashClient.RedashClientBuilder(prop_1.getProperty("redash_schema"),
+                prop_1.getProperty("redash_host"), Integer.parseInt(prop_1.getProperty("redash_port")),
+                prop_2.getProperty("admin_api_key"))
+                .mutationMode(MutationMode.OPTIMISTIC)
+                .build();
+
         // Client which has wrong apikey for test case with IOException
         wrongClient = new RedashClient(prop_1.getProperty("redash_schema"), prop_1.getProperty("redash_host"),
                 Integer.parseInt(prop_1.getProperty("redash_port")), "wrong");
@@ -0,0 +1,129 @@
+/*
+ * Copyright (c) 2018 Snowplow Analytics Ltd. All rights reserved.
+ *
+ * This program is licensed to you under the Apache License Version 2.0,
+ * and you may not use this file except in compliance with the Apache License Version 2.0.
+ * You may obtain a copy of the Apache License Version 2.0 at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the Apache License Version 2.0 is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Apache License Version 2.0 for the specific language governing permissions and limitations there under.
+ */
+
+package com.snowplowanalytics.redash;
+
+import com.snowplowanalytics.redash.model.Group;
+import com.snowplowanalytics.redash.model.datasource.RedshiftDataSource;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+public class AccessMatrixTest {
+
+    private FakeRedashServer server;
+    private RedashClient client;
+
+    @Before
+    public void setup() throws IOException {
+        server = new FakeRedashServer("key");
+        server.start();
+        client = server.clientBuilder().build();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        server.shutdown();
+    }
+
+    @Test
+    public void accessMatrixTest() throws IOException {
+        int analyst = server.addUser("Analyst");
+        int auditor = server.addUser("Auditor");
+        int warehouse = client.createDataSource(dataSource("warehouse"));
+        int lake = client.createDataSource(dataSource("lake"));
+        int analysts = client.createUserGroup(new Group("analysts"));
+        int auditors = client.createUserGroup(new Group("auditors"));
+        client.addUserToGroup(analyst, analysts);
+        client.addUserToGroup(auditor, auditors);
+        client.addUserToGroup(analyst, auditors);
+        client.addDataSourceToGroup(warehouse, analysts);
+        client.addDataSourceToGroup(warehouse, auditors);
+        client.addDataSourceToGroup(lake, auditors);
+
+        int baseline = server.getRequestCount();
+        AccessMatrix matrix = client.getAccessMatrix(2);
+        int groupCount = client.getUserGroups().size();
+        // users, data-sources and groups, then members and data-sources per group
+        Assert.assertEquals(3 + 2 * groupCount, server.getRequestCount() - baseline - 1);
+
+        Assert.assertEquals(groupCount, matrix.getGroupIds().length);
+        Assert.assertEquals(4, matrix.getUserIds().length);
+        Assert.assertEquals("Analyst", matrix.getUserName(analyst));
+        Assert.assertEquals("lake", matrix.getDataSourceName(lake));
+        Assert.assertEquals("auditors", matrix.getGroupName(auditors));
+
+        Assert.assertTrue(matrix.isMember(analyst, analysts));
+        Assert.assertFalse(matrix.isMember(auditor, analysts));
+        Assert.assertTrue(matrix.isAttached(lake, auditors));
+        Assert.assertFalse(matrix.isAttached(lake, analysts));
+
+        // New users and data-sources are also in the "default" group
+        Assert.assertArrayEquals(granting(analyst, warehouse), matrix.getGrantingGroupIds(analyst, warehouse));
+        Assert.assertArrayEquals(granting(analyst, lake), matrix.getGrantingGroupIds(analyst, lake));
+        Assert.assertArrayEquals(granting(auditor, warehouse), matrix.getGrantingGroupIds(auditor, warehouse));
+        Assert.assertTrue(granting(analyst, warehouse).length >= 2);
+        Assert.assertTrue(matrix.hasAccess(auditor, lake));
+
+        // Matches the groups as seen one at a time
+        for (int groupId : matrix.getGroupIds()) {
+            int[] members = server.members(groupId).stream().mapToInt(Integer::intValue).sorted().toArray();
+            int[] fromMatrix = matrix.getUserIdsOfGroup(groupId);
+            Arrays.sort(fromMatrix);
+            Assert.assertArrayEquals(members, fromMatrix);
+            int[] attached = server.groupDataSources(groupId).stream().mapToInt(Integer::intValue).sorted().toArray();
+            int[] attachedFromMatrix = matrix.getDataSourceIdsOfGroup(groupId);
+            Arrays.sort(attachedFromMatrix);
+            Assert.assertArrayEquals(attached, attachedFromMatrix);
+        }
+        Assert.assertArrayEquals(new int[]{analysts, auditors},
+                Arrays.stream(matrix.getGroupIdsOfUser(analyst)).filter(id -> id == analysts || id == auditors).toArray());
+    }
+
+    @Test
+    public void unknownIdsTest() throws IOException {
+        AccessMatrix matrix = client.getAccessMatrix();
+        Assert.assertFalse(matrix.isMember(99, 1));
+        Assert.assertFalse(matrix.hasAccess(1, 99));
+        Assert.assertEquals(0, matrix.getGrantingGroupIds(99, 99).length);
+        Assert.assertEquals(0, matrix.getUserIdsOfGroup(99).length);
+        Assert.assertNull(matrix.getUserName(99));
+    }
+
+    @Test
+    public void failedRequestTest() throws IOException {
+        try {
+            new RedashClient.RedashClientBuilder("http", server.getHostName(), server.getPort(), "wrong").build()
+                    .getAccessMatrix();
+            Assert.fail();
+        } catch (RedashAuthenticationException e) {
+            // expected
+        }
+    }
+
+    private int[] granting(int userId, int dataSourceId) throws IOException {
+        return client.getUserGroups().stream()
+                .mapToInt(Group::getId)
+                .filter(id -> server.members(id).contains(userId) && server.groupDataSources(id).contains(dataSourceId))
+                .toArray();
+    }
+
+    private static RedshiftDataSource dataSource(String name) {
+        return new RedshiftDataSource.RedshiftDataSourceBuilder(name)
+                .host("host").port(5439).user("user").password("password").dbName("db").build();
+    }
+}
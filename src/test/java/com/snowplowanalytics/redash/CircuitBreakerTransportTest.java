@@ -0,0 +1,231 @@
+/*
+ * Copyright (c) 2018 Snowplow Analytics Ltd. All rights reserved.
+ *
+ * This program is licensed to you under the Apache License Version 2.0,
+ * and you may not use this file except in compliance with the Apache License Version 2.0.
+ * You may obtain a copy of the Apache License Version 2.0 at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the Apache License Version 2.0 is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Apache License Version 2.0 for the specific language governing permissions and limitations there under.
+ */
+
+package com.snowplowanalytics.redash;
+
+import com.snowplowanalytics.redash.transport.CircuitBreaker;
+import com.snowplowanalytics.redash.transport.CircuitBreakerOpenException;
+import com.snowplowanalytics.redash.transport.CircuitBreakerTransport;
+import com.snowplowanalytics.redash.transport.HttpTransport;
+import com.snowplowanalytics.redash.transport.InMemoryTransport;
+import com.snowplowanalytics.redash.transport.TransportRequest;
+import com.snowplowanalytics.redash.transport.TransportResponse;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+
+public class CircuitBreakerTransportTest {
+
+    private static final String DOWN = "http://down:5000";
+    private static final String UP = "http://up:5000";
+
+    private volatile int downStatus;
+    private InMemoryTransport delegate;
+    private CircuitBreakerTransport transport;
+    private final List<String> transitions = new CopyOnWriteArrayList<>();
+
+    @Before
+    public void setup() {
+        downStatus = 0;
+        delegate = new InMemoryTransport(request -> {
+            if (request.getUrl().startsWith(DOWN)) {
+                if (downStatus == 0) {
+                    throw new ConnectException("Connection refused");
+                }
+                return new TransportResponse(downStatus, "{}");
+            }
+            return new TransportResponse(200, "[]");
+        });
+        transport = breakerOver(delegate);
+    }
+
+    private CircuitBreakerTransport breakerOver(HttpTransport delegate) {
+        return new CircuitBreakerTransport.CircuitBreakerTransportBuilder(delegate)
+                .windowSize(10)
+                .minimumCalls(4)
+                .failureRateThreshold(0.5f)
+                .openDuration(Duration.ofMillis(200))
+                .halfOpenCalls(2)
+                .listener((breaker, from, to) -> transitions.add(breaker.getBaseUrl() + " " + from + "->" + to))
+                .build();
+    }
+
+    @Test
+    public void opensPerBaseUrlTest() throws IOException {
+        for (int i = 0; i < 4; i++) {
+            expectFailure(DOWN, ConnectException.class);
+            send(UP);
+        }
+        CircuitBreaker down = transport.getCircuitBreaker(DOWN);
+        Assert.assertEquals(CircuitBreaker.State.OPEN, down.getState());
+        Assert.assertEquals(Collections.singletonList(DOWN + " CLOSED->OPEN"), transitions);
+        Assert.assertEquals(CircuitBreaker.State.CLOSED, transport.getCircuitBreaker(UP).getState());
+        Assert.assertTrue(transport.getCircuitBreaker(UP).getFailureRate() == 0);
+
+        // Fails fast without reaching the delegate
+        int sent = delegate.getRequests().size();
+        CircuitBreakerOpenException e = expectFailure(DOWN, CircuitBreakerOpenException.class);
+        Assert.assertEquals(DOWN, e.getBaseUrl());
+        Assert.assertTrue(e.getRetryAfter().compareTo(Duration.ZERO) > 0);
+        Assert.assertEquals(sent, delegate.getRequests().size());
+        Assert.assertEquals(1, down.getNotPermittedCalls());
+        Assert.assertEquals(4, down.getFailedCalls());
+        send(UP);
+    }
+
+    @Test
+    public void failureRateTest() throws IOException {
+        // 500 is a normal Redash answer, 503 is not
+        downStatus = 500;
+        for (int i = 0; i < 10; i++) {
+            send(DOWN);
+        }
+        CircuitBreaker down = transport.getCircuitBreaker(DOWN);
+        Assert.assertEquals(CircuitBreaker.State.CLOSED, down.getState());
+        downStatus = 503;
+        for (int i = 0; i < 4; i++) {
+            send(DOWN);
+        }
+        Assert.assertEquals(CircuitBreaker.State.CLOSED, down.getState());
+        Assert.assertTrue(down.getFailureRate() == 0.4f);
+        send(DOWN);
+        Assert.assertEquals(CircuitBreaker.State.OPEN, down.getState());
+    }
+
+    @Test
+    public void halfOpenTest() throws Exception {
+        openDown();
+        Thread.sleep(250);
+        downStatus = 200;
+        send(DOWN);
+        Assert.assertEquals(CircuitBreaker.State.HALF_OPEN, transport.getCircuitBreaker(DOWN).getState());
+        send(DOWN);
+        Assert.assertEquals(CircuitBreaker.State.CLOSED, transport.getCircuitBreaker(DOWN).getState());
+        Assert.assertEquals(transitions.toString(), 3, transitions.size());
+        Assert.assertEquals(DOWN + " HALF_OPEN->CLOSED", transitions.get(2));
+        // The window starts empty again
+        Assert.assertTrue(transport.getCircuitBreaker(DOWN).getFailureRate() == -1);
+
+        openDown();
+        Thread.sleep(250);
+        downStatus = 0;
+        expectFailure(DOWN, ConnectException.class);
+        Assert.assertEquals(CircuitBreaker.State.OPEN, transport.getCircuitBreaker(DOWN).getState());
+        Assert.assertEquals(DOWN + " HALF_OPEN->OPEN", transitions.get(transitions.size() - 1));
+    }
+
+    @Test
+    public void staleResultTest() throws Exception {
+        List<CompletableFuture<TransportResponse>> slow = new CopyOnWriteArrayList<>();
+        transport = breakerOver(new HttpTransport() {
+            @Override
+            public TransportResponse execute(TransportRequest request) throws IOException {
+                return delegate.execute(request);
+            }
+
+            @Override
+            public CompletableFuture<TransportResponse> executeAsync(TransportRequest request) {
+                CompletableFuture<TransportResponse> response = new CompletableFuture<>();
+                slow.add(response);
+                return response;
+            }
+        });
+        // Admitted while closed, answered once the breaker is half-open
+        transport.executeAsync(TransportRequest.get(DOWN + "/api/users", Collections.emptyMap()));
+        transport.executeAsync(TransportRequest.get(DOWN + "/api/users", Collections.emptyMap()));
+        openDown();
+        Thread.sleep(250);
+        downStatus = 200;
+        send(DOWN);
+        CircuitBreaker down = transport.getCircuitBreaker(DOWN);
+        Assert.assertEquals(CircuitBreaker.State.HALF_OPEN, down.getState());
+        slow.get(0).complete(new TransportResponse(200, "{}"));
+        slow.get(1).completeExceptionally(new ConnectException("Connection refused"));
+        // Neither is taken for a trial
+        Assert.assertEquals(CircuitBreaker.State.HALF_OPEN, down.getState());
+        Assert.assertEquals(5, down.getFailedCalls());
+        send(DOWN);
+        Assert.assertEquals(CircuitBreaker.State.CLOSED, down.getState());
+    }
+
+    @Test
+    public void asyncTest() throws Exception {
+        openDown();
+        try {
+            transport.executeAsync(TransportRequest.get(DOWN + "/api/users", Collections.emptyMap())).get();
+            Assert.fail();
+        } catch (ExecutionException e) {
+            Assert.assertTrue(e.getCause() instanceof CircuitBreakerOpenException);
+        }
+        Assert.assertEquals(200, transport.executeAsync(TransportRequest.get(UP + "/api/users",
+                Collections.emptyMap())).get().getCode());
+    }
+
+    @Test
+    public void clientTest() throws IOException {
+        RedashClient client = new RedashClient.RedashClientBuilder("http", "down", 5000, "key")
+                .transport(transport).build();
+        for (int i = 0; i < 4; i++) {
+            try {
+                client.getUsers();
+                Assert.fail();
+            } catch (ConnectException e) {
+                // expected
+            }
+        }
+        try {
+            client.getUsers();
+            Assert.fail();
+        } catch (CircuitBreakerOpenException e) {
+            Assert.assertEquals(DOWN, e.getBaseUrl());
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidSettingsTest() {
+        new CircuitBreakerTransport.CircuitBreakerTransportBuilder(delegate).windowSize(5).minimumCalls(6).build();
+    }
+
+    private void openDown() throws IOException {
+        int status = downStatus;
+        downStatus = 0;
+        for (int i = 0; i < 4; i++) {
+            expectFailure(DOWN, ConnectException.class);
+        }
+        downStatus = status;
+        Assert.assertEquals(CircuitBreaker.State.OPEN, transport.getCircuitBreaker(DOWN).getState());
+    }
+
+    private TransportResponse send(String baseUrl) throws IOException {
+        return transport.execute(TransportRequest.get(baseUrl + "/api/users", Collections.emptyMap()));
+    }
+
+    private <T extends IOException> T expectFailure(String baseUrl, Class<T> type) {
+        try {
+            send(baseUrl);
+        } catch (IOException e) {
+            Assert.assertTrue(e.toString(), type.isInstance(e));
+            return type.cast(e);
+        }
+        throw new AssertionError("Request to " + baseUrl + " did not fail");
+    }
+}
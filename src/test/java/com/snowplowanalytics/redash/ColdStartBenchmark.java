@@ -0,0 +1,77 @@
+/*
+ * Copyright (c) 2018 Snowplow Analytics Ltd. All rights reserved.
+ *
+ * This program is licensed to you under the Apache License Version 2.0,
+ * and you may not use this file except in compliance with the Apache License Version 2.0.
+ * You may obtain a copy of the Apache License Version 2.0 at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the Apache License Version 2.0 is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Apache License Version 2.0 for the specific language governing permissions and limitations there under.
+ */
+
+package com.snowplowanalytics.redash;
+
+import com.snowplowanalytics.redash.transport.HttpTransport;
+import com.snowplowanalytics.redash.transport.JdkHttpTransport;
+import com.snowplowanalytics.redash.transport.OkHttpTransport;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.function.Supplier;
+
+/**
+ * Measures the latency of the first {@link RedashClient#getUsers()} of a new client, with and without
+ * {@link RedashClient#warmUp(int)} done beforehand, against {@link FakeRedashServer}. Every client gets a new
+ * transport, so it starts without pooled connections.
+ *
+ * Class loading and the Gson adapters are paid only once per JVM, so the very first call is reported on its own.
+ * Run with {@code ./gradlew benchmarkColdStart}; the number of clients per case can be passed as an argument, e.g.
+ * {@code -Pargs="50"}.
+ */
+public class ColdStartBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int clients = args.length > 0 ? Integer.parseInt(args[0]) : 20;
+        FakeRedashServer server = new FakeRedashServer("benchmark");
+        server.start();
+        try {
+            long start = System.nanoTime();
+            server.clientBuilder().transport(new OkHttpTransport()).build().getUsers();
+            System.out.println(String.format("first call in this JVM: %7.3f ms", (System.nanoTime() - start) / 1e6));
+            run(server, "okhttp", OkHttpTransport::new, clients);
+            run(server, "jdk", JdkHttpTransport::new, clients);
+        } finally {
+            server.shutdown();
+        }
+    }
+
+    private static void run(FakeRedashServer server, String name, Supplier<HttpTransport> transports, int clients)
+            throws IOException {
+        for (boolean warmUp : new boolean[] {false, true}) {
+            long[] warmUps = new long[clients];
+            long[] firstCalls = new long[clients];
+            for (int i = 0; i < clients; i++) {
+                RedashClient client = server.clientBuilder().transport(transports.get()).build();
+                long start = System.nanoTime();
+                if (warmUp) {
+                    client.warmUp(1);
+                }
+                long middle = System.nanoTime();
+                client.getUsers();
+                warmUps[i] = middle - start;
+                firstCalls[i] = System.nanoTime() - middle;
+            }
+            System.out.println(String.format("  %-6s %-9s warm-up p50 %7.3f ms, first call p50 %7.3f ms, p99 %7.3f ms",
+                    name, warmUp ? "warmed" : "cold", percentile(warmUps, 0.5), percentile(firstCalls, 0.5),
+                    percentile(firstCalls, 0.99)));
+        }
+    }
+
+    private static double percentile(long[] nanos, double percentile) {
+        long[] sorted = nanos.clone();
+        Arrays.sort(sorted);
+        return sorted[Math.max(0, (int) Math.ceil(sorted.length * percentile) - 1)] / 1e6;
+    }
+}
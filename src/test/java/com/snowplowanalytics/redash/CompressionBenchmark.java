@@ -0,0 +1,161 @@
+/*
+ * Copyright (c) 2018 Snowplow Analytics Ltd. All rights reserved.
+ *
+ * This program is licensed to you under the Apache License Version 2.0,
+ * and you may not use this file except in compliance with the Apache License Version 2.0.
+ * You may obtain a copy of the Apache License Version 2.0 at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the Apache License Version 2.0 is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Apache License Version 2.0 for the specific language governing permissions and limitations there under.
+ */
+
+package com.snowplowanalytics.redash;
+
+import com.snowplowanalytics.redash.transport.HttpTransport;
+import com.snowplowanalytics.redash.transport.JdkHttpTransport;
+import com.snowplowanalytics.redash.transport.OkHttpTransport;
+import com.snowplowanalytics.redash.transport.TransportRequest;
+import com.snowplowanalytics.redash.transport.TransportResponse;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Measures bytes on the wire, the latency of {@link RedashClient#getUsers()} and the cost of decoding a compressed
+ * body, with and without gzip responses, for a user list of N entries served by {@link FakeRedashServer}.
+ *
+ * Run with {@code ./gradlew benchmarkCompression}; the list sizes can be passed as arguments, e.g.
+ * {@code -Pargs="1000 10000"}.
+ */
+public class CompressionBenchmark {
+
+    private static final int WARM_UP_OPERATIONS = 200;
+    private static final int OPERATIONS = 200;
+
+    public static void main(String[] args) throws Exception {
+        int[] sizes = Arrays.stream(args.length > 0 ? args : new String[] {"100", "1000", "5000"})
+                .mapToInt(Integer::parseInt)
+                .toArray();
+        for (int size : sizes) {
+            FakeRedashServer server = new FakeRedashServer("benchmark");
+            server.start();
+            try {
+                for (int i = server.clientBuilder().build().getUsers().size(); i < size; i++) {
+                    server.addUser("user" + i + "@example.com");
+                }
+                System.out.println(String.format("%d users, decode: %s", size, decode(server)));
+                for (String name : new String[] {"okhttp", "jdk"}) {
+                    for (boolean gzip : new boolean[] {false, true}) {
+                        HttpTransport transport = "okhttp".equals(name) ? new OkHttpTransport() : new JdkHttpTransport();
+                        RedashClient client = server.clientBuilder()
+                                .transport(gzip ? transport : new IdentityTransport(transport))
+                                .build();
+                        System.out.println(String.format("  %-6s %-8s %s", name, gzip ? "gzip" : "identity",
+                                run(server, client)));
+                    }
+                }
+            } finally {
+                server.shutdown();
+            }
+        }
+    }
+
+    private static String run(FakeRedashServer server, RedashClient client) throws IOException {
+        for (int i = 0; i < WARM_UP_OPERATIONS; i++) {
+            client.getUsers();
+        }
+        long bytes = server.responseBytes();
+        long[] latencies = new long[OPERATIONS];
+        for (int i = 0; i < OPERATIONS; i++) {
+            long start = System.nanoTime();
+            client.getUsers();
+            latencies[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(latencies);
+        return String.format("%9d bytes/response, p50 %7.3f ms, p99 %7.3f ms",
+                (server.responseBytes() - bytes) / OPERATIONS,
+                latencies[OPERATIONS / 2] / 1e6,
+                latencies[(int) Math.ceil(OPERATIONS * 0.99) - 1] / 1e6);
+    }
+
+    /**
+     * Times turning the body into text, from plain and from gzip-compressed bytes.
+     */
+    private static String decode(FakeRedashServer server) throws IOException {
+        TransportResponse response = server.inMemoryTransport().execute(TransportRequest.get(
+                "http://localhost/api/users", Map.of("Authorization", "Key benchmark")));
+        byte[] plain = response.getBody().getBytes(StandardCharsets.UTF_8);
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (GZIPOutputStream out = new GZIPOutputStream(compressed)) {
+            out.write(plain);
+        }
+        byte[] gzipped = compressed.toByteArray();
+        long plainNanos = 0;
+        long gzipNanos = 0;
+        for (int i = 0; i < WARM_UP_OPERATIONS + OPERATIONS; i++) {
+            long start = System.nanoTime();
+            String text = new String(plain, StandardCharsets.UTF_8);
+            long middle = System.nanoTime();
+            String decompressed = gunzip(gzipped);
+            long end = System.nanoTime();
+            if (i >= WARM_UP_OPERATIONS) {
+                plainNanos += middle - start;
+                gzipNanos += end - middle;
+            }
+            if (text.length() != decompressed.length()) {
+                throw new IllegalStateException();
+            }
+        }
+        return String.format("%d plain bytes in %.3f ms, %d gzip bytes in %.3f ms",
+                plain.length, plainNanos / 1e6 / OPERATIONS, gzipped.length, gzipNanos / 1e6 / OPERATIONS);
+    }
+
+    private static String gunzip(byte[] gzipped) throws IOException {
+        StringWriter text = new StringWriter();
+        try (Reader reader = new InputStreamReader(new GZIPInputStream(new ByteArrayInputStream(gzipped)),
+                StandardCharsets.UTF_8)) {
+            reader.transferTo(text);
+        }
+        return text.toString();
+    }
+
+    /**
+     * Asks for uncompressed responses, which also turns off OkHttp's transparent gzip.
+     */
+    private static final class IdentityTransport implements HttpTransport {
+        private final HttpTransport delegate;
+
+        private IdentityTransport(HttpTransport delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public TransportResponse execute(TransportRequest request) throws IOException {
+            return delegate.execute(identity(request));
+        }
+
+        @Override
+        public CompletableFuture<TransportResponse> executeAsync(TransportRequest request) {
+            return delegate.executeAsync(identity(request));
+        }
+
+        private static TransportRequest identity(TransportRequest request) {
+            Map<String, String> headers = new LinkedHashMap<>(request.getHeaders());
+            headers.put("Accept-Encoding", "identity");
+            return TransportRequest.get(request.getUrl(), headers);
+        }
+    }
+}
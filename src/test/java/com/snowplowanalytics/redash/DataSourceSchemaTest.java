@@ -0,0 +1,201 @@
+/*
+ * Copyright (c) 2018 Snowplow Analytics Ltd. All rights reserved.
+ *
+ * This program is licensed to you under the Apache License Version 2.0,
+ * and you may not use this file except in compliance with the Apache License Version 2.0.
+ * You may obtain a copy of the Apache License Version 2.0 at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the Apache License Version 2.0 is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Apache License Version 2.0 for the specific language governing permissions and limitations there under.
+ */
+
+package com.snowplowanalytics.redash;
+
+import com.snowplowanalytics.redash.model.datasource.DataSourceSchema;
+import com.snowplowanalytics.redash.model.datasource.RedshiftDataSource;
+import com.snowplowanalytics.redash.transport.InMemoryTransport;
+import com.snowplowanalytics.redash.transport.TransportRequest;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+public class DataSourceSchemaTest {
+
+    private FakeRedashServer server;
+    private int dataSourceId;
+
+    @Before
+    public void setup() throws IOException {
+        server = new FakeRedashServer("key");
+        server.start();
+        RedshiftDataSource dataSource = new RedshiftDataSource.RedshiftDataSourceBuilder("warehouse")
+                .host("host").port(5439).user("user").password("password").dbName("db").build();
+        dataSourceId = server.clientBuilder().build().createDataSource(dataSource);
+        server.setSchema(dataSourceId, tables("users", "events"));
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        server.shutdown();
+    }
+
+    @Test
+    public void schemaTest() throws IOException {
+        RedashClient client = server.clientBuilder().build();
+        DataSourceSchema schema = client.getDataSourceSchema(dataSourceId);
+        Assert.assertEquals(Arrays.asList("atomic.events", "atomic.users"), schema.getTableNames());
+        Assert.assertEquals(Arrays.asList("id", "name", "events_id"), schema.getColumns("atomic.events"));
+        Assert.assertNull(schema.getColumns("atomic.sessions"));
+        // Column names are shared between tables
+        Assert.assertTrue(schema.getColumns("atomic.events").get(0) == schema.getColumns("atomic.users").get(0));
+        int requests = server.getRequestCount();
+        Assert.assertTrue(client.getDataSourceSchema(dataSourceId) == schema);
+        Assert.assertTrue(server.getRequestCount() == requests);
+    }
+
+    @Test
+    public void missingDataSourceIsNotCachedTest() throws IOException {
+        RedashClient client = server.clientBuilder().build();
+        int requests = server.getRequestCount();
+        for (int i = 0; i < 2; i++) {
+            try {
+                client.getDataSourceSchema(42);
+                Assert.fail();
+            } catch (IOException e) {
+                Assert.assertTrue(FakeRedashServer.INTERNAL_SERVER_ERROR.equalsIgnoreCase(e.getMessage()));
+            }
+        }
+        Assert.assertTrue(server.getRequestCount() == requests + 2);
+    }
+
+    @Test
+    public void staleWhileRevalidateTest() throws IOException {
+        InMemoryTransport transport = server.inMemoryTransport();
+        RedashClient client = server.clientBuilder().transport(transport).schemaTtl(Duration.ZERO).build();
+        DataSourceSchema first = client.getDataSourceSchema(dataSourceId);
+        server.setSchema(dataSourceId, tables("users", "events", "sessions"));
+        // The stale schema is returned and a refresh is started
+        Assert.assertTrue(client.getDataSourceSchema(dataSourceId) == first);
+        Assert.assertTrue(client.getDataSourceSchema(dataSourceId).containsTable("atomic.sessions"));
+        List<String> urls = schemaRequests(transport);
+        Assert.assertFalse(urls.get(0).endsWith("?refresh=true"));
+        Assert.assertTrue(urls.get(1).endsWith("/schema?refresh=true"));
+    }
+
+    @Test
+    public void refreshAndInvalidateTest() throws IOException {
+        InMemoryTransport transport = server.inMemoryTransport();
+        RedashClient client = server.clientBuilder().transport(transport).build();
+        client.getDataSourceSchema(dataSourceId);
+        server.setSchema(dataSourceId, tables("sessions"));
+        Assert.assertEquals(2, client.getDataSourceSchema(dataSourceId).getTableCount());
+        Assert.assertEquals(1, client.refreshDataSourceSchema(dataSourceId).getTableCount());
+        Assert.assertEquals(1, client.getDataSourceSchema(dataSourceId).getTableCount());
+        client.invalidateDataSourceSchema(dataSourceId);
+        client.getDataSourceSchema(dataSourceId);
+        Assert.assertEquals(3, schemaRequests(transport).size());
+    }
+
+    @Test
+    public void concurrentCallersShareOneRequestTest() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        InMemoryTransport fake = server.inMemoryTransport();
+        InMemoryTransport transport = new InMemoryTransport(request -> {
+            if (request.getUrl().contains("/schema")) {
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return fake.execute(request);
+        });
+        RedashClient client = server.clientBuilder().transport(transport).build();
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<DataSourceSchema>> results = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                results.add(pool.submit(() -> client.getDataSourceSchema(dataSourceId)));
+            }
+            Thread.sleep(100);
+            release.countDown();
+            DataSourceSchema schema = results.get(0).get();
+            for (Future<DataSourceSchema> result : results) {
+                Assert.assertTrue(result.get() == schema);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        Assert.assertEquals(1, schemaRequests(transport).size());
+    }
+
+    @Test
+    public void cancelledCallerDoesNotAffectOthersTest() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        InMemoryTransport fake = server.inMemoryTransport();
+        InMemoryTransport transport = new InMemoryTransport(request -> {
+            if (request.getUrl().contains("/schema")) {
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return fake.execute(request);
+        });
+        RedashClient client = server.clientBuilder().transport(transport).build();
+        ExecutorService pool = Executors.newSingleThreadExecutor();
+        try {
+            Future<CompletableFuture<DataSourceSchema>> first =
+                    pool.submit(() -> client.getDataSourceSchemaAsync(dataSourceId));
+            Thread.sleep(100);
+            CompletableFuture<DataSourceSchema> second = client.getDataSourceSchemaAsync(dataSourceId);
+            second.cancel(true);
+            release.countDown();
+            DataSourceSchema schema = first.get().get(5, TimeUnit.SECONDS);
+            Assert.assertEquals(2, schema.getTableCount());
+            // Completing a copy does not change the cached schema either
+            client.getDataSourceSchemaAsync(dataSourceId).obtrudeValue(null);
+            Assert.assertTrue(client.getDataSourceSchema(dataSourceId) == schema);
+        } finally {
+            pool.shutdownNow();
+        }
+        Assert.assertEquals(1, schemaRequests(transport).size());
+    }
+
+    private static Map<String, List<String>> tables(String... names) {
+        Map<String, List<String>> tables = new LinkedHashMap<>();
+        for (String name : names) {
+            List<String> columns = new ArrayList<>(Arrays.asList("id", "name"));
+            columns.add(name + "_id");
+            tables.put("atomic." + name, Collections.unmodifiableList(columns));
+        }
+        return tables;
+    }
+
+    private static List<String> schemaRequests(InMemoryTransport transport) {
+        return transport.getRequests().stream()
+                .map(TransportRequest::getUrl)
+                .filter(url -> url.contains("/schema"))
+                .collect(Collectors.toList());
+    }
+}
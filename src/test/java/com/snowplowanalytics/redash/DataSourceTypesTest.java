@@ -0,0 +1,195 @@
+/*
+ * Copyright (c) 2018 Snowplow Analytics Ltd. All rights reserved.
+ *
+ * This program is licensed to you under the Apache License Version 2.0,
+ * and you may not use this file except in compliance with the Apache License Version 2.0.
+ * You may obtain a copy of the Apache License Version 2.0 at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the Apache License Version 2.0 is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Apache License Version 2.0 for the specific language governing permissions and limitations there under.
+ */
+
+package com.snowplowanalytics.redash;
+
+import com.google.gson.Gson;
+import com.snowplowanalytics.redash.model.datasource.BigQueryDataSource;
+import com.snowplowanalytics.redash.model.datasource.ClickHouseDataSource;
+import com.snowplowanalytics.redash.model.datasource.DataSource;
+import com.snowplowanalytics.redash.model.datasource.DataSourceTypeRegistry;
+import com.snowplowanalytics.redash.model.datasource.ImmutableDataSource;
+import com.snowplowanalytics.redash.model.datasource.Options;
+import com.snowplowanalytics.redash.model.datasource.PostgreSqlDataSource;
+import com.snowplowanalytics.redash.model.datasource.RedshiftDataSource;
+import com.snowplowanalytics.redash.model.datasource.SnowflakeDataSource;
+import com.snowplowanalytics.redash.transport.InMemoryTransport;
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class DataSourceTypesTest {
+
+    private FakeRedashServer server;
+    private RedashClient client;
+
+    @Before
+    public void setup() throws IOException {
+        server = new FakeRedashServer("key");
+        server.start();
+        client = server.clientBuilder().validateOptions(true).build();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        server.shutdown();
+    }
+
+    @Test
+    public void typesAreDownloadedOnceTest() throws IOException {
+        DataSourceTypeRegistry types = client.getDataSourceTypes();
+        Assert.assertTrue(client.getDataSourceTypes() == types);
+        Assert.assertTrue(server.getRequestCount() == 1);
+        Assert.assertTrue(types.getTypes().size() == 5);
+        Assert.assertTrue(types.get("bigquery").getRequired().containsAll(Arrays.asList("projectId", "jsonKeyFile")));
+        Assert.assertTrue(types.get("pg").getProperties().get("port").getType().equals("number"));
+        Assert.assertNull(types.get("mongodb"));
+    }
+
+    @Test
+    public void typedBuildersValidateLocallyTest() {
+        try {
+            new BigQueryDataSource.BigQueryDataSourceBuilder("bq").projectId("project").build();
+            Assert.fail();
+        } catch (IllegalArgumentException e) {
+            Assert.assertTrue(e.getMessage().contains("jsonKeyFile"));
+        }
+        try {
+            new SnowflakeDataSource.SnowflakeDataSourceBuilder("sf").account("acme").user("user").build();
+            Assert.fail();
+        } catch (IllegalArgumentException e) {
+            Assert.assertTrue(e.getMessage().contains("[password, database, warehouse]"));
+        }
+        ClickHouseDataSource clickHouse = new ClickHouseDataSource.ClickHouseDataSourceBuilder("ch")
+                .url("http://127.0.0.1:8123").dbName("default").timeout(30).build();
+        Assert.assertTrue(clickHouse.getMissingOptions().isEmpty());
+    }
+
+    @Test
+    public void optionsRoundTripTest() {
+        Gson gson = new Gson();
+        BigQueryDataSource bigQuery = new BigQueryDataSource.BigQueryDataSourceBuilder("bq")
+                .projectId("project").jsonKeyFile("a2V5").useStandardSql(true).totalMBytesProcessedLimit(1000).build();
+        JSONObject options = new JSONObject(gson.toJson(bigQuery)).getJSONObject("options");
+        Assert.assertTrue(options.keySet().equals(bigQuery.getOptions().getExtras().keySet()));
+        Assert.assertTrue(options.getBoolean("useStandardSql"));
+
+        DataSource read = gson.fromJson(gson.toJson(bigQuery), DataSource.class);
+        Assert.assertTrue(read.getOptions().equals(bigQuery.getOptions()));
+        Assert.assertTrue(ImmutableDataSource.copyOf(read).equals(ImmutableDataSource.copyOf(bigQuery)));
+
+        DataSource redshift = new RedshiftDataSource.RedshiftDataSourceBuilder("rs")
+                .host("host").port(5439).user("user").password("password").dbName("db").build();
+        Assert.assertTrue(gson.fromJson(gson.toJson(redshift), DataSource.class).getOptions().equals(redshift.getOptions()));
+        // Redash returns ports entered in the UI as strings
+        Options lenient = gson.fromJson("{\"host\":\"h\",\"port\":\"5432\",\"sslmode\":null}", Options.class);
+        Assert.assertTrue(lenient.getPort() == 5432);
+        Assert.assertTrue(lenient.getExtras().isEmpty());
+    }
+
+    @Test
+    public void nestedOptionsRoundTripTest() {
+        Gson gson = new Gson();
+        String json = "{\"host\":\"h\",\"params\":{\"a\":1,\"b\":[true,\"x\"]},\"hosts\":[\"h1\",\"h2\"]}";
+        Options options = gson.fromJson(json, Options.class);
+        Assert.assertEquals(json, gson.toJson(options));
+        Assert.assertTrue(gson.fromJson(gson.toJson(options), Options.class).equals(options));
+    }
+
+    @Test
+    public void registryValidationTest() throws IOException {
+        DataSourceTypeRegistry types = client.getDataSourceTypes();
+        PostgreSqlDataSource pg = new PostgreSqlDataSource.PostgreSqlDataSourceBuilder("pg")
+                .host("host").port(5432).dbName("db").sslMode("require").build();
+        Assert.assertTrue(types.validate(pg).isEmpty());
+
+        Options options = new Options("host", 5432, null, null, "db", Collections.singletonMap("sslmod", "require"));
+        List<String> problems = types.validate(new DataSource("typo", PostgreSqlDataSource.TYPE, options));
+        Assert.assertTrue(problems.size() == 1 && problems.get(0).contains("sslmod"));
+
+        options = new Options(null, 0, null, null, null, Collections.singletonMap("projectId", 42));
+        problems = types.validate(new DataSource("bq", BigQueryDataSource.TYPE, options));
+        Assert.assertTrue(problems.size() == 2);
+
+        problems = types.validate(new DataSource("mongo", "mongodb", options));
+        Assert.assertTrue(problems.get(0).contains("mongodb"));
+    }
+
+    @Test
+    public void failedDownloadIsRetriedTest() throws IOException {
+        InMemoryTransport fake = server.inMemoryTransport();
+        AtomicBoolean down = new AtomicBoolean(true);
+        RedashClient client = server.clientBuilder().transport(new InMemoryTransport(request -> {
+            if (down.get()) {
+                throw new ConnectException("Connection refused");
+            }
+            return fake.execute(request);
+        })).build();
+        try {
+            client.getDataSourceTypes();
+            Assert.fail();
+        } catch (ConnectException e) {
+            // expected
+        }
+        down.set(false);
+        DataSourceTypeRegistry types = client.getDataSourceTypes();
+        Assert.assertTrue(types.getTypes().size() == 5);
+        Assert.assertTrue(client.getDataSourceTypes() == types);
+    }
+
+    @Test
+    public void invalidDataSourceIsRejectedBeforeMutationTest() throws IOException {
+        client.getDataSourceTypes();
+        int requests = server.getRequestCount();
+        Options options = new Options(null, 0, null, null, null, Collections.singletonMap("projectId", "project"));
+        try {
+            client.createDataSource(new DataSource("bq", BigQueryDataSource.TYPE, options));
+            Assert.fail();
+        } catch (IllegalArgumentException e) {
+            Assert.assertTrue(e.getMessage().contains("jsonKeyFile"));
+        }
+        List<DataSourceCreationResult> results = client.createDataSources(Arrays.asList(
+                new DataSource("bq", BigQueryDataSource.TYPE, options),
+                new SnowflakeDataSource.SnowflakeDataSourceBuilder("sf").account("acme").user("user")
+                        .password("password").warehouse("wh").database("db").build()));
+        Assert.assertTrue(results.get(0).getStatus() == DataSourceCreationResult.Status.FAILED);
+        Assert.assertTrue(results.get(1).getStatus() == DataSourceCreationResult.Status.CREATED);
+        // The list download and the creation of the valid data-source only
+        Assert.assertTrue(server.getRequestCount() == requests + 2);
+        Assert.assertTrue(server.dataSourceNames().equals(Collections.singleton("sf")));
+        Assert.assertTrue(server.dataSource(results.get(1).getId()).getJSONObject("options").getString("warehouse").equals("wh"));
+    }
+
+    @Test
+    public void updateTypedDataSourceTest() throws IOException {
+        ClickHouseDataSource clickHouse = new ClickHouseDataSource.ClickHouseDataSourceBuilder("ch")
+                .url("http://127.0.0.1:8123").dbName("default").build();
+        client.createDataSource(clickHouse);
+        ClickHouseDataSource updated = new ClickHouseDataSource.ClickHouseDataSourceBuilder("ch")
+                .url("http://127.0.0.1:8124").dbName("default").build();
+        Assert.assertTrue(client.updateDataSource(updated));
+        Assert.assertTrue(server.dataSource(clickHouse.getId()).getJSONObject("options").getString("url").endsWith("8124"));
+        DataSource unknownOption = new DataSource("ch", ClickHouseDataSource.TYPE, new Options(null, 0, null, null,
+                "default", Collections.singletonMap("port", "8123")));
+        Assert.assertFalse(client.updateDataSource(unknownOption));
+    }
+}
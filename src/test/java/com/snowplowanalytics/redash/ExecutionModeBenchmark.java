@@ -0,0 +1,102 @@
+/*
+ * Copyright (c) 2018 Snowplow Analytics Ltd. All rights reserved.
+ *
+ * This program is licensed to you under the Apache License Version 2.0,
+ * and you may not use this file except in compliance with the Apache License Version 2.0.
+ * You may obtain a copy of the Apache License Version 2.0 at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the Apache License Version 2.0 is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Apache License Version 2.0 for the specific language governing permissions and limitations there under.
+ */
+
+package com.snowplowanalytics.redash;
+
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.OkHttpClient;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares {@link ExecutionMode#PLATFORM_THREADS} with {@link ExecutionMode#VIRTUAL_THREADS} by running N
+ * concurrent {@link RedashClient#getWithUsersAndDataSources(int)} calls against {@link FakeRedashServer}.
+ * In each mode the callers themselves run on the same kind of threads as the client's fan-out.
+ *
+ * Run with {@code ./gradlew benchmarkExecutionModes} on Java 21 or newer; the concurrency levels can be passed as
+ * arguments, e.g. {@code -Pargs="1000 10000"}. Every in-flight request holds a client and a server socket,
+ * so the higher levels need a correspondingly raised open file limit.
+ */
+public class ExecutionModeBenchmark {
+
+    private static final int WARM_UP_OPERATIONS = 500;
+
+    public static void main(String[] args) throws Exception {
+        List<Integer> levels = new ArrayList<>();
+        for (String arg : args.length > 0 ? args : new String[] {"1000", "2500", "5000", "10000"}) {
+            levels.add(Integer.parseInt(arg));
+        }
+        if (!ExecutionMode.isVirtualThreadsSupported()) {
+            System.out.println("Virtual threads are not supported by this JVM, only platform threads are measured.");
+        }
+        FakeRedashServer server = new FakeRedashServer("benchmark");
+        server.start();
+        try {
+            for (ExecutionMode mode : new ExecutionMode[] {ExecutionMode.PLATFORM_THREADS, ExecutionMode.VIRTUAL_THREADS}) {
+                if (mode == ExecutionMode.VIRTUAL_THREADS && !ExecutionMode.isVirtualThreadsSupported()) {
+                    continue;
+                }
+                Dispatcher dispatcher = new Dispatcher();
+                OkHttpClient httpClient = new OkHttpClient.Builder()
+                        .dispatcher(dispatcher)
+                        .connectionPool(new ConnectionPool(256, 1, TimeUnit.MINUTES))
+                        .build();
+                RedashClient client = server.clientBuilder().httpClient(httpClient).executionMode(mode).build();
+                run(client, mode, WARM_UP_OPERATIONS);
+                for (int level : levels) {
+                    System.out.println(String.format("%-16s %6d concurrent: %s", mode, level, run(client, mode, level)));
+                }
+                httpClient.connectionPool().evictAll();
+            }
+        } finally {
+            server.shutdown();
+        }
+    }
+
+    private static String run(RedashClient client, ExecutionMode mode, int operations) throws Exception {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        threads.resetPeakThreadCount();
+        ExecutorService callers = mode.newExecutor();
+        long[] latencies = new long[operations];
+        List<Future<?>> futures = new ArrayList<>(operations);
+        long start = System.nanoTime();
+        for (int i = 0; i < operations; i++) {
+            final int index = i;
+            futures.add(callers.submit(() -> {
+                long operationStart = System.nanoTime();
+                client.getWithUsersAndDataSources(2);
+                latencies[index] = System.nanoTime() - operationStart;
+                return null;
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        long elapsed = System.nanoTime() - start;
+        callers.shutdown();
+        Arrays.sort(latencies);
+        return String.format("%8.1f ops/s, p50 %8.2f ms, p99 %8.2f ms, peak threads %d",
+                operations * 1e9 / elapsed,
+                latencies[operations / 2] / 1e6,
+                latencies[(int) Math.ceil(operations * 0.99) - 1] / 1e6,
+                threads.getPeakThreadCount());
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright (c) 2018 Snowplow Analytics Ltd. All rights reserved.
+ *
+ * This program is licensed to you under the Apache License Version 2.0,
+ * and you may not use this file except in compliance with the Apache License Version 2.0.
+ * You may obtain a copy of the Apache License Version 2.0 at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the Apache License Version 2.0 is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Apache License Version 2.0 for the specific language governing permissions and limitations there under.
+ */
+
+package com.snowplowanalytics.redash;
+
+import com.snowplowanalytics.redash.model.Group;
+import com.snowplowanalytics.redash.model.User;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.concurrent.RejectedExecutionException;
+
+public class ExecutionModeTest {
+
+    private FakeRedashServer server;
+
+    @Before
+    public void setup() throws IOException {
+        server = new FakeRedashServer("key");
+        server.start();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        server.shutdown();
+    }
+
+    @Test
+    public void callerThreadTest() throws IOException {
+        assertFanOut(ExecutionMode.CALLER_THREAD);
+    }
+
+    @Test
+    public void platformThreadsTest() throws IOException {
+        assertFanOut(ExecutionMode.PLATFORM_THREADS);
+    }
+
+    @Test
+    public void virtualThreadsTest() throws IOException {
+        Assume.assumeTrue(ExecutionMode.isVirtualThreadsSupported());
+        assertFanOut(ExecutionMode.VIRTUAL_THREADS);
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void virtualThreadsUnsupportedTest() {
+        Assume.assumeFalse(ExecutionMode.isVirtualThreadsSupported());
+        server.clientBuilder().executionMode(ExecutionMode.VIRTUAL_THREADS).build();
+    }
+
+    @Test
+    public void closeTest() throws IOException {
+        RedashClient client = server.clientBuilder().executionMode(ExecutionMode.PLATFORM_THREADS).build();
+        Assert.assertTrue(client.getWithUsersAndDataSources(2).getUsers().size() == 2);
+        client.close();
+        try {
+            client.getWithUsersAndDataSources(2);
+            Assert.fail();
+        } catch (RejectedExecutionException e) {
+            // The executor was shut down
+        }
+        // Without an executor there is nothing to shut down
+        try (RedashClient callerThread = server.clientBuilder().build()) {
+            Assert.assertTrue(callerThread.getWithUsersAndDataSources(2).getUsers().size() == 2);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void nonExistingGroupTest() throws IOException {
+        server.clientBuilder().executionMode(ExecutionMode.PLATFORM_THREADS).build().getWithUsersAndDataSources(3);
+    }
+
+    @Test(expected = IOException.class)
+    public void wrongClientTest() throws IOException {
+        new RedashClient.RedashClientBuilder("http", server.getHostName(), server.getPort(), "wrong")
+                .executionMode(ExecutionMode.PLATFORM_THREADS)
+                .build()
+                .getWithUsersAndDataSources(2);
+    }
+
+    private void assertFanOut(ExecutionMode mode) throws IOException {
+        RedashClient client = server.clientBuilder().executionMode(mode).build();
+        int dataSourceId = client.createDataSource(AbstractRedashClientTest.rds);
+        Group group = client.getWithUsersAndDataSources(2);
+        Assert.assertTrue(group.getName().equals("default"));
+        Assert.assertTrue(group.getUsers().size() == 2);
+        Assert.assertTrue(group.getUsers().contains(new User("Default", 2)));
+        Assert.assertTrue(group.getDataSources().size() == 1);
+        Assert.assertTrue(group.getDataSources().get(0).getId() == dataSourceId);
+    }
+}
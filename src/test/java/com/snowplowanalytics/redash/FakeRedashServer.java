@@ -0,0 +1,697 @@
+/*
+ * Copyright (c) 2018 Snowplow Analytics Ltd. All rights reserved.
+ *
+ * This program is licensed to you under the Apache License Version 2.0,
+ * and you may not use this file except in compliance with the Apache License Version 2.0.
+ * You may obtain a copy of the Apache License Version 2.0 at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the Apache License Version 2.0 is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Apache License Version 2.0 for the specific language governing permissions and limitations there under.
+ */
+
+package com.snowplowanalytics.redash;
+
+import com.snowplowanalytics.redash.transport.InMemoryTransport;
+import com.snowplowanalytics.redash.transport.TransportResponse;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import okhttp3.HttpUrl;
+import okio.Buffer;
+import okio.BufferedSink;
+import okio.BufferedSource;
+import okio.GzipSink;
+import okio.GzipSource;
+import okio.Okio;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import javax.net.ServerSocketFactory;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * In-memory stand-in for the parts of the Redash API used by {@link RedashClient}.
+ *
+ * Status codes and error bodies follow what Redash 3 returns, including the quirks the client relies on:
+ * unknown data-sources answer with "Internal Server Error", unknown groups and users with the
+ * "requested URL was not found" message, memberships of unknown users or data-sources with "Internal Server Error"
+ * and an invalid API key with a 404 login message.
+ * All state is guarded by the server's monitor, so the fake itself never loses updates.
+ */
+public class FakeRedashServer {
+
+    static final String URL_NOT_FOUND = "The requested URL was not found on the server.  " +
+            "If you entered the URL manually please check your spelling and try again.";
+    private static final Pattern SERIES = Pattern.compile("generate_series\\(1, (\\d+)\\)");
+    static final String LOGIN_REQUIRED = "Couldn't find resource. Please login and try again.";
+    static final String INTERNAL_SERVER_ERROR = "Internal Server Error";
+    static final String UNREACHABLE_HOST = "unreachable";
+
+    /**
+     * Trimmed down versions of the schemas Redash 3 reports for the query runners the SDK has builders for.
+     */
+    static final JSONArray DATA_SOURCE_TYPES = new JSONArray()
+            .put(type("Amazon Redshift", "redshift", new JSONObject()
+                            .put("host", property("string")).put("port", property("number"))
+                            .put("user", property("string")).put("password", property("string"))
+                            .put("dbname", property("string")).put("sslmode", property("string")),
+                    new JSONArray().put("dbname").put("user").put("password").put("host").put("port")))
+            .put(type("PostgreSQL", "pg", new JSONObject()
+                            .put("host", property("string")).put("port", property("number"))
+                            .put("user", property("string")).put("password", property("string"))
+                            .put("dbname", property("string")).put("sslmode", property("string")),
+                    new JSONArray().put("dbname")))
+            .put(type("BigQuery", "bigquery", new JSONObject()
+                            .put("projectId", property("string")).put("jsonKeyFile", property("string"))
+                            .put("totalMBytesProcessedLimit", property("number")).put("useStandardSql", property("boolean"))
+                            .put("location", property("string")).put("loadSchema", property("boolean")),
+                    new JSONArray().put("jsonKeyFile").put("projectId")))
+            .put(type("Snowflake", "snowflake", new JSONObject()
+                            .put("account", property("string")).put("user", property("string"))
+                            .put("password", property("string")).put("warehouse", property("string"))
+                            .put("database", property("string")).put("region", property("string")),
+                    new JSONArray().put("user").put("password").put("account").put("database").put("warehouse")))
+            .put(type("ClickHouse", "clickhouse", new JSONObject()
+                            .put("url", property("string")).put("user", property("string"))
+                            .put("password", property("string")).put("dbname", property("string"))
+                            .put("timeout", property("number")),
+                    new JSONArray().put("dbname")));
+
+    // Per-request INFO logging would dominate the latencies measured by the stress tests.
+    private static final Logger MOCK_WEB_SERVER_LOGGER = Logger.getLogger(MockWebServer.class.getName());
+
+    static {
+        MOCK_WEB_SERVER_LOGGER.setLevel(Level.WARNING);
+    }
+
+    private final MockWebServer server = new MockWebServer();
+    private final String apiKey;
+
+    private final Map<Integer, JSONObject> users = new LinkedHashMap<>();
+    private final Map<Integer, JSONObject> groups = new LinkedHashMap<>();
+    private final Map<Integer, JSONObject> dataSources = new LinkedHashMap<>();
+    private final Map<Integer, Set<Integer>> groupMembers = new LinkedHashMap<>();
+    private final Map<Integer, Set<Integer>> groupDataSources = new LinkedHashMap<>();
+    private final Map<Integer, JSONArray> schemas = new LinkedHashMap<>();
+    private final Map<Integer, JSONObject> queryResults = new LinkedHashMap<>();
+    private final Map<String, JSONObject> jobs = new LinkedHashMap<>();
+    private final Map<Integer, JSONObject> queries = new LinkedHashMap<>();
+    private int jobPolls;
+    private int executions;
+    private int runningJobs;
+    private int maxRunningJobs;
+    private int nextGroupId = 1;
+    private final AtomicInteger compressedRequests = new AtomicInteger();
+    private final AtomicLong responseBytes = new AtomicLong();
+    private int nextDataSourceId = 1;
+    private volatile long latencyMillis;
+
+    public FakeRedashServer(String apiKey) {
+        this.apiKey = apiKey;
+        addGroup("admin");
+        addGroup("default");
+        groupMembers.get(1).add(addUser("Admin"));
+        addUser("Default");
+        server.setServerSocketFactory(new NoDelayServerSocketFactory());
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                return FakeRedashServer.this.dispatch(request);
+            }
+        });
+    }
+
+    public void start() throws IOException {
+        server.start();
+    }
+
+    public void shutdown() throws IOException {
+        server.shutdown();
+    }
+
+    public String getHostName() {
+        return server.getHostName();
+    }
+
+    public int getPort() {
+        return server.getPort();
+    }
+
+    public int getRequestCount() {
+        return server.getRequestCount();
+    }
+
+    public RedashClient.RedashClientBuilder clientBuilder() {
+        return new RedashClient.RedashClientBuilder("http", getHostName(), getPort(), apiKey);
+    }
+
+    // State accessors
+
+    /**
+     * Adds a user who, like every new Redash user, is a member of the "default" group.
+     */
+    public synchronized int addUser(String name) {
+        int id = users.size() + 1;
+        users.put(id, new JSONObject().put("id", id).put("name", name).put("auth_type", "password"));
+        groupMembers.get(2).add(id);
+        return id;
+    }
+
+    /**
+     * @return The number of requests received with a gzip-compressed body.
+     */
+    public int compressedRequests() {
+        return compressedRequests.get();
+    }
+
+    /**
+     * @return The number of response body bytes sent over the network, after compression.
+     */
+    public long responseBytes() {
+        return responseBytes.get();
+    }
+
+    /**
+     * @param latency How long each request is held before it is answered, on its own connection's thread.
+     */
+    public void setLatency(Duration latency) {
+        this.latencyMillis = latency.toMillis();
+    }
+
+    /**
+     * Records a sign-in, which Redash reflects in the {@code active_at} and {@code updated_at} of the user.
+     */
+    public synchronized void signIn(int id, String at) {
+        users.get(id).put("active_at", at).put("updated_at", at);
+    }
+
+    public synchronized void renameUser(int id, String name) {
+        users.get(id).put("name", name);
+    }
+
+    public synchronized Set<String> dataSourceNames() {
+        Set<String> names = new LinkedHashSet<>();
+        dataSources.values().forEach(ds -> names.add(ds.getString("name")));
+        return names;
+    }
+
+    public synchronized JSONObject dataSource(int id) {
+        return dataSources.get(id);
+    }
+
+    /**
+     * Sets the tables reported by the schema endpoint of a data-source; they are empty otherwise.
+     */
+    public synchronized void setSchema(int dataSourceId, Map<String, List<String>> tables) {
+        JSONArray schema = new JSONArray();
+        tables.forEach((name, columns) -> schema.put(new JSONObject().put("name", name).put("columns", columns)));
+        schemas.put(dataSourceId, schema);
+    }
+
+    /**
+     * @param polls How many times a job reports itself as started before it finishes; 0 by default.
+     */
+    public synchronized void setJobPolls(int polls) {
+        this.jobPolls = polls;
+    }
+
+    /**
+     * Saves a query; its text may use {@code {{name}}} parameters.
+     */
+    public synchronized int addQuery(int dataSourceId, String query) {
+        int id = queries.size() + 1;
+        queries.put(id, new JSONObject().put("id", id).put("data_source_id", dataSourceId).put("query", query));
+        return id;
+    }
+
+    public synchronized int runningJobs() {
+        return runningJobs;
+    }
+
+    /**
+     * @return The highest number of jobs which were running at the same time.
+     */
+    public synchronized int maxRunningJobs() {
+        return maxRunningJobs;
+    }
+
+    /**
+     * @return How many queries were executed, as opposed to answered from stored results.
+     */
+    public synchronized int queryExecutions() {
+        return executions;
+    }
+
+    public synchronized Set<Integer> members(int groupId) {
+        return new LinkedHashSet<>(groupMembers.get(groupId));
+    }
+
+    public synchronized Set<Integer> groupDataSources(int groupId) {
+        return new LinkedHashSet<>(groupDataSources.get(groupId));
+    }
+
+    // Dispatching
+
+    /**
+     * @return A transport which serves requests from this server's state without going through a socket.
+     */
+    public InMemoryTransport inMemoryTransport() {
+        return new InMemoryTransport(request -> {
+            MockResponse response = dispatch(request.getMethod(), HttpUrl.parse(request.getUrl()),
+                    request.getHeaders().get("Authorization"), request.getBody());
+            int code = Integer.parseInt(response.getStatus().split(" ")[1]);
+            return new TransportResponse(code, response.getBody() == null ? "" : response.getBody().readUtf8());
+        });
+    }
+
+    /**
+     * Accepts gzip request bodies and, like Redash behind a compressing proxy, compresses responses for clients
+     * accepting gzip.
+     */
+    private MockResponse dispatch(RecordedRequest request) {
+        if (latencyMillis > 0) {
+            try {
+                Thread.sleep(latencyMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        String body = null;
+        if (request.getBodySize() > 0) {
+            if ("gzip".equals(request.getHeader("Content-Encoding"))) {
+                compressedRequests.incrementAndGet();
+                body = gunzip(request.getBody());
+            } else {
+                body = request.getBody().readUtf8();
+            }
+        }
+        MockResponse response = dispatch(request.getMethod(), request.getRequestUrl(),
+                request.getHeader("Authorization"), body);
+        String acceptEncoding = request.getHeader("Accept-Encoding");
+        if (acceptEncoding != null && acceptEncoding.contains("gzip") && response.getBody() != null) {
+            Buffer compressed = new Buffer();
+            try (BufferedSink sink = Okio.buffer(new GzipSink(compressed))) {
+                sink.writeAll(response.getBody());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            response.setBody(compressed).setHeader("Content-Encoding", "gzip");
+        }
+        responseBytes.addAndGet(response.getBody() == null ? 0 : response.getBody().size());
+        return response;
+    }
+
+    private static String gunzip(Buffer body) {
+        try (BufferedSource source = Okio.buffer(new GzipSource(body))) {
+            return source.readUtf8();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private MockResponse dispatch(String method, HttpUrl url, String authorization, String requestBody) {
+        if (!("Key " + apiKey).equals(authorization)) {
+            return error(404, LOGIN_REQUIRED);
+        }
+        List<String> path = url.pathSegments();
+        if (path.size() < 2 || !"api".equals(path.get(0))) {
+            return error(404, URL_NOT_FOUND);
+        }
+        JSONObject body = requestBody != null && !requestBody.isEmpty() ? new JSONObject(requestBody) : null;
+        synchronized (this) {
+            switch (path.get(1)) {
+                case "users":
+                    return users(path, method);
+                case "groups":
+                    return groups(path, method, body);
+                case "data_sources":
+                    return dataSources(path, method, body);
+                case "query_results":
+                    return queryResults(path, method, body);
+                case "jobs":
+                    return "DELETE".equals(method) ? cancelJob(path) : job(path);
+                case "queries":
+                    return refreshQuery(path, method, url);
+                default:
+                    return error(404, URL_NOT_FOUND);
+            }
+        }
+    }
+
+    private MockResponse users(List<String> path, String method) {
+        if (path.size() == 2 && "GET".equals(method)) {
+            return ok(new JSONArray(users.values()));
+        }
+        if (path.size() == 3 && "GET".equals(method)) {
+            JSONObject user = users.get(id(path.get(2)));
+            return user == null ? error(404, URL_NOT_FOUND) : ok(user);
+        }
+        return error(405, "Method Not Allowed");
+    }
+
+    private MockResponse groups(List<String> path, String method, JSONObject body) {
+        if (path.size() == 2) {
+            if ("GET".equals(method)) {
+                return ok(new JSONArray(groups.values()));
+            }
+            return ok(addGroup(body.getString("name")));
+        }
+        int groupId = id(path.get(2));
+        JSONObject group = groups.get(groupId);
+        if (group == null) {
+            return error(404, URL_NOT_FOUND);
+        }
+        if (path.size() == 3) {
+            if ("DELETE".equals(method)) {
+                groups.remove(groupId);
+                groupMembers.remove(groupId);
+                groupDataSources.remove(groupId);
+                return ok(JSONObject.NULL);
+            }
+            return ok(group);
+        }
+        if ("members".equals(path.get(3))) {
+            return groupMembers(path, method, body, groupId);
+        }
+        if ("data_sources".equals(path.get(3))) {
+            return groupDataSources(path, method, body, groupId);
+        }
+        return error(404, URL_NOT_FOUND);
+    }
+
+    private MockResponse groupMembers(List<String> path, String method, JSONObject body, int groupId) {
+        Set<Integer> members = groupMembers.get(groupId);
+        if ("GET".equals(method)) {
+            JSONArray result = new JSONArray();
+            members.forEach(id -> result.put(users.get(id)));
+            return ok(result);
+        }
+        int userId = "POST".equals(method) ? body.getInt("user_id") : id(path.get(4));
+        if (!users.containsKey(userId)) {
+            return error(500, INTERNAL_SERVER_ERROR);
+        }
+        if ("POST".equals(method)) {
+            members.add(userId);
+            return ok(users.get(userId));
+        }
+        return members.remove(userId) ? ok(JSONObject.NULL) : error(500, INTERNAL_SERVER_ERROR);
+    }
+
+    private MockResponse groupDataSources(List<String> path, String method, JSONObject body, int groupId) {
+        Set<Integer> attached = groupDataSources.get(groupId);
+        if ("GET".equals(method)) {
+            JSONArray result = new JSONArray();
+            attached.forEach(id -> result.put(summary(dataSources.get(id))));
+            return ok(result);
+        }
+        int dataSourceId = "POST".equals(method) ? body.getInt("data_source_id") : id(path.get(4));
+        if (!dataSources.containsKey(dataSourceId)) {
+            return error(500, INTERNAL_SERVER_ERROR);
+        }
+        if ("POST".equals(method)) {
+            return attached.add(dataSourceId) ? ok(dataSources.get(dataSourceId)) : error(500, INTERNAL_SERVER_ERROR);
+        }
+        attached.remove(dataSourceId);
+        return ok(JSONObject.NULL);
+    }
+
+    private MockResponse dataSources(List<String> path, String method, JSONObject body) {
+        if (path.size() == 3 && "types".equals(path.get(2)) && "GET".equals(method)) {
+            return ok(DATA_SOURCE_TYPES);
+        }
+        if (path.size() == 2) {
+            if ("GET".equals(method)) {
+                JSONArray result = new JSONArray();
+                dataSources.values().forEach(ds -> result.put(summary(ds)));
+                return ok(result);
+            }
+            String name = body.getString("name");
+            if (dataSources.values().stream().anyMatch(ds -> name.equals(ds.getString("name")))) {
+                return error(400, "Data source with the name " + name + " already exists.");
+            }
+            int id = nextDataSourceId++;
+            body.put("id", id);
+            dataSources.put(id, body);
+            groupDataSources.get(2).add(id);
+            return ok(body);
+        }
+        int id = id(path.get(2));
+        if (!dataSources.containsKey(id)) {
+            return error(500, INTERNAL_SERVER_ERROR);
+        }
+        if (path.size() == 4 && "test".equals(path.get(3))) {
+            return testConnection(dataSources.get(id));
+        }
+        if (path.size() == 4 && "schema".equals(path.get(3))) {
+            return ok(new JSONObject().put("schema", schemas.getOrDefault(id, new JSONArray())));
+        }
+        switch (method) {
+            case "DELETE":
+                dataSources.remove(id);
+                schemas.remove(id);
+                groupDataSources.values().forEach(attached -> attached.remove(id));
+                return new MockResponse().setStatus("HTTP/1.1 204 " + TransportResponse.reasonPhrase(204));
+            case "POST":
+                body.put("id", id);
+                dataSources.put(id, body);
+                return ok(body);
+            default:
+                return ok(dataSources.get(id));
+        }
+    }
+
+    /**
+     * Executing a query yields a single row with the query text, or one per number for
+     * {@code generate_series(1, <n>)}; queries containing "fail" fail.
+     */
+    private MockResponse queryResults(List<String> path, String method, JSONObject body) {
+        if (path.size() == 3 && "GET".equals(method)) {
+            JSONObject result = queryResults.get(id(path.get(2)));
+            return result == null ? error(404, URL_NOT_FOUND) : ok(new JSONObject().put("query_result", result));
+        }
+        int dataSourceId = body.getInt("data_source_id");
+        if (!dataSources.containsKey(dataSourceId)) {
+            return error(404, URL_NOT_FOUND);
+        }
+        String query = body.getString("query");
+        long maxAge = body.optLong("max_age", 0);
+        for (JSONObject result : queryResults.values()) {
+            if (result.getInt("data_source_id") == dataSourceId && query.equals(result.getString("query"))
+                    && maxAge != 0 && (maxAge < 0 || result.getLong("age") <= maxAge)) {
+                return ok(new JSONObject().put("query_result", result));
+            }
+        }
+        return ok(new JSONObject().put("job", publicJob(startJob(dataSourceId, query))));
+    }
+
+    /**
+     * Parameters are read from the {@code p_<name>} query parameters; queries containing "slow" take 20 more polls.
+     */
+    private MockResponse refreshQuery(List<String> path, String method, HttpUrl url) {
+        JSONObject query = path.size() == 4 && "refresh".equals(path.get(3)) && "POST".equals(method)
+                ? queries.get(id(path.get(2))) : null;
+        if (query == null) {
+            return error(404, URL_NOT_FOUND);
+        }
+        String text = query.getString("query");
+        for (String name : url.queryParameterNames()) {
+            if (name.startsWith("p_")) {
+                text = text.replaceAll("\\{\\{\\s*" + name.substring(2) + "\\s*}}", url.queryParameter(name));
+            }
+        }
+        return ok(new JSONObject().put("job", publicJob(startJob(query.getInt("data_source_id"), text))));
+    }
+
+    private JSONObject startJob(int dataSourceId, String query) {
+        executions++;
+        runningJobs++;
+        maxRunningJobs = Math.max(maxRunningJobs, runningJobs);
+        String jobId = UUID.randomUUID().toString();
+        JSONObject job = new JSONObject().put("id", jobId).put("status", 2)
+                .put("polls", query.contains("slow") ? jobPolls + 20 : jobPolls)
+                .put("data_source_id", dataSourceId).put("query", query);
+        jobs.put(jobId, job);
+        return job;
+    }
+
+    private MockResponse cancelJob(List<String> path) {
+        JSONObject job = path.size() == 3 ? jobs.get(path.get(2)) : null;
+        if (job == null) {
+            return error(404, URL_NOT_FOUND);
+        }
+        if (job.getInt("status") == 2) {
+            runningJobs--;
+            job.put("status", 5);
+        }
+        return ok(JSONObject.NULL);
+    }
+
+    private MockResponse job(List<String> path) {
+        JSONObject job = path.size() == 3 ? jobs.get(path.get(2)) : null;
+        if (job == null) {
+            return error(404, URL_NOT_FOUND);
+        }
+        int polls = job.getInt("polls");
+        if (polls > 0) {
+            job.put("polls", polls - 1);
+        } else if (job.getInt("status") == 2) {
+            runningJobs--;
+            String query = job.getString("query");
+            if (query.contains("fail")) {
+                job.put("status", 4).put("error", "Error running query: syntax error at or near \"fail\"");
+            } else {
+                int id = queryResults.size() + 1;
+                queryResults.put(id, new JSONObject()
+                        .put("id", id)
+                        .put("query", query)
+                        .put("data_source_id", job.getInt("data_source_id"))
+                        .put("runtime", 0.01)
+                        .put("retrieved_at", OffsetDateTime.now(ZoneOffset.UTC).toString())
+                        .put("age", 0)
+                        .put("data", new JSONObject()
+                                .put("columns", new JSONArray().put(new JSONObject()
+                                        .put("name", "query").put("friendly_name", "query").put("type", "string")))
+                                .put("rows", rows(query))));
+                job.put("status", 3).put("query_result_id", id);
+            }
+        }
+        return ok(new JSONObject().put("job", publicJob(job)));
+    }
+
+    /**
+     * One row with the query text, or one row per number for queries selecting {@code generate_series(1, <n>)}.
+     */
+    private static JSONArray rows(String query) {
+        Matcher series = SERIES.matcher(query);
+        JSONArray rows = new JSONArray();
+        if (!series.find()) {
+            return rows.put(new JSONObject().put("query", query));
+        }
+        for (int i = 1; i <= Integer.parseInt(series.group(1)); i++) {
+            rows.put(new JSONObject().put("query", query).put("n", i));
+        }
+        return rows;
+    }
+
+    private static JSONObject publicJob(JSONObject job) {
+        return new JSONObject()
+                .put("id", job.get("id"))
+                .put("status", job.get("status"))
+                .put("error", job.optString("error"))
+                .put("query_result_id", job.opt("query_result_id"));
+    }
+
+    // Helpers
+
+    /**
+     * Data-sources whose host is {@value #UNREACHABLE_HOST} fail the connection test.
+     */
+    private static MockResponse testConnection(JSONObject dataSource) {
+        if (UNREACHABLE_HOST.equals(dataSource.getJSONObject("options").optString("host"))) {
+            return ok(new JSONObject().put("message", "could not connect to server: Connection refused").put("ok", false));
+        }
+        return ok(new JSONObject().put("message", "success").put("ok", true));
+    }
+
+    private static JSONObject type(String name, String type, JSONObject properties, JSONArray required) {
+        return new JSONObject().put("name", name).put("type", type).put("configuration_schema", new JSONObject()
+                .put("type", "object")
+                .put("properties", properties)
+                .put("required", required)
+                .put("secret", new JSONArray().put("password")));
+    }
+
+    private static JSONObject property(String type) {
+        return new JSONObject().put("type", type);
+    }
+
+    private JSONObject addGroup(String name) {
+        int id = nextGroupId++;
+        JSONObject group = new JSONObject().put("id", id).put("name", name).put("created_at", "2018-03-01T00:00:00");
+        groups.put(id, group);
+        groupMembers.put(id, new LinkedHashSet<>());
+        groupDataSources.put(id, new LinkedHashSet<>());
+        return group;
+    }
+
+    private static JSONObject summary(JSONObject dataSource) {
+        return new JSONObject()
+                .put("id", dataSource.get("id"))
+                .put("name", dataSource.get("name"))
+                .put("type", dataSource.get("type"));
+    }
+
+    private static int id(String segment) {
+        try {
+            return Integer.parseInt(segment);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static MockResponse ok(Object json) {
+        return new MockResponse().setBody(String.valueOf(json));
+    }
+
+    private static MockResponse error(int code, String message) {
+        return new MockResponse()
+                .setStatus("HTTP/1.1 " + code + " " + TransportResponse.reasonPhrase(code))
+                .setBody(new JSONObject().put("message", message).toString());
+    }
+
+    /**
+     * MockWebServer flushes headers and body separately, so with Nagle's algorithm enabled every response
+     * waits for the client's delayed ACK (~40ms on Linux).
+     */
+    private static class NoDelayServerSocketFactory extends ServerSocketFactory {
+
+        @Override
+        public ServerSocket createServerSocket() throws IOException {
+            return new ServerSocket() {
+                @Override
+                public Socket accept() throws IOException {
+                    Socket socket = super.accept();
+                    socket.setTcpNoDelay(true);
+                    return socket;
+                }
+            };
+        }
+
+        @Override
+        public ServerSocket createServerSocket(int port) throws IOException {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public ServerSocket createServerSocket(int port, int backlog) throws IOException {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public ServerSocket createServerSocket(int port, int backlog, InetAddress address) throws IOException {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
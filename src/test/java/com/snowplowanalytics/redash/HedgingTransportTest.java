@@ -0,0 +1,213 @@
+/*
+ * Copyright (c) 2018 Snowplow Analytics Ltd. All rights reserved.
+ *
+ * This program is licensed to you under the Apache License Version 2.0,
+ * and you may not use this file except in compliance with the Apache License Version 2.0.
+ * You may obtain a copy of the Apache License Version 2.0 at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the Apache License Version 2.0 is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Apache License Version 2.0 for the specific language governing permissions and limitations there under.
+ */
+
+package com.snowplowanalytics.redash;
+
+import com.snowplowanalytics.redash.model.Group;
+import com.snowplowanalytics.redash.transport.HedgingTransport;
+import com.snowplowanalytics.redash.transport.HttpTransport;
+import com.snowplowanalytics.redash.transport.InMemoryTransport;
+import com.snowplowanalytics.redash.transport.TransportRequest;
+import com.snowplowanalytics.redash.transport.TransportResponse;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class HedgingTransportTest {
+
+    private static final String GROUP = "http://redash:5000/api/groups/";
+    private static final Map<String, String> HEADERS = Collections.emptyMap();
+    private static final long FAST = 5;
+    private static final long SLOW = 2000;
+
+    private final InMemoryTransport server = new InMemoryTransport(request -> new TransportResponse(200, "{}"));
+    private final DelayingTransport delegate = new DelayingTransport(server);
+
+    @Test
+    public void hedgesSlowRequestTest() throws IOException {
+        HedgingTransport transport = builder().budget(1).build();
+        warmUp(transport, GROUP + 1);
+        Assert.assertTrue(transport.getHedgeDelayNanos("/api/groups/{id}") > 0);
+        Assert.assertEquals(-1, transport.getHedgeDelayNanos("/api/users"));
+
+        delegate.delays(SLOW, FAST);
+        long start = System.nanoTime();
+        TransportResponse response = transport.execute(TransportRequest.get(GROUP + 2, HEADERS));
+        Assert.assertTrue(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(SLOW / 2));
+        Assert.assertEquals(200, response.getCode());
+        Assert.assertEquals(1, transport.getHedges());
+        Assert.assertEquals(1, transport.getHedgeWins());
+        Assert.assertEquals(12, delegate.sent.get());
+        Assert.assertEquals(1, delegate.cancelled.get());
+    }
+
+    @Test
+    public void hedgesAsyncRequestTest() throws Exception {
+        HedgingTransport transport = builder().budget(1).build();
+        warmUp(transport, GROUP + 1);
+        delegate.delays(SLOW, FAST);
+        long start = System.nanoTime();
+        Assert.assertEquals(200, transport.executeAsync(TransportRequest.get(GROUP + 3, HEADERS)).get().getCode());
+        Assert.assertTrue(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(SLOW / 2));
+        Assert.assertEquals(1, transport.getHedgeWins());
+    }
+
+    @Test
+    public void budgetLimitsHedgesTest() throws IOException {
+        HedgingTransport transport = builder().budget(0.1).maxBurst(1).build();
+        // Ten requests earn one hedge
+        warmUp(transport, GROUP + 1);
+        delegate.delays(300, FAST, 300, 300);
+        for (int i = 0; i < 3; i++) {
+            transport.execute(TransportRequest.get(GROUP + 1, HEADERS));
+        }
+        Assert.assertEquals(1, transport.getHedges());
+        Assert.assertEquals(14, delegate.sent.get());
+    }
+
+    @Test
+    public void onlyPlainGetsAreHedgedTest() throws IOException {
+        HedgingTransport transport = builder().budget(1).build();
+        warmUp(transport, GROUP + 1);
+        delegate.delays(300, 300);
+        transport.execute(TransportRequest.post(GROUP + 1, HEADERS, "{}"));
+        transport.execute(TransportRequest.get(GROUP + 1 + "?refresh=true", HEADERS));
+        Assert.assertEquals(0, transport.getHedges());
+    }
+
+    @Test
+    public void failuresAreNotRetriedTest() throws Exception {
+        HedgingTransport transport = builder().budget(1).build();
+        warmUp(transport, GROUP + 1);
+        delegate.failNext();
+        try {
+            transport.executeAsync(TransportRequest.get(GROUP + 1, HEADERS)).get();
+            Assert.fail();
+        } catch (ExecutionException e) {
+            Assert.assertTrue(e.getCause() instanceof ConnectException);
+        }
+        Thread.sleep(100);
+        Assert.assertEquals(0, transport.getHedges());
+        Assert.assertEquals(11, delegate.sent.get());
+    }
+
+    @Test
+    public void invalidSettingsTest() {
+        for (HedgingTransport.HedgingTransportBuilder builder : Arrays.asList(
+                builder().percentile(1), builder().budget(0), builder().minimumSamples(11), builder().maxBurst(0))) {
+            try {
+                builder.build();
+                Assert.fail();
+            } catch (IllegalArgumentException e) {
+                // Expected
+            }
+        }
+    }
+
+    @Test
+    public void getGroupByIdTest() throws IOException {
+        FakeRedashServer redash = new FakeRedashServer("key");
+        HedgingTransport transport = new HedgingTransport.HedgingTransportBuilder(
+                new DelayingTransport(redash.inMemoryTransport()))
+                .windowSize(10).minimumSamples(10).budget(1).build();
+        RedashClient client = redash.clientBuilder().transport(transport).build();
+        for (int i = 0; i < 10; i++) {
+            client.getGroupById(1);
+        }
+        ((DelayingTransport) transport.getDelegate()).delays(SLOW, FAST);
+        long start = System.nanoTime();
+        Group group = client.getGroupById(2);
+        Assert.assertTrue(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(SLOW / 2));
+        Assert.assertEquals("default", group.getName());
+        Assert.assertEquals(1, transport.getHedgeWins());
+    }
+
+    private HedgingTransport.HedgingTransportBuilder builder() {
+        return new HedgingTransport.HedgingTransportBuilder(delegate).percentile(0.5).windowSize(10).minimumSamples(10);
+    }
+
+    private static void warmUp(HedgingTransport transport, String url) throws IOException {
+        for (int i = 0; i < 10; i++) {
+            transport.execute(TransportRequest.get(url, HEADERS));
+        }
+    }
+
+    /**
+     * Answers every request asynchronously, after the next of the scripted delays or after {@link #FAST} ms.
+     */
+    private static final class DelayingTransport implements HttpTransport {
+        private final HttpTransport delegate;
+        private final Queue<Long> delays = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger sent = new AtomicInteger();
+        private final AtomicInteger cancelled = new AtomicInteger();
+        private volatile boolean failNext;
+
+        private DelayingTransport(HttpTransport delegate) {
+            this.delegate = delegate;
+        }
+
+        void delays(long... millis) {
+            for (long delay : millis) {
+                delays.add(delay);
+            }
+        }
+
+        void failNext() {
+            failNext = true;
+        }
+
+        @Override
+        public TransportResponse execute(TransportRequest request) throws IOException {
+            try {
+                return executeAsync(request).get();
+            } catch (InterruptedException | ExecutionException e) {
+                throw new IOException(e.getCause());
+            }
+        }
+
+        @Override
+        public CompletableFuture<TransportResponse> executeAsync(TransportRequest request) {
+            sent.incrementAndGet();
+            if (failNext) {
+                failNext = false;
+                return CompletableFuture.failedFuture(new ConnectException("Connection refused"));
+            }
+            Long delay = delays.poll();
+            CompletableFuture<TransportResponse> future = new CompletableFuture<>();
+            CompletableFuture.delayedExecutor(delay != null ? delay : FAST, TimeUnit.MILLISECONDS).execute(() -> {
+                try {
+                    future.complete(delegate.execute(request));
+                } catch (IOException e) {
+                    future.completeExceptionally(e);
+                }
+            });
+            future.whenComplete((response, error) -> {
+                if (future.isCancelled()) {
+                    cancelled.incrementAndGet();
+                }
+            });
+            return future;
+        }
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ * Copyright (c) 2018 Snowplow Analytics Ltd. All rights reserved.
+ *
+ * This program is licensed to you under the Apache License Version 2.0,
+ * and you may not use this file except in compliance with the Apache License Version 2.0.
+ * You may obtain a copy of the Apache License Version 2.0 at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the Apache License Version 2.0 is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Apache License Version 2.0 for the specific language governing permissions and limitations there under.
+ */
+
+package com.snowplowanalytics.redash;
+
+import com.snowplowanalytics.redash.model.Group;
+import com.snowplowanalytics.redash.model.User;
+import com.google.gson.Gson;
+import com.snowplowanalytics.redash.transport.HttpTransport;
+import com.snowplowanalytics.redash.transport.InMemoryTransport;
+import com.snowplowanalytics.redash.transport.JdkHttpTransport;
+import com.snowplowanalytics.redash.transport.OkHttpTransport;
+import com.snowplowanalytics.redash.transport.TransportRequest;
+import com.snowplowanalytics.redash.transport.TransportResponse;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Function;
+
+import static com.snowplowanalytics.redash.RedashClient.DATA_SOURCE_ALREADY_EXISTS;
+
+/**
+ * Runs the same client calls over every {@link HttpTransport} implementation against {@link FakeRedashServer}.
+ */
+@RunWith(Parameterized.class)
+public class HttpTransportTest {
+
+    @Parameterized.Parameters(name = "{0}")
+    public static Collection<Object[]> transports() {
+        return Arrays.asList(new Object[][] {
+                {"okhttp", (Function<FakeRedashServer, HttpTransport>) server -> new OkHttpTransport()},
+                {"jdk", (Function<FakeRedashServer, HttpTransport>) server -> new JdkHttpTransport()},
+                {"in-memory", (Function<FakeRedashServer, HttpTransport>) FakeRedashServer::inMemoryTransport}
+        });
+    }
+
+    private final Function<FakeRedashServer, HttpTransport> transportFactory;
+    private FakeRedashServer server;
+    private HttpTransport transport;
+    private RedashClient client;
+
+    public HttpTransportTest(String name, Function<FakeRedashServer, HttpTransport> transportFactory) {
+        this.transportFactory = transportFactory;
+    }
+
+    @Before
+    public void setup() throws IOException {
+        server = new FakeRedashServer("key");
+        server.start();
+        transport = transportFactory.apply(server);
+        client = server.clientBuilder().transport(transport).build();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        server.shutdown();
+    }
+
+    @Test
+    public void createAndHydrateTest() throws IOException {
+        int groupId = client.createUserGroup(new Group("transport"));
+        int dataSourceId = client.createDataSource(AbstractRedashClientTest.rds);
+        Assert.assertTrue(client.addUserToGroup(2, groupId));
+        Assert.assertTrue(client.addDataSourceToGroup(dataSourceId, groupId));
+        Group group = client.getWithUsersAndDataSources(groupId);
+        Assert.assertTrue(group.getUsers().equals(Collections.singletonList(new User("Default", 2))));
+        Assert.assertTrue(group.getDataSources().get(0).getId() == dataSourceId);
+        Assert.assertTrue(client.deleteDataSource(dataSourceId));
+        Assert.assertFalse(client.deleteDataSource(dataSourceId));
+        Assert.assertTrue(client.deleteUserGroup(groupId));
+    }
+
+    @Test
+    public void duplicateDataSourceTest() throws IOException {
+        client.createDataSource(AbstractRedashClientTest.rds);
+        try {
+            client.createDataSource(AbstractRedashClientTest.rds);
+            Assert.fail();
+        } catch (IllegalArgumentException e) {
+            Assert.assertTrue(e.getMessage().equals(DATA_SOURCE_ALREADY_EXISTS));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void nonExistingGroupTest() throws IOException {
+        client.getGroupById(100);
+    }
+
+    @Test
+    public void wrongKeyTest() throws IOException {
+        RedashClient wrongClient = new RedashClient.RedashClientBuilder("http", server.getHostName(), server.getPort(), "wrong")
+                .transport(transport)
+                .build();
+        try {
+            wrongClient.getUsers();
+            Assert.fail();
+        } catch (IOException e) {
+            Assert.assertFalse(e.getMessage().contains("wrong"));
+        }
+    }
+
+    @Test
+    public void asyncTest() throws Exception {
+        String url = "http://" + server.getHostName() + ":" + server.getPort() + "/api/users";
+        TransportResponse response = transport.executeAsync(
+                TransportRequest.get(url, Collections.singletonMap("Authorization", "Key key"))).get();
+        Assert.assertTrue(response.isSuccessful());
+        Assert.assertTrue(response.getBody().contains("\"Default\""));
+    }
+
+    @Test
+    public void compressionTest() throws Exception {
+        Assume.assumeFalse(transport instanceof InMemoryTransport);
+        for (int i = 0; i < 200; i++) {
+            server.addUser("user" + i);
+        }
+        long before = server.responseBytes();
+        List<User> users = client.getUsers();
+        Assert.assertEquals(202, users.size());
+        Assert.assertEquals("user199", users.get(201).getName());
+        // Sent compressed and decompressed transparently
+        Assert.assertTrue(server.responseBytes() - before < new Gson().toJson(users).length() / 4);
+
+        String url = "http://" + server.getHostName() + ":" + server.getPort() + "/api/users";
+        TransportResponse response = transport.executeAsync(
+                TransportRequest.get(url, Collections.singletonMap("Authorization", "Key key"))).get();
+        Assert.assertTrue(response.getBody().contains("\"user199\""));
+
+        RedashClient compressing = server.clientBuilder().transport(transport).requestCompressionThreshold(0).build();
+        compressing.createUserGroup(new Group("compressed"));
+        Assert.assertEquals(1, server.compressedRequests());
+        Assert.assertTrue(compressing.getUserGroups().stream().anyMatch(g -> "compressed".equals(g.getName())));
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright (c) 2018 Snowplow Analytics Ltd. All rights reserved.
+ *
+ * This program is licensed to you under the Apache License Version 2.0,
+ * and you may not use this file except in compliance with the Apache License Version 2.0.
+ * You may obtain a copy of the Apache License Version 2.0 at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the Apache License Version 2.0 is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Apache License Version 2.0 for the specific language governing permissions and limitations there under.
+ */
+
+package com.snowplowanalytics.redash;
+
+import com.google.gson.Gson;
+import com.snowplowanalytics.redash.model.Group;
+import com.snowplowanalytics.redash.model.User;
+import com.snowplowanalytics.redash.model.datasource.RedshiftDataSource;
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class LazyGroupTest {
+
+    private FakeRedashServer server;
+    private RedashClient client;
+    private int userId;
+    private int groupId;
+
+    @Before
+    public void setup() throws IOException {
+        server = new FakeRedashServer("key");
+        server.start();
+        client = server.clientBuilder().build();
+        userId = server.addUser("Analyst");
+        groupId = client.createUserGroup(new Group("analysts"));
+        client.addUserToGroup(userId, groupId);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        server.shutdown();
+    }
+
+    @Test
+    public void loadOnceTest() throws IOException {
+        Group group = client.getGroupById(groupId);
+        Assert.assertNull(group.getUsers());
+        int requests = server.getRequestCount();
+
+        List<User> users = group.loadUsers();
+        Assert.assertEquals(1, users.size());
+        Assert.assertEquals(userId, users.get(0).getId());
+        Assert.assertEquals(1, server.getRequestCount() - requests);
+        Assert.assertSame(users, group.loadUsers());
+        Assert.assertSame(users, group.getUsers());
+        // Only the relation which was accessed is downloaded
+        Assert.assertNull(group.getDataSources());
+        Assert.assertEquals(1, server.getRequestCount() - requests);
+
+        Assert.assertTrue(group.loadDataSources().isEmpty());
+        Assert.assertEquals(2, server.getRequestCount() - requests);
+    }
+
+    @Test
+    public void listedGroupsTest() throws IOException {
+        int dataSourceId = client.createDataSource(new RedshiftDataSource.RedshiftDataSourceBuilder("warehouse")
+                .host("host").port(5439).user("user").password("password").dbName("db").build());
+        client.addDataSourceToGroup(dataSourceId, groupId);
+        Group group = client.getUserGroups().stream().filter(g -> g.getId() == groupId).findFirst().get();
+        Assert.assertEquals(dataSourceId, group.loadDataSources().get(0).getId());
+        Assert.assertFalse(new JSONObject(new Gson().toJson(group)).has("client"));
+
+        // Set or eagerly fetched relations are not downloaded again
+        Group hydrated = client.getWithUsersAndDataSources(groupId);
+        int requests = server.getRequestCount();
+        Assert.assertEquals(1, hydrated.loadUsers().size());
+        Assert.assertEquals(1, hydrated.loadDataSources().size());
+        Assert.assertEquals(requests, server.getRequestCount());
+    }
+
+    @Test
+    public void concurrentLoadTest() throws Exception {
+        Group group = client.getGroupById(groupId);
+        int requests = server.getRequestCount();
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<List<User>>> futures = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                futures.add(pool.submit(() -> {
+                    start.await();
+                    return group.loadUsers();
+                }));
+            }
+            start.countDown();
+            List<User> first = futures.get(0).get();
+            for (Future<List<User>> future : futures) {
+                Assert.assertSame(first, future.get());
+            }
+        } finally {
+            pool.shutdown();
+        }
+        Assert.assertEquals(1, server.getRequestCount() - requests);
+    }
+
+    @Test
+    public void plainGroupTest() throws IOException {
+        Group group = new Group("analysts", groupId);
+        Assert.assertNull(group.loadUsers());
+        Assert.assertNull(group.loadDataSources());
+    }
+}
@@ -0,0 +1,322 @@
+/*
+ * Copyright (c) 2018 Snowplow Analytics Ltd. All rights reserved.
+ *
+ * This program is licensed to you under the Apache License Version 2.0,
+ * and you may not use this file except in compliance with the Apache License Version 2.0.
+ * You may obtain a copy of the Apache License Version 2.0 at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the Apache License Version 2.0 is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Apache License Version 2.0 for the specific language governing permissions and limitations there under.
+ */
+
+package com.snowplowanalytics.redash;
+
+import com.snowplowanalytics.redash.model.Group;
+import com.snowplowanalytics.redash.model.datasource.RedshiftDataSource;
+import com.snowplowanalytics.redash.transport.HttpTransport;
+import com.snowplowanalytics.redash.transport.TransportRequest;
+import com.snowplowanalytics.redash.transport.TransportResponse;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.snowplowanalytics.redash.OperationJournal.Outcome.APPLIED;
+import static com.snowplowanalytics.redash.OperationJournal.Outcome.JOURNALED;
+import static com.snowplowanalytics.redash.OperationJournal.Outcome.UNCHANGED;
+
+public class OperationJournalTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private FakeRedashServer server;
+    private RedashClient client;
+    private volatile boolean down;
+    // Requests with this method are refused or delayed, to control how the entries of a batch interleave
+    private volatile String refusedMethod;
+    private volatile String slowMethod;
+    private final AtomicInteger refused = new AtomicInteger();
+    private final AtomicInteger posted = new AtomicInteger();
+    private Path file;
+
+    @Before
+    public void setup() throws IOException {
+        server = new FakeRedashServer("key");
+        server.start();
+        HttpTransport delegate = server.inMemoryTransport();
+        client = server.clientBuilder().transport(new HttpTransport() {
+            @Override
+            public TransportResponse execute(TransportRequest request) throws IOException {
+                if (down || request.getMethod().equals(refusedMethod)) {
+                    refused.incrementAndGet();
+                    throw new ConnectException("Connection refused");
+                }
+                if (request.getMethod().equals("POST")) {
+                    posted.incrementAndGet();
+                }
+                if (request.getMethod().equals(slowMethod)) {
+                    try {
+                        Thread.sleep(100);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                return delegate.execute(request);
+            }
+
+            @Override
+            public CompletableFuture<TransportResponse> executeAsync(TransportRequest request) {
+                try {
+                    return CompletableFuture.completedFuture(execute(request));
+                } catch (IOException e) {
+                    return CompletableFuture.failedFuture(e);
+                }
+            }
+        }).build();
+        file = folder.getRoot().toPath().resolve("redash.journal");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        server.shutdown();
+    }
+
+    @Test
+    public void journalAndReplayTest() throws IOException {
+        int userId = server.addUser("Analyst");
+        int groupId = client.createUserGroup(new Group("analysts"));
+        try (OperationJournal journal = journal()) {
+            Assert.assertEquals(APPLIED, journal.addUserToGroup(userId, groupId));
+            Assert.assertEquals(UNCHANGED, journal.addUserToGroup(userId, groupId));
+            Assert.assertTrue(journal.getPending().isEmpty());
+
+            down = true;
+            Assert.assertEquals(JOURNALED, journal.createUserGroup(new Group("auditors")));
+            Assert.assertEquals(JOURNALED, journal.removeUserFromGroup(userId, groupId));
+            Assert.assertEquals(JOURNALED, journal.addUserToGroup(userId, groupId));
+            Assert.assertEquals(JOURNALED, journal.removeUserFromGroup(userId, groupId));
+            Assert.assertEquals(JOURNALED, journal.createDataSource(dataSource("warehouse", "old")));
+            Assert.assertEquals(JOURNALED, journal.updateDataSource(dataSource("warehouse", "new")));
+            Assert.assertEquals(6, journal.getPending().size());
+
+            int before = refused.get();
+            OperationJournal.ReplayResult result = journal.replay();
+            // Only the probe was sent while Redash was still down
+            Assert.assertEquals(1, refused.get() - before);
+            Assert.assertEquals(0, result.getApplied());
+            Assert.assertEquals(6, result.getRemaining());
+
+            down = false;
+            // Entries are waiting, so this one is recorded behind them
+            Assert.assertEquals(JOURNALED, journal.deleteDataSource(404));
+            Assert.assertEquals(JOURNALED, journal.addUserToGroup(404, groupId));
+            result = journal.replay();
+            Assert.assertEquals(3, result.getCoalesced());
+            Assert.assertEquals(3, result.getApplied());
+            Assert.assertEquals(1, result.getUnchanged());
+            Assert.assertEquals(1, result.getFailed().size());
+            JournalEntry failed = result.getFailed().keySet().iterator().next();
+            Assert.assertEquals(JournalEntry.Type.ADD_USER_TO_GROUP, failed.getType());
+            Assert.assertEquals(404, failed.getTargetId());
+            Assert.assertTrue(result.getFailed().get(failed) instanceof IllegalArgumentException);
+            Assert.assertEquals(0, result.getRemaining());
+            Assert.assertTrue(journal.getPending().isEmpty());
+            Assert.assertEquals(0, Files.size(file));
+        }
+        Assert.assertFalse(server.members(groupId).contains(userId));
+        Assert.assertTrue(client.getUserGroups().stream().anyMatch(group -> group.getName().equals("auditors")));
+        Assert.assertEquals("new", client.getDataSource("warehouse").getOptions().asMap().get("host"));
+    }
+
+    @Test
+    public void coalesceDeletedGroupTest() throws IOException {
+        int userId = server.addUser("Analyst");
+        int groupId = client.createUserGroup(new Group("analysts"));
+        int dataSourceId = client.createDataSource(dataSource("warehouse", "host"));
+        try (OperationJournal journal = journal()) {
+            down = true;
+            journal.addUserToGroup(userId, groupId);
+            journal.addDataSourceToGroup(dataSourceId, groupId);
+            journal.deleteUserGroup(groupId);
+            journal.deleteUserGroup(groupId);
+            down = false;
+            OperationJournal.ReplayResult result = journal.replay();
+            Assert.assertEquals(3, result.getCoalesced());
+            Assert.assertEquals(1, result.getApplied());
+        }
+        Assert.assertTrue(client.getUserGroups().stream().noneMatch(group -> group.getId() == groupId));
+    }
+
+    @Test
+    public void coalesceDeletedDataSourceUpdateTest() throws IOException {
+        int dataSourceId = client.createDataSource(dataSource("warehouse", "host"));
+        RedshiftDataSource update = dataSource("warehouse", "new");
+        update.setId(dataSourceId);
+        try (OperationJournal journal = journal()) {
+            down = true;
+            journal.updateDataSource(update);
+            journal.deleteDataSource(dataSourceId);
+            down = false;
+            int before = posted.get();
+            OperationJournal.ReplayResult result = journal.replay();
+            Assert.assertEquals(1, result.getCoalesced());
+            Assert.assertEquals(1, result.getApplied());
+            Assert.assertEquals(Collections.emptyMap(), result.getFailed());
+            // The update was never sent
+            Assert.assertEquals(before, posted.get());
+        }
+        Assert.assertTrue(client.getDataSources().isEmpty());
+    }
+
+    @Test
+    public void replayDataSourceDeletedThenCreatedInOrderTest() throws IOException {
+        int userId = server.addUser("Analyst");
+        int groupId = client.createUserGroup(new Group("analysts"));
+        int dataSourceId = client.createDataSource(dataSource("warehouse", "old"));
+        try (OperationJournal journal = journal()) {
+            down = true;
+            journal.addUserToGroup(userId, groupId);
+            journal.deleteDataSource(dataSourceId);
+            journal.createDataSource(dataSource("warehouse", "new"));
+            down = false;
+            // The creation would find the old data-source if it overtook the deletion
+            slowMethod = "DELETE";
+            OperationJournal.ReplayResult result = journal.replay();
+            Assert.assertEquals(3, result.getApplied());
+            Assert.assertEquals(Collections.emptyMap(), result.getFailed());
+        }
+        Assert.assertEquals("new", client.getDataSource("warehouse").getOptions().asMap().get("host"));
+    }
+
+    @Test
+    public void replayGroupDeletedThenCreatedInOrderTest() throws IOException {
+        int userId = server.addUser("Analyst");
+        int groupId = client.createUserGroup(new Group("analysts"));
+        int otherGroupId = client.createUserGroup(new Group("auditors"));
+        try (OperationJournal journal = journal()) {
+            down = true;
+            journal.addUserToGroup(userId, otherGroupId);
+            journal.deleteUserGroup(groupId);
+            journal.createUserGroup(new Group("analysts"));
+            down = false;
+            slowMethod = "DELETE";
+            OperationJournal.ReplayResult result = journal.replay();
+            Assert.assertEquals(3, result.getApplied());
+            Assert.assertEquals(Collections.emptyMap(), result.getFailed());
+        }
+        Assert.assertTrue(client.getUserGroups().stream()
+                .anyMatch(group -> group.getName().equals("analysts") && group.getId() != groupId));
+    }
+
+    @Test
+    public void replayKeepsEntriesWaitingForUnreachableOneTest() throws IOException {
+        int userId = server.addUser("Analyst");
+        int groupId = client.createUserGroup(new Group("analysts"));
+        int dataSourceId = client.createDataSource(dataSource("warehouse", "old"));
+        try (OperationJournal journal = journal()) {
+            down = true;
+            journal.addUserToGroup(userId, groupId);
+            journal.deleteDataSource(dataSourceId);
+            journal.createDataSource(dataSource("warehouse", "new"));
+            down = false;
+            refusedMethod = "DELETE";
+            OperationJournal.ReplayResult result = journal.replay();
+            // The creation is not sent before the deletion it follows got through
+            Assert.assertEquals(1, result.getApplied());
+            Assert.assertEquals(Collections.emptyMap(), result.getFailed());
+            Assert.assertEquals(2, result.getRemaining());
+            Assert.assertEquals("old", client.getDataSource("warehouse").getOptions().asMap().get("host"));
+
+            refusedMethod = null;
+            result = journal.replay();
+            Assert.assertEquals(2, result.getApplied());
+            Assert.assertEquals(Collections.emptyMap(), result.getFailed());
+            Assert.assertTrue(journal.getPending().isEmpty());
+        }
+        Assert.assertEquals("new", client.getDataSource("warehouse").getOptions().asMap().get("host"));
+    }
+
+    @Test
+    public void recoveryTest() throws IOException {
+        int userId = server.addUser("Analyst");
+        int groupId = client.createUserGroup(new Group("analysts"));
+        int dataSourceId = client.createDataSource(dataSource("warehouse", "host"));
+        down = true;
+        try (OperationJournal journal = journal()) {
+            journal.addUserToGroup(userId, groupId);
+            journal.addDataSourceToGroup(dataSourceId, groupId);
+        }
+        // A crash during an append leaves a partial last line
+        Files.write(file, "{\"seq\":3,\"ty".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+        down = false;
+        try (OperationJournal journal = journal()) {
+            Assert.assertEquals(2, journal.getPending().size());
+            Assert.assertEquals(JOURNALED, journal.removeUserFromGroup(userId, groupId));
+            Assert.assertEquals(3, journal.getPending().get(2).getSequence());
+            OperationJournal.ReplayResult result = journal.replay();
+            Assert.assertEquals(1, result.getCoalesced());
+            Assert.assertEquals(Collections.emptyMap(), result.getFailed());
+        }
+        Assert.assertFalse(server.members(groupId).contains(userId));
+        Assert.assertTrue(server.groupDataSources(groupId).contains(dataSourceId));
+    }
+
+    @Test
+    public void rejectedMutationTest() throws IOException {
+        int groupId = client.createUserGroup(new Group("analysts"));
+        try (OperationJournal journal = journal()) {
+            try {
+                journal.addUserToGroup(404, groupId);
+                Assert.fail();
+            } catch (IllegalArgumentException e) {
+                // Redash answered, so there is nothing to replay
+            }
+            Assert.assertTrue(journal.getPending().isEmpty());
+        }
+    }
+
+    @Test
+    public void scheduledReplayTest() throws Exception {
+        int userId = server.addUser("Analyst");
+        int groupId = client.createUserGroup(new Group("analysts"));
+        try (OperationJournal journal = new OperationJournal.OperationJournalBuilder(client, file)
+                .replayInterval(Duration.ofMillis(20)).build()) {
+            down = true;
+            journal.addUserToGroup(userId, groupId);
+            journal.start();
+            Thread.sleep(100);
+            Assert.assertEquals(1, journal.getPending().size());
+            down = false;
+            for (int i = 0; i < 100 && !journal.getPending().isEmpty(); i++) {
+                Thread.sleep(20);
+            }
+            Assert.assertTrue(journal.getPending().isEmpty());
+        }
+        Assert.assertTrue(server.members(groupId).contains(userId));
+    }
+
+    private OperationJournal journal() throws IOException {
+        return new OperationJournal.OperationJournalBuilder(client, file).batchSize(2).parallelism(2).build();
+    }
+
+    private static RedshiftDataSource dataSource(String name, String host) {
+        return new RedshiftDataSource.RedshiftDataSourceBuilder(name)
+                .host(host).port(5439).user("user").password("password").dbName("db").build();
+    }
+}
@@ -0,0 +1,176 @@
+/*
+ * Copyright (c) 2018 Snowplow Analytics Ltd. All rights reserved.
+ *
+ * This program is licensed to you under the Apache License Version 2.0,
+ * and you may not use this file except in compliance with the Apache License Version 2.0.
+ * You may obtain a copy of the Apache License Version 2.0 at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the Apache License Version 2.0 is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Apache License Version 2.0 for the specific language governing permissions and limitations there under.
+ */
+
+package com.snowplowanalytics.redash;
+
+import com.snowplowanalytics.redash.model.User;
+import com.snowplowanalytics.redash.model.datasource.DataSource;
+import com.snowplowanalytics.redash.model.datasource.RedshiftDataSource;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+public class PublisherTest {
+
+    private FakeRedashServer server;
+    private RedashClient client;
+    private int dataSourceId;
+
+    @Before
+    public void setup() throws IOException {
+        server = new FakeRedashServer("key");
+        server.start();
+        client = server.clientBuilder().build();
+        dataSourceId = client.createDataSource(new RedshiftDataSource.RedshiftDataSourceBuilder("warehouse")
+                .host("host").port(5439).user("user").password("password").dbName("db").build());
+        for (int i = 0; i < 8; i++) {
+            server.addUser("user" + i);
+        }
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        server.shutdown();
+    }
+
+    @Test
+    public void publishUsersTest() throws Exception {
+        RecordingSubscriber<User> subscriber = new RecordingSubscriber<>();
+        client.publishUsers().subscribe(subscriber);
+        subscriber.subscription.request(Long.MAX_VALUE);
+        subscriber.awaitTermination();
+        Assert.assertNull(subscriber.error);
+        Assert.assertEquals(client.getUsers().stream().map(User::getName).collect(Collectors.toList()),
+                subscriber.items.stream().map(User::getName).collect(Collectors.toList()));
+    }
+
+    @Test
+    public void backpressureTest() throws Exception {
+        RecordingSubscriber<Map<String, Object>> subscriber = new RecordingSubscriber<>();
+        client.publishQueryResultRows(dataSourceId, "SELECT generate_series(1, 100)", 0).subscribe(subscriber);
+        subscriber.subscription.request(3);
+        subscriber.awaitItems(3);
+        Thread.sleep(100);
+        // Nothing beyond the demand is emitted
+        Assert.assertEquals(3, subscriber.items.size());
+        Assert.assertFalse(subscriber.isTerminated());
+        subscriber.subscription.request(97);
+        subscriber.awaitTermination();
+        Assert.assertNull(subscriber.error);
+        Assert.assertEquals(100, subscriber.items.size());
+        for (int i = 0; i < 100; i++) {
+            Assert.assertEquals(i + 1, ((Number) subscriber.items.get(i).get("n")).intValue());
+        }
+    }
+
+    @Test
+    public void cancelTest() throws Exception {
+        RecordingSubscriber<DataSource> subscriber = new RecordingSubscriber<>();
+        client.publishDataSources().subscribe(subscriber);
+        subscriber.subscription.cancel();
+        subscriber.subscription.request(10);
+        Thread.sleep(100);
+        Assert.assertTrue(subscriber.items.isEmpty());
+        Assert.assertFalse(subscriber.isTerminated());
+    }
+
+    @Test
+    public void failureTest() throws Exception {
+        RecordingSubscriber<Map<String, Object>> subscriber = new RecordingSubscriber<>();
+        client.publishQueryResultRows(dataSourceId, "SELECT fail", 0).subscribe(subscriber);
+        subscriber.awaitTermination();
+        Assert.assertTrue(subscriber.error instanceof IOException);
+
+        RecordingSubscriber<User> unauthorized = new RecordingSubscriber<>();
+        new RedashClient.RedashClientBuilder("http", server.getHostName(), server.getPort(), "wrong").build()
+                .publishUsers().subscribe(unauthorized);
+        unauthorized.awaitTermination();
+        Assert.assertTrue(unauthorized.error instanceof RedashAuthenticationException);
+    }
+
+    @Test
+    public void invalidDemandTest() throws Exception {
+        RecordingSubscriber<User> subscriber = new RecordingSubscriber<>();
+        client.publishUsers().subscribe(subscriber);
+        subscriber.subscription.request(0);
+        subscriber.awaitTermination();
+        Assert.assertTrue(subscriber.error instanceof IllegalArgumentException);
+    }
+
+    @Test
+    public void resubscribeTest() throws Exception {
+        Flow.Publisher<Map<String, Object>> rows = client.publishQueryResultRows(dataSourceId, "SELECT 1", 0);
+        for (int i = 0; i < 2; i++) {
+            RecordingSubscriber<Map<String, Object>> subscriber = new RecordingSubscriber<>();
+            rows.subscribe(subscriber);
+            subscriber.subscription.request(1);
+            subscriber.awaitTermination();
+            Assert.assertEquals(1, subscriber.items.size());
+        }
+        Assert.assertEquals(2, server.queryExecutions());
+    }
+
+    private static final class RecordingSubscriber<T> implements Flow.Subscriber<T> {
+        private final List<T> items = new CopyOnWriteArrayList<>();
+        private final CountDownLatch terminated = new CountDownLatch(1);
+        private volatile Flow.Subscription subscription;
+        private volatile Throwable error;
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+        }
+
+        @Override
+        public void onNext(T item) {
+            items.add(item);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            error = throwable;
+            terminated.countDown();
+        }
+
+        @Override
+        public void onComplete() {
+            terminated.countDown();
+        }
+
+        boolean isTerminated() {
+            return terminated.getCount() == 0;
+        }
+
+        void awaitTermination() throws InterruptedException {
+            Assert.assertTrue(terminated.await(10, TimeUnit.SECONDS));
+        }
+
+        void awaitItems(int count) throws InterruptedException {
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            while (items.size() < count && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            Assert.assertEquals(count, items.size());
+        }
+    }
+}
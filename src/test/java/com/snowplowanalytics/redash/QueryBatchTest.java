@@ -0,0 +1,115 @@
+/*
+ * Copyright (c) 2018 Snowplow Analytics Ltd. All rights reserved.
+ *
+ * This program is licensed to you under the Apache License Version 2.0,
+ * and you may not use this file except in compliance with the Apache License Version 2.0.
+ * You may obtain a copy of the Apache License Version 2.0 at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the Apache License Version 2.0 is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Apache License Version 2.0 for the specific language governing permissions and limitations there under.
+ */
+
+package com.snowplowanalytics.redash;
+
+import com.snowplowanalytics.redash.model.datasource.RedshiftDataSource;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+public class QueryBatchTest {
+
+    private FakeRedashServer server;
+    private int queryId;
+
+    @Before
+    public void setup() throws IOException {
+        server = new FakeRedashServer("key");
+        server.start();
+        RedshiftDataSource dataSource = new RedshiftDataSource.RedshiftDataSourceBuilder("warehouse")
+                .host("host").port(5439).user("user").password("password").dbName("db").build();
+        int dataSourceId = server.clientBuilder().build().createDataSource(dataSource);
+        queryId = server.addQuery(dataSourceId, "SELECT * FROM orders WHERE customer_id = '{{ customer }}'");
+        server.setJobPolls(1);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        server.shutdown();
+    }
+
+    @Test
+    public void batchTest() {
+        RedashClient client = client();
+        List<QueryBatchResult> results = client.executeQueryBatch(queryId, customers(20), 4).collect(Collectors.toList());
+        Assert.assertTrue(results.size() == 20);
+        Set<Long> indexes = new TreeSet<>();
+        for (QueryBatchResult result : results) {
+            Assert.assertTrue(result.isSuccessful());
+            indexes.add(result.getIndex());
+            Assert.assertTrue(result.getQueryResult().getQuery().endsWith("'" + result.getParameters().get("customer") + "'"));
+        }
+        Assert.assertTrue(indexes.size() == 20);
+        Assert.assertTrue(server.queryExecutions() == 20);
+        Assert.assertTrue(server.maxRunningJobs() <= 4);
+    }
+
+    @Test
+    public void completionOrderTest() {
+        List<QueryBatchResult> results = client().executeQueryBatch(queryId,
+                Stream.of("slow", "a", "b", "fail").map(c -> Collections.singletonMap("customer", c)), 4)
+                .collect(Collectors.toList());
+        Assert.assertTrue(results.get(3).getIndex() == 0);
+        QueryBatchResult failed = results.stream().filter(r -> r.getIndex() == 3).findFirst().get();
+        Assert.assertFalse(failed.isSuccessful());
+        Assert.assertTrue(failed.getError() instanceof IOException);
+        Assert.assertTrue(failed.getError().getMessage().startsWith("Error running query"));
+    }
+
+    @Test
+    public void lazyInputTest() {
+        AtomicInteger taken = new AtomicInteger();
+        Stream<Map<String, Object>> input = customers(1000).peek(p -> taken.incrementAndGet());
+        Iterator<QueryBatchResult> results = client().executeQueryBatch(queryId, input, 3).iterator();
+        for (int i = 0; i < 5; i++) {
+            Assert.assertTrue(results.next().isSuccessful());
+        }
+        Assert.assertTrue(taken.get() <= 8);
+    }
+
+    @Test
+    public void closeCancelsRunningJobsTest() {
+        RedashClient client = server.clientBuilder().transport(server.inMemoryTransport())
+                .pollInterval(Duration.ofMillis(10)).build();
+        Stream<Map<String, Object>> input = Stream.of("a", "slow1", "slow2")
+                .map(c -> Collections.singletonMap("customer", c));
+        try (Stream<QueryBatchResult> results = client.executeQueryBatch(queryId, input, 3)) {
+            Assert.assertTrue(results.iterator().next().getIndex() == 0);
+            Assert.assertTrue(server.runningJobs() == 2);
+        }
+        Assert.assertTrue(server.runningJobs() == 0);
+    }
+
+    private RedashClient client() {
+        return server.clientBuilder().pollInterval(Duration.ofMillis(10)).build();
+    }
+
+    private static Stream<Map<String, Object>> customers(int count) {
+        return IntStream.range(0, count).mapToObj(i -> Collections.singletonMap("customer", "c" + i));
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright (c) 2018 Snowplow Analytics Ltd. All rights reserved.
+ *
+ * This program is licensed to you under the Apache License Version 2.0,
+ * and you may not use this file except in compliance with the Apache License Version 2.0.
+ * You may obtain a copy of the Apache License Version 2.0 at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the Apache License Version 2.0 is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Apache License Version 2.0 for the specific language governing permissions and limitations there under.
+ */
+
+package com.snowplowanalytics.redash;
+
+import com.snowplowanalytics.redash.cache.QueryResultCache;
+import com.snowplowanalytics.redash.model.datasource.RedshiftDataSource;
+import com.snowplowanalytics.redash.model.query.QueryResult;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class QueryExecutionTest {
+
+    private FakeRedashServer server;
+    private int dataSourceId;
+
+    @Before
+    public void setup() throws IOException {
+        server = new FakeRedashServer("key");
+        server.start();
+        RedshiftDataSource dataSource = new RedshiftDataSource.RedshiftDataSourceBuilder("warehouse")
+                .host("host").port(5439).user("user").password("password").dbName("db").build();
+        dataSourceId = server.clientBuilder().build().createDataSource(dataSource);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        server.shutdown();
+    }
+
+    @Test
+    public void executeQueryTest() throws IOException {
+        server.setJobPolls(2);
+        RedashClient client = client(null);
+        QueryResult result = client.executeQuery(dataSourceId, "SELECT * FROM events WHERE app_id = '{{ app }}'",
+                Collections.singletonMap("app", "web"), 0);
+        Assert.assertEquals("SELECT * FROM events WHERE app_id = 'web'", result.getQuery());
+        Assert.assertEquals("query", result.getColumns().get(0).getName());
+        Assert.assertEquals(result.getQuery(), result.getRows().get(0).get("query"));
+        Assert.assertNotNull(result.getRetrievedAt());
+        // Redash answers from its stored result
+        Assert.assertTrue(client.executeQuery(dataSourceId, result.getQuery(), 60).getId() == result.getId());
+        Assert.assertTrue(server.queryExecutions() == 1);
+    }
+
+    @Test
+    public void failedQueryTest() {
+        try {
+            client(null).executeQuery(dataSourceId, "SELECT fail", 0);
+            Assert.fail();
+        } catch (IOException e) {
+            Assert.assertTrue(e.getMessage().startsWith("Error running query"));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void missingParameterTest() throws IOException {
+        client(null).executeQuery(dataSourceId, "SELECT {{ a }}, {{b}}", Collections.singletonMap("a", 1), 0);
+    }
+
+    @Test
+    public void cachedResultTest() throws IOException {
+        QueryResultCache cache = new QueryResultCache.QueryResultCacheBuilder().build();
+        RedashClient client = client(cache);
+        QueryResult result = client.executeQuery(dataSourceId, "SELECT {{n}}", Collections.singletonMap("n", 1), 60);
+        int requests = server.getRequestCount();
+        Assert.assertTrue(client.executeQuery(dataSourceId, "SELECT  {{ n }}\n", Collections.singletonMap("n", "1"), 60) == result);
+        Assert.assertTrue(server.getRequestCount() == requests);
+        Assert.assertTrue(client.executeQuery(dataSourceId, "SELECT {{n}}", Collections.singletonMap("n", 2), 60) != result);
+        Assert.assertTrue(client.executeQuery(dataSourceId, "SELECT {{n}}", Collections.singletonMap("n", 1), 0) != result);
+        Assert.assertTrue(server.queryExecutions() == 3);
+    }
+
+    @Test
+    public void sharedExecutionTest() throws Exception {
+        server.setJobPolls(5);
+        RedashClient client = client(new QueryResultCache.QueryResultCacheBuilder().build());
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<QueryResult>> results = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                results.add(pool.submit(() -> client.executeQuery(dataSourceId, "SELECT 1", 60)));
+            }
+            for (Future<QueryResult> result : results) {
+                Assert.assertTrue(result.get() == results.get(0).get());
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        Assert.assertTrue(server.queryExecutions() == 1);
+    }
+
+    private RedashClient client(QueryResultCache cache) {
+        return server.clientBuilder().queryResultCache(cache).pollInterval(Duration.ofMillis(10)).build();
+    }
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright (c) 2018 Snowplow Analytics Ltd. All rights reserved.
+ *
+ * This program is licensed to you under the Apache License Version 2.0,
+ * and you may not use this file except in compliance with the Apache License Version 2.0.
+ * You may obtain a copy of the Apache License Version 2.0 at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the Apache License Version 2.0 is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Apache License Version 2.0 for the specific language governing permissions and limitations there under.
+ */
+
+package com.snowplowanalytics.redash;
+
+import com.snowplowanalytics.redash.model.datasource.BigQueryDataSource;
+import com.snowplowanalytics.redash.model.datasource.PostgreSqlDataSource;
+import com.snowplowanalytics.redash.transport.LoggingTransport;
+import com.snowplowanalytics.redash.transport.Redactor;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+
+public class RedactionTest {
+
+    private static final String API_KEY = "k3y-0f-th3-adm1n";
+    private static final String PASSWORD = "s3cr3t-pa55";
+    private static final String KEY_FILE = "ZXlKaGJHY2lPaUpJVXpJMU5pSjk=";
+
+    private final Logger logger = Logger.getLogger(LoggingTransport.class.getName());
+    private final List<LogRecord> records = new CopyOnWriteArrayList<>();
+    private final Handler handler = new Handler() {
+        @Override
+        public void publish(LogRecord record) {
+            records.add(record);
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+    };
+    private Level level;
+    private FakeRedashServer server;
+
+    @Before
+    public void setup() throws IOException {
+        level = logger.getLevel();
+        logger.addHandler(handler);
+        server = new FakeRedashServer(API_KEY);
+        server.start();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        logger.removeHandler(handler);
+        logger.setLevel(level);
+        server.shutdown();
+    }
+
+    @Test
+    public void toStringMasksSecretsTest() {
+        String postgres = new PostgreSqlDataSource.PostgreSqlDataSourceBuilder("pg")
+                .host("db").port(5432).user("admin").password(PASSWORD).dbName("events").build().toString();
+        Assert.assertFalse(postgres, postgres.contains(PASSWORD));
+        Assert.assertTrue(postgres, postgres.contains("password='****'"));
+        Assert.assertTrue(postgres, postgres.contains("user='admin'"));
+
+        String bigQuery = new BigQueryDataSource.BigQueryDataSourceBuilder("bq")
+                .projectId("project").jsonKeyFile(KEY_FILE).build().toString();
+        Assert.assertFalse(bigQuery, bigQuery.contains(KEY_FILE));
+        Assert.assertTrue(bigQuery, bigQuery.contains("jsonKeyFile=****"));
+        Assert.assertTrue(bigQuery, bigQuery.contains("projectId=project"));
+    }
+
+    @Test
+    public void redactJsonTest() {
+        String json = "{\"name\": \"pg\", \"options\": {\"password\" : \"" + PASSWORD + "\", \"port\": 5432, "
+                + "\"jsonKeyFile\":\"a\\\"b\", \"token\": 42, \"secret\": null, \"keys\": {\"id\": 1}}, "
+                + "\"note\": \"uses " + API_KEY + "\"}";
+        Assert.assertEquals("{\"name\": \"pg\", \"options\": {\"password\" : \"****\", \"port\": 5432, "
+                        + "\"jsonKeyFile\":\"****\", \"token\": \"****\", \"secret\": null, \"keys\": {\"id\": 1}}, "
+                        + "\"note\": \"uses ****\"}",
+                Redactor.redact(json, API_KEY));
+    }
+
+    @Test
+    public void redactWithoutMatchReturnsInputTest() {
+        byte[] text = "{\"name\": \"pg\", \"password_hint\": ".getBytes(StandardCharsets.UTF_8);
+        Assert.assertSame(text, Redactor.redact(text, API_KEY.getBytes(StandardCharsets.UTF_8)));
+        byte[] plain = "Please login".getBytes(StandardCharsets.UTF_8);
+        Assert.assertSame(plain, Redactor.redact(plain, null));
+        // A secret member name which is not followed by a value is left as it is
+        String truncated = "{\"password\": ";
+        Assert.assertSame(truncated, Redactor.redact(truncated, API_KEY));
+    }
+
+    @Test
+    public void logsRequestsWithoutSecretsTest() throws IOException {
+        logger.setLevel(Level.FINEST);
+        RedashClient client = server.clientBuilder().build();
+        client.createDataSource(new PostgreSqlDataSource.PostgreSqlDataSourceBuilder("pg")
+                .host("db").port(5432).user("admin").password(PASSWORD).dbName("events").build());
+        client.getDataSources();
+
+        String post = records.stream().map(LogRecord::getMessage)
+                .filter(message -> message.startsWith("method=POST")).findFirst().orElse("");
+        Assert.assertTrue(post, post.startsWith("method=POST route=/api/data_sources status=200 latencyMs="));
+        Assert.assertTrue(post, post.contains("\"password\":\"****\""));
+        for (LogRecord record : records) {
+            Assert.assertEquals(Level.FINEST, record.getLevel());
+            Assert.assertFalse(record.getMessage(), record.getMessage().contains(PASSWORD));
+            Assert.assertFalse(record.getMessage(), record.getMessage().contains(API_KEY));
+        }
+    }
+
+    @Test
+    public void logsSummaryAtFineTest() throws IOException {
+        logger.setLevel(Level.FINE);
+        server.clientBuilder().build().getDataSources();
+
+        Assert.assertEquals(1, records.size());
+        String line = records.get(0).getMessage();
+        Assert.assertTrue(line, line.matches(
+                "method=GET route=/api/data_sources status=200 latencyMs=\\d+ requestBytes=0 responseBytes=\\d+"));
+    }
+
+    @Test
+    public void silentByDefaultTest() throws IOException {
+        logger.setLevel(Level.INFO);
+        server.clientBuilder().build().getDataSources();
+        Assert.assertTrue(records.isEmpty());
+    }
+}
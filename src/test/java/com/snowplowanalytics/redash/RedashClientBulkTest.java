@@ -0,0 +1,140 @@
+/*
+ * Copyright (c) 2018 Snowplow Analytics Ltd. All rights reserved.
+ *
+ * This program is licensed to you under the Apache License Version 2.0,
+ * and you may not use this file except in compliance with the Apache License Version 2.0.
+ * You may obtain a copy of the Apache License Version 2.0 at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the Apache License Version 2.0 is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Apache License Version 2.0 for the specific language governing permissions and limitations there under.
+ */
+
+package com.snowplowanalytics.redash;
+
+import com.snowplowanalytics.redash.model.datasource.DataSource;
+import com.snowplowanalytics.redash.model.datasource.RedshiftDataSource;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class RedashClientBulkTest {
+
+    private FakeRedashServer server;
+    private RedashClient client;
+
+    @Before
+    public void setup() throws IOException {
+        server = new FakeRedashServer("key");
+        server.start();
+        client = server.clientBuilder().build();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        server.shutdown();
+    }
+
+    @Test
+    public void createDataSourcesTest() throws IOException {
+        List<DataSource> dataSources = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            dataSources.add(dataSource("schema" + i, "host"));
+        }
+        List<DataSourceCreationResult> results = client.createDataSources(dataSources);
+        Assert.assertTrue(results.size() == 50);
+        for (int i = 0; i < 50; i++) {
+            DataSourceCreationResult result = results.get(i);
+            Assert.assertTrue(result.getDataSource() == dataSources.get(i));
+            Assert.assertTrue(result.getStatus() == DataSourceCreationResult.Status.CREATED);
+            Assert.assertTrue(result.getId() == dataSources.get(i).getId());
+            Assert.assertNull(result.getConnectionOk());
+        }
+        Assert.assertTrue(server.dataSourceNames().size() == 50);
+        // One list download plus one request per data-source
+        Assert.assertTrue(server.getRequestCount() == 51);
+    }
+
+    @Test
+    public void duplicatesTest() throws IOException {
+        client.createDataSource(dataSource("existing", "host"));
+        List<DataSourceCreationResult> results = client.createDataSources(Arrays.asList(
+                dataSource("existing", "host"),
+                dataSource("new", "host"),
+                dataSource("new", "other")));
+        Assert.assertTrue(results.get(0).getStatus() == DataSourceCreationResult.Status.ALREADY_EXISTS);
+        Assert.assertTrue(results.get(0).getId() == 0);
+        Assert.assertTrue(results.get(1).getStatus() == DataSourceCreationResult.Status.CREATED);
+        Assert.assertTrue(results.get(2).getStatus() == DataSourceCreationResult.Status.ALREADY_EXISTS);
+        Assert.assertTrue(server.dataSourceNames().size() == 2);
+    }
+
+    @Test
+    public void optimisticDuplicatesTest() throws IOException {
+        RedashClient optimisticClient = server.clientBuilder().mutationMode(MutationMode.OPTIMISTIC).build();
+        optimisticClient.createDataSource(dataSource("existing", "host"));
+        List<DataSourceCreationResult> results = optimisticClient.createDataSources(Arrays.asList(
+                dataSource("existing", "host"),
+                dataSource("new", "host")));
+        Assert.assertTrue(results.get(0).getStatus() == DataSourceCreationResult.Status.ALREADY_EXISTS);
+        Assert.assertTrue(results.get(1).getStatus() == DataSourceCreationResult.Status.CREATED);
+        Assert.assertTrue(server.getRequestCount() == 3);
+    }
+
+    @Test
+    public void connectionTestTest() throws IOException {
+        List<DataSourceCreationResult> results = client.createDataSources(Arrays.asList(
+                dataSource("reachable", "host"),
+                dataSource("unreachable", FakeRedashServer.UNREACHABLE_HOST)), 2, true);
+        Assert.assertTrue(results.get(0).getConnectionOk());
+        Assert.assertTrue(results.get(0).getConnectionMessage().equals("success"));
+        Assert.assertFalse(results.get(1).getConnectionOk());
+        Assert.assertTrue(results.get(1).getStatus() == DataSourceCreationResult.Status.CREATED);
+    }
+
+    @Test
+    public void failedTest() throws IOException {
+        RedashClient wrongClient = new RedashClient.RedashClientBuilder("http", server.getHostName(), server.getPort(), "wrong")
+                .mutationMode(MutationMode.OPTIMISTIC)
+                .build();
+        List<DataSourceCreationResult> results = wrongClient.createDataSources(Arrays.asList(dataSource("name", "host")));
+        Assert.assertTrue(results.get(0).getStatus() == DataSourceCreationResult.Status.FAILED);
+        Assert.assertTrue(results.get(0).getError() instanceof IOException);
+    }
+
+    @Test(expected = IOException.class)
+    public void listUnavailableTest() throws IOException {
+        new RedashClient("http", server.getHostName(), server.getPort(), "wrong")
+                .createDataSources(Arrays.asList(dataSource("name", "host")));
+    }
+
+    @Test
+    public void virtualThreadsTest() throws IOException {
+        Assume.assumeTrue(ExecutionMode.isVirtualThreadsSupported());
+        RedashClient virtualClient = server.clientBuilder().executionMode(ExecutionMode.VIRTUAL_THREADS).build();
+        List<DataSource> dataSources = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            dataSources.add(dataSource("virtual" + i, "host"));
+        }
+        Assert.assertTrue(virtualClient.createDataSources(dataSources, 4, true).stream()
+                .allMatch(result -> result.getConnectionOk()));
+    }
+
+    private static DataSource dataSource(String name, String host) {
+        return new RedshiftDataSource.RedshiftDataSourceBuilder(name)
+                .host(host)
+                .port(5439)
+                .user("user")
+                .password("password")
+                .dbName("dbName")
+                .build();
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright (c) 2018 Snowplow Analytics Ltd. All rights reserved.
+ *
+ * This program is licensed to you under the Apache License Version 2.0,
+ * and you may not use this file except in compliance with the Apache License Version 2.0.
+ * You may obtain a copy of the Apache License Version 2.0 at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the Apache License Version 2.0 is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Apache License Version 2.0 for the specific language governing permissions and limitations there under.
+ */
+
+package com.snowplowanalytics.redash;
+
+import com.snowplowanalytics.redash.model.Group;
+import com.snowplowanalytics.redash.model.User;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Shares a single client between many threads against a local fake server.
+ */
+public class RedashClientConcurrencyTest {
+
+    private static final int THREADS = 16;
+    private static final int CALLS_PER_THREAD = 50;
+
+    private MockWebServer server;
+    private RedashClient client;
+
+    @Before
+    public void setup() throws IOException {
+        server = new MockWebServer();
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                String path = request.getRequestUrl().encodedPath();
+                if (path.equals("/api/users")) {
+                    return new MockResponse().setBody("[{\"id\":1,\"name\":\"Admin\"},{\"id\":2,\"name\":\"Default\"}]");
+                }
+                if (path.startsWith("/api/groups/")) {
+                    String id = path.substring("/api/groups/".length());
+                    return new MockResponse().setBody("{\"id\":" + id + ",\"name\":\"group" + id + "\"}");
+                }
+                return new MockResponse().setResponseCode(404);
+            }
+        });
+        server.start();
+        client = new RedashClient("http", server.getHostName(), server.getPort(), "key");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        server.shutdown();
+    }
+
+    @Test
+    public void sharedClientTest() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        List<Future<Boolean>> results = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            final int thread = t;
+            results.add(executor.submit((Callable<Boolean>) () -> {
+                for (int i = 0; i < CALLS_PER_THREAD; i++) {
+                    int groupId = thread * CALLS_PER_THREAD + i;
+                    Group group = client.getGroupById(groupId);
+                    if (group.getId() != groupId || !("group" + groupId).equals(group.getName())) {
+                        return false;
+                    }
+                    List<User> users = client.getUsers();
+                    if (users.size() != 2 || !users.get(0).equals(new User("Admin", 1))) {
+                        return false;
+                    }
+                }
+                return true;
+            }));
+        }
+        for (Future<Boolean> result : results) {
+            Assert.assertTrue(result.get());
+        }
+        executor.shutdown();
+        Assert.assertTrue(server.getRequestCount() == THREADS * CALLS_PER_THREAD * 2);
+    }
+}
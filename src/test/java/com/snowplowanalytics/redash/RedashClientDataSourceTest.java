@@ -93,8 +93,9 @@ public class RedashClientDataSourceTest extends AbstractRedashClientTest {
         try {
             wrongClient.createDataSource(rds);
         } catch (Exception e) {
-            Assert.assertTrue(e.getClass().equals(IOException.class));
-            Assert.assertTrue(e.getMessage().equals("NOT FOUND"));
+            Assert.assertTrue(e.getClass().equals(RedashAuthenticationException.class));
+            Assert.assertEquals(404, ((RedashAuthenticationException) e).getStatusCode());
+            Assert.assertEquals("NOT FOUND", e.getMessage());
         } finally {
             redashClient.deleteDataSource(id);
         }
@@ -143,7 +144,7 @@ public class RedashClientDataSourceTest extends AbstractRedashClientTest {
         try {
             wrongClient.getDataSource(rds.getName());
         } catch (Exception e) {
-            Assert.assertTrue(e.getClass().equals(IOException.class));
+            Assert.assertTrue(e.getClass().equals(RedashAuthenticationException.class));
         } finally {
             redashClient.deleteUserGroup(id);
         }
@@ -0,0 +1,117 @@
+/*
+ * Copyright (c) 2018 Snowplow Analytics Ltd. All rights reserved.
+ *
+ * This program is licensed to you under the Apache License Version 2.0,
+ * and you may not use this file except in compliance with the Apache License Version 2.0.
+ * You may obtain a copy of the Apache License Version 2.0 at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the Apache License Version 2.0 is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Apache License Version 2.0 for the specific language governing permissions and limitations there under.
+ */
+
+package com.snowplowanalytics.redash;
+
+import com.snowplowanalytics.redash.model.Group;
+import com.snowplowanalytics.redash.model.datasource.DataSource;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.List;
+
+import static com.snowplowanalytics.redash.RedashClient.DATA_SOURCE_ALREADY_EXISTS;
+import static com.snowplowanalytics.redash.RedashClientDataSourceTest.simpleDatasourceMatcher;
+
+/**
+ * Same expectations as the validating tests, but every mutation is sent through a client
+ * in {@link MutationMode#OPTIMISTIC} mode.
+ */
+public class RedashClientOptimisticTest extends AbstractRedashClientTest {
+
+    @Before
+    public void setup() throws IOException {
+        for (DataSource ds : redashClient.getDataSources()) {
+            redashClient.deleteDataSource(ds.getId());
+        }
+        for (Group group : redashClient.getUserGroups()) {
+            if (group.getId() != adminGroup.getId() && group.getId() != defaultGroup.getId()) {
+                redashClient.deleteUserGroup(group.getId());
+            }
+        }
+    }
+
+    @Test
+    public void createDataSourceTest() throws IOException {
+        int id = optimisticClient.createDataSource(rds);
+        List<DataSource> dataSourceList = redashClient.getDataSources();
+        Assert.assertTrue(dataSourceList.size() == 1);
+        Assert.assertTrue(dataSourceList.get(0).getId() == id);
+        Assert.assertTrue(simpleDatasourceMatcher(dataSourceList.get(0)));
+    }
+
+    @Test
+    public void createDataSourceWithExistingNameTest() throws IOException {
+        optimisticClient.createDataSource(rds);
+        try {
+            optimisticClient.createDataSource(rds);
+            Assert.fail();
+        } catch (IllegalArgumentException e) {
+            Assert.assertTrue(e.getMessage().equals(DATA_SOURCE_ALREADY_EXISTS));
+        }
+        Assert.assertTrue(redashClient.getDataSources().size() == 1);
+    }
+
+    @Test
+    public void createUserGroupTest() throws IOException {
+        Group created = new Group("optimisticGroup");
+        int id = optimisticClient.createUserGroup(created);
+        Assert.assertTrue(created.getId() == id);
+        Assert.assertTrue(redashClient.getUserGroups().contains(created));
+    }
+
+    @Test
+    public void addAndRemoveUserTest() throws IOException {
+        int groupId = optimisticClient.createUserGroup(new Group("optimisticMembers"));
+        Assert.assertTrue(optimisticClient.addUserToGroup(defaultUser.getId(), groupId));
+        Assert.assertTrue(redashClient.getWithUsersAndDataSources(groupId).getUsers().contains(defaultUser));
+        Assert.assertTrue(optimisticClient.removeUserFromGroup(defaultUser.getId(), groupId));
+        Assert.assertTrue(redashClient.getWithUsersAndDataSources(groupId).getUsers().isEmpty());
+        Assert.assertFalse(optimisticClient.removeUserFromGroup(defaultUser.getId(), groupId));
+    }
+
+    @Test
+    public void addAndRemoveDataSourceTest() throws IOException {
+        int groupId = optimisticClient.createUserGroup(new Group("optimisticDataSources"));
+        int dataSourceId = optimisticClient.createDataSource(rds);
+        Assert.assertTrue(optimisticClient.addDataSourceToGroup(dataSourceId, groupId));
+        Assert.assertTrue(redashClient.getWithUsersAndDataSources(groupId).getDataSources().size() == 1);
+        Assert.assertTrue(optimisticClient.removeDataSourceFromGroup(dataSourceId, groupId));
+        Assert.assertTrue(redashClient.getWithUsersAndDataSources(groupId).getDataSources().isEmpty());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void addUserToNonExistingGroupTest() throws IOException {
+        optimisticClient.addUserToGroup(defaultUser.getId(), defaultGroup.getId() + 100);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void addNonExistingUserToGroupTest() throws IOException {
+        optimisticClient.addUserToGroup(defaultUser.getId() + 100, defaultGroup.getId());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void removeNonExistingDataSourceFromGroupTest() throws IOException {
+        optimisticClient.removeDataSourceFromGroup(100, defaultGroup.getId());
+    }
+
+    @Test(expected = IOException.class)
+    public void addUserToGroupWithWrongClientTest() throws IOException {
+        new RedashClient.RedashClientBuilder("http", "localhost", 80, "wrong")
+                .mutationMode(MutationMode.OPTIMISTIC)
+                .build()
+                .addUserToGroup(defaultUser.getId(), defaultGroup.getId());
+    }
+}
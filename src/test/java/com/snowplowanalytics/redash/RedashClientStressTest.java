@@ -0,0 +1,214 @@
+/*
+ * Copyright (c) 2018 Snowplow Analytics Ltd. All rights reserved.
+ *
+ * This program is licensed to you under the Apache License Version 2.0,
+ * and you may not use this file except in compliance with the Apache License Version 2.0.
+ * You may obtain a copy of the Apache License Version 2.0 at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the Apache License Version 2.0 is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Apache License Version 2.0 for the specific language governing permissions and limitations there under.
+ */
+
+package com.snowplowanalytics.redash;
+
+import com.snowplowanalytics.redash.model.Group;
+import com.snowplowanalytics.redash.model.datasource.RedshiftDataSource;
+import okhttp3.ConnectionPool;
+import okhttp3.OkHttpClient;
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Drives mixed create/update/delete/membership operations through shared clients from many threads
+ * against {@link FakeRedashServer}, then checks that no update was lost and no response was left open.
+ *
+ * Throughput and latency percentiles are printed per time window. The defaults keep the run short enough
+ * for the regular test task; raise them for a soak run, e.g.
+ * {@code -Dredash.stress.threads=64 -Dredash.stress.seconds=600 -Dredash.stress.window=10000}.
+ */
+public class RedashClientStressTest {
+
+    private static final int THREADS = Integer.getInteger("redash.stress.threads", 16);
+    private static final int SECONDS = Integer.getInteger("redash.stress.seconds", 3);
+    private static final int WINDOW_MILLIS = Integer.getInteger("redash.stress.window", 1000);
+    private static final int USERS = 32;
+
+    private FakeRedashServer server;
+    private ConnectionPool connectionPool;
+    private RedashClient validatingClient, optimisticClient;
+    private int sharedGroupId;
+
+    @Before
+    public void setup() throws IOException {
+        server = new FakeRedashServer("stress");
+        for (int i = 0; i < USERS; i++) {
+            server.addUser("user" + i);
+        }
+        server.start();
+        connectionPool = new ConnectionPool();
+        OkHttpClient httpClient = new OkHttpClient.Builder().connectionPool(connectionPool).build();
+        validatingClient = server.clientBuilder().httpClient(httpClient).build();
+        optimisticClient = server.clientBuilder().httpClient(httpClient).mutationMode(MutationMode.OPTIMISTIC).build();
+        sharedGroupId = validatingClient.createUserGroup(new Group("shared"));
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        server.shutdown();
+    }
+
+    @Test
+    public void mixedOperationsTest() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        long runStart = System.nanoTime();
+        long deadline = runStart + TimeUnit.SECONDS.toNanos(SECONDS);
+        List<Future<Worker>> futures = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            Worker worker = new Worker(t, t % 2 == 0 ? validatingClient : optimisticClient, deadline, runStart);
+            futures.add(executor.submit((Callable<Worker>) () -> {
+                start.await();
+                return worker.run();
+            }));
+        }
+        start.countDown();
+        List<Worker> workers = new ArrayList<>();
+        for (Future<Worker> future : futures) {
+            workers.add(future.get());
+        }
+        executor.shutdown();
+
+        Set<Integer> liveDataSources = new LinkedHashSet<>();
+        for (Worker worker : workers) {
+            liveDataSources.addAll(worker.expectedHosts.keySet());
+            for (Map.Entry<Integer, String> entry : worker.expectedHosts.entrySet()) {
+                JSONObject fromServer = server.dataSource(entry.getKey());
+                Assert.assertNotNull("Lost create of data-source " + entry.getKey(), fromServer);
+                Assert.assertEquals("Lost update of data-source " + entry.getKey(), entry.getValue(),
+                        fromServer.getJSONObject("options").getString("host"));
+            }
+            Assert.assertEquals(worker.expectedHosts.keySet(), server.groupDataSources(worker.groupId));
+            Assert.assertEquals(worker.expectedMembers, server.members(worker.groupId));
+        }
+        Assert.assertEquals(liveDataSources.size(), server.dataSourceNames().size());
+        Assert.assertEquals(liveDataSources, server.groupDataSources(sharedGroupId));
+
+        Assert.assertEquals("Responses were left open", connectionPool.connectionCount(),
+                connectionPool.idleConnectionCount());
+
+        report(workers);
+    }
+
+    private void report(List<Worker> workers) {
+        Map<Long, List<Long>> windows = new HashMap<>();
+        List<Long> all = new ArrayList<>();
+        for (Worker worker : workers) {
+            for (long[] sample : worker.samples) {
+                windows.computeIfAbsent(sample[0] / TimeUnit.MILLISECONDS.toNanos(WINDOW_MILLIS),
+                        w -> new ArrayList<>()).add(sample[1]);
+                all.add(sample[1]);
+            }
+        }
+        System.out.println(String.format("RedashClient stress: %d threads, %d requests", THREADS, server.getRequestCount()));
+        windows.keySet().stream().sorted().forEach(w -> System.out.println(
+                String.format("  window %3d: %s", w, summary(windows.get(w), WINDOW_MILLIS))));
+        System.out.println(String.format("  overall   : %s", summary(all, SECONDS * 1000)));
+    }
+
+    private static String summary(List<Long> latencies, long millis) {
+        long[] sorted = latencies.stream().mapToLong(Long::longValue).toArray();
+        Arrays.sort(sorted);
+        return String.format("%6d ops, %8.1f ops/s, p50 %6.2f ms, p95 %6.2f ms, p99 %6.2f ms, max %6.2f ms",
+                sorted.length, sorted.length * 1000.0 / millis,
+                percentile(sorted, 0.50), percentile(sorted, 0.95), percentile(sorted, 0.99),
+                percentile(sorted, 1.0));
+    }
+
+    private static double percentile(long[] sorted, double p) {
+        int index = (int) Math.ceil(p * sorted.length) - 1;
+        return sorted[Math.max(0, index)] / 1_000_000.0;
+    }
+
+    private interface Operation<T> {
+        T call() throws IOException;
+    }
+
+    /**
+     * Works on its own group and data-sources, plus the group shared by all workers, and keeps
+     * the state the server is expected to end up in.
+     */
+    private class Worker {
+        private final int index;
+        private final RedashClient client;
+        private final long deadline;
+        private final long runStart;
+        private final Map<Integer, String> expectedHosts = new HashMap<>();
+        private final Set<Integer> expectedMembers = new LinkedHashSet<>();
+        private final List<long[]> samples = new ArrayList<>();
+        private int groupId;
+
+        Worker(int index, RedashClient client, long deadline, long runStart) {
+            this.index = index;
+            this.client = client;
+            this.deadline = deadline;
+            this.runStart = runStart;
+        }
+
+        Worker run() throws IOException {
+            groupId = timed(() -> client.createUserGroup(new Group("stress" + index)));
+            for (int i = 0; System.nanoTime() < deadline; i++) {
+                RedshiftDataSource.RedshiftDataSourceBuilder builder =
+                        new RedshiftDataSource.RedshiftDataSourceBuilder("stress" + index + "-" + i)
+                                .port(5439)
+                                .user("user")
+                                .password("password")
+                                .dbName("db");
+                int dataSourceId = timed(() -> client.createDataSource(builder.host("created").build()));
+                timed(() -> client.updateDataSource(builder.host("updated" + dataSourceId).build()));
+                expectedHosts.put(dataSourceId, "updated" + dataSourceId);
+                timed(() -> client.addDataSourceToGroup(dataSourceId, groupId));
+                timed(() -> client.addDataSourceToGroup(dataSourceId, sharedGroupId));
+
+                int userId = 3 + (i % USERS);
+                timed(() -> client.addUserToGroup(userId, groupId));
+                expectedMembers.add(userId);
+                if (i % 2 == 1) {
+                    timed(() -> client.removeUserFromGroup(userId, groupId));
+                    expectedMembers.remove(userId);
+                }
+                if (i % 3 == 0) {
+                    timed(() -> client.deleteDataSource(dataSourceId));
+                    expectedHosts.remove(dataSourceId);
+                }
+            }
+            return this;
+        }
+
+        private <T> T timed(Operation<T> operation) throws IOException {
+            long start = System.nanoTime();
+            T result = operation.call();
+            samples.add(new long[] {start - runStart, System.nanoTime() - start});
+            return result;
+        }
+    }
+}
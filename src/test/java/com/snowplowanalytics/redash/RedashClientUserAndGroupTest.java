@@ -67,7 +67,7 @@ public class RedashClientUserAndGroupTest extends AbstractRedashClientTest {
         try {
             wrongClient.deleteUserGroup(id);
         } catch (Exception e) {
-            Assert.assertTrue(e.getClass().equals(IOException.class));
+            Assert.assertTrue(e.getClass().equals(RedashAuthenticationException.class));
         }
     }
 
@@ -91,7 +91,7 @@ public class RedashClientUserAndGroupTest extends AbstractRedashClientTest {
         try {
             wrongClient.createUserGroup(new Group(defaultUser.getName()));
         } catch (Exception e) {
-            Assert.assertTrue(e.getClass().equals(IOException.class));
+            Assert.assertTrue(e.getClass().equals(RedashAuthenticationException.class));
         }
         groups = redashClient.getUserGroups();
         Assert.assertTrue(groups.size() == 2);
@@ -0,0 +1,176 @@
+/*
+ * Copyright (c) 2018 Snowplow Analytics Ltd. All rights reserved.
+ *
+ * This program is licensed to you under the Apache License Version 2.0,
+ * and you may not use this file except in compliance with the Apache License Version 2.0.
+ * You may obtain a copy of the Apache License Version 2.0 at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the Apache License Version 2.0 is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Apache License Version 2.0 for the specific language governing permissions and limitations there under.
+ */
+
+package com.snowplowanalytics.redash;
+
+import com.snowplowanalytics.redash.model.Group;
+import com.snowplowanalytics.redash.model.datasource.RedshiftDataSource;
+import com.snowplowanalytics.redash.transport.HttpTransport;
+import com.snowplowanalytics.redash.transport.TransportRequest;
+import com.snowplowanalytics.redash.transport.TransportResponse;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+
+public class RedashExceptionTest {
+
+    private FakeRedashServer server;
+
+    @Before
+    public void setup() throws IOException {
+        server = new FakeRedashServer("key");
+        server.start();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        server.shutdown();
+    }
+
+    @Test
+    public void invalidApiKeyTest() throws IOException {
+        RedashClient client = new RedashClient.RedashClientBuilder("http", server.getHostName(), server.getPort(),
+                "wrong").build();
+        try {
+            client.getUsers();
+            Assert.fail();
+        } catch (RedashAuthenticationException e) {
+            Assert.assertEquals(404, e.getStatusCode());
+            Assert.assertEquals("GET /api/users", e.getRoute());
+            Assert.assertTrue(e.getResponseBody().contains(FakeRedashServer.LOGIN_REQUIRED));
+            Assert.assertFalse(e.isRetryable());
+        }
+        // A rejected key must not look like a missing entity
+        try {
+            client.getGroupById(1);
+            Assert.fail();
+        } catch (IllegalArgumentException e) {
+            Assert.fail();
+        } catch (RedashAuthenticationException e) {
+            Assert.assertEquals("GET /api/groups/1", e.getRoute());
+        }
+    }
+
+    @Test
+    public void missingEntityTest() throws IOException {
+        RedashClient client = server.clientBuilder().build();
+        Assert.assertFalse(client.deleteDataSource(42));
+        Assert.assertFalse(client.deleteUserGroup(42));
+        try {
+            client.getGroupById(42);
+            Assert.fail();
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void conflictTest() throws IOException {
+        RedashClient client = server.clientBuilder().mutationMode(MutationMode.OPTIMISTIC).build();
+        RedshiftDataSource dataSource = new RedshiftDataSource.RedshiftDataSourceBuilder("warehouse")
+                .host("host").port(5439).user("user").password("password").dbName("db").build();
+        client.createDataSource(dataSource);
+        try {
+            client.createDataSource(dataSource);
+            Assert.fail();
+        } catch (IllegalArgumentException e) {
+            Assert.assertTrue(e.getMessage().contains("already exists"));
+        }
+    }
+
+    @Test
+    public void optimisticMissingMemberTest() throws IOException {
+        RedashClient client = server.clientBuilder().mutationMode(MutationMode.OPTIMISTIC).build();
+        int groupId = client.createUserGroup(new Group("analysts"));
+        int userId = server.addUser("Analyst");
+        // Redash answers a 500 for missing members, which must not look like a duplicate
+        try {
+            client.addUserToGroup(userId + 100, groupId);
+            Assert.fail();
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        try {
+            client.addDataSourceToGroup(42, groupId);
+            Assert.fail();
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        try {
+            client.removeUserFromGroup(userId + 100, groupId);
+            Assert.fail();
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        Assert.assertTrue(client.addUserToGroup(userId, groupId));
+        Assert.assertTrue(client.removeUserFromGroup(userId, groupId));
+        Assert.assertFalse(client.removeUserFromGroup(userId, groupId));
+    }
+
+    @Test
+    public void classificationTest() throws IOException {
+        Assert.assertTrue(failure(400, "{\"message\": \"Bad request\"}").getClass() == RedashException.class);
+        Assert.assertTrue(failure(400, "{\"message\": \"Data source with the name a already exists.\"}")
+                instanceof RedashConflictException);
+        Assert.assertTrue(failure(401, "{}") instanceof RedashAuthenticationException);
+        Assert.assertTrue(failure(403, "{}") instanceof RedashAuthenticationException);
+        Assert.assertTrue(failure(404, "{}") instanceof RedashNotFoundException);
+        Assert.assertTrue(failure(409, "{}") instanceof RedashConflictException);
+        Assert.assertTrue(failure(500, "{}") instanceof RedashServerException);
+        Assert.assertEquals("SERVICE UNAVAILABLE", failure(503, "{}").getMessage());
+    }
+
+    @Test
+    public void retryableTest() throws IOException {
+        Assert.assertTrue(failure(408, "{}").isRetryable());
+        Assert.assertTrue(failure(429, "{}").isRetryable());
+        Assert.assertTrue(failure(502, "{}").isRetryable());
+        Assert.assertTrue(failure(503, "{}").isRetryable());
+        Assert.assertTrue(failure(504, "{}").isRetryable());
+        Assert.assertFalse(failure(400, "{}").isRetryable());
+        Assert.assertFalse(failure(404, "{}").isRetryable());
+        Assert.assertFalse(failure(500, "{}").isRetryable());
+    }
+
+    /**
+     * @return The exception thrown by the client for a response with the given status.
+     */
+    private static RedashException failure(int code, String body) throws IOException {
+        HttpTransport transport = new HttpTransport() {
+            @Override
+            public TransportResponse execute(TransportRequest request) {
+                return new TransportResponse(code, body);
+            }
+
+            @Override
+            public CompletableFuture<TransportResponse> executeAsync(TransportRequest request) {
+                return CompletableFuture.completedFuture(execute(request));
+            }
+        };
+        RedashClient client = new RedashClient.RedashClientBuilder("http", "localhost", 80, "key")
+                .transport(transport).build();
+        try {
+            client.getUsers();
+        } catch (RedashException e) {
+            Assert.assertEquals(code, e.getStatusCode());
+            Assert.assertEquals("GET", e.getMethod());
+            Assert.assertEquals(body, e.getResponseBody());
+            return e;
+        }
+        throw new AssertionError("No exception for status " + code);
+    }
+}
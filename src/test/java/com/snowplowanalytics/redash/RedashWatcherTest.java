@@ -0,0 +1,201 @@
+/*
+ * Copyright (c) 2018 Snowplow Analytics Ltd. All rights reserved.
+ *
+ * This program is licensed to you under the Apache License Version 2.0,
+ * and you may not use this file except in compliance with the Apache License Version 2.0.
+ * You may obtain a copy of the Apache License Version 2.0 at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the Apache License Version 2.0 is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Apache License Version 2.0 for the specific language governing permissions and limitations there under.
+ */
+
+package com.snowplowanalytics.redash;
+
+import com.snowplowanalytics.redash.model.Group;
+import com.snowplowanalytics.redash.model.datasource.RedshiftDataSource;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+public class RedashWatcherTest {
+
+    private FakeRedashServer server;
+    private RedashClient client;
+
+    @Before
+    public void setup() throws IOException {
+        server = new FakeRedashServer("key");
+        server.start();
+        client = server.clientBuilder().build();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        server.shutdown();
+    }
+
+    @Test
+    public void deltaTest() throws IOException {
+        RedashWatcher watcher = new RedashWatcher.RedashWatcherBuilder(client).build();
+        List<ChangeEvent> first = new CopyOnWriteArrayList<>();
+        List<ChangeEvent> second = new CopyOnWriteArrayList<>();
+        watcher.addListener(first::add);
+        watcher.addListener(second::add);
+
+        Assert.assertTrue(watcher.poll().isEmpty());
+        Assert.assertTrue(watcher.poll().isEmpty());
+
+        int userId = server.addUser("Analyst");
+        int dataSourceId = client.createDataSource(dataSource("warehouse"));
+        int groupId = client.createUserGroup(new Group("analysts"));
+        int baseline = server.getRequestCount();
+        List<ChangeEvent> events = watcher.poll();
+        // One request per list, however many listeners there are
+        Assert.assertEquals(3, server.getRequestCount() - baseline);
+        Assert.assertEquals(3, events.size());
+        assertEvent(events.get(0), ChangeEvent.Kind.USER, ChangeEvent.Type.ADDED, userId, "Analyst");
+        assertEvent(events.get(1), ChangeEvent.Kind.GROUP, ChangeEvent.Type.ADDED, groupId, "analysts");
+        assertEvent(events.get(2), ChangeEvent.Kind.DATA_SOURCE, ChangeEvent.Type.ADDED, dataSourceId, "warehouse");
+        Assert.assertTrue(events.get(0).getJson().contains("Analyst"));
+        Assert.assertEquals(events, first);
+        Assert.assertEquals(events, second);
+
+        server.renameUser(userId, "Auditor");
+        client.deleteDataSource(dataSourceId);
+        events = watcher.poll();
+        Assert.assertEquals(2, events.size());
+        assertEvent(events.get(0), ChangeEvent.Kind.USER, ChangeEvent.Type.UPDATED, userId, "Auditor");
+        assertEvent(events.get(1), ChangeEvent.Kind.DATA_SOURCE, ChangeEvent.Type.REMOVED, dataSourceId, "warehouse");
+        Assert.assertNull(events.get(1).getJson());
+        Assert.assertTrue(watcher.poll().isEmpty());
+    }
+
+    @Test
+    public void volatileFieldsTest() throws IOException {
+        int userId = server.addUser("Analyst");
+        RedashWatcher watcher = new RedashWatcher.RedashWatcherBuilder(client).kinds(ChangeEvent.Kind.USER).build();
+        Assert.assertTrue(watcher.poll().isEmpty());
+        server.signIn(userId, "2018-03-01T10:00:00");
+        Assert.assertTrue(watcher.poll().isEmpty());
+        server.signIn(userId, "2018-03-01T11:00:00");
+        server.renameUser(userId, "Auditor");
+        List<ChangeEvent> events = watcher.poll();
+        Assert.assertEquals(1, events.size());
+        assertEvent(events.get(0), ChangeEvent.Kind.USER, ChangeEvent.Type.UPDATED, userId, "Auditor");
+        // Listeners still receive the whole entity
+        Assert.assertTrue(events.get(0).getJson().contains("2018-03-01T11:00:00"));
+    }
+
+    @Test
+    public void initialStateTest() throws IOException {
+        RedashWatcher watcher = new RedashWatcher.RedashWatcherBuilder(client)
+                .kinds(ChangeEvent.Kind.USER)
+                .emitInitialState(true)
+                .build();
+        List<ChangeEvent> events = watcher.poll();
+        Assert.assertEquals(client.getUsers().size(), events.size());
+        Assert.assertTrue(events.stream().allMatch(e -> e.getType() == ChangeEvent.Type.ADDED));
+        client.createDataSource(dataSource("warehouse"));
+        Assert.assertTrue(watcher.poll().isEmpty());
+    }
+
+    @Test
+    public void scheduledTest() throws Exception {
+        BlockingQueue<ChangeEvent> received = new LinkedBlockingQueue<>();
+        try (RedashWatcher watcher = new RedashWatcher.RedashWatcherBuilder(client)
+                .minInterval(Duration.ofMillis(20))
+                .maxInterval(Duration.ofMillis(160))
+                .build()) {
+            watcher.addListener(received::add);
+            watcher.start();
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(20);
+            while (watcher.getInterval().toMillis() < 160 && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            // Backs off while nothing changes
+            Assert.assertEquals(160, watcher.getInterval().toMillis());
+
+            int userId = server.addUser("Analyst");
+            ChangeEvent event = received.poll(10, TimeUnit.SECONDS);
+            Assert.assertNotNull(event);
+            Assert.assertEquals(userId, event.getId());
+            // The interval is reset once the listeners have been called
+            while (watcher.getInterval().toMillis() == 160 && System.nanoTime() < deadline) {
+                Thread.sleep(1);
+            }
+            Assert.assertEquals(20, watcher.getInterval().toMillis());
+        }
+    }
+
+    @Test
+    public void failingListenerTest() throws IOException {
+        RedashWatcher watcher = new RedashWatcher.RedashWatcherBuilder(client).kinds(ChangeEvent.Kind.USER).build();
+        watcher.addListener(new ChangeListener() {
+            @Override
+            public void onChange(ChangeEvent event) {
+                throw new IllegalStateException("onChange");
+            }
+
+            @Override
+            public void onError(Exception e) {
+                throw new IllegalStateException("onError");
+            }
+        });
+        List<ChangeEvent> received = new CopyOnWriteArrayList<>();
+        watcher.addListener(received::add);
+        watcher.poll();
+        int userId = server.addUser("Analyst");
+        List<ChangeEvent> events = watcher.poll();
+        Assert.assertEquals(1, events.size());
+        Assert.assertEquals(events, received);
+        Assert.assertEquals(userId, received.get(0).getId());
+    }
+
+    @Test
+    public void failedPollTest() throws Exception {
+        RedashClient unauthorized = new RedashClient.RedashClientBuilder("http", server.getHostName(),
+                server.getPort(), "wrong").build();
+        BlockingQueue<Exception> errors = new LinkedBlockingQueue<>();
+        try (RedashWatcher watcher = new RedashWatcher.RedashWatcherBuilder(unauthorized)
+                .minInterval(Duration.ofMillis(20))
+                .build()) {
+            watcher.addListener(new ChangeListener() {
+                @Override
+                public void onChange(ChangeEvent event) {
+                    Assert.fail();
+                }
+
+                @Override
+                public void onError(Exception e) {
+                    errors.add(e);
+                }
+            });
+            watcher.start();
+            Assert.assertTrue(errors.poll(10, TimeUnit.SECONDS) instanceof RedashAuthenticationException);
+        }
+    }
+
+    private static void assertEvent(ChangeEvent event, ChangeEvent.Kind kind, ChangeEvent.Type type, int id,
+                                    String name) {
+        Assert.assertEquals(kind, event.getKind());
+        Assert.assertEquals(type, event.getType());
+        Assert.assertEquals(id, event.getId());
+        Assert.assertEquals(name, event.getName());
+    }
+
+    private static RedshiftDataSource dataSource(String name) {
+        return new RedshiftDataSource.RedshiftDataSourceBuilder(name)
+                .host("host").port(5439).user("user").password("password").dbName("db").build();
+    }
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright (c) 2018 Snowplow Analytics Ltd. All rights reserved.
+ *
+ * This program is licensed to you under the Apache License Version 2.0,
+ * and you may not use this file except in compliance with the Apache License Version 2.0.
+ * You may obtain a copy of the Apache License Version 2.0 at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the Apache License Version 2.0 is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Apache License Version 2.0 for the specific language governing permissions and limitations there under.
+ */
+
+package com.snowplowanalytics.redash;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+public class RoutesTest {
+
+    private final Routes routes = Routes.create("http", "localhost", 5000);
+
+    @Test
+    public void routesTest() {
+        Assert.assertEquals("http://localhost:5000/api/data_sources", routes.dataSources());
+        Assert.assertEquals("http://localhost:5000/api/data_sources/3", routes.dataSource(3));
+        Assert.assertEquals("http://localhost:5000/api/data_sources/types", routes.dataSourceTypes());
+        Assert.assertEquals("http://localhost:5000/api/data_sources/3/schema", routes.dataSourceSchema(3, false));
+        Assert.assertEquals("http://localhost:5000/api/data_sources/3/schema?refresh=true", routes.dataSourceSchema(3, true));
+        Assert.assertEquals("http://localhost:5000/api/groups", routes.groups());
+        Assert.assertEquals("http://localhost:5000/api/groups/2", routes.group(2));
+        Assert.assertEquals("http://localhost:5000/api/groups/2/members", routes.groupMembers(2));
+        Assert.assertEquals("http://localhost:5000/api/groups/2/members/7", routes.groupMember(2, 7));
+        Assert.assertEquals("http://localhost:5000/api/groups/2/data_sources", routes.groupDataSources(2));
+        Assert.assertEquals("http://localhost:5000/api/groups/2/data_sources/3", routes.groupDataSource(2, 3));
+        Assert.assertEquals("http://localhost:5000/api/users", routes.users());
+        Assert.assertEquals("http://localhost:5000/api/users/1", routes.user(1));
+        Assert.assertEquals("http://localhost:5000/api/query_results", routes.queryResults());
+        Assert.assertEquals("http://localhost:5000/api/query_results/5", routes.queryResult(5));
+        Assert.assertEquals("http://localhost:5000/api/jobs/abc", routes.job("abc"));
+        Map<String, Object> parameters = new LinkedHashMap<>();
+        parameters.put("from", "2018-01-01");
+        parameters.put("app id", "a&b");
+        Assert.assertEquals("http://localhost:5000/api/queries/4/refresh?p_from=2018-01-01&p_app+id=a%26b",
+                routes.queryRefresh(4, parameters));
+    }
+
+    @Test
+    public void invalidBaseUrlTest() {
+        Assert.assertNull(Routes.create("ftp", "localhost", 21));
+        Assert.assertNull(Routes.create("http", "local host", 80));
+        Assert.assertNull(Routes.create("http", null, 80));
+    }
+
+    @Test(expected = IOException.class)
+    public void invalidBaseUrlClientTest() throws IOException {
+        new RedashClient("http", "local host", 80, "key").getUsers();
+    }
+}
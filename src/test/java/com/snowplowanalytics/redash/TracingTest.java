@@ -0,0 +1,168 @@
+/*
+ * Copyright (c) 2018 Snowplow Analytics Ltd. All rights reserved.
+ *
+ * This program is licensed to you under the Apache License Version 2.0,
+ * and you may not use this file except in compliance with the Apache License Version 2.0.
+ * You may obtain a copy of the Apache License Version 2.0 at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the Apache License Version 2.0 is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Apache License Version 2.0 for the specific language governing permissions and limitations there under.
+ */
+
+package com.snowplowanalytics.redash;
+
+import com.snowplowanalytics.redash.model.Group;
+import com.snowplowanalytics.redash.tracing.Operation;
+import com.snowplowanalytics.redash.tracing.RedashTracer;
+import com.snowplowanalytics.redash.tracing.Span;
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Collectors;
+
+public class TracingTest {
+
+    private FakeRedashServer server;
+    private final List<Span> spans = new CopyOnWriteArrayList<>();
+
+    @Before
+    public void setup() throws IOException {
+        server = new FakeRedashServer("key");
+        server.start();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        server.shutdown();
+    }
+
+    @Test
+    public void compositeOperationTest() throws IOException {
+        compositeOperationTest(ExecutionMode.CALLER_THREAD);
+    }
+
+    @Test
+    public void compositeOperationOnExecutorTest() throws IOException {
+        compositeOperationTest(ExecutionMode.PLATFORM_THREADS);
+    }
+
+    private void compositeOperationTest(ExecutionMode executionMode) throws IOException {
+        RedashClient client = server.clientBuilder().executionMode(executionMode).tracer(tracer(1)).build();
+        int userId = server.addUser("Analyst");
+        int groupId = client.createUserGroup(new Group("analysts"));
+        spans.clear();
+
+        Assert.assertTrue(client.addUserToGroup(userId, groupId));
+
+        Span root = single("addUserToGroup");
+        Assert.assertNull(root.getParentSpanId());
+        Assert.assertEquals(Span.StatusCode.OK, root.getStatus());
+        Span group = single("getWithUsersAndDataSources");
+        Assert.assertEquals(root.getSpanId(), group.getParentSpanId());
+        Assert.assertEquals(group.getSpanId(), single("getGroupById").getParentSpanId());
+        Assert.assertEquals(root.getSpanId(), single("getUserById").getParentSpanId());
+
+        Set<String> operationIds = spans.stream().filter(span -> span.getKind() == Span.Kind.INTERNAL)
+                .map(Span::getSpanId).collect(Collectors.toSet());
+        List<Span> calls = spans.stream().filter(span -> span.getKind() == Span.Kind.CLIENT)
+                .collect(Collectors.toList());
+        // User check, group, members, data-sources and the mutation itself
+        Assert.assertEquals(5, calls.size());
+        for (Span span : spans) {
+            Assert.assertEquals(root.getTraceId(), span.getTraceId());
+            Assert.assertTrue(span.getStartEpochNanos() >= root.getStartEpochNanos());
+            Assert.assertTrue(span.getEndEpochNanos() <= root.getEndEpochNanos());
+        }
+        for (Span call : calls) {
+            Assert.assertTrue(operationIds.contains(call.getParentSpanId()));
+            Assert.assertEquals(200L, call.getAttributes().get("http.status_code"));
+            Assert.assertTrue(call.getAttributes().containsKey("redash.phase.server.nanos"));
+            Assert.assertEquals(Span.StatusCode.UNSET, call.getStatus());
+        }
+
+        Map<String, Object> attributes = root.getAttributes();
+        Assert.assertEquals(5L, attributes.get("redash.http.calls"));
+        long serverNanos = calls.stream().mapToLong(call -> (Long) call.getAttributes().get("redash.phase.server.nanos")).sum();
+        Assert.assertEquals(serverNanos, attributes.get("redash.phase.server.nanos"));
+        for (String phase : new String[]{"request", "server", "response", "decode"}) {
+            Assert.assertTrue(phase, (Long) attributes.get("redash.phase." + phase + ".nanos") >= 0);
+        }
+        Assert.assertFalse(attributes.containsKey("redash.phase.tls.nanos"));
+    }
+
+    @Test
+    public void failedOperationTest() throws IOException {
+        RedashClient client = server.clientBuilder().tracer(tracer(1)).build();
+        try {
+            client.getGroupById(404);
+            Assert.fail();
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        Assert.assertEquals(2, spans.size());
+        Span call = spans.get(0);
+        Assert.assertEquals(Span.Kind.CLIENT, call.getKind());
+        Assert.assertEquals(Span.StatusCode.ERROR, call.getStatus());
+        Assert.assertEquals("HTTP 404", call.getStatusMessage());
+        Span operation = spans.get(1);
+        Assert.assertEquals(Span.StatusCode.ERROR, operation.getStatus());
+        Assert.assertTrue(operation.getStatusMessage().startsWith(IllegalArgumentException.class.getName()));
+    }
+
+    @Test
+    public void samplingTest() throws IOException {
+        RedashClient client = server.clientBuilder().tracer(tracer(0)).build();
+        int groupId = client.createUserGroup(new Group("analysts"));
+        client.getWithUsersAndDataSources(groupId);
+        Assert.assertTrue(spans.isEmpty());
+
+        RedashTracer tracer = tracer(1);
+        Operation outside = tracer.startOperation("outside");
+        try {
+            // Operations of other tracers and calls outside of operations are not recorded
+            client.getUsers();
+        } finally {
+            outside.close();
+        }
+        Assert.assertEquals(1, spans.size());
+        Assert.assertEquals("outside", spans.get(0).getName());
+    }
+
+    @Test
+    public void otlpTest() throws IOException {
+        RedashClient client = server.clientBuilder().tracer(tracer(1)).build();
+        client.getUsers();
+        JSONObject call = new JSONObject(spans.get(0).toOtlpJson().toString());
+        JSONObject operation = new JSONObject(spans.get(1).toOtlpJson().toString());
+        Assert.assertEquals(32, operation.getString("traceId").length());
+        Assert.assertEquals(16, operation.getString("spanId").length());
+        Assert.assertFalse(operation.has("parentSpanId"));
+        Assert.assertEquals(operation.getString("spanId"), call.getString("parentSpanId"));
+        Assert.assertEquals(3, call.getInt("kind"));
+        Assert.assertEquals("GET", call.getJSONArray("attributes").getJSONObject(0).getJSONObject("value")
+                .getString("stringValue"));
+        Assert.assertEquals(1, operation.getJSONObject("status").getInt("code"));
+        Assert.assertTrue(Long.parseLong(call.getString("endTimeUnixNano"))
+                >= Long.parseLong(call.getString("startTimeUnixNano")));
+    }
+
+    private RedashTracer tracer(double sampleRatio) {
+        return new RedashTracer.RedashTracerBuilder(spans::add).sampleRatio(sampleRatio).build();
+    }
+
+    private Span single(String name) {
+        List<Span> named = spans.stream().filter(span -> name.equals(span.getName())).collect(Collectors.toList());
+        Assert.assertEquals(spans.toString(), 1, named.size());
+        return named.get(0);
+    }
+}
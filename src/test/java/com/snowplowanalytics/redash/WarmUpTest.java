@@ -0,0 +1,76 @@
+/*
+ * Copyright (c) 2018 Snowplow Analytics Ltd. All rights reserved.
+ *
+ * This program is licensed to you under the Apache License Version 2.0,
+ * and you may not use this file except in compliance with the Apache License Version 2.0.
+ * You may obtain a copy of the Apache License Version 2.0 at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the Apache License Version 2.0 is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Apache License Version 2.0 for the specific language governing permissions and limitations there under.
+ */
+
+package com.snowplowanalytics.redash;
+
+import okhttp3.OkHttpClient;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.time.Duration;
+
+public class WarmUpTest {
+
+    private FakeRedashServer server;
+
+    @Before
+    public void setup() throws IOException {
+        server = new FakeRedashServer("key");
+        server.start();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        server.shutdown();
+    }
+
+    @Test
+    public void opensPooledConnectionsTest() throws IOException {
+        OkHttpClient httpClient = new OkHttpClient();
+        RedashClient client = server.clientBuilder().httpClient(httpClient).build();
+        // Slow enough that each request needs its own connection
+        server.setLatency(Duration.ofMillis(200));
+        client.warmUp(3);
+        Assert.assertEquals(3, server.getRequestCount());
+        Assert.assertEquals(3, httpClient.connectionPool().connectionCount());
+
+        server.setLatency(Duration.ZERO);
+        client.getUsers();
+        Assert.assertEquals(3, httpClient.connectionPool().connectionCount());
+    }
+
+    @Test(expected = RedashAuthenticationException.class)
+    public void rejectedKeyTest() throws IOException {
+        new RedashClient.RedashClientBuilder("http", server.getHostName(), server.getPort(), "wrong").build()
+                .warmUp(1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidConnectionsTest() throws IOException {
+        server.clientBuilder().build().warmUp(0);
+    }
+
+    @Test
+    public void warmUpOnBuildTest() throws Exception {
+        RedashClient client = server.clientBuilder().warmUp(2).build();
+        long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+        while (server.getRequestCount() < 2 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        Assert.assertEquals(2, server.getRequestCount());
+        Assert.assertEquals(2, client.getUsers().size());
+    }
+}
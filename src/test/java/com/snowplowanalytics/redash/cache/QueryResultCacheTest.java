@@ -0,0 +1,173 @@
+/*
+ * Copyright (c) 2018 Snowplow Analytics Ltd. All rights reserved.
+ *
+ * This program is licensed to you under the Apache License Version 2.0,
+ * and you may not use this file except in compliance with the Apache License Version 2.0.
+ * You may obtain a copy of the Apache License Version 2.0 at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the Apache License Version 2.0 is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Apache License Version 2.0 for the specific language governing permissions and limitations there under.
+ */
+
+package com.snowplowanalytics.redash.cache;
+
+import com.google.gson.Gson;
+import com.snowplowanalytics.redash.model.query.QueryResult;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class QueryResultCacheTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void keyNormalizationTest() {
+        Map<String, Object> parameters = new LinkedHashMap<>();
+        parameters.put("b", 2);
+        parameters.put("a", "x");
+        Map<String, Object> reordered = new LinkedHashMap<>();
+        reordered.put("a", "x");
+        reordered.put("b", "2");
+        Assert.assertEquals(QueryKey.of(1, "SELECT *\n  FROM events  ", parameters),
+                QueryKey.of(1, " SELECT * FROM\tevents", reordered));
+        Assert.assertNotEquals(QueryKey.of(1, "SELECT 1", parameters), QueryKey.of(2, "SELECT 1", parameters));
+        Assert.assertNotEquals(QueryKey.of(1, "SELECT 'a  b'", parameters), QueryKey.of(1, "SELECT 'a b'", parameters));
+        Assert.assertEquals("SELECT \"a  b\" , 'c\n'", QueryKey.normalize("SELECT   \"a  b\"\n, 'c\n'"));
+    }
+
+    @Test
+    public void maxAgeTest() throws IOException {
+        QueryResultCache cache = new QueryResultCache.QueryResultCacheBuilder().build();
+        QueryKey key = key("SELECT 1");
+        cache.put(key, result(1, Instant.now().minusSeconds(60)));
+        Assert.assertNotNull(cache.getIfPresent(key, 120));
+        Assert.assertNotNull(cache.getIfPresent(key, -1));
+        Assert.assertNull(cache.getIfPresent(key, 30));
+        Assert.assertNull(cache.getIfPresent(key, 0));
+        AtomicInteger loads = new AtomicInteger();
+        QueryResult loaded = cache.get(key, 30, () -> result(loads.incrementAndGet(), Instant.now()));
+        Assert.assertTrue(loaded.getId() == 1 && loads.get() == 1);
+        Assert.assertTrue(cache.get(key, 30, () -> result(loads.incrementAndGet(), Instant.now())) == loaded);
+        Assert.assertTrue(cache.getHitCount() == 1 && cache.getMissCount() == 1);
+    }
+
+    @Test
+    public void lruEvictionTest() {
+        QueryResultCache cache = new QueryResultCache.QueryResultCacheBuilder().maximumSize(2).build();
+        cache.put(key("a"), result(1, Instant.now()));
+        cache.put(key("b"), result(2, Instant.now()));
+        cache.getIfPresent(key("a"), -1);
+        cache.put(key("c"), result(3, Instant.now()));
+        Assert.assertNotNull(cache.getIfPresent(key("a"), -1));
+        Assert.assertNull(cache.getIfPresent(key("b"), -1));
+        Assert.assertTrue(cache.size() == 2 && cache.getEvictionCount() == 1);
+    }
+
+    @Test
+    public void lfuEvictionTest() {
+        QueryResultCache cache = new QueryResultCache.QueryResultCacheBuilder()
+                .maximumSize(2).evictionPolicy(QueryResultCache.EvictionPolicy.LFU).build();
+        cache.put(key("a"), result(1, Instant.now()));
+        cache.put(key("b"), result(2, Instant.now()));
+        cache.getIfPresent(key("a"), -1);
+        cache.getIfPresent(key("a"), -1);
+        cache.getIfPresent(key("b"), -1);
+        // b was used more recently but less often than a
+        cache.put(key("c"), result(3, Instant.now()));
+        Assert.assertNull(cache.getIfPresent(key("b"), -1));
+        cache.put(key("d"), result(4, Instant.now()));
+        Assert.assertNull(cache.getIfPresent(key("c"), -1));
+        Assert.assertNotNull(cache.getIfPresent(key("a"), -1));
+    }
+
+    @Test
+    public void cellBoundTest() {
+        QueryResultCache cache = new QueryResultCache.QueryResultCacheBuilder().maximumCells(10).build();
+        cache.put(key("a"), result(1, Instant.now(), 6));
+        cache.put(key("b"), result(2, Instant.now(), 6));
+        Assert.assertTrue(cache.size() == 1);
+        Assert.assertNotNull(cache.getIfPresent(key("b"), -1));
+    }
+
+    @Test
+    public void spillTest() throws IOException {
+        QueryResultCache cache = new QueryResultCache.QueryResultCacheBuilder()
+                .maximumSize(1).spillDirectory(folder.getRoot().toPath()).maximumSpilled(1).build();
+        cache.put(key("a"), result(1, Instant.now()));
+        cache.put(key("b"), result(2, Instant.now()));
+        Assert.assertTrue(cache.spilledSize() == 1 && folder.getRoot().list().length == 1);
+        QueryResult a = cache.getIfPresent(key("a"), -1);
+        Assert.assertTrue(a.getId() == 1 && a.getRows().get(0).get("n").equals(0.0));
+        // a was read back into memory, which spilled b
+        Assert.assertTrue(cache.size() == 1 && cache.spilledSize() == 1);
+        cache.put(key("c"), result(3, Instant.now()));
+        Assert.assertTrue(cache.spilledSize() == 1 && folder.getRoot().list().length == 1);
+        Assert.assertNull(cache.getIfPresent(key("b"), -1));
+        cache.invalidateAll();
+        Assert.assertTrue(cache.size() == 0 && folder.getRoot().list().length == 0);
+    }
+
+    @Test
+    public void sharedResultIsReadOnlyTest() {
+        QueryResultCache cache = new QueryResultCache.QueryResultCacheBuilder().build();
+        cache.put(key("a"), result(1, Instant.now(), 3));
+        QueryResult hit = cache.getIfPresent(key("a"), -1);
+        try {
+            hit.getRows().remove(0);
+            Assert.fail();
+        } catch (UnsupportedOperationException e) {
+            // expected
+        }
+        try {
+            hit.getRows().get(0).put("n", 42);
+            Assert.fail();
+        } catch (UnsupportedOperationException e) {
+            // expected
+        }
+        try {
+            hit.getColumns().clear();
+            Assert.fail();
+        } catch (UnsupportedOperationException e) {
+            // expected
+        }
+        QueryResult next = cache.getIfPresent(key("a"), -1);
+        Assert.assertTrue(next.getRows().size() == 3 && next.getRows().get(0).get("n").equals(0.0));
+        Assert.assertTrue(next.getColumns().size() == 1);
+    }
+
+    private static QueryKey key(String query) {
+        return QueryKey.of(1, query, Collections.emptyMap());
+    }
+
+    private static QueryResult result(int id, Instant retrievedAt) {
+        return result(id, retrievedAt, 1);
+    }
+
+    private static QueryResult result(int id, Instant retrievedAt, int rows) {
+        JSONArray data = new JSONArray();
+        for (int i = 0; i < rows; i++) {
+            data.put(new JSONObject().put("n", i));
+        }
+        JSONObject json = new JSONObject()
+                .put("id", id)
+                .put("retrieved_at", retrievedAt.toString())
+                .put("data", new JSONObject()
+                        .put("columns", new JSONArray().put(new JSONObject().put("name", "n").put("type", "integer")))
+                        .put("rows", data));
+        return new Gson().fromJson(json.toString(), QueryResult.class);
+    }
+}
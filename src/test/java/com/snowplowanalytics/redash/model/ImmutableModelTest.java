@@ -0,0 +1,93 @@
+/*
+ * Copyright (c) 2018 Snowplow Analytics Ltd. All rights reserved.
+ *
+ * This program is licensed to you under the Apache License Version 2.0,
+ * and you may not use this file except in compliance with the Apache License Version 2.0.
+ * You may obtain a copy of the Apache License Version 2.0 at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the Apache License Version 2.0 is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Apache License Version 2.0 for the specific language governing permissions and limitations there under.
+ */
+
+package com.snowplowanalytics.redash.model;
+
+import com.snowplowanalytics.redash.model.datasource.DataSource;
+import com.snowplowanalytics.redash.model.datasource.ImmutableDataSource;
+import com.snowplowanalytics.redash.model.datasource.RedshiftDataSource;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+public class ImmutableModelTest {
+
+    private static final RedshiftDataSource rds = new RedshiftDataSource.RedshiftDataSourceBuilder("name")
+            .host("host")
+            .port(5439)
+            .user("user")
+            .password("password")
+            .dbName("dbName")
+            .build();
+
+    @Test
+    public void copyOfUserTest() {
+        User user = new User("user", 7);
+        ImmutableUser immutable = ImmutableUser.copyOf(user);
+        Assert.assertTrue(immutable.getId() == 7);
+        Assert.assertTrue(immutable.equals(new ImmutableUser.ImmutableUserBuilder("user").id(7).build()));
+        Assert.assertTrue(immutable.hashCode() == new ImmutableUser.ImmutableUserBuilder("user").id(7).build().hashCode());
+        Assert.assertTrue(immutable.toUser().equals(user));
+    }
+
+    @Test
+    public void copyOfDataSourceTest() {
+        rds.setId(3);
+        ImmutableDataSource immutable = ImmutableDataSource.copyOf(rds);
+        Assert.assertTrue(immutable.getId() == 3);
+        Assert.assertTrue(immutable.getType().equals("redshift"));
+        Assert.assertTrue(immutable.getOptions().equals(rds.getOptions()));
+        Assert.assertTrue(immutable.equals(ImmutableDataSource.copyOf(rds)));
+        Assert.assertTrue(immutable.hashCode() == ImmutableDataSource.copyOf(rds).hashCode());
+    }
+
+    @Test
+    public void groupMembersAreDetachedFromSourceTest() {
+        Group group = new Group("group", 5);
+        List<User> users = new ArrayList<>();
+        users.add(new User("first", 1));
+        group.setUsers(users);
+        List<DataSource> dataSources = new ArrayList<>();
+        dataSources.add(rds);
+        group.setDataSources(dataSources);
+
+        ImmutableGroup immutable = ImmutableGroup.copyOf(group);
+        users.add(new User("second", 2));
+        dataSources.clear();
+
+        Assert.assertTrue(immutable.getUsers().size() == 1);
+        Assert.assertTrue(immutable.getDataSources().size() == 1);
+        Assert.assertTrue(immutable.equals(ImmutableGroup.copyOf(new Group("group", 5) {{
+            setUsers(Collections.singletonList(new User("first", 1)));
+            setDataSources(Collections.singletonList(rds));
+        }})));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void groupMembersAreUnmodifiableTest() {
+        ImmutableGroup group = new ImmutableGroup.ImmutableGroupBuilder("group")
+                .users(Collections.singletonList(new ImmutableUser.ImmutableUserBuilder("user").id(1).build()))
+                .build();
+        group.getUsers().add(new ImmutableUser.ImmutableUserBuilder("other").id(2).build());
+    }
+
+    @Test
+    public void unhydratedGroupTest() {
+        ImmutableGroup immutable = ImmutableGroup.copyOf(new Group("group", 5));
+        Assert.assertNull(immutable.getUsers());
+        Assert.assertNull(immutable.getDataSources());
+    }
+}